@@ -76,6 +76,16 @@ public class IndexExport_p {
         } else {
             prop.put("lurlexport", 1);
             prop.put("lurlexport_exportfilepath", sb.getDataPath() + "/DATA/EXPORT/");
+            // interrupted exports which can be resumed from their checkpoint
+            final List<File> checkpoints = Fulltext.unfinishedExports(new File(sb.getDataPath(), "DATA/EXPORT"));
+            int c = 0;
+            for (final File checkpoint: checkpoints) {
+                final String name = checkpoint.getName();
+                prop.putHTML("lurlexport_unfinished_" + c + "_file", name.substring(0, name.length() - Fulltext.export_checkpoint_ext.length()));
+                prop.putHTML("lurlexport_unfinished_" + c + "_checkpoint", checkpoint.getAbsolutePath());
+                c++;
+            }
+            prop.put("lurlexport_unfinished", c);
             if (export == null) {
                 // there has never been an export
                 prop.put("lurlexportfinished", 0);
@@ -110,6 +120,11 @@ public class IndexExport_p {
             if (fname.endsWith("rss")) format = Fulltext.ExportFormat.rss;
             if (fname.endsWith("solr")) format = Fulltext.ExportFormat.solr;
             if (fname.endsWith("elasticsearch")) format = Fulltext.ExportFormat.elasticsearch;
+            Fulltext.ExportCompression compression = format == Fulltext.ExportFormat.solr ? Fulltext.ExportCompression.gzip : Fulltext.ExportCompression.none;
+            try {
+                final String cname = post.get("compression", "default");
+                if (!"default".equals(cname)) compression = Fulltext.ExportCompression.valueOf(cname);
+            } catch (final IllegalArgumentException e) {}
 
             final String filter = post.get("exportfilter", ".*");
             final String query = post.get("exportquery", "*:*");
@@ -121,7 +136,7 @@ public class IndexExport_p {
             
             // start the export
             try {
-                export = sb.index.fulltext().export(format, filter, query, maxseconds, new File(path), dom, text);
+                export = sb.index.fulltext().export(format, filter, query, maxseconds, new File(path), dom, text, compression);
             } catch (IOException e) {
                 prop.put("lurlexporterror", 1);
                 prop.put("lurlexporterror_exportfile", "-no export-");
@@ -138,6 +153,21 @@ public class IndexExport_p {
             prop.put("reload", 1);
         }
 
+        if (post.containsKey("resumeexport")) {
+            try {
+                export = sb.index.fulltext().resumeExport(new File(post.get("checkpoint", "")));
+                prop.put("lurlexport", 2);
+                prop.put("lurlexport_exportfile", export.file().toString());
+                prop.put("lurlexport_urlcount", export.count());
+                prop.put("reload", 1);
+            } catch (final IOException e) {
+                prop.put("lurlexporterror", 1);
+                prop.put("lurlexporterror_exportfile", "-no export-");
+                prop.put("lurlexporterror_exportfailmsg", e.getMessage());
+                return prop;
+            }
+        }
+
         if (post.containsKey("indexdump")) {
         	try {
         		final File dump = segment.fulltext().dumpEmbeddedSolr();
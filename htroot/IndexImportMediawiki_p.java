@@ -62,6 +62,7 @@ public class IndexImportMediawiki_p {
 	 *            <ul>
 	 *            <li>file : a dump URL or file path on this YaCy server local file system</li>
 	 *            <li>iffresh : when set to true, the dump file is imported only if its last modified date is unknown or after the last import trial date on this same file.  </li>
+	 *            <li>direct : when set to true, the articles are indexed directly instead of being written as surrogate files to the surrogates input path</li>
 	 *            <li>report : when set, display the currently running thread monitoring info, or the last import report when no one is running.
 	 *            Ignored when no import thread is known.</li>
 	 *            </ul>
@@ -164,7 +165,12 @@ public class IndexImportMediawiki_p {
 							sb.tables.recordAPICall(post, "IndexImportMediawiki_p.html", WorkTables.TABLE_API_TYPE_DUMP, "MediaWiki Dump Import for " + sourceURL);
 						}
 						
-						MediawikiImporter.job = new MediawikiImporter(sourceURL, sb.surrogatesInPath);
+						if (post.getBoolean("direct")) {
+							/* hand the documents over to the index without writing surrogate files */
+							MediawikiImporter.job = new MediawikiImporter(sourceURL, sb);
+						} else {
+							MediawikiImporter.job = new MediawikiImporter(sourceURL, sb.surrogatesInPath);
+						}
 						MediawikiImporter.job.start();
 						prop.put("import_dump", MediawikiImporter.job.source());
 						prop.put("import_thread", 1);
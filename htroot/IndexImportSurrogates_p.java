@@ -0,0 +1,74 @@
+// IndexImportSurrogates_p.java
+// -------------------------
+// (C) 2026 by the YaCy contributors
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+import java.util.List;
+
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.document.importer.SurrogateIngestion;
+import net.yacy.kelondro.util.Formatter;
+import net.yacy.search.Switchboard;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+public class IndexImportSurrogates_p {
+
+    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, final serverSwitch env) {
+        final Switchboard sb = (Switchboard) env;
+        final serverObjects prop = new serverObjects();
+
+        prop.put("inpath", sb.surrogatesInPath.getAbsolutePath());
+        prop.put("waiting", sb.surrogateQueueSize());
+        final SurrogateIngestion ingestion = sb.surrogateIngestion;
+        if (ingestion == null) {
+            prop.put("active", 0);
+            prop.put("workerQueue", 0);
+            prop.put("writeQueue", 0);
+            prop.put("files", 0);
+            prop.put("empty", 1);
+            return prop;
+        }
+        prop.put("active", ingestion.activeFiles());
+        prop.put("workerQueue", ingestion.workerQueueSize());
+        prop.put("writeQueue", ingestion.writeQueueSize());
+
+        final List<SurrogateIngestion.FileIngestion> files = ingestion.files();
+        int i = 0;
+        for (final SurrogateIngestion.FileIngestion file: files) {
+            final long consumed = file.consumed();
+            final long throughput = file.throughput();
+            prop.putHTML("files_" + i + "_source", file.source());
+            prop.put("files_" + i + "_status", file.status());
+            prop.put("files_" + i + "_count", file.count());
+            prop.put("files_" + i + "_failed", file.failed());
+            prop.put("files_" + i + "_speed", file.speed());
+            prop.put("files_" + i + "_size", Formatter.bytesToString(file.size()));
+            prop.put("files_" + i + "_consumed", consumed < 0 ? "-" : Formatter.bytesToString(consumed));
+            prop.put("files_" + i + "_percent", consumed < 0 || file.size() == 0 ? "-" : Integer.toString((int) (100 * consumed / file.size())));
+            prop.put("files_" + i + "_throughput", throughput < 0 ? "-" : Formatter.bytesToString(throughput));
+            prop.put("files_" + i + "_runningMinutes", file.runningTime() / 60);
+            prop.put("files_" + i + "_runningSeconds", file.runningTime() % 60);
+            prop.put("files_" + i + "_remainingMinutes", file.remainingTime() / 60);
+            prop.put("files_" + i + "_remainingSeconds", file.remainingTime() % 60);
+            prop.put("files_" + i + "_alive", file.isAlive() ? 1 : 0);
+            i++;
+        }
+        prop.put("files", i);
+        prop.put("empty", i == 0 ? 1 : 0);
+        return prop;
+    }
+}
@@ -78,15 +78,21 @@ public class IndexReIndexMonitor_p {
             prop.put("querysize", reidxbt.getJobCount());
 
             if (reidxbt instanceof ReindexSolrBusyThread) {
-                prop.put("docsprocessed", ((ReindexSolrBusyThread) reidxbt).getProcessed());
-                prop.put("currentselectquery","q="+((ReindexSolrBusyThread) reidxbt).getCurrentQuery());
+                final ReindexSolrBusyThread reidx = (ReindexSolrBusyThread) reidxbt;
+                prop.put("docsprocessed", reidx.getProcessed());
+                prop.put("currentselectquery","q="+reidx.getCurrentQuery());
+                prop.put("reindexjobrunning_chunksize", reidx.getChunkSize());
+                prop.put("reindexjobrunning_threads", reidx.getThreads());
+                prop.put("reindexjobrunning_throttled", reidx.isThrottled() ? 1 : 0);
                 // prepare list of fields in queue
-                final OrderedScoreMap<String> querylist = ((ReindexSolrBusyThread) reidxbt).getQueryList();
+                final OrderedScoreMap<String> querylist = reidx.getQueryList();
                 if (querylist != null) {
                     int i = 0;
                     for (final String oneqs : querylist) { // just use fieldname from query (fieldname:[* TO *])
+                        final String cursor = reidx.getCursor(oneqs);
                         prop.put("reindexjobrunning_fieldlist_"+i+"_fieldname", oneqs.substring(0, oneqs.indexOf(':')));
                         prop.put("reindexjobrunning_fieldlist_"+i+"_fieldscore", querylist.get(oneqs));
+                        prop.put("reindexjobrunning_fieldlist_"+i+"_cursor", cursor == null ? "" : cursor);
                         i++;
                     }
                     prop.put("reindexjobrunning_fieldlist", querylist.size());
@@ -99,6 +105,7 @@ public class IndexReIndexMonitor_p {
             	/* Check the transaction is valid */
             	TransactionManager.checkPostTransaction(header, post);
             	
+                if (reidxbt instanceof ReindexSolrBusyThread) ((ReindexSolrBusyThread) reidxbt).cancel(); // do not resume after a restart
                 sb.terminateThread(ReindexSolrBusyThread.THREAD_NAME, false);
                 prop.put("infomessage", "reindex job stopped");
                 prop.put("reindexjobrunning",0);
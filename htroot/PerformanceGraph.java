@@ -47,12 +47,21 @@ public class PerformanceGraph {
         final int height = post.getInt("height", 240);
         final boolean showMemory = !post.containsKey("nomem");
         final boolean showPeers = !post.containsKey("nopeers");
+        final String period = post.get("period", "");
 
         long t = System.currentTimeMillis();
         if (t - indexSizeTime > 10000) {
             indeSizeCache = sb.index.fulltext().collectionSize();
             indexSizeTime = t;
         }
+        final long seconds = periodSeconds(period);
+        if (seconds > 0 && sb.performanceHistory != null) {
+            // long time ranges are drawn from the persistent performance history
+            return ProfilingGraph.historyGraph(
+                    width, height,
+                    indeSizeCache + " URLS / " + sb.index.RWICount() + " WORDS IN INDEX / LAST " + period.toUpperCase(),
+                    sb.performanceHistory, seconds, "traffic".equals(post.get("view", "")));
+        }
         RasterPlotter graph = ProfilingGraph.performanceGraph(
                 width, height,
                 indeSizeCache + " URLS / " + sb.index.RWICount() + " WORDS IN INDEX / " + sb.index.RWIBufferCount() + " WORDS IN CACHE",
@@ -61,4 +70,13 @@ public class PerformanceGraph {
         return graph;
     }
 
+    private static long periodSeconds(final String period) {
+        if ("hour".equals(period)) return 3600;
+        if ("day".equals(period)) return 86400;
+        if ("week".equals(period)) return 7 * 86400;
+        if ("month".equals(period)) return 31 * 86400;
+        if ("year".equals(period)) return 365 * 86400;
+        return 0;
+    }
+
 }
\ No newline at end of file
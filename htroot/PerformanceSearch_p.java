@@ -24,17 +24,23 @@
 // along with this program; if not, write to the Free Software
 // Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 
+import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.peers.graphics.ProfilingGraph;
 import net.yacy.search.EventTracker;
+import net.yacy.search.query.QueryTrace;
+import net.yacy.search.query.SearchAdmission;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
 public class PerformanceSearch_p {
 
-    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, @SuppressWarnings("unused") final serverSwitch sb) {
+    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, final serverObjects post, @SuppressWarnings("unused") final serverSwitch sb) {
         // return variable that accumulates replacements
         final serverObjects prop = new serverObjects();
 
@@ -59,6 +65,75 @@ public class PerformanceSearch_p {
             }
         }
         prop.put("table", c);
+
+        // the query traces: one trace, the traces of one query or all kept traces
+        final String traceId = post == null ? "" : post.get("trace", "");
+        final String queryId = post == null ? "" : post.get("query", "");
+        final QueryTrace trace = traceId.isEmpty() ? null : QueryTrace.get(traceId);
+        if (trace == null) {
+            prop.put("trace", 0);
+        } else {
+            prop.put("trace", 1);
+            prop.putHTML("trace_id", trace.id);
+            prop.putHTML("trace_query", trace.queryId);
+            prop.putNum("trace_duration", trace.duration());
+            prop.put("trace_running", trace.isFinished() ? 0 : 1);
+            prop.put("trace_origin", trace.origin == null ? 0 : 1);
+            prop.putHTML("trace_origin_name", trace.origin == null ? "" : trace.origin);
+            prop.putHTML("trace_origin_parent", trace.parentId == null ? "-" : trace.parentId);
+            final double total = Math.max(1, trace.duration());
+            final List<QueryTrace.Span> spans = trace.spans();
+            c = 0;
+            for (final QueryTrace.Span span: spans) {
+                final double duration = span.duration();
+                prop.put("trace_spans_" + c + "_dark", c % 2 == 0 ? 1 : 0);
+                prop.putHTML("trace_spans_" + c + "_stage", span.stage);
+                prop.putHTML("trace_spans_" + c + "_resource", span.resource == null ? "" : span.resource);
+                prop.put("trace_spans_" + c + "_start", String.format(Locale.ROOT, "%.1f", span.start()));
+                prop.put("trace_spans_" + c + "_duration", duration < 0 ? "running" : String.format(Locale.ROOT, "%.1f", duration));
+                prop.put("trace_spans_" + c + "_count", span.count() < 0 ? "" : Integer.toString(span.count()));
+                prop.putHTML("trace_spans_" + c + "_detail", span.detail() == null ? "" : span.detail());
+                prop.put("trace_spans_" + c + "_left", String.format(Locale.ROOT, "%.2f", Math.min(100.0d, 100.0d * span.start() / total)));
+                prop.put("trace_spans_" + c + "_width", String.format(Locale.ROOT, "%.2f", Math.max(0.2d, Math.min(100.0d - 100.0d * span.start() / total, 100.0d * Math.max(0, duration) / total))));
+                c++;
+            }
+            prop.put("trace_spans", c);
+        }
+        putTraces(prop, "traces", queryId.isEmpty() ? QueryTrace.recent() : QueryTrace.byQuery(queryId));
+        putTraces(prop, "slowtraces", QueryTrace.slow());
+        prop.put("filtered", queryId.isEmpty() ? 0 : 1);
+        prop.putHTML("filtered_query", queryId);
+
+        // the state of the search admission control
+        prop.put("enabled", SearchAdmission.isEnabled() ? 1 : 0);
+        prop.put("pressure", String.format(Locale.ROOT, "%.2f", SearchAdmission.pressure()));
+        prop.putNum("latency", (long) SearchAdmission.latency());
+        prop.put("load", String.format(Locale.ROOT, "%.2f", SearchAdmission.load()));
+        prop.putNum("running", SearchAdmission.inFlight());
+        c = 0;
+        for (final SearchAdmission.Degradation degradation: SearchAdmission.Degradation.values()) {
+            prop.put("decisions_" + c + "_dark", c % 2 == 0 ? 1 : 0);
+            prop.put("decisions_" + c + "_level", degradation.name());
+            prop.putNum("decisions_" + c + "_count", SearchAdmission.decisions(degradation));
+            c++;
+        }
+        prop.put("decisions", c);
         return prop;
     }
+
+    private static void putTraces(final serverObjects prop, final String name, final List<QueryTrace> traces) {
+        int c = 0;
+        for (final QueryTrace trace: traces) {
+            prop.put(name + "_" + c + "_dark", c % 2 == 0 ? 1 : 0);
+            prop.put(name + "_" + c + "_time", GenericFormatter.SIMPLE_FORMATTER.format(new Date(trace.startTime)));
+            prop.putHTML(name + "_" + c + "_id", trace.id);
+            prop.putHTML(name + "_" + c + "_query", trace.queryId);
+            prop.putHTML(name + "_" + c + "_origin", trace.origin == null ? "local" : trace.origin);
+            prop.putHTML(name + "_" + c + "_parent", trace.parentId == null ? "" : trace.parentId);
+            prop.putNum(name + "_" + c + "_duration", trace.duration());
+            prop.putNum(name + "_" + c + "_spans", trace.spans().size());
+            c++;
+        }
+        prop.put(name, c);
+    }
 }
@@ -0,0 +1,161 @@
+// Profiler_p.java
+// -----------------------
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.data.TransactionManager;
+import net.yacy.kelondro.logging.SamplingProfiler;
+import net.yacy.search.Switchboard;
+import net.yacy.search.SwitchboardConstants;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+/**
+ * Shows the flame graph of the sampling profiler; Profiler_p.txt exports the stacks in the collapsed format
+ */
+public class Profiler_p {
+
+    /** the height of a frame in the flame graph in pixels */
+    private static final int FRAME_HEIGHT = 16;
+
+    /** frames with less than this part of the samples are not shown */
+    private static final double MIN_WIDTH = 0.002d;
+
+    public static serverObjects respond(final RequestHeader header, final serverObjects post, final serverSwitch env) {
+        final serverObjects prop = new serverObjects();
+        final Switchboard sb = (Switchboard) env;
+        final SamplingProfiler profiler = sb.profiler;
+
+        /* Acquire a transaction token for the next POST form submission */
+        prop.put(TransactionManager.TRANSACTION_TOKEN_PARAM, TransactionManager.getTransactionToken(header));
+
+        if (post != null && (post.containsKey("start") || post.containsKey("stop"))) {
+            /* Check the transaction is valid */
+            TransactionManager.checkPostTransaction(header, post);
+        }
+        if (post != null && post.containsKey("start")) {
+            sb.setConfig(SwitchboardConstants.PROFILER_ENABLED, true);
+            profiler.start();
+        }
+        if (post != null && post.containsKey("stop")) {
+            sb.setConfig(SwitchboardConstants.PROFILER_ENABLED, false);
+            profiler.stop();
+        }
+        String subsystem = post == null ? "" : post.get("subsystem", "").trim();
+        if (subsystem.isEmpty()) subsystem = null;
+
+        final String path = header.getPathInfo();
+        if (path != null && path.endsWith(".txt")) {
+            // the collapsed stacks for the txt export
+            final StringBuilder collapsed = new StringBuilder(65536);
+            try {
+                profiler.writeCollapsed(subsystem, collapsed);
+            } catch (final IOException e) {
+                // a StringBuilder does not throw IOExceptions
+                ConcurrentLog.logException(e);
+            }
+            prop.put("collapsed", collapsed.toString());
+            return prop;
+        }
+
+        // status
+        prop.put("running", profiler.isRunning() ? 1 : 0);
+        prop.putNum("interval", profiler.interval());
+        prop.putNum("window", profiler.window() / 60000);
+        prop.putNum("samples", profiler.sampleCount());
+        prop.putNum("samplecost", profiler.averageSampleMicros());
+        prop.put("since", GenericFormatter.SIMPLE_FORMATTER.format(new Date(profiler.reportStart())));
+
+        // the subsystems
+        final List<SamplingProfiler.Subsystem> subsystems = profiler.subsystems();
+        long running = 0;
+        for (final SamplingProfiler.Subsystem s: subsystems) running += s.running;
+        int c = 0;
+        for (final SamplingProfiler.Subsystem s: subsystems) {
+            prop.put("subsystems_" + c + "_dark", c % 2 == 0 ? 1 : 0);
+            prop.putHTML("subsystems_" + c + "_name", s.name);
+            try {
+                prop.put("subsystems_" + c + "_url", URLEncoder.encode(s.name, StandardCharsets.UTF_8.name()));
+            } catch (final UnsupportedEncodingException e) {
+                prop.put("subsystems_" + c + "_url", "");
+            }
+            prop.putNum("subsystems_" + c + "_running", s.running);
+            prop.putNum("subsystems_" + c + "_percent", running == 0 ? 0.0d : 100.0d * s.running / running);
+            prop.putNum("subsystems_" + c + "_blocked", s.blocked);
+            c++;
+        }
+        prop.put("subsystems", c);
+
+        // the flame graph, as absolute positioned frames
+        final SamplingProfiler.Node root = profiler.flameGraph(subsystem);
+        prop.put("selected", subsystem == null ? 0 : 1);
+        prop.putHTML("selected_subsystem", subsystem == null ? "" : subsystem);
+        final int[] count = new int[]{0};
+        final int depth = frames(prop, root, root.total, 0.0d, 0, count);
+        prop.put("frames", count[0]);
+        prop.put("height", (depth + 1) * FRAME_HEIGHT);
+        return prop;
+    }
+
+    /**
+     * put a frame and its children into the properties
+     * @return the depth of the deepest shown frame
+     */
+    private static int frames(final serverObjects prop, final SamplingProfiler.Node node, final long total, final double left, final int depth, final int[] count) {
+        if (total == 0) return 0;
+        final double width = (double) node.total / total;
+        if (width < MIN_WIDTH) return depth - 1;
+        final int c = count[0]++;
+        prop.put("frames_" + c + "_left", String.format(Locale.ROOT, "%.3f", left * 100.0d));
+        prop.put("frames_" + c + "_width", String.format(Locale.ROOT, "%.3f", width * 100.0d));
+        prop.put("frames_" + c + "_top", depth * FRAME_HEIGHT);
+        prop.put("frames_" + c + "_color", color(node.name));
+        prop.putHTML("frames_" + c + "_name", node.name);
+        prop.putNum("frames_" + c + "_samples", node.total);
+        prop.putNum("frames_" + c + "_percent", 100.0d * width);
+        int deepest = depth;
+        double x = left;
+        for (final SamplingProfiler.Node child: node.children()) {
+            deepest = Math.max(deepest, frames(prop, child, total, x, depth + 1, count));
+            x += (double) child.total / total;
+        }
+        return deepest;
+    }
+
+    /**
+     * the usual warm flame graph colors, stable for a frame name
+     */
+    private static String color(final String name) {
+        final int h = name.hashCode() & 0x7fffffff;
+        final int r = 205 + h % 50;
+        final int g = 80 + (h >> 8) % 150;
+        final int b = 40 + (h >> 16) % 50;
+        return String.format(Locale.ROOT, "#%02x%02x%02x", r, g, b);
+    }
+
+}
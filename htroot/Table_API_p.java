@@ -34,6 +34,7 @@ import java.util.regex.Pattern;
 
 import net.yacy.cora.date.AbstractFormatter;
 import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.protocol.Domains;
@@ -341,16 +342,20 @@ public class Table_API_p {
 			if(sortColumn.isEmpty()) {
 				mapIterator = plainIterator;
 			} else {
+				final boolean indexed = sb.tables.hasSortedIndex(WorkTables.TABLE_API_NAME, sortColumn);
 				if (WorkTables.TABLE_API_COL_APICALL_COUNT.equals(sortColumn)
 						|| WorkTables.TABLE_API_COL_APICALL_SCHEDULE_TIME.equals(sortColumn)) {
-					mapIterator = Tables.orderByInt(plainIterator, sortColumn, 0, sortDir).iterator();
+					mapIterator = indexed ? sb.tables.orderedIterator(WorkTables.TABLE_API_NAME, sortColumn, ASCII.getBytes("0"), sortDir)
+							: Tables.orderByInt(plainIterator, sortColumn, 0, sortDir).iterator();
 				} else if (WorkTables.TABLE_API_COL_DATE.equals(sortColumn)
 						|| WorkTables.TABLE_API_COL_DATE_RECORDING.equals(sortColumn)
 						|| WorkTables.TABLE_API_COL_DATE_LAST_EXEC.equals(sortColumn)
 						|| WorkTables.TABLE_API_COL_DATE_NEXT_EXEC.equals(sortColumn)) {
-					mapIterator = Tables.orderByDate(plainIterator, sortColumn, now, sortDir).iterator();
+					mapIterator = indexed ? sb.tables.orderedIterator(WorkTables.TABLE_API_NAME, sortColumn, UTF8.getBytes(GenericFormatter.SHORT_MILSEC_FORMATTER.format(now)), sortDir)
+							: Tables.orderByDate(plainIterator, sortColumn, now, sortDir).iterator();
 				} else {
-					mapIterator = Tables.orderByString(plainIterator, sortColumn, "", sortDir).iterator();
+					mapIterator = indexed ? sb.tables.orderedIterator(WorkTables.TABLE_API_NAME, sortColumn, new byte[0], sortDir)
+							: Tables.orderByString(plainIterator, sortColumn, "", sortDir).iterator();
 				}
 			}
             Tables.Row r;
@@ -224,7 +224,7 @@ public class getpageinfo_p {
                     ClientIdentification.Agent agent = ClientIdentification.getAgent(post.get("agentName", ClientIdentification.yacyInternetCrawlerAgentName));
                     RobotsTxtEntry robotsEntry = sb.robots.getEntry(theURL, agent);
                 	prop.put("robots-allowed", robotsEntry == null ? 1 : robotsEntry.isDisallowed(theURL) ? 0 : 1);
-                    prop.putHTML("robotsInfo", robotsEntry == null ? "" : robotsEntry.getInfo());
+                    prop.putHTML("robotsInfo", robotsEntry == null ? "" : robotsEntry.getInfo(theURL));
 
                     // get the sitemap URL(s) of the domain
                     final List<String> sitemaps = robotsEntry == null ? new ArrayList<String>(0) : robotsEntry.getSitemaps();
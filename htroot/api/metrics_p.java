@@ -0,0 +1,49 @@
+// metrics_p.java
+// ------------
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+import java.io.IOException;
+
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+/**
+ * Export of the metrics registry in the Prometheus text exposition format,
+ * to be scraped from /api/metrics_p.txt
+ */
+public class metrics_p {
+
+    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, @SuppressWarnings("unused") final serverSwitch env) {
+        final serverObjects prop = new serverObjects();
+        final StringBuilder metrics = new StringBuilder(16384);
+        try {
+            Metrics.write(metrics);
+        } catch (final IOException e) {
+            // a StringBuilder does not throw IOExceptions
+            ConcurrentLog.logException(e);
+        }
+        prop.put("metrics", metrics.toString());
+
+        // return rewrite properties
+        return prop;
+    }
+
+}
@@ -37,6 +37,8 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import org.apache.http.HttpStatus;
+
 import net.yacy.cora.document.analysis.Classification;
 import net.yacy.cora.document.analysis.Classification.ContentDomain;
 import net.yacy.cora.document.encoding.ASCII;
@@ -49,8 +51,10 @@ import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.sorting.ScoreMap;
 import net.yacy.cora.sorting.WeakPriorityBlockingQueue;
 import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.gui.Audio;
+import net.yacy.http.servlets.TemplateProcessingException;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.data.word.WordReferenceFactory;
@@ -63,6 +67,7 @@ import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.peers.EventChannel;
 import net.yacy.peers.Network;
 import net.yacy.peers.Protocol;
+import net.yacy.peers.SearchStream;
 import net.yacy.peers.Seed;
 import net.yacy.peers.graphics.ProfilingGraph;
 import net.yacy.search.EventTracker;
@@ -73,6 +78,8 @@ import net.yacy.search.query.AccessTracker;
 import net.yacy.search.query.QueryGoal;
 import net.yacy.search.query.QueryModifier;
 import net.yacy.search.query.QueryParams;
+import net.yacy.search.query.QueryTrace;
+import net.yacy.search.query.SearchAdmission;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SearchEventCache;
 import net.yacy.search.query.SearchEventType;
@@ -84,7 +91,19 @@ import net.yacy.utils.crypt;
 
 public final class search {
 
-    public static serverObjects respond(final RequestHeader header, final serverObjects post, final serverSwitch env) {
+    public static Object respond(final RequestHeader header, final serverObjects post, final serverSwitch env) {
+        final QueryTrace[] started = new QueryTrace[1];
+        Object result = null;
+        try {
+            result = respond(header, post, env, started);
+            return result;
+        } finally {
+            // the trace of a failed search is finished here, a streamed search finishes its trace at the end of the stream
+            if (started[0] != null && !(result instanceof ResultStream)) started[0].finish();
+        }
+    }
+
+    private static Object respond(final RequestHeader header, final serverObjects post, final serverSwitch env, final QueryTrace[] started) {
         // return variable that accumulates replacements
         final Switchboard sb = (Switchboard) env;
         sb.remoteSearchLastAccess = System.currentTimeMillis();
@@ -92,6 +111,7 @@ public final class search {
         final serverObjects prop = new serverObjects();
         // set nice default values for error cases
         prop.put("searchtime", "0");
+        prop.put("trace", "");
         prop.put("references", "");
         prop.put("joincount", "0");
         prop.put("linkcount", "0");
@@ -110,7 +130,10 @@ public final class search {
         final String  query  = post.get("query", "");  // a string of word hashes that shall be searched and combined
         final String  exclude= post.get("exclude", "");// a string of word hashes that shall not be within the search result
         final String  urls   = post.get("urls", "");         // a string of url hashes that are preselected for the search: no other may be returned
-        final String  abstracts = post.get("abstracts", "");  // a string of word hashes for abstracts that shall be generated, or 'auto' (for maxcount-word), or '' (for none)
+        final int     stream = Math.min(post.getInt(SearchStream.PARAMETER, 0), SearchStream.VERSION); // the version of the stream format which the requester understands, 0 for the text table
+        // the admission control asks for no index abstracts when the peer is overloaded
+        final SearchAdmission.Degradation admission = SearchAdmission.degradation(header);
+        final String  abstracts = admission.atLeast(SearchAdmission.Degradation.NO_SNIPPETS) ? "" : post.get("abstracts", "");  // a string of word hashes for abstracts that shall be generated, or 'auto' (for maxcount-word), or '' (for none)
         final int     count  = Math.min((int) sb.getConfigLong(SwitchboardConstants.REMOTESEARCH_MAXCOUNT_DEFAULT, 10), post.getInt("count", 10)); // maximum number of wanted results
         final long    maxtime = Math.min((int) sb.getConfigLong(SwitchboardConstants.REMOTESEARCH_MAXTIME_DEFAULT, 3000), post.getLong("time", 3000)); // maximum waiting time
         final int     maxdist= post.getInt("maxdist", Integer.MAX_VALUE);
@@ -187,6 +210,11 @@ public final class search {
         if (block) {
             return prop;
         }
+        if (admission.atLeast(SearchAdmission.Degradation.CACHE_ONLY)) {
+            // an empty answer would be taken as a search without results, the requesting peer must count it as a failure
+            throw new TemplateProcessingException("The search service is overloaded. Please try again later.",
+                    HttpStatus.SC_SERVICE_UNAVAILABLE);
+        }
 
         // tell all threads to do nothing for a specific time
         sb.intermissionAllThreads(100);
@@ -220,6 +248,7 @@ public final class search {
         final StringBuilder indexabstract = new StringBuilder(6000);
         int indexabstractContainercount = 0;
         QueryParams theQuery = null;
+        QueryTrace trace = null;
         SearchEvent theSearch = null;
         ArrayList<WeakPriorityBlockingQueue.Element<URIMetadataNode>> accu = null;
         if (query.isEmpty() && abstractSet != null) {
@@ -257,6 +286,8 @@ public final class search {
                     new HashSet<>()
                     );
             theQuery.setStrictContentDom(strictContentDom);
+            trace = QueryTrace.start(theQuery.id(true), post.get("trace", null), remoteSeed == null ? client : remoteSeed.getName(), post.getBoolean("traced"));
+            started[0] = trace;
             Network.log.info("INIT HASH SEARCH (abstracts only): " + QueryParams.anonymizedQueryHashes(theQuery.getQueryGoal().getIncludeHashes()) + " - " + theQuery.itemsPerPage() + " links");
 
             final long timer = System.currentTimeMillis();
@@ -322,6 +353,8 @@ public final class search {
                     new HashSet<>()
                     );
             theQuery.setStrictContentDom(strictContentDom);
+            trace = QueryTrace.start(theQuery.id(true), post.get("trace", null), remoteSeed == null ? client : remoteSeed.getName(), post.getBoolean("traced"));
+            started[0] = trace;
             Network.log.info("INIT HASH SEARCH (query-" + abstracts + "): " + QueryParams.anonymizedQueryHashes(theQuery.getQueryGoal().getIncludeHashes()) + " - " + theQuery.itemsPerPage() + " links");
             EventChannel.channels(EventChannel.REMOTESEARCH).addMessage(new RSSMessage("Remote Search Request from " + ((remoteSeed == null) ? "unknown" : remoteSeed.getName()), QueryParams.anonymizedQueryHashes(theQuery.getQueryGoal().getIncludeHashes()), ""));
             if (sb.getConfigBool(SwitchboardConstants.DECORATION_AUDIO, false)) Audio.Soundclip.remotesearch.play(-10.0f);
@@ -333,7 +366,7 @@ public final class search {
 
             // set statistic details of search result and find best result index set
             prop.put("joincount", Integer.toString(theSearch.getResultCount()));
-            if (theSearch.getResultCount() > 0) {
+            if (theSearch.getResultCount() > 0 && stream == 0) {
                 accu = theSearch.completeResults(maxtime);
             }
             if (theSearch.getResultCount() <= 0 || abstracts.isEmpty()) {
@@ -401,14 +434,15 @@ public final class search {
 
         // prepare result
         int resultCount = theSearch == null ? 0 : theSearch.getResultCount(); // theSearch may be null if we searched only for abstracts
-        if (resultCount == 0 || accu == null || accu.isEmpty()) {
+        final boolean streaming = stream > 0 && resultCount > 0; // the links are sent by a ResultStream as soon as they are ranked
+        if (resultCount == 0 || (!streaming && (accu == null || accu.isEmpty()))) {
 
             // no results
             prop.put("links", "");
             prop.put("linkcount", "0");
             prop.put("references", "");
 
-        } else {
+        } else if (!streaming) {
             // result is a List of urlEntry elements
             final long timer = System.currentTimeMillis();
             final StringBuilder links = new StringBuilder(6000);
@@ -443,6 +477,11 @@ public final class search {
         sb.remoteSearchTracker.put(client, trackerHandles);
         if (MemoryControl.shortStatus()) sb.remoteSearchTracker.clear();
 
+        if (streaming) {
+            // the log and the counters are completed when the stream is finished
+            return new ResultStream(sb, theSearch, theQuery, prop, trace, indexabstractContainercount, timestamp, maxtime);
+        }
+
         // log
         Network.log.info("EXIT HASH SEARCH: " +
                 QueryParams.anonymizedQueryHashes(theQuery.getQueryGoal().getIncludeHashes()) + " - " + resultCount + " links found, " +
@@ -451,6 +490,8 @@ public final class search {
                 (System.currentTimeMillis() - timestamp) + " milliseconds");
 
         prop.put("searchtime", System.currentTimeMillis() - timestamp);
+        trace.finish();
+        prop.put("trace", trace.id);
 
         final int links = prop.getInt("linkcount",0);
         sb.peers.mySeed().incSI(links);
@@ -458,4 +499,85 @@ public final class search {
         return prop;
     }
 
+    /**
+     * The streamed response: the results are sent one by one as soon as they are ranked,
+     * followed by the fields which are not needed to process the results.
+     */
+    private static class ResultStream extends SearchStream.Source {
+
+        private final Switchboard sb;
+        private final SearchEvent theSearch;
+        private final QueryParams theQuery;
+        private final serverObjects prop;
+        private final QueryTrace trace;
+        private final int indexabstractContainercount;
+        private final long timestamp, deadline;
+        private int item, links;
+
+        private ResultStream(final Switchboard sb, final SearchEvent theSearch, final QueryParams theQuery, final serverObjects prop, final QueryTrace trace,
+                final int indexabstractContainercount, final long timestamp, final long maxtime) {
+            this.sb = sb;
+            this.theSearch = theSearch;
+            this.theQuery = theQuery;
+            this.prop = prop;
+            this.trace = trace;
+            this.indexabstractContainercount = indexabstractContainercount;
+            this.timestamp = timestamp;
+            this.deadline = System.currentTimeMillis() + maxtime;
+            this.item = -1;
+            this.links = 0;
+        }
+
+        @Override
+        protected boolean next() {
+            if (this.item == -1) {
+                field("joincount", this.prop.get("joincount", "0"));
+                this.item = 0;
+                return true;
+            }
+            if (this.item < 0) return false;
+            final long remaining = this.deadline - System.currentTimeMillis();
+            final URIMetadataNode node = this.item < this.theQuery.neededResults() && remaining > 0 ? this.theSearch.oneResult(this.item, remaining) : null;
+            if (node != null) {
+                final String resource = node.resource();
+                if (resource != null) {
+                    resource(resource);
+                    this.links++;
+                }
+                this.item++;
+                return true;
+            }
+
+            // all results are sent
+            this.item = -2;
+            field("count", Integer.toString(this.links));
+            field("references", this.prop.get("references", ""));
+            lines(this.prop.get("indexcount", ""));
+            lines(this.prop.get("indexabstract", ""));
+            field("searchtime", Long.toString(System.currentTimeMillis() - this.timestamp));
+            field("trace", this.trace.id);
+            return true;
+        }
+
+        private void lines(final String lines) {
+            for (final String line: CommonPattern.NEWLINE.split(lines)) {
+                final int p = line.indexOf('=');
+                if (p > 0) field(line.substring(0, p), line.substring(p + 1).trim());
+            }
+        }
+
+        @Override
+        protected void finish() {
+            this.theQuery.transmitcount = this.links + 1;
+            Network.log.info("EXIT HASH SEARCH (streamed): " +
+                    QueryParams.anonymizedQueryHashes(this.theQuery.getQueryGoal().getIncludeHashes()) + " - " + this.theSearch.getResultCount() + " links found, " +
+                    this.links + " links selected, " +
+                    this.indexabstractContainercount + " index abstracts, " +
+                    (System.currentTimeMillis() - this.timestamp) + " milliseconds");
+            this.trace.finish();
+            this.sb.peers.mySeed().incSI(this.links);
+            this.sb.peers.mySeed().incSU(this.links);
+        }
+    }
+
 }
@@ -27,8 +27,10 @@
 // javac -classpath .:../classes transferRWI.java
 
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -44,13 +46,17 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.Memory;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.peers.EventChannel;
 import net.yacy.peers.Network;
 import net.yacy.peers.Protocol;
+import net.yacy.peers.RWIWireFormat;
 import net.yacy.peers.Seed;
 import net.yacy.repository.Blacklist.BlacklistType;
 import net.yacy.search.Switchboard;
@@ -115,7 +121,9 @@ public final class transferRWI {
 //      final String key      = (String) post.get("key", "");             // transmission key
         final int wordc       = post.getInt("wordc", 0);                  // number of different words
         final int entryc      = post.getInt("entryc", 0);                 // number of entries in indexes
-        byte[] indexes        = post.get("indexes", "").getBytes();       // the indexes, as list of word entries
+        // the indexes, as list of word entries or in the binary format as file part
+        final boolean binary  = post.get("indexes", "").equals(RWIWireFormat.FILENAME) && post.getFile("indexes") != null;
+        byte[] indexes        = binary ? post.getFile("indexes") : post.get("indexes", "").getBytes();
         boolean granted       = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, false);
         final boolean blockBlacklist = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_BLOCK_BLACKLIST, false);
         final long cachelimit = sb.getConfigLong(SwitchboardConstants.WORDCACHE_MAX_COUNT, 100000);
@@ -170,9 +178,52 @@ public final class transferRWI {
             if (sb.getLog().isFine()) sb.getLog().fine("Processing " + indexes.length + " bytes / " + wordc + " words / " + entryc + " entries from " + otherPeerName);
             final long startProcess = System.currentTimeMillis();
 
+            final HandleSet unknownURL = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 0);
+            final ArrayList<String> wordhashes = new ArrayList<String>();
+            int received = 0;
+            int blocked = 0;
+            int count = 0;
+            Set<String> testids = new HashSet<String>();
+
+            if (binary) {
+                // decode the binary rows term by term and store them as whole containers
+                try {
+                    final RWIWireFormat.Decoder decoder = new RWIWireFormat.Decoder(new ByteArrayInputStream(indexes));
+                    indexes = null;
+                    containers: while (decoder.hasNext()) {
+                        final ReferenceContainer<WordReference> container = decoder.next();
+                        final HandleSet rejected = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 0);
+                        for (int i = 0; i < container.size(); i++) {
+                            final Row.Entry row = container.get(i, false);
+                            final byte[] urlHash = row.getPrimaryKeyBytes();
+                            if (++count > 1000 || !accept(sb, urlHash, blockBlacklist, otherPeerName)) { // protection against flooding
+                                blocked++;
+                                rejected.put(urlHash);
+                                continue;
+                            }
+                            testids.add(ASCII.String(urlHash));
+                            received++;
+                        }
+                        if (!rejected.isEmpty()) container.removeEntries(rejected);
+                        if (!container.isEmpty()) {
+                            wordhashes.add(ASCII.String(container.getTermHash()));
+                            try {
+                                sb.index.storeRWI(container);
+                            } catch (final Exception e) {
+                                ConcurrentLog.logException(e);
+                            }
+                        }
+                        if (count > 1000) break containers;
+                    }
+                    if (decoder.error() != null) sb.getLog().warn("transferRWI: broken binary transmission from peer " + otherPeerName + ": " + decoder.error().getMessage());
+                } catch (final IOException | SpaceExceededException e) {
+                    sb.getLog().warn("transferRWI: cannot decode binary transmission from peer " + otherPeerName + ": " + e.getMessage());
+                }
+            }
+
             // decode request
             //System.out.println("STRINGS " + UTF8.String(indexes));
-            final Iterator<String> it = FileUtils.strings(indexes);
+            final Iterator<String> it = binary ? Collections.<String>emptyIterator() : FileUtils.strings(indexes);
 
             // free memory
             indexes = null;
@@ -183,12 +234,6 @@ public final class transferRWI {
             String wordHash;
             byte[] urlHash;
             WordReferenceRow iEntry;
-            final HandleSet unknownURL = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 0);
-            final ArrayList<String> wordhashes = new ArrayList<String>();
-            int received = 0;
-            int blocked = 0;
-            int count = 0;
-            Set<String> testids = new HashSet<String>();
             while (it.hasNext()) {
                 estring = it.next();
                 count++;
@@ -205,18 +250,8 @@ public final class transferRWI {
                 iEntry = new WordReferenceRow(estring.substring(p));
                 urlHash = iEntry.urlhash();
 
-                // block blacklisted entries
-                if ((blockBlacklist) && (Switchboard.urlBlacklist.hashInBlacklistedCache(BlacklistType.DHT, urlHash))) {
-                    Network.log.fine("transferRWI: blocked blacklisted URLHash '" + ASCII.String(urlHash) + "' from peer " + otherPeerName);
-                    blocked++;
-                    continue;
-                }
-
-                // check if the entry is in our network domain
-                final String urlRejectReason = sb.crawlStacker.urlInAcceptedDomainHash(urlHash);
-                if (urlRejectReason != null) {
-                    Network.log.warn("transferRWI: blocked URL hash '" + ASCII.String(urlHash) + "' (" + urlRejectReason + ") from peer " + otherPeerName + "; peer is suspected to be a spam-peer (or something is wrong)");
-                    //if (yacyCore.log.isFine()) yacyCore.log.logFine("transferRWI: blocked URL hash '" + urlHash + "' (" + urlRejectReason + ") from peer " + otherPeerName);
+                // block blacklisted entries and entries which are not in our network domain
+                if (!accept(sb, urlHash, blockBlacklist, otherPeerName)) {
                     blocked++;
                     continue;
                 }
@@ -277,6 +312,30 @@ public final class transferRWI {
         return prop;
     }
 
+    /**
+     * check if a received reference shall be stored
+     * @param sb the switchboard
+     * @param urlHash the url hash of the reference
+     * @param blockBlacklist true if references to blacklisted urls are rejected
+     * @param otherPeerName the name of the sending peer, for logging
+     * @return true if the reference is accepted
+     */
+    private static boolean accept(final Switchboard sb, final byte[] urlHash, final boolean blockBlacklist, final String otherPeerName) {
+        // block blacklisted entries
+        if ((blockBlacklist) && (Switchboard.urlBlacklist.hashInBlacklistedCache(BlacklistType.DHT, urlHash))) {
+            Network.log.fine("transferRWI: blocked blacklisted URLHash '" + ASCII.String(urlHash) + "' from peer " + otherPeerName);
+            return false;
+        }
+
+        // check if the entry is in our network domain
+        final String urlRejectReason = sb.crawlStacker.urlInAcceptedDomainHash(urlHash);
+        if (urlRejectReason != null) {
+            Network.log.warn("transferRWI: blocked URL hash '" + ASCII.String(urlHash) + "' (" + urlRejectReason + ") from peer " + otherPeerName + "; peer is suspected to be a spam-peer (or something is wrong)");
+            return false;
+        }
+        return true;
+    }
+
     /**
      * @param requestIdentifier
      * @param msg
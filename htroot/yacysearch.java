@@ -89,6 +89,8 @@ import net.yacy.search.query.AccessTracker;
 import net.yacy.search.query.QueryGoal;
 import net.yacy.search.query.QueryModifier;
 import net.yacy.search.query.QueryParams;
+import net.yacy.search.query.QueryTrace;
+import net.yacy.search.query.SearchAdmission;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SearchEventCache;
 import net.yacy.search.query.SearchEventType;
@@ -456,6 +458,16 @@ public class yacysearch {
             }
         }
 
+        // adaptive admission control: do less work for the search when the peer is overloaded
+        final SearchAdmission.Degradation admission = SearchAdmission.degradation(header);
+        if (admission.atLeast(SearchAdmission.Degradation.LOCAL_ONLY)) {
+            global = false;
+            jsResort = false;
+        }
+        if (admission.atLeast(SearchAdmission.Degradation.NO_SNIPPETS)) {
+            snippetFetchStrategy = null;
+        }
+
         if (block) {
             prop.put("num-results", 5);
         } else {
@@ -784,6 +796,7 @@ public class yacysearch {
                     sb.getConfigSet("search.navigation"));
             theQuery.setStrictContentDom(strictContentDom);
             theQuery.setMaxSuggestions(meanMax);
+            theQuery.setReducedRemoteSearch(admission.atLeast(SearchAdmission.Degradation.FEWER_PEERS));
             theQuery.setStandardFacetsMaxCount(sb.getConfigInt(SwitchboardConstants.SEARCH_NAVIGATION_MAXCOUNT,
                     QueryParams.FACETS_STANDARD_MAXCOUNT_DEFAULT));
             theQuery.setDateFacetMaxCount(sb.getConfigInt(SwitchboardConstants.SEARCH_NAVIGATION_DATES_MAXCOUNT,
@@ -820,6 +833,10 @@ public class yacysearch {
 
             // create a new search event
             final SearchEvent cachedEvent = SearchEventCache.getEvent(theQuery.id(false));
+            if (cachedEvent == null && admission.atLeast(SearchAdmission.Degradation.CACHE_ONLY)) {
+                throw new TemplateProcessingException("The search service is overloaded. Please try again later.",
+                        HttpStatus.SC_SERVICE_UNAVAILABLE);
+            }
             if (cachedEvent == null) {
                 theQuery.setOffset(0); // in case that this is a new search, always start without a offset
                 startRecord = 0;
@@ -839,6 +856,8 @@ public class yacysearch {
                         SwitchboardConstants.REMOTESEARCH_MAXTIME_USER,
                         sb.getConfigLong(SwitchboardConstants.REMOTESEARCH_MAXTIME_DEFAULT, 3000)));
 
+            final long renderStart = System.currentTimeMillis();
+
             if(post.getBoolean("resortCachedResults") && cachedEvent == theSearch) {
                 theSearch.resortCachedResults();
             }
@@ -984,6 +1003,7 @@ public class yacysearch {
             prop.put("resultTable_embed", (contentdom == ContentDomain.AUDIO && extendedSearchRights));
             prop.put("eventID", theQuery.id(false)); // for bottomline
             prop.put("jsResort_eventID", theQuery.id(false));
+            theSearch.trace.record(QueryTrace.RENDER, "yacysearch", System.currentTimeMillis() - renderStart, theQuery.itemsPerPage());
 
             // process result of search
             if ( !filtered.isEmpty() ) {
@@ -95,6 +95,7 @@ public class yacysearchitem {
     //private static boolean col = true;
 
     public static serverObjects respond(final RequestHeader header, final serverObjects post, final serverSwitch env) {
+        final long timer = System.currentTimeMillis();
 		if (post == null) {
 			throw new TemplateMissingParameterException("The eventID parameter is required");
 		}
@@ -417,7 +418,7 @@ public class yacysearchitem {
                 }
                 prop.put("content_heuristic_name", heuristic.heuristicName);
             }
-            EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(theSearch.query.id(true), SearchEventType.FINALIZATION, "" + item, 0, 0), false);
+            EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(theSearch.query.id(true), SearchEventType.FINALIZATION, "" + item, 0, System.currentTimeMillis() - timer), false);
             if (result.doctype() == Response.DT_IMAGE) {
                 final String license = URLLicense.aquireLicense(resultURL);
                 prop.put("content_code", license);
@@ -64,6 +64,7 @@ public class yacysearchtrailer {
 
     @SuppressWarnings({ })
     public static serverObjects respond(final RequestHeader header, final serverObjects post, final serverSwitch env) {
+        final long timer = System.currentTimeMillis();
         if (post == null) {
             throw new TemplateMissingParameterException("The eventID parameter is required");
         }
@@ -475,7 +476,9 @@ public class yacysearchtrailer {
             prop.putUrlEncoded(fileType, "cat-location_queryenc", queryenc);
         }
         prop.put("num-results_totalcount", theSearch.getResultCount());
-        EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(theSearch.query.id(true), SearchEventType.FINALIZATION, "bottomline", 0, 0), false);
+        EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(theSearch.query.id(true), SearchEventType.FINALIZATION, "bottomline", 0, System.currentTimeMillis() - timer), false);
+        // the bottomline is the last part of the search page
+        theSearch.trace.finish();
         return prop;
     }
 
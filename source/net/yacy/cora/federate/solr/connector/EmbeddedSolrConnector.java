@@ -193,6 +193,7 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
     
     public SolrQueryResponse query(SolrQueryRequest req) throws SolrException {
         final long startTime = System.currentTimeMillis();
+        final long start = System.nanoTime();
 
         // during the solr query we set the thread name to the query string to get more debugging info in thread dumps
         String threadname = Thread.currentThread().getName();
@@ -214,6 +215,7 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
         int status = exception == null ? 0 : exception instanceof SolrException ? ((SolrException) exception).code() : 500;
         responseHeader.add("status", status);
         responseHeader.add("QTime",(int) (System.currentTimeMillis() - startTime));
+        this.queryLatency.since(start);
 
         Thread.currentThread().setName(threadname);
         // return result
@@ -327,8 +329,10 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
         ConcurrentLog.info("EmbeddedSolrConnector.getResponseByParams", "QUERY: " + ql);
         //System.out.println("EmbeddedSolrConnector.getResponseByParams * QUERY: " + ql); System.out.println("STACKTRACE: " + ConcurrentLog.stackTrace());
         QueryResponse rsp;
+        final long start = System.nanoTime();
         try {
             rsp = this.server.query(params);
+            this.queryLatency.since(start);
             Thread.currentThread().setName(threadname);
             if (rsp != null) if (log.isFine()) log.fine(rsp.getResults().getNumFound() + " results for " + ql);
             return rsp;
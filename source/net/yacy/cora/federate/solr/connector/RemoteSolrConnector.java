@@ -108,9 +108,11 @@ public class RemoteSolrConnector extends SolrServerConnector implements SolrConn
         ResponseParser responseParser = useBinaryResponseWriter ? new BinaryResponseParser() : new XMLResponseParser();
         request.setResponseParser(responseParser);
         long t = System.currentTimeMillis();
+        final long start = System.nanoTime();
         NamedList<Object> result = null;
         try {
             result = this.server.request(request);
+            this.queryLatency.since(start);
         } catch (final Throwable e) {
             //ConcurrentLog.logException(e);
             throw new IOException(e.getMessage());
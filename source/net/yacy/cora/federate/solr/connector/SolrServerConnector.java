@@ -28,6 +28,7 @@ import java.util.List;
 
 import net.yacy.cora.federate.solr.instance.ServerShard;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.search.schema.CollectionSchema;
 
 import org.apache.solr.common.SolrDocumentList;
@@ -57,9 +58,13 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
         assert classLoaderSynchro != null;
     }
     protected SolrClient server;
+    protected final Metrics.Latency queryLatency, updateLatency;
 
     protected SolrServerConnector() {
         this.server = null;
+        final String connector = this instanceof EmbeddedSolrConnector ? "embedded" : "remote";
+        this.queryLatency = Metrics.latency(Metrics.name("yacy_solr_query_seconds", "connector", connector), "Duration of Solr queries");
+        this.updateLatency = Metrics.latency(Metrics.name("yacy_solr_update_seconds", "connector", connector), "Duration of Solr document updates including the wait for the server lock");
     }
 
     protected void init(SolrClient server) {
@@ -208,6 +213,7 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
     public void add(final SolrInputDocument solrdoc) throws IOException, SolrException {
         if (this.server == null) return;
         if (solrdoc.containsKey("_version_")) solrdoc.setField("_version_",0L); // prevent Solr "version conflict"
+        final long start = System.nanoTime();
         synchronized (this.server) {
             try {
                 this.server.add(solrdoc, -1);
@@ -242,6 +248,7 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
                 }
             }
         }
+        this.updateLatency.since(start);
     }
 
     @Override
@@ -250,6 +257,7 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
         for (SolrInputDocument solrdoc : solrdocs) {
             if (solrdoc.containsKey("_version_")) solrdoc.setField("_version_",0L); // prevent Solr "version conflict"
         }
+        final long start = System.nanoTime();
         synchronized (this.server) {
             try {
                 this.server.add(solrdocs, -1);
@@ -285,6 +293,7 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
                 }
             }
         }
+        this.updateLatency.since(start);
     }
 
     /**
@@ -308,12 +317,14 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
         QueryResponse rsp;
         int retry = 0;
         Throwable error = null;
+        final long start = System.nanoTime();
         while (retry++ < 10) {
             try {
                 if (q != null) Thread.currentThread().setName("solr query: q = " + q + (fq == null ? "" : ", fq = " + fq) + (sort == null ? "" : ", sort = " + sort) + "; retry = " + retry + "; fl = " + fl); // for debugging in Threaddump
                 rsp = this.server.query(params);
                 if (q != null) Thread.currentThread().setName(threadname);
                 if (rsp != null) if (log.isFine()) log.fine(rsp.getResults().getNumFound() + " results for q=" + q);
+                this.queryLatency.since(start);
                 return rsp.getResults();
             } catch (final SolrServerException e) {
                 error = e;
@@ -488,6 +488,13 @@ public class RemoteInstance implements SolrInstance {
 		return u;
 	}
 
+    /**
+     * @return the connection timeout in milliseconds
+     */
+    public int getTimeout() {
+        return this.timeout;
+    }
+
     @Override
     public String getDefaultCoreName() {
         return this.defaultCoreName;
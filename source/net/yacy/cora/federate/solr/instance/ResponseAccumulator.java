@@ -20,101 +20,436 @@
 
 package net.yacy.cora.federate.solr.instance;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * Merge of the responses of the shards of a distributed query.
+ * Each shard is asked with {@link #shardParams(SolrParams)} for the first start+rows documents, sorted
+ * by the requested sort and with the values of the sort fields, which are removed again from the merged
+ * documents if they were not requested. The document lists are merged with a heap by the same sort, duplicate ids
+ * are removed and the window start..start+rows is cut out of the merged list. Facet counts, numFound
+ * and the highlighting of the merged documents are combined; facet fields are sorted and limited
+ * like in a single Solr instance.
+ */
 public class ResponseAccumulator {
 
+    private static final String SCORE = "score";
+    private static final String ID = CollectionSchema.id.getSolrFieldName();
+
     final SimpleOrderedMap<Object> fieldsAcc;
     final SimpleOrderedMap<Object> index_countsAcc;
     final SimpleOrderedMap<Object> facet_countsAcc;
     final SimpleOrderedMap<Object> highlightingAcc;
     final SimpleOrderedMap<Object> headerAcc;
-    final SolrDocumentList resultsAcc;
+    final List<SolrDocumentList> resultsAcc;
+    final SolrParams params;
+    private int qtime;
+    private boolean partial;
 
+    /**
+     * an accumulator which concatenates the documents of all shards sorted by score
+     */
     public ResponseAccumulator() {
+        this(null);
+    }
+
+    /**
+     * @param params the parameters of the original (not the shard) query, used to sort and limit the merged result
+     */
+    public ResponseAccumulator(final SolrParams params) {
         this.fieldsAcc = new SimpleOrderedMap<Object>();
         this.index_countsAcc = new SimpleOrderedMap<Object>();
         this.facet_countsAcc = new SimpleOrderedMap<Object>();
         this.highlightingAcc = new SimpleOrderedMap<Object>();
         this.headerAcc = new SimpleOrderedMap<Object>();
-        this.resultsAcc = new SolrDocumentList();
-        
+        this.resultsAcc = new ArrayList<SolrDocumentList>();
+        this.params = params;
+        this.qtime = 0;
+        this.partial = false;
     }
-    
+
+    /**
+     * compute the parameters of a shard query: each shard must return all documents up to the end of
+     * the requested window, the values of the sort fields and the id and more facet terms than requested to get correct counts
+     * of the top terms after the merge
+     * @param params the original query parameters
+     * @return the shard query parameters
+     */
+    public static ModifiableSolrParams shardParams(final SolrParams params) {
+        final ModifiableSolrParams shard = new ModifiableSolrParams(params);
+        final int start = params.getInt(CommonParams.START, 0);
+        final int rows = params.getInt(CommonParams.ROWS, CommonParams.ROWS_DEFAULT);
+        shard.set(CommonParams.START, 0);
+        shard.set(CommonParams.ROWS, (int) Math.min(Integer.MAX_VALUE, (long) start + (long) rows));
+        final List<String> missing = missingFields(params);
+        if (!missing.isEmpty()) {
+            final String fl = params.get(CommonParams.FL);
+            final StringBuilder sb = new StringBuilder(fl == null || fl.trim().isEmpty() ? "*" : fl);
+            for (final String field: missing) sb.append(',').append(field);
+            shard.set(CommonParams.FL, sb.toString());
+        }
+        if (params.getBool(FacetParams.FACET, false)) {
+            final Iterator<String> names = params.getParameterNamesIterator();
+            while (names.hasNext()) {
+                final String name = names.next();
+                if (name.equals(FacetParams.FACET_LIMIT) || (name.startsWith("f.") && name.endsWith("." + FacetParams.FACET_LIMIT))) {
+                    final String prefix = name.substring(0, name.length() - FacetParams.FACET_LIMIT.length());
+                    final int limit = params.getInt(name, 100);
+                    final int offset = params.getInt(prefix + FacetParams.FACET_OFFSET, 0);
+                    if (limit >= 0) shard.set(name, (int) Math.min(Integer.MAX_VALUE, (long) offset + (long) (limit * 1.5d) + 10L));
+                    shard.set(prefix + FacetParams.FACET_OFFSET, 0);
+                } else if (name.equals(FacetParams.FACET_MINCOUNT) || (name.startsWith("f.") && name.endsWith("." + FacetParams.FACET_MINCOUNT))) {
+                    if (params.getInt(name, 0) > 1) shard.set(name, 1); // a term may reach the minimum only in the sum of the shards
+                }
+            }
+            if (params.get(FacetParams.FACET_LIMIT) == null) shard.set(FacetParams.FACET_LIMIT, 160);
+        }
+        return shard;
+    }
+
+    /**
+     * @param params the original query parameters
+     * @return the fields which are needed to merge the shard results, the sort fields and the id,
+     * but which are not returned with the requested field list
+     */
+    static List<String> missingFields(final SolrParams params) {
+        final List<String> needed = sortFields(params.get(CommonParams.SORT));
+        if (!needed.contains(ID)) needed.add(ID);
+        final String fl = params.get(CommonParams.FL);
+        final String[] requested = fl == null || fl.trim().isEmpty() ? new String[]{"*"} : fl.split("[, ]");
+        final List<String> missing = new ArrayList<String>();
+        for (final String field: needed) {
+            if (!returns(requested, field)) missing.add(field);
+        }
+        return missing;
+    }
+
+    /**
+     * @param sort a Solr sort specification like "score desc,id asc", null for the score order
+     * @return the names of the sort fields
+     */
+    private static List<String> sortFields(final String sort) {
+        final List<String> fields = new ArrayList<String>();
+        if (sort == null || sort.trim().isEmpty()) {
+            fields.add(SCORE);
+            return fields;
+        }
+        for (final String s: sort.split(",")) {
+            final String[] spec = s.trim().split("\\s+");
+            if (spec.length == 0 || spec[0].isEmpty() || fields.contains(spec[0])) continue;
+            fields.add(spec[0]);
+        }
+        return fields;
+    }
+
+    /**
+     * @return true if a field is returned with a field list; the wildcard and globs match all stored fields but not the score
+     */
+    private static boolean returns(final String[] requested, final String field) {
+        for (final String f: requested) {
+            if (f.equals(field)) return true;
+            if (!SCORE.equals(field) && f.endsWith("*") && field.startsWith(f.substring(0, f.length() - 1))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * mark the merged response as incomplete, because a shard failed or did not answer in time
+     */
+    public void setPartialResults() {
+        this.partial = true;
+    }
+
     public void addResponse(NamedList<Object> response) {
         // set the header; this is mostly always the same (well this is not evaluated much)
         final Object headerObj = response.get("responseHeader");
-        if(headerObj instanceof SimpleOrderedMap) {
-        	//Integer status = (Integer) header.get("status");
-        	//Integer QTime = (Integer) header.get("QTime");
-        	//SimpleOrderedMap<Object> params = (SimpleOrderedMap<Object>) header.get("params");
-        	final SimpleOrderedMap<?> header = (SimpleOrderedMap<?>) headerObj;
+        if(headerObj instanceof NamedList) {
+        	final NamedList<?> header = (NamedList<?>) headerObj;
         	if (headerAcc.size() == 0) {
         		for (final Map.Entry<String, ?> e: header) {
         			headerAcc.add(e.getKey(), e.getValue());
         		}
         	}
+        	final Object qt = header.get("QTime");
+        	if (qt instanceof Number) this.qtime = Math.max(this.qtime, ((Number) qt).intValue());
         }
         
-        // accumulate the results
+        // collect the results, they are merged when the response is produced
         SolrDocumentList results = (SolrDocumentList) response.get("response");
-        if (results != null) {
-            long found = results.size();
-            for (int i = 0; i < found; i++) resultsAcc.add(results.get(i));
-            resultsAcc.setNumFound(resultsAcc.getNumFound() + results.getNumFound());
-            resultsAcc.setMaxScore(Math.max(resultsAcc.getMaxScore() == null ? 0f : resultsAcc.getMaxScore().floatValue(), results.getMaxScore() == null ? 0f : results.getMaxScore().floatValue()));
-        }
+        if (results != null) resultsAcc.add(results);
         
         // accumulate the highlighting
         @SuppressWarnings("unchecked")
-        SimpleOrderedMap<Object> highlighting = (SimpleOrderedMap<Object>) response.get("highlighting");
+        NamedList<Object> highlighting = (NamedList<Object>) response.get("highlighting");
         if (highlighting != null) {
-            for (Map.Entry<String, Object> e: highlighting) highlightingAcc.add(e.getKey(), e.getValue());
+            for (Map.Entry<String, Object> e: highlighting) if (highlightingAcc.get(e.getKey()) == null) highlightingAcc.add(e.getKey(), e.getValue());
         }
         
-        // accumulate the facets (well this is not correct at this time...)
+        // accumulate the facets
         @SuppressWarnings("unchecked")
-        SimpleOrderedMap<Object> facet_counts = (SimpleOrderedMap<Object>) response.get("facet_counts");
-        if (facet_counts != null) {
-            for (Map.Entry<String, Object> e: facet_counts) facet_countsAcc.add(e.getKey(), e.getValue());
-        }
+        NamedList<Object> facet_counts = (NamedList<Object>) response.get("facet_counts");
+        if (facet_counts != null) merge(facet_countsAcc, facet_counts);
         
         // accumulate the index
         @SuppressWarnings("unchecked")
-        SimpleOrderedMap<Object> index_counts = (SimpleOrderedMap<Object>) response.get("index");
+        NamedList<Object> index_counts = (NamedList<Object>) response.get("index");
         if (index_counts != null) {
             for (Map.Entry<String, Object> e: index_counts) index_countsAcc.add(e.getKey(), e.getValue());
         }
         
         // accumulate the fields
         @SuppressWarnings("unchecked")
-        SimpleOrderedMap<Object> schema = (SimpleOrderedMap<Object>) response.get("schema");
+        NamedList<Object> schema = (NamedList<Object>) response.get("schema");
         if (schema != null) {
             @SuppressWarnings("unchecked")
-            SimpleOrderedMap<Object> fields = (SimpleOrderedMap<Object>) schema.get("fields");
+            NamedList<Object> fields = (NamedList<Object>) schema.get("fields");
             if (fields != null) {
                 for (Map.Entry<String, Object> e: fields) fieldsAcc.add(e.getKey(), e.getValue());
             }
         }
         @SuppressWarnings("unchecked")
-        SimpleOrderedMap<Object> fields = (SimpleOrderedMap<Object>) response.get("fields");
+        NamedList<Object> fields = (NamedList<Object>) response.get("fields");
         if (fields != null) {
             for (Map.Entry<String, Object> e: fields) fieldsAcc.add(e.getKey(), e.getValue());
         }
     }
+
+    /**
+     * add the counts of a facet response to the accumulated counts: numbers are summed, lists are merged
+     * by their keys and all other values (like the bounds of range facets) are taken from the first shard
+     */
+    @SuppressWarnings("unchecked")
+    private static void merge(final NamedList<Object> acc, final NamedList<Object> add) {
+        for (final Map.Entry<String, Object> e: add) {
+            final String key = e.getKey();
+            final Object value = e.getValue();
+            final int i = acc.indexOf(key, 0);
+            if (i < 0) {
+                acc.add(key, value instanceof NamedList ? copy((NamedList<Object>) value) : value);
+                continue;
+            }
+            final Object old = acc.getVal(i);
+            if (old instanceof NamedList && value instanceof NamedList) {
+                merge((NamedList<Object>) old, (NamedList<Object>) value);
+            } else if (old instanceof Number && value instanceof Number && !"start".equals(key) && !"end".equals(key) && !"gap".equals(key)) {
+                acc.setVal(i, (old instanceof Integer && value instanceof Integer) ?
+                        (Object) Integer.valueOf(((Integer) old).intValue() + ((Integer) value).intValue()) :
+                        (Object) Long.valueOf(((Number) old).longValue() + ((Number) value).longValue()));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NamedList<Object> copy(final NamedList<Object> list) {
+        final NamedList<Object> c = list instanceof SimpleOrderedMap ? new SimpleOrderedMap<Object>() : new NamedList<Object>();
+        for (final Map.Entry<String, Object> e: list) c.add(e.getKey(), e.getValue() instanceof NamedList ? copy((NamedList<Object>) e.getValue()) : e.getValue());
+        return c;
+    }
+
+    /**
+     * sort the merged terms of each facet field and apply facet.sort, facet.offset, facet.limit and facet.mincount
+     */
+    @SuppressWarnings("unchecked")
+    private void limitFacetFields() {
+        if (this.params == null) return;
+        final Object ff = facet_countsAcc.get("facet_fields");
+        if (!(ff instanceof NamedList)) return;
+        final NamedList<Object> facet_fields = (NamedList<Object>) ff;
+        for (int i = 0; i < facet_fields.size(); i++) {
+            final String field = facet_fields.getName(i);
+            final NamedList<Object> terms = (NamedList<Object>) facet_fields.getVal(i);
+            final List<Map.Entry<String, Object>> entries = new ArrayList<Map.Entry<String, Object>>(terms.size());
+            for (final Map.Entry<String, Object> e: terms) entries.add(e);
+            final String sort = this.params.getFieldParam(field, FacetParams.FACET_SORT);
+            final int limit = this.params.getFieldInt(field, FacetParams.FACET_LIMIT, 100);
+            final int offset = this.params.getFieldInt(field, FacetParams.FACET_OFFSET, 0);
+            final int mincount = this.params.getFieldInt(field, FacetParams.FACET_MINCOUNT, 0);
+            final boolean byIndex = FacetParams.FACET_SORT_INDEX.equals(sort) || (sort == null && limit < 0);
+            Collections.sort(entries, new Comparator<Map.Entry<String, Object>>() {
+                @Override
+                public int compare(final Map.Entry<String, Object> a, final Map.Entry<String, Object> b) {
+                    if (!byIndex) {
+                        final int c = Long.compare(((Number) b.getValue()).longValue(), ((Number) a.getValue()).longValue());
+                        if (c != 0) return c;
+                    }
+                    return a.getKey() == null ? (b.getKey() == null ? 0 : 1) : b.getKey() == null ? -1 : a.getKey().compareTo(b.getKey());
+                }
+            });
+            final NamedList<Object> limited = new NamedList<Object>();
+            int skip = offset;
+            for (final Map.Entry<String, Object> e: entries) {
+                if (((Number) e.getValue()).longValue() < mincount) continue;
+                if (skip > 0) {skip--; continue;}
+                if (limit >= 0 && limited.size() >= limit) break;
+                limited.add(e.getKey(), e.getValue());
+            }
+            facet_fields.setVal(i, limited);
+        }
+    }
+
+    /**
+     * the position of a document in the result of a shard
+     */
+    private static final class Cursor {
+        private final SolrDocumentList list;
+        private final int shard;
+        private int pos;
+        private Cursor(final SolrDocumentList list, final int shard) {
+            this.list = list;
+            this.shard = shard;
+            this.pos = 0;
+        }
+        private SolrDocument doc() {
+            return this.list.get(this.pos);
+        }
+    }
+
+    /**
+     * merge the sorted document lists of the shards with a heap
+     * @return the merged window of documents
+     */
+    private SolrDocumentList mergeResults() {
+        final int start = this.params == null ? 0 : this.params.getInt(CommonParams.START, 0);
+        final int rows = this.params == null ? Integer.MAX_VALUE : this.params.getInt(CommonParams.ROWS, CommonParams.ROWS_DEFAULT);
+        final Comparator<SolrDocument> order = comparator(this.params == null ? null : this.params.get(CommonParams.SORT));
+        final PriorityQueue<Cursor> heap = new PriorityQueue<Cursor>(Math.max(1, this.resultsAcc.size()), new Comparator<Cursor>() {
+            @Override
+            public int compare(final Cursor a, final Cursor b) {
+                final int c = order.compare(a.doc(), b.doc());
+                return c != 0 ? c : Integer.compare(a.shard, b.shard);
+            }
+        });
+        final SolrDocumentList merged = new SolrDocumentList();
+        long numFound = 0;
+        float maxScore = 0f;
+        boolean hasScore = false;
+        for (int i = 0; i < this.resultsAcc.size(); i++) {
+            final SolrDocumentList results = this.resultsAcc.get(i);
+            numFound += results.getNumFound();
+            if (results.getMaxScore() != null) {
+                maxScore = Math.max(maxScore, results.getMaxScore().floatValue());
+                hasScore = true;
+            }
+            if (!results.isEmpty()) heap.add(new Cursor(results, i));
+        }
+        final Set<Object> ids = new HashSet<Object>();
+        final long end = (long) start + (long) rows;
+        int position = 0;
+        while (!heap.isEmpty() && position < end) {
+            final Cursor cursor = heap.poll();
+            final SolrDocument doc = cursor.doc();
+            if (++cursor.pos < cursor.list.size()) heap.add(cursor);
+            final Object id = doc.getFieldValue(ID);
+            if (id != null && !ids.add(id)) {
+                numFound--; // the same document was returned by two shards
+                continue;
+            }
+            if (position++ >= start) merged.add(doc);
+        }
+        merged.setNumFound(numFound);
+        merged.setStart(start);
+        if (hasScore) merged.setMaxScore(maxScore);
+        return merged;
+    }
+
+    /**
+     * @param sort a Solr sort specification like "score desc,id asc", null for the score order
+     * @return a comparator for documents, using the returned values of the sort fields; missing values come last
+     */
+    static Comparator<SolrDocument> comparator(final String sort) {
+        final List<String> fields = new ArrayList<String>();
+        final List<Boolean> ascending = new ArrayList<Boolean>();
+        if (sort == null || sort.trim().isEmpty()) {
+            fields.add(SCORE);
+            ascending.add(Boolean.FALSE);
+        } else {
+            for (final String s: sort.split(",")) {
+                final String[] spec = s.trim().split("\\s+");
+                if (spec.length == 0 || spec[0].isEmpty()) continue;
+                fields.add(spec[0]);
+                ascending.add(spec.length < 2 || !spec[1].equalsIgnoreCase("desc"));
+            }
+        }
+        return new Comparator<SolrDocument>() {
+            @Override
+            public int compare(final SolrDocument a, final SolrDocument b) {
+                for (int i = 0; i < fields.size(); i++) {
+                    final Object va = a.getFirstValue(fields.get(i));
+                    final Object vb = b.getFirstValue(fields.get(i));
+                    if (va == null || vb == null) {
+                        if (va != vb) return va == null ? 1 : -1;
+                        continue;
+                    }
+                    final int c = compareValues(va, vb);
+                    if (c != 0) return ascending.get(i) ? c : -c;
+                }
+                return 0;
+            }
+        };
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareValues(final Object a, final Object b) {
+        if (a instanceof Number && b instanceof Number) return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        if (a instanceof Comparable && a.getClass() == b.getClass()) return ((Comparable) a).compareTo(b);
+        return a.toString().compareTo(b.toString());
+    }
     
     public NamedList<Object> getAccumulatedResponse() {
+        final SolrDocumentList results = mergeResults();
+        limitFacetFields();
+        if (headerAcc.size() > 0) {
+            final int i = headerAcc.indexOf("QTime", 0);
+            if (i >= 0) headerAcc.setVal(i, this.qtime);
+        }
+        if (this.partial && headerAcc.get("partialResults") == null) headerAcc.add("partialResults", Boolean.TRUE);
+
+        // the highlighting of the documents in the merged window
+        SimpleOrderedMap<Object> highlighting = highlightingAcc;
+        if (highlightingAcc.size() > 0 && this.params != null) {
+            highlighting = new SimpleOrderedMap<Object>();
+            for (final SolrDocument doc: results) {
+                final Object id = doc.getFieldValue(ID);
+                if (id == null) continue;
+                final Object h = highlightingAcc.get(id.toString());
+                if (h != null) highlighting.add(id.toString(), h);
+            }
+        }
+
+        // remove the values which were only added to the shard queries for the merge
+        if (this.params != null) {
+            final List<String> missing = missingFields(this.params);
+            if (!missing.isEmpty()) for (final SolrDocument doc: results) {
+                for (final String field: missing) doc.removeFields(field);
+            }
+        }
+
         // prepare combined response
         NamedList<Object> responsesAcc = new NamedList<Object>();
         responsesAcc.add("responseHeader", headerAcc);
-        responsesAcc.add("response", resultsAcc);
-        if (highlightingAcc != null && highlightingAcc.size() > 0) responsesAcc.add("highlighting", highlightingAcc);
+        responsesAcc.add("response", results);
+        if (highlighting != null && highlighting.size() > 0) responsesAcc.add("highlighting", highlighting);
         if (facet_countsAcc != null && facet_countsAcc.size() > 0) responsesAcc.add("facet_counts", facet_countsAcc);
         if (index_countsAcc != null && index_countsAcc.size() > 0) responsesAcc.add("index", index_countsAcc);
         if (fieldsAcc != null && fieldsAcc.size() > 0) responsesAcc.add("fields", fieldsAcc);
@@ -122,7 +457,16 @@ public class ResponseAccumulator {
     }
 
     public static QueryResponse combineResponses(Collection<QueryResponse> qrl) {
-        ResponseAccumulator acc = new ResponseAccumulator();
+        return combineResponses(qrl, null);
+    }
+
+    /**
+     * @param qrl the responses of the shards
+     * @param params the parameters of the original query or null to concatenate the results
+     * @return the merged response
+     */
+    public static QueryResponse combineResponses(Collection<QueryResponse> qrl, final SolrParams params) {
+        ResponseAccumulator acc = new ResponseAccumulator(params);
         for (final QueryResponse rsp: qrl) {
             NamedList<Object> response = rsp.getResponse();
             acc.addResponse(response);
@@ -25,7 +25,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrClient;
@@ -33,14 +41,19 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.StreamingResponseCallback;
 import org.apache.solr.client.solrj.SolrRequest.METHOD;
 import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 
 import net.yacy.cora.federate.solr.connector.ShardSelection;
+import net.yacy.cora.util.ConcurrentLog;
 
 public class ServerShard extends SolrClient {
     
@@ -51,12 +64,38 @@ public class ServerShard extends SolrClient {
         _dummyOKResponse.setResponse(new NamedList<Object>());
     }
     
+    /** the time in milliseconds to wait for the answer of a shard if no other timeout is given */
+    public static final long DEFAULT_TIMEOUT = 60000;
+    
+    /** the threads querying the shards, shared by all sharded servers */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger(0);
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "ServerShard.query-" + this.count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    
     private final ShardSelection shards;
     private final boolean writeEnabled;
+    private final long timeout;
     
     public ServerShard(ArrayList<SolrClient> server, final ShardSelection.Method method, final boolean writeEnabled) {
+        this(server, method, writeEnabled, DEFAULT_TIMEOUT);
+    }
+    
+    /**
+     * @param server the shards
+     * @param method the method to select the shard of a document
+     * @param writeEnabled if false, all write operations are ignored
+     * @param timeout the time in milliseconds to wait for the answer of a shard to a query
+     */
+    public ServerShard(ArrayList<SolrClient> server, final ShardSelection.Method method, final boolean writeEnabled, final long timeout) {
         this.shards = new ShardSelection(server, method);
         this.writeEnabled = writeEnabled;
+        this.timeout = timeout > 0 ? timeout : DEFAULT_TIMEOUT;
     }
 
     /**
@@ -383,30 +422,7 @@ public class ServerShard extends SolrClient {
         if (qs.size() == 1) {
             return qs.get(0).query(params);
         }
-
-        // concurrently call all shards
-        final Collection<QueryResponse> qrl = new ConcurrentLinkedQueue<QueryResponse>();
-        List<Thread> t = new ArrayList<Thread>();
-        for (final SolrClient s: qs) {
-            Thread t0 = new Thread("ServerShard.query/1(" + params.toString() + ")") {
-                @Override
-                public void run() {
-                    QueryResponse rsp;
-                    try {
-                        rsp = s.query(params);
-                    } catch (final Throwable e) {return;}
-                    qrl.add(rsp);
-                }
-            };
-            t0.start();
-            t.add(t0);
-        }
-        for (Thread t0: t) {
-            try {t0.join();} catch (final InterruptedException e) {}
-        }
-        
-        // prepare combined response
-        return ResponseAccumulator.combineResponses(qrl);
+        return scatter(qs, params, null);
     }
     
     /**
@@ -421,32 +437,90 @@ public class ServerShard extends SolrClient {
         if (qs.size() == 1) {
             return qs.get(0).query(params, method);
         }
+        return scatter(qs, params, method);
+    }
 
-        final Collection<QueryResponse> qrl = new ConcurrentLinkedQueue<QueryResponse>();
-        // concurrently call all shards
-        List<Thread> t = new ArrayList<Thread>();
+    /**
+     * concurrently query all shards and merge the responses
+     * @param qs the shards
+     * @param params the query parameters
+     * @param method the HTTP method or null for the default method
+     * @return the merged response, sorted and limited like the response of a single server
+     * @throws SolrServerException if no shard answered
+     */
+    private QueryResponse scatter(final List<SolrClient> qs, final SolrParams params, final METHOD method) throws SolrServerException, IOException {
+        final SolrParams shardParams = ResponseAccumulator.shardParams(params);
+        final List<Future<QueryResponse>> futures = new ArrayList<Future<QueryResponse>>(qs.size());
         for (final SolrClient s: qs) {
-            Thread t0 = new Thread("ServerShard.query/2(" + params.toString() + ")") {
+            futures.add(EXECUTOR.submit(new Callable<QueryResponse>() {
                 @Override
-                public void run() {
-                    QueryResponse rsp;
-                    try {
-                        rsp = s.query(params, method);
-                    } catch (final Throwable e) {return;}
-                    qrl.add(rsp);
+                public QueryResponse call() throws Exception {
+                    return method == null ? s.query(shardParams) : s.query(shardParams, method);
                 }
-            };
-            t0.start();
-            t.add(t0);
-        }
-        for (Thread t0: t) {
-            try {t0.join();} catch (final InterruptedException e) {}
+            }));
         }
+        final ResponseAccumulator acc = new ResponseAccumulator(params);
+        final Throwable error = gather(futures, timeout(params), new Gatherer<QueryResponse>() {
+            @Override
+            public void add(final QueryResponse rsp) {
+                acc.addResponse(rsp.getResponse());
+            }
+        }, acc);
+        if (error != null) throw new SolrServerException("no shard answered: " + error.getMessage(), error);
         
         // prepare combined response
-        return ResponseAccumulator.combineResponses(qrl);
+        final QueryResponse rspAcc = new QueryResponse();
+        rspAcc.setResponse(acc.getAccumulatedResponse());
+        return rspAcc;
+    }
+
+    private interface Gatherer<T> {
+        public void add(T response);
+    }
+
+    /**
+     * wait for the answers of the shards until the deadline; shards which fail or do not answer in time are left out
+     * @param futures the pending shard requests
+     * @param timeout the maximum waiting time in milliseconds
+     * @param gatherer the consumer of the answers
+     * @param acc the accumulator which is marked as partial if a shard is missing
+     * @return null if at least one shard answered, otherwise the cause of the last failure
+     */
+    private static <T> Throwable gather(final List<Future<T>> futures, final long timeout, final Gatherer<T> gatherer, final ResponseAccumulator acc) {
+        final long deadline = System.currentTimeMillis() + timeout;
+        Throwable error = null;
+        int answered = 0;
+        for (final Future<T> f: futures) {
+            try {
+                final T rsp = f.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (rsp != null) {
+                    gatherer.add(rsp);
+                    answered++;
+                }
+            } catch (final TimeoutException e) {
+                f.cancel(true);
+                acc.setPartialResults();
+                error = new IOException("shard timeout after " + timeout + " ms");
+            } catch (final ExecutionException e) {
+                acc.setPartialResults();
+                error = e.getCause() == null ? e : e.getCause();
+            } catch (final InterruptedException e) {
+                for (final Future<T> g: futures) g.cancel(true);
+                Thread.currentThread().interrupt();
+                return e;
+            }
+        }
+        if (error != null) ConcurrentLog.warn("ServerShard", "incomplete shard response: " + error.getMessage());
+        return answered == 0 && error != null ? error : null;
+    }
+
+    /**
+     * @return the time to wait for the shards: the timeAllowed of the query (with some slack for the transport) or the shard timeout
+     */
+    private long timeout(final SolrParams params) {
+        final int timeAllowed = params.getInt(CommonParams.TIME_ALLOWED, -1);
+        return timeAllowed > 0 ? Math.min(this.timeout, timeAllowed + 1000L) : this.timeout;
     }
-    
 
     /**
      * Query solr, and stream the results.  Unlike the standard query, this will 
@@ -456,22 +530,68 @@ public class ServerShard extends SolrClient {
      * since it excludes anything that was passed to callback.  Also note that
      * future version may pass even more info to the callback and may not return 
      * the results in the QueryResponse.
+     * 
+     * The order of the documents is only known when all shards have answered, therefore the documents
+     * are streamed from the merged response.
      *
      * @since solr 4.0
      */
     @Override
     public QueryResponse queryAndStreamResponse( SolrParams params, StreamingResponseCallback callback ) throws SolrServerException, IOException {
-        throw new UnsupportedOperationException("stream response not possible with shards");
+        List<SolrClient> qs = this.shards.server4read();
+        if (qs.size() == 1) {
+            return qs.get(0).queryAndStreamResponse(params, callback);
+        }
+        final QueryResponse rsp = scatter(qs, params, null);
+        final SolrDocumentList docs = rsp.getResults();
+        callback.streamDocListInfo(docs.getNumFound(), docs.getStart(), docs.getMaxScore());
+        for (final SolrDocument doc: docs) callback.streamSolrDocument(doc);
+        
+        // like a streaming response of a single server, the response does not contain the documents
+        final SolrDocumentList empty = new SolrDocumentList();
+        empty.setNumFound(docs.getNumFound());
+        empty.setStart(docs.getStart());
+        empty.setMaxScore(docs.getMaxScore());
+        final NamedList<Object> response = rsp.getResponse();
+        response.setVal(response.indexOf("response", 0), empty);
+        rsp.setResponse(response);
+        return rsp;
     }
 
     /**
      * SolrServer implementations need to implement how a request is actually processed
      */ 
     @Override
-    public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection) throws SolrServerException, IOException {
-        ResponseAccumulator acc = new ResponseAccumulator();
-        for (SolrClient s: this.shards.server4read()) acc.addResponse(s.request(request, collection));
-        return acc.getAccumulatedResponse();  
+    public NamedList<Object> request(@SuppressWarnings("rawtypes") final SolrRequest request, final String collection) throws SolrServerException, IOException {
+        List<SolrClient> qs = this.shards.server4read();
+        if (qs.size() == 1 || !(request instanceof QueryRequest)) {
+            ResponseAccumulator acc = new ResponseAccumulator();
+            for (SolrClient s: qs) acc.addResponse(s.request(request, collection));
+            return acc.getAccumulatedResponse();
+        }
+        
+        // a query is distributed like the query methods
+        final SolrParams params = request.getParams();
+        final QueryRequest shardRequest = new QueryRequest(ResponseAccumulator.shardParams(params), request.getMethod());
+        shardRequest.setPath(request.getPath());
+        final List<Future<NamedList<Object>>> futures = new ArrayList<Future<NamedList<Object>>>(qs.size());
+        for (final SolrClient s: qs) {
+            futures.add(EXECUTOR.submit(new Callable<NamedList<Object>>() {
+                @Override
+                public NamedList<Object> call() throws Exception {
+                    return s.request(shardRequest, collection);
+                }
+            }));
+        }
+        final ResponseAccumulator acc = new ResponseAccumulator(params);
+        final Throwable error = gather(futures, timeout(params), new Gatherer<NamedList<Object>>() {
+            @Override
+            public void add(final NamedList<Object> rsp) {
+                acc.addResponse(rsp);
+            }
+        }, acc);
+        if (error != null) throw new SolrServerException("no shard answered: " + error.getMessage(), error);
+        return acc.getAccumulatedResponse();
     }
 
     @Override
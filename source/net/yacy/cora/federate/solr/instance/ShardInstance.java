@@ -60,8 +60,8 @@ public class ShardInstance implements SolrInstance {
     public SolrClient getDefaultServer() {
         if (this.defaultServer != null) return this.defaultServer;
         ArrayList<SolrClient> server = new ArrayList<SolrClient>(instances.size());
-        for (int i = 0; i < instances.size(); i++) server.set(i, instances.get(i).getDefaultServer());
-        this.defaultServer = new ServerShard(server, method, this.writeEnabled);
+        for (int i = 0; i < instances.size(); i++) server.add(i, instances.get(i).getDefaultServer());
+        this.defaultServer = new ServerShard(server, method, this.writeEnabled, timeout());
         return this.defaultServer;
     }
 
@@ -71,11 +71,20 @@ public class ShardInstance implements SolrInstance {
         if (s != null) return s;
         ArrayList<SolrClient> server = new ArrayList<SolrClient>(instances.size());
         for (int i = 0; i < instances.size(); i++) server.add(i, instances.get(i).getServer(name));
-        s = new ServerShard(server, method, this.writeEnabled);
+        s = new ServerShard(server, method, this.writeEnabled, timeout());
         this.serverCache.put(name, s);
         return s;
     }
 
+    /**
+     * @return the time to wait for the answer of a shard: the largest connection timeout of the instances
+     */
+    private long timeout() {
+        int timeout = 0;
+        for (RemoteInstance instance: instances) timeout = Math.max(timeout, instance.getTimeout());
+        return timeout;
+    }
+
     @Override
     public void close() {
         for (RemoteInstance instance: instances) instance.close();
@@ -43,6 +43,13 @@ public abstract class AbstractOrder<A> implements Order<A> {
         this.asc = ascending;
     }
 
+    /**
+     * @return true if the order is ascending, false if it is descending
+     */
+    public boolean isAscending() {
+        return this.asc;
+    }
+
     @Override
     public long partition(final A key, final int forks) {
         final long d = (Long.MAX_VALUE / forks) + ((Long.MAX_VALUE % forks) + 1) / forks;
@@ -42,7 +42,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
+import net.yacy.cora.storage.ConcurrentTinyLFU;
 import net.yacy.cora.util.Memory;
 
 public class Digest {
@@ -53,9 +53,9 @@ public class Digest {
     private static ARC<String, byte[]> md5Cache = null;
     static {
         try {
-            md5Cache = new ConcurrentARC<String, byte[]>(md5CacheSize, Math.max(8, 2 * Runtime.getRuntime().availableProcessors()));
+            md5Cache = new ConcurrentTinyLFU<String, byte[]>(md5CacheSize);
         } catch (final OutOfMemoryError e) {
-            md5Cache = new ConcurrentARC<String, byte[]>(1000, Math.max(2, Runtime.getRuntime().availableProcessors()));
+            md5Cache = new ConcurrentTinyLFU<String, byte[]>(1000);
         }
     }
 
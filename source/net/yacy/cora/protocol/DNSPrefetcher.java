@@ -0,0 +1,402 @@
+/**
+ *  DNSPrefetcher
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.protocol;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.net.InetAddresses;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+
+/**
+ * A background stage which resolves host names before they are needed.
+ * Host names are offered with prefetch(), i.e. when urls are stacked for crawling; a dispatcher thread
+ * collects them in batches and resolves each batch concurrently with a time-out. The results are
+ * pushed into the name cache of {@link Domains}, so that the crawler threads which later call
+ * Domains.dnsResolve() do not wait for the dns server.
+ * A batch never takes longer than the time-out: lookups which cannot be started because all lookup threads
+ * are busy are dropped. Unknown hosts are cached negatively, other lookup errors are not cached. Every result expires after a time-to-live and is then removed
+ * from the name cache again; the time-to-live values default to the java security properties
+ * networkaddress.cache.ttl and networkaddress.cache.negative.ttl if they are set.
+ */
+public class DNSPrefetcher {
+
+    private final static ConcurrentLog log = new ConcurrentLog(DNSPrefetcher.class.getName());
+
+    /**
+     * the source of dns lookups; a stand-in can be used for tests
+     */
+    public interface Resolver {
+        /**
+         * @param host the host name
+         * @return the address of the host, never null
+         * @throws UnknownHostException if the host is unknown
+         */
+        public InetAddress resolve(String host) throws UnknownHostException;
+    }
+
+    /**
+     * the resolver of the operating system
+     */
+    public static final Resolver SYSTEM_RESOLVER = new Resolver() {
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            return InetAddress.getByName(host);
+        }
+    };
+
+    /**
+     * the consumer of lookup results; by default the name cache of {@link Domains}
+     */
+    public interface Cache {
+        public void put(String host, InetAddress ip);
+        public void remove(String host);
+    }
+
+    public static final Cache DOMAINS_CACHE = new Cache() {
+        @Override
+        public void put(final String host, final InetAddress ip) {
+            Domains.cacheResolved(host, ip);
+        }
+        @Override
+        public void remove(final String host) {
+            Domains.uncache(host);
+        }
+    };
+
+    private static final class Entry {
+        private final InetAddress address; // null if the host is unknown
+        private final long expires;
+        private Entry(final InetAddress address, final long expires) {
+            this.address = address;
+            this.expires = expires;
+        }
+    }
+
+    private final Resolver resolver;
+    private final Cache cache;
+    private final long positiveTTL, negativeTTL, timeout;
+    private final int batchSize;
+    private final LinkedBlockingQueue<String> queue;
+    private final Set<String> pending;
+    private final Map<String, Entry> entries;
+    private final ThreadPoolExecutor executor;
+    private final Thread dispatcher;
+    private volatile boolean running;
+    private long lastExpiry;
+
+    // statistics
+    private final AtomicLong requests, cached, dropped, resolved, unknown, errors, timeouts, expired, batches, resolveTime;
+
+    /**
+     * create and start a prefetcher with the system resolver which fills the Domains name cache
+     * @param threads the number of concurrent lookups of a batch
+     * @param batchSize the maximum number of hosts in one batch
+     * @param queueSize the maximum number of waiting hosts; further hosts are dropped
+     */
+    public DNSPrefetcher(final int threads, final int batchSize, final int queueSize) {
+        this(SYSTEM_RESOLVER, DOMAINS_CACHE, threads, batchSize, queueSize,
+             ttlProperty("networkaddress.cache.ttl", 600000L), ttlProperty("networkaddress.cache.negative.ttl", 60000L), 3000L);
+    }
+
+    /**
+     * create and start a prefetcher
+     * @param resolver the source of dns lookups
+     * @param cache the consumer of the lookup results
+     * @param threads the number of concurrent lookups of a batch
+     * @param batchSize the maximum number of hosts in one batch
+     * @param queueSize the maximum number of waiting hosts; further hosts are dropped
+     * @param positiveTTL milliseconds until a resolved host expires
+     * @param negativeTTL milliseconds until an unknown host expires
+     * @param timeout milliseconds until a lookup is cancelled; time-outs are not cached
+     */
+    public DNSPrefetcher(final Resolver resolver, final Cache cache, final int threads, final int batchSize, final int queueSize,
+            final long positiveTTL, final long negativeTTL, final long timeout) {
+        this.resolver = resolver;
+        this.cache = cache;
+        this.positiveTTL = positiveTTL;
+        this.negativeTTL = negativeTTL;
+        this.timeout = timeout;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new LinkedBlockingQueue<String>(Math.max(1, queueSize));
+        this.pending = ConcurrentHashMap.newKeySet();
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        // lookups which do not fit into the queue are discarded and not executed by the dispatcher, which must keep the time-out
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(this.batchSize), new NamePrefixThreadFactory("DNSPrefetcher"), new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+                        if (r instanceof Future) ((Future<?>) r).cancel(false);
+                        DNSPrefetcher.this.dropped.incrementAndGet();
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.requests = new AtomicLong(0);
+        this.cached = new AtomicLong(0);
+        this.dropped = new AtomicLong(0);
+        this.resolved = new AtomicLong(0);
+        this.unknown = new AtomicLong(0);
+        this.errors = new AtomicLong(0);
+        this.timeouts = new AtomicLong(0);
+        this.expired = new AtomicLong(0);
+        this.batches = new AtomicLong(0);
+        this.resolveTime = new AtomicLong(0);
+        this.lastExpiry = System.currentTimeMillis();
+        this.running = true;
+        this.dispatcher = new Thread("DNSPrefetcher.dispatcher") {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        };
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    private static long ttlProperty(final String name, final long defaultMillis) {
+        try {
+            final String v = Security.getProperty(name);
+            if (v == null) return defaultMillis;
+            final long seconds = Long.parseLong(v.trim());
+            return seconds < 0 ? Long.MAX_VALUE / 2 : seconds * 1000L;
+        } catch (final NumberFormatException | SecurityException e) {
+            return defaultMillis;
+        }
+    }
+
+    /**
+     * offer a host name for a lookup in the background; this does not block
+     * @param host0 the host name
+     * @return true if the host was queued, false if it is known, already queued, not resolvable or the queue is full
+     */
+    public boolean prefetch(final String host0) {
+        if (host0 == null || host0.isEmpty() || !this.running) return false;
+        final String host = host0.toLowerCase(Locale.ROOT).trim();
+        if (host.endsWith(".yacyh") || host.endsWith(".yacy") || InetAddresses.isInetAddress(host)) return false;
+        this.requests.incrementAndGet();
+        final Entry entry = this.entries.get(host);
+        if (entry != null && entry.expires > System.currentTimeMillis()) {
+            this.cached.incrementAndGet();
+            return false;
+        }
+        if (!this.pending.add(host)) return false;
+        if (!this.queue.offer(host)) {
+            this.pending.remove(host);
+            this.dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param host the host name
+     * @return true if a valid lookup result for the host exists, also if the host is unknown
+     */
+    public boolean isResolved(final String host) {
+        if (host == null) return false;
+        final Entry entry = this.entries.get(host.toLowerCase(Locale.ROOT).trim());
+        return entry != null && entry.expires > System.currentTimeMillis();
+    }
+
+    /**
+     * @param host the host name
+     * @return the prefetched address of the host or null if the host is not resolved or unknown
+     */
+    public InetAddress get(final String host) {
+        if (host == null) return null;
+        final Entry entry = this.entries.get(host.toLowerCase(Locale.ROOT).trim());
+        return entry == null || entry.expires <= System.currentTimeMillis() ? null : entry.address;
+    }
+
+    private void dispatch() {
+        final List<String> batch = new ArrayList<String>(this.batchSize);
+        while (this.running) {
+            try {
+                final String host = this.queue.poll(1000, TimeUnit.MILLISECONDS);
+                if (System.currentTimeMillis() - this.lastExpiry > 10000) expire();
+                if (host == null) continue;
+                batch.clear();
+                batch.add(host);
+                this.queue.drainTo(batch, this.batchSize - 1);
+                resolveBatch(batch);
+            } catch (final InterruptedException e) {
+                break;
+            } catch (final Throwable e) {
+                log.warn("DNS prefetch failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void resolveBatch(final List<String> batch) throws InterruptedException {
+        this.batches.incrementAndGet();
+        final long start = System.currentTimeMillis();
+        final List<Future<InetAddress>> futures = new ArrayList<Future<InetAddress>>(batch.size());
+        for (final String host: batch) {
+            futures.add(this.executor.submit(new Callable<InetAddress>() {
+                @Override
+                public InetAddress call() throws Exception {
+                    return DNSPrefetcher.this.resolver.resolve(host);
+                }
+            }));
+        }
+        final long deadline = start + this.timeout;
+        for (int i = 0; i < batch.size(); i++) {
+            final String host = batch.get(i);
+            final Future<InetAddress> future = futures.get(i);
+            try {
+                final InetAddress ip = future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                store(host, ip);
+            } catch (final TimeoutException e) {
+                // do not cache time-outs, they may be caused by an overloaded dns server
+                future.cancel(true);
+                this.timeouts.incrementAndGet();
+            } catch (final CancellationException e) {
+                // the lookup was dropped because all lookup threads were busy
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof UnknownHostException) {
+                    store(host, null);
+                } else {
+                    // do not cache other errors, they may be transient
+                    this.errors.incrementAndGet();
+                    if (log.isFine()) log.fine("DNS prefetch of " + host + " failed: " + e.getCause());
+                }
+            } finally {
+                this.pending.remove(host);
+            }
+        }
+        // remove the cancelled lookups from the queue of the executor
+        this.executor.purge();
+        this.resolveTime.addAndGet(System.currentTimeMillis() - start);
+    }
+
+    private void store(final String host, final InetAddress ip) {
+        final long now = System.currentTimeMillis();
+        if (ip == null) {
+            this.unknown.incrementAndGet();
+            this.entries.put(host, new Entry(null, now + this.negativeTTL));
+        } else {
+            this.resolved.incrementAndGet();
+            this.entries.put(host, new Entry(ip, now + this.positiveTTL));
+        }
+        this.cache.put(host, ip);
+    }
+
+    /**
+     * remove all expired lookup results, also from the cache
+     */
+    public void expire() {
+        final long now = System.currentTimeMillis();
+        this.lastExpiry = now;
+        final Iterator<Map.Entry<String, Entry>> i = this.entries.entrySet().iterator();
+        while (i.hasNext()) {
+            final Map.Entry<String, Entry> e = i.next();
+            if (e.getValue().expires <= now) {
+                i.remove();
+                this.cache.remove(e.getKey());
+                this.expired.incrementAndGet();
+            }
+        }
+    }
+
+    public void close() {
+        this.running = false;
+        this.dispatcher.interrupt();
+        this.executor.shutdownNow();
+        this.queue.clear();
+        this.pending.clear();
+    }
+
+    public int queueSize() {
+        return this.queue.size();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long requests() {
+        return this.requests.get();
+    }
+
+    public long cached() {
+        return this.cached.get();
+    }
+
+    public long dropped() {
+        return this.dropped.get();
+    }
+
+    public long resolved() {
+        return this.resolved.get();
+    }
+
+    public long unknown() {
+        return this.unknown.get();
+    }
+
+    /**
+     * @return the number of lookups which failed for another reason than an unknown host
+     */
+    public long errors() {
+        return this.errors.get();
+    }
+
+    public long timeouts() {
+        return this.timeouts.get();
+    }
+
+    public long expired() {
+        return this.expired.get();
+    }
+
+    public long batches() {
+        return this.batches.get();
+    }
+
+    /**
+     * @return the average time in milliseconds to resolve a batch
+     */
+    public long averageBatchTime() {
+        final long b = this.batches.get();
+        return b == 0 ? 0 : this.resolveTime.get() / b;
+    }
+
+}
@@ -59,7 +59,7 @@ import net.yacy.cora.protocol.tld.GenericTLD;
 import net.yacy.cora.protocol.tld.InternationalizedCountryCodeTLD;
 import net.yacy.cora.protocol.tld.SponsoredTLD;
 import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
+import net.yacy.cora.storage.ConcurrentTinyLFU;
 import net.yacy.cora.storage.KeyList;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
@@ -91,11 +91,10 @@ public class Domains {
 
     private static final int MAX_NAME_CACHE_HIT_SIZE = 10000;
     private static final int MAX_NAME_CACHE_MISS_SIZE = 1000;
-    private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors() * 2;
 
     // a dns cache
-    private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
-    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+    private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentTinyLFU<>(MAX_NAME_CACHE_HIT_SIZE);
+    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentTinyLFU<>(MAX_NAME_CACHE_MISS_SIZE);
     private static final ConcurrentHashMap<String, Object> LOOKUP_SYNC = new ConcurrentHashMap<>(100, 0.75f, Runtime.getRuntime().availableProcessors() * 2);
     private static       List<Pattern> nameCacheNoCachingPatterns = Collections.synchronizedList(new LinkedList<Pattern>());
     public static long cacheHit_Hit = 0, cacheHit_Miss = 0, cacheHit_Insert = 0; // for statistics only; do not write
@@ -1034,6 +1033,36 @@ public class Domains {
         }
     }
 
+    /**
+     * put the result of a dns lookup which was done outside of dnsResolve(), i.e. by a prefetcher, into the name cache
+     * @param host0 the host name
+     * @param ip the address of the host or null if the host is unknown
+     */
+    public static void cacheResolved(final String host0, final InetAddress ip) {
+        if (host0 == null || host0.isEmpty()) return;
+        final String host = host0.toLowerCase(Locale.ROOT).trim();
+        if (ip == null) {
+            NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
+            cacheMiss_Insert++;
+            return;
+        }
+        NAME_CACHE_MISS.remove(host);
+        if (ip.isLoopbackAddress() || matchesList(host, nameCacheNoCachingPatterns)) return;
+        NAME_CACHE_HIT.insert(host, ip);
+        cacheHit_Insert++;
+    }
+
+    /**
+     * remove a host from the name cache, so that the next dnsResolve() does a new lookup
+     * @param host0 the host name
+     */
+    public static void uncache(final String host0) {
+        if (host0 == null || host0.isEmpty()) return;
+        final String host = host0.toLowerCase(Locale.ROOT).trim();
+        NAME_CACHE_HIT.remove(host);
+        NAME_CACHE_MISS.remove(host);
+    }
+
     public static void clear() {
         try {
         	globalHosts.clear();
@@ -100,6 +100,9 @@ import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.ByteArrayBuffer;
 import org.apache.http.util.EntityUtils;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.protocol.ClientIdentification;
@@ -109,6 +112,7 @@ import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.http.auth.YaCyDigestSchemeFactory;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.Memory;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.util.Formatter;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
@@ -135,6 +139,23 @@ public class HTTPClient {
 	
 	/** The connection manager holding the configured connection pool for this client */
 	public static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = initPoolingConnectionManager();
+
+	private static final Metrics.Latency REQUEST_LATENCY = Metrics.latency("yacy_http_client_request_seconds", "Time from sending an outgoing HTTP request until the response headers are received");
+	private static final Counter REQUEST_ERRORS = Metrics.counter("yacy_http_client_errors_total", "Outgoing HTTP requests which failed without a response");
+	static {
+		Metrics.gauge("yacy_http_client_connections_leased", "Leased connections of the outgoing HTTP connection pool", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return CONNECTION_MANAGER.getTotalStats().getLeased();
+			}
+		});
+		Metrics.gauge("yacy_http_client_connections_pending", "Requests waiting for a connection of the outgoing HTTP connection pool", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return CONNECTION_MANAGER.getTotalStats().getPending();
+			}
+		});
+	}
 	
 	/** Default setting to apply when the JVM system option jsse.enableSNIExtension is not defined */
 	public static final boolean ENABLE_SNI_EXTENSION_DEFAULT = true;
@@ -628,22 +649,8 @@ public class HTTPClient {
      */
     public byte[] POSTbytes(final MultiProtocolURL url, final String vhost, final Map<String, ContentBody> post, 
     		final String userName, final String password, final boolean usegzip, final boolean concurrent) throws IOException {
-    	final HttpPost httpPost = new HttpPost(url.toNormalform(true));
+    	final HttpPost httpPost = multipartPost(url, vhost, post, usegzip);
     	final boolean localhost = Domains.isLocalhost(url.getHost());
-        if (!localhost) setHost(url.getHost()); // overwrite resolved IP, needed for shared web hosting DO NOT REMOVE, see http://en.wikipedia.org/wiki/Shared_web_hosting_service
-    	if (vhost == null) setHost(Domains.LOCALHOST);
-    	
-    	final MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
-    	for (final Entry<String,ContentBody> part : post.entrySet()) entityBuilder.addPart(part.getKey(), part.getValue());
-    	final HttpEntity multipartEntity = entityBuilder.build();
-        // statistics
-        this.upbytes = multipartEntity.getContentLength();
-
-        if (usegzip) {
-            httpPost.setEntity(new GzipCompressingEntity(multipartEntity));
-        } else {
-            httpPost.setEntity(multipartEntity);
-        }
         
         if (!localhost || password == null) {
             return getContentBytes(httpPost, Integer.MAX_VALUE, concurrent);
@@ -685,6 +692,52 @@ public class HTTPClient {
         return content;
     }
 
+    /**
+     * This method POSTs data to the server named by vhost.
+     * to be used for streaming in
+     * Please take care to call finish()!
+     *
+     * @param url address of the server
+     * @param vhost name of the server at address which should respond. When null, localhost is assumed.
+     * @param post data to send (name-value-pairs)
+     * @param usegzip if the body should be gzipped
+     * @throws IOException
+     */
+    public void POST(final MultiProtocolURL url, final String vhost, final Map<String, ContentBody> post, final boolean usegzip, final boolean concurrent) throws IOException {
+    	if (this.currentRequest != null) throw new IOException("Client is in use!");
+    	final HttpPost httpPost = multipartPost(url, vhost, post, usegzip);
+    	this.currentRequest = httpPost;
+    	execute(httpPost, concurrent);
+    }
+
+    /**
+     * create a multipart POST request and set the host
+     *
+     * @param url address of the server
+     * @param vhost name of the server at address which should respond. When null, localhost is assumed.
+     * @param post data to send (name-value-pairs)
+     * @param usegzip if the body should be gzipped
+     * @return the request
+     */
+    private HttpPost multipartPost(final MultiProtocolURL url, final String vhost, final Map<String, ContentBody> post, final boolean usegzip) {
+    	final HttpPost httpPost = new HttpPost(url.toNormalform(true));
+        if (!Domains.isLocalhost(url.getHost())) setHost(url.getHost()); // overwrite resolved IP, needed for shared web hosting DO NOT REMOVE, see http://en.wikipedia.org/wiki/Shared_web_hosting_service
+    	if (vhost == null) setHost(Domains.LOCALHOST);
+    	
+    	final MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
+    	for (final Entry<String,ContentBody> part : post.entrySet()) entityBuilder.addPart(part.getKey(), part.getValue());
+    	final HttpEntity multipartEntity = entityBuilder.build();
+        // statistics
+        this.upbytes = multipartEntity.getContentLength();
+
+        if (usegzip) {
+            httpPost.setEntity(new GzipCompressingEntity(multipartEntity));
+        } else {
+            httpPost.setEntity(multipartEntity);
+        }
+        return httpPost;
+    }
+
     /**
      * send stream-data to the server named by uri
      *
@@ -955,6 +1008,7 @@ public class HTTPClient {
 	    final String initialThreadName = Thread.currentThread().getName();
 	    Thread.currentThread().setName("HTTPClient-" + httpUriRequest.getURI());
         final long time = System.currentTimeMillis();
+        final long start = System.nanoTime();
 	    try {
 	        
 	        if (concurrent) {
@@ -979,7 +1033,9 @@ public class HTTPClient {
 	            this.httpResponse = client.execute(httpUriRequest, context);
 	        }
             this.httpResponse.setHeader(HeaderFramework.RESPONSE_TIME_MILLIS, Long.toString(System.currentTimeMillis() - time));
+            REQUEST_LATENCY.since(start);
         } catch (final Throwable e) {
+            REQUEST_ERRORS.inc();
             ConnectionInfo.removeConnection(httpUriRequest.hashCode());
             httpUriRequest.abort();
             if (this.httpResponse != null) this.httpResponse.close();
@@ -0,0 +1,607 @@
+/**
+ *  ConcurrentTinyLFU
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.storage;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.yacy.cora.util.ByteArray;
+
+/**
+ * A scan-resistant cache with the W-TinyLFU admission and eviction policy.
+ * The cache is an alternative to the ConcurrentARC, which is flushed by one-off scans
+ * because every new entry is admitted. Here new entries first enter a small LRU window;
+ * entries that leave the window are only admitted into the main space if they were requested
+ * more often than the entry that would be evicted for them. The request frequencies are
+ * estimated with a count-min sketch of 4-bit counters that is aged periodically.
+ * For details see "TinyLFU: A Highly Efficient Cache Admission Policy", Einziger, Friedman, Manes, 2015.
+ *
+ * Reads are lock-free: the value is taken from a ConcurrentHashMap and the access is only recorded
+ * in a lossy read buffer which is applied to the policy by the next thread that gets the policy lock.
+ * Writes update the policy under a lock. Entries may be weighed, i.e. by their size in bytes.
+ * Keys of type byte[] are supported; they are compared by their content.
+ */
+public final class ConcurrentTinyLFU<K, V> extends AbstractMap<K, V> implements Map<K, V>, Iterable<Map.Entry<K, V>>, ARC<K, V> {
+
+    /**
+     * compute the weight of an entry, i.e. the size in bytes
+     */
+    public interface Weigher<K, V> {
+        public int weigh(K key, V value);
+    }
+
+    private static final int WINDOW_PERCENT = 1;     // percent of the maximum weight for the admission window
+    private static final int PROTECTED_PERCENT = 80; // percent of the main space for the protected segment
+    private static final int READ_BUFFER_SIZE = 32;  // must be a power of two
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 16;
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2, REMOVED = 3; // REMOVED is also the state before the node is linked
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final int weight;
+        private int queue;
+        private Node<K, V> prev, next;
+        private Node(final K key, final V value, final int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.queue = REMOVED;
+        }
+    }
+
+    // a doubly-linked access-order list; the head is the least recently used entry
+    private static final class AccessOrder<K, V> {
+        private Node<K, V> head = null, tail = null;
+        private long weight = 0;
+        private void addLast(final Node<K, V> n) {
+            n.prev = this.tail;
+            n.next = null;
+            if (this.tail == null) this.head = n; else this.tail.next = n;
+            this.tail = n;
+            this.weight += n.weight;
+        }
+        private void unlink(final Node<K, V> n) {
+            if (n.prev == null) this.head = n.next; else n.prev.next = n.next;
+            if (n.next == null) this.tail = n.prev; else n.next.prev = n.prev;
+            n.prev = null;
+            n.next = null;
+            this.weight -= n.weight;
+        }
+        private void moveToLast(final Node<K, V> n) {
+            if (this.tail == n) return;
+            unlink(n);
+            addLast(n);
+        }
+        private void clear() {
+            this.head = null;
+            this.tail = null;
+            this.weight = 0;
+        }
+    }
+
+    // a lossy ring buffer which records read accesses; if it is full, accesses are dropped
+    private static final class ReadBuffer<K, V> {
+        private final AtomicReferenceArray<Node<K, V>> slots = new AtomicReferenceArray<Node<K, V>>(READ_BUFFER_SIZE);
+        private final AtomicInteger writes = new AtomicInteger(0);
+        private volatile int reads = 0;
+        /**
+         * @return the number of pending entries in the buffer
+         */
+        private int offer(final Node<K, V> n) {
+            final int w = this.writes.get();
+            final int pending = w - this.reads;
+            if (pending >= READ_BUFFER_SIZE) return pending;
+            if (this.writes.compareAndSet(w, w + 1)) this.slots.lazySet(w & (READ_BUFFER_SIZE - 1), n);
+            return pending + 1;
+        }
+    }
+
+    /**
+     * the frequency sketch: a count-min sketch with four 4-bit counters per entry in a long[] table.
+     * After a sample of ten times the maximum number of entries all counters are halved,
+     * so that the sketch forgets old popularity. The sketch is only accessed under the policy lock.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int size;
+        private FrequencySketch(final long maximumSize) {
+            final int m = (int) Math.min(1 << 30, Math.max(16, maximumSize));
+            int t = 1;
+            while (t < m) t = t << 1;
+            this.table = new long[t];
+            this.tableMask = t - 1;
+            this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * m);
+            this.size = 0;
+        }
+        private int frequency(final int hash) {
+            final int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                final int index = indexOf(hash, i);
+                final int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+        private void increment(final int hash) {
+            final int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                final int index = indexOf(hash, i);
+                final int offset = (start + i) << 2;
+                final long mask = 0xfL << offset;
+                if ((this.table[index] & mask) != mask) {
+                    this.table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++this.size >= this.sampleSize) reset();
+        }
+        private void reset() {
+            int count = 0;
+            for (int i = 0; i < this.table.length; i++) {
+                count += Long.bitCount(this.table[i] & 0x1111111111111111L);
+                this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+            }
+            this.size = (this.size >>> 1) - (count >>> 2);
+        }
+        private int indexOf(final int item, final int i) {
+            long hash = (item + SEED[i]) * SEED[i];
+            hash += hash >>> 32;
+            return ((int) hash) & this.tableMask;
+        }
+        private void clear() {
+            for (int i = 0; i < this.table.length; i++) this.table[i] = 0L;
+            this.size = 0;
+        }
+    }
+
+    private final ConcurrentHashMap<Object, Node<K, V>> data;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long maximumWeight, windowMaximum, protectedMaximum;
+    private final ReentrantLock evictionLock;
+    private final AccessOrder<K, V> window, probation, protectedSegment;
+    private final FrequencySketch sketch;
+    private final ReadBuffer<K, V>[] readBuffers;
+    private final Random random;
+    private final AtomicLong hits, misses, evictions;
+
+    /**
+     * create a concurrent TinyLFU cache where every entry has the weight 1
+     * @param cacheSize the number of maximum entries
+     */
+    public ConcurrentTinyLFU(final int cacheSize) {
+        this(cacheSize, cacheSize, null);
+    }
+
+    /**
+     * create a concurrent TinyLFU cache with weighted entries
+     * @param maximumWeight the maximum sum of all weights, i.e. a number of bytes
+     * @param expectedSize the expected number of entries, used to size the frequency sketch
+     * @param weigher computes the weight of an entry; if null, every entry has the weight 1
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentTinyLFU(final long maximumWeight, final int expectedSize, final Weigher<? super K, ? super V> weigher) {
+        this.maximumWeight = Math.max(1, maximumWeight);
+        this.windowMaximum = Math.max(1, this.maximumWeight * WINDOW_PERCENT / 100);
+        this.protectedMaximum = (this.maximumWeight - this.windowMaximum) * PROTECTED_PERCENT / 100;
+        this.weigher = weigher;
+        final int concurrency = Runtime.getRuntime().availableProcessors();
+        this.data = new ConcurrentHashMap<Object, Node<K, V>>(Math.min(expectedSize, 1 << 16), 0.75f, concurrency);
+        this.evictionLock = new ReentrantLock();
+        this.window = new AccessOrder<K, V>();
+        this.probation = new AccessOrder<K, V>();
+        this.protectedSegment = new AccessOrder<K, V>();
+        this.sketch = new FrequencySketch(expectedSize);
+        int b = 1;
+        while (b < 4 * concurrency) b = b << 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final ReadBuffer<K, V>[] buffers = new ReadBuffer[b];
+        for (int i = 0; i < b; i++) buffers[i] = new ReadBuffer<K, V>();
+        this.readBuffers = buffers;
+        this.random = new Random();
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+    }
+
+    private static Object internalKey(final Object key) {
+        return key instanceof byte[] ? new ByteArray((byte[]) key) : key;
+    }
+
+    private static int spread(final Object internalKey) {
+        final int h = internalKey.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 17);
+    }
+
+    private int weigh(final K key, final V value) {
+        if (this.weigher == null) return 1;
+        return Math.max(0, this.weigher.weigh(key, value));
+    }
+
+    /**
+     * record a read access in the read buffer of the current thread; if the buffer is filled
+     * up to a threshold, the buffer is applied to the policy if the policy lock is available
+     */
+    private void afterRead(final Node<K, V> node) {
+        final ReadBuffer<K, V> buffer = this.readBuffers[(int) Thread.currentThread().getId() & (this.readBuffers.length - 1)];
+        if (buffer.offer(node) >= READ_BUFFER_DRAIN_THRESHOLD && this.evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    // must be called under the policy lock
+    private void drainReadBuffers() {
+        for (final ReadBuffer<K, V> buffer: this.readBuffers) {
+            int r = buffer.reads;
+            final int w = buffer.writes.get();
+            while (r != w) {
+                final Node<K, V> n = buffer.slots.getAndSet(r & (READ_BUFFER_SIZE - 1), null);
+                if (n == null) break; // not yet published by the writer
+                onAccess(n);
+                r++;
+            }
+            buffer.reads = r;
+        }
+    }
+
+    // must be called under the policy lock
+    private void onAccess(final Node<K, V> n) {
+        this.sketch.increment(spread(internalKey(n.key)));
+        switch (n.queue) {
+            case WINDOW:
+                this.window.moveToLast(n);
+                break;
+            case PROBATION:
+                // promote to the protected segment
+                this.probation.unlink(n);
+                n.queue = PROTECTED;
+                this.protectedSegment.addLast(n);
+                while (this.protectedSegment.weight > this.protectedMaximum && this.protectedSegment.head != null && this.protectedSegment.head != n) {
+                    final Node<K, V> demoted = this.protectedSegment.head;
+                    this.protectedSegment.unlink(demoted);
+                    demoted.queue = PROBATION;
+                    this.probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                this.protectedSegment.moveToLast(n);
+                break;
+            default:
+                // the node was removed in the meantime
+        }
+    }
+
+    // must be called under the policy lock
+    private void unlinkNode(final Node<K, V> n) {
+        switch (n.queue) {
+            case WINDOW: this.window.unlink(n); break;
+            case PROBATION: this.probation.unlink(n); break;
+            case PROTECTED: this.protectedSegment.unlink(n); break;
+            default:
+        }
+        n.queue = REMOVED;
+    }
+
+    // must be called under the policy lock
+    private void evict(final Node<K, V> n) {
+        unlinkNode(n);
+        this.data.remove(internalKey(n.key), n);
+        this.evictions.incrementAndGet();
+    }
+
+    // must be called under the policy lock
+    private long currentWeight() {
+        return this.window.weight + this.probation.weight + this.protectedSegment.weight;
+    }
+
+    /**
+     * apply a write to the policy: the new node is appended to the window, entries leaving
+     * the window are candidates for the main space and compete with the eviction victim by frequency
+     */
+    private void afterWrite(final Node<K, V> node, final Node<K, V> replaced) {
+        this.evictionLock.lock();
+        try {
+            drainReadBuffers();
+            if (replaced != null) unlinkNode(replaced);
+            if (this.data.get(internalKey(node.key)) != node) return; // removed or overwritten in the meantime
+            this.sketch.increment(spread(internalKey(node.key)));
+            if (node.weight > this.maximumWeight) {
+                evict(node);
+                return;
+            }
+            node.queue = WINDOW;
+            this.window.addLast(node);
+
+            // move the overflow of the window to the probation segment
+            Node<K, V> candidates = null; // the first candidate in the probation segment
+            while (this.window.weight > this.windowMaximum && this.window.head != null) {
+                final Node<K, V> c = this.window.head;
+                this.window.unlink(c);
+                c.queue = PROBATION;
+                this.probation.addLast(c);
+                if (candidates == null) candidates = c;
+            }
+
+            // evict: the candidates compete with the victims from the head of the probation segment
+            while (currentWeight() > this.maximumWeight) {
+                Node<K, V> victim = this.probation.head == candidates ? null : this.probation.head;
+                if (victim == null) victim = this.protectedSegment.head;
+                if (candidates == null) {
+                    // no competition; evict the least recently used entry of the main space or the window
+                    final Node<K, V> lru = victim == null ? this.window.head : victim;
+                    if (lru == null) break;
+                    evict(lru);
+                    continue;
+                }
+                final Node<K, V> candidate = candidates;
+                candidates = candidates.next;
+                if (victim != null && admit(candidate, victim)) {
+                    evict(victim);
+                } else {
+                    evict(candidate);
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    // the TinyLFU admission: a candidate replaces the victim only if it is more popular
+    private boolean admit(final Node<K, V> candidate, final Node<K, V> victim) {
+        final int candidateFreq = this.sketch.frequency(spread(internalKey(candidate.key)));
+        final int victimFreq = this.sketch.frequency(spread(internalKey(victim.key)));
+        if (candidateFreq > victimFreq) return true;
+        if (candidateFreq <= 5) return false;
+        // a small random admission of warm candidates protects against a hash flooding attack
+        return (this.random.nextInt() & 127) == 0;
+    }
+
+    private V putInternal(final K s, final V v, final boolean onlyIfAbsent) {
+        assert s != null && v != null;
+        final Object k = internalKey(s);
+        final Node<K, V> node = new Node<K, V>(s, v, weigh(s, v));
+        if (onlyIfAbsent) {
+            final Node<K, V> prior = this.data.putIfAbsent(k, node);
+            if (prior != null) {
+                afterRead(prior);
+                return prior.value;
+            }
+            afterWrite(node, null);
+            return null;
+        }
+        final Node<K, V> prior = this.data.put(k, node);
+        afterWrite(node, prior);
+        return prior == null ? null : prior.value;
+    }
+
+    /**
+     * put a value to the cache.
+     * @param s
+     * @param v
+     */
+    @Override
+    public final void insert(final K s, final V v) {
+        putInternal(s, v, false);
+    }
+
+    /**
+     * put a value to the cache if there was not an entry before
+     * do not return a previous content value
+     * @param s
+     * @param v
+     */
+    @Override
+    public void insertIfAbsent(final K s, final V v) {
+        putInternal(s, v, true);
+    }
+
+    /**
+     * put a value to the cache if there was not an entry before
+     * return a previous content value
+     * @param s
+     * @param v
+     * @return the value before inserting the new value
+     */
+    @Override
+    public V putIfAbsent(final K s, final V v) {
+        return putInternal(s, v, true);
+    }
+
+    /**
+     * put a value to the cache.
+     * @param s
+     * @param v
+     */
+    @Override
+    public final V put(final K s, final V v) {
+        return putInternal(s, v, false);
+    }
+
+    /**
+     * get a value from the cache. This does not lock.
+     * @param s
+     * @return the value
+     */
+    @Override
+    public final V get(final Object s) {
+        final Node<K, V> node = this.data.get(internalKey(s));
+        if (node == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * check if the map contains the value
+     * @param value
+     * @return the keys that have the given value
+     */
+    @Override
+    public Collection<K> getKeys(final V value) {
+        final ArrayList<K> keys = new ArrayList<K>();
+        for (final Node<K, V> node: this.data.values()) {
+            if (value.equals(node.value)) keys.add(node.key);
+        }
+        return keys;
+    }
+
+    /**
+     * check if the map contains the key; this is not counted as access
+     * @param s
+     * @return
+     */
+    @Override
+    public final boolean containsKey(final Object s) {
+        return this.data.containsKey(internalKey(s));
+    }
+
+    /**
+     * remove an entry from the cache
+     * @param s
+     * @return the old value
+     */
+    @Override
+    public final V remove(final Object s) {
+        final Node<K, V> node = this.data.remove(internalKey(s));
+        if (node == null) return null;
+        this.evictionLock.lock();
+        try {
+            unlinkNode(node);
+        } finally {
+            this.evictionLock.unlock();
+        }
+        return node.value;
+    }
+
+    /**
+     * clear the cache
+     */
+    @Override
+    public final void clear() {
+        this.evictionLock.lock();
+        try {
+            drainReadBuffers();
+            for (final Node<K, V> node: this.data.values()) node.queue = REMOVED;
+            this.data.clear();
+            this.window.clear();
+            this.probation.clear();
+            this.protectedSegment.clear();
+            this.sketch.clear();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * get the number of entries in the cache.
+     * @return the complete number of entries in the cache
+     */
+    @Override
+    public final int size() {
+        return this.data.size();
+    }
+
+    /**
+     * @return the sum of the weights of all entries in the cache
+     */
+    public final long weightedSize() {
+        this.evictionLock.lock();
+        try {
+            return currentWeight();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    public final long maximumWeight() {
+        return this.maximumWeight;
+    }
+
+    public final long hits() {
+        return this.hits.get();
+    }
+
+    public final long misses() {
+        return this.misses.get();
+    }
+
+    public final long evictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * iterator implements the Iterable interface
+     */
+    @Override
+    public Iterator<java.util.Map.Entry<K, V>> iterator() {
+        return entrySet().iterator();
+    }
+
+    /**
+     * Return a Set view of the mappings contained in this map.
+     * This is a copy of the mappings at the time of the call.
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    @Override
+    public Set<java.util.Map.Entry<K, V>> entrySet() {
+        final Set<Map.Entry<K, V>> m = new HashSet<Map.Entry<K, V>>();
+        for (final Node<K, V> node: this.data.values()) {
+            m.add(new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value));
+        }
+        return m;
+    }
+
+    /**
+     * a hash code for this cache
+     * @return a hash code
+     */
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+}
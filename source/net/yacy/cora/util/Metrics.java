@@ -0,0 +1,293 @@
+/**
+ *  Metrics
+ *  Copyright 2026 by the YaCy contributors
+ *  First published 19.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * A process-wide registry of counters, gauges and latency histograms, exported in the
+ * Prometheus text exposition format.
+ * The metrics are held in a {@link MetricRegistry}; counters are striped and latencies are
+ * recorded into fixed logarithmic buckets, so that recording a value never takes a lock.
+ * Gauges are only evaluated when the metrics are exported.
+ *
+ * Metric names may carry labels, use {@link #name(String, String...)} to produce them.
+ */
+public final class Metrics {
+
+    private static final MetricRegistry registry = new MetricRegistry();
+    private static final Map<String, String> descriptions = new ConcurrentHashMap<String, String>();
+
+    private Metrics() {}
+
+    /**
+     * produce a metric name with labels
+     * @param base the metric name without labels
+     * @param labels label names and values, alternating
+     * @return the name in the form base{label1="value1",label2="value2"}
+     */
+    public static String name(final String base, final String... labels) {
+        if (labels == null || labels.length < 2) return base;
+        final StringBuilder sb = new StringBuilder(base.length() + labels.length * 16);
+        sb.append(base).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"");
+            final String value = labels[i + 1] == null ? "" : labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                final char c = value.charAt(j);
+                if (c == '\\' || c == '"') sb.append('\\').append(c);
+                else if (c == '\n') sb.append("\\n");
+                else sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * get or create a counter
+     * @param name the metric name, by convention ending with _total
+     * @param help a description of the metric
+     * @return the counter
+     */
+    public static Counter counter(final String name, final String help) {
+        describe(name, help);
+        return registry.counter(name);
+    }
+
+    /**
+     * get or create a latency histogram
+     * @param name the metric name, by convention ending with _seconds
+     * @param help a description of the metric
+     * @return the histogram
+     */
+    public static Latency latency(final String name, final String help) {
+        describe(name, help);
+        synchronized (registry) {
+            final Metric m = registry.getMetrics().get(name);
+            if (m instanceof Latency) return (Latency) m;
+            return registry.register(name, new Latency());
+        }
+    }
+
+    /**
+     * register a gauge; a gauge with the same name is replaced
+     * @param name the metric name
+     * @param help a description of the metric
+     * @param gauge the gauge, evaluated at export time
+     */
+    public static void gauge(final String name, final String help, final Gauge<? extends Number> gauge) {
+        describe(name, help);
+        synchronized (registry) {
+            registry.remove(name);
+            registry.register(name, gauge);
+        }
+    }
+
+    /**
+     * remove a metric
+     * @param name the metric name
+     */
+    public static void remove(final String name) {
+        synchronized (registry) {
+            registry.remove(name);
+        }
+    }
+
+    private static void describe(final String name, final String help) {
+        if (help != null) descriptions.put(base(name), help);
+    }
+
+    private static String base(final String name) {
+        final int p = name.indexOf('{');
+        return p < 0 ? name : name.substring(0, p);
+    }
+
+    private static String labels(final String name) {
+        final int p = name.indexOf('{');
+        return p < 0 ? "" : name.substring(p + 1, name.length() - 1);
+    }
+
+    /**
+     * write all metrics in the Prometheus text exposition format (version 0.0.4)
+     * @param out the target
+     * @throws IOException
+     */
+    public static void write(final Appendable out) throws IOException {
+        // all samples of one metric family must be written together
+        final Map<String, List<Map.Entry<String, Metric>>> families = new TreeMap<String, List<Map.Entry<String, Metric>>>();
+        for (final Map.Entry<String, Metric> entry: registry.getMetrics().entrySet()) {
+            final String base = base(entry.getKey());
+            List<Map.Entry<String, Metric>> family = families.get(base);
+            if (family == null) {
+                family = new ArrayList<Map.Entry<String, Metric>>();
+                families.put(base, family);
+            }
+            family.add(entry);
+        }
+        for (final Map.Entry<String, List<Map.Entry<String, Metric>>> family: families.entrySet()) {
+            final String base = family.getKey();
+            final Metric first = family.getValue().get(0).getValue();
+            final String type = first instanceof Counter ? "counter" : first instanceof Latency ? "histogram" : first instanceof Gauge ? "gauge" : null;
+            if (type == null) continue;
+            final String help = descriptions.get(base);
+            if (help != null) out.append("# HELP ").append(base).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(base).append(' ').append(type).append('\n');
+            for (final Map.Entry<String, Metric> entry: family.getValue()) {
+                final String name = entry.getKey();
+                final Metric metric = entry.getValue();
+                if (metric instanceof Counter) {
+                    out.append(name).append(' ').append(Long.toString(((Counter) metric).getCount())).append('\n');
+                } else if (metric instanceof Latency) {
+                    ((Latency) metric).write(out, base, labels(name));
+                } else if (metric instanceof Gauge) {
+                    Object value;
+                    try {
+                        value = ((Gauge<?>) metric).getValue();
+                    } catch (final RuntimeException e) {
+                        continue; // the measured object is not available
+                    }
+                    if (!(value instanceof Number)) continue;
+                    out.append(name).append(' ').append(format((Number) value)).append('\n');
+                }
+            }
+        }
+    }
+
+    private static String format(final Number n) {
+        if (n instanceof Double || n instanceof Float) return format(n.doubleValue());
+        return Long.toString(n.longValue());
+    }
+
+    private static String format(final double d) {
+        if (Double.isNaN(d)) return "NaN";
+        if (Double.isInfinite(d)) return d > 0 ? "+Inf" : "-Inf";
+        return Double.toString(d);
+    }
+
+    /**
+     * A latency histogram with logarithmic buckets. The upper bounds of the buckets are the
+     * powers of two from 1 microsecond to about 33 seconds; values are counted with striped
+     * adders, so concurrent updates do not contend.
+     */
+    public static final class Latency implements Metric {
+
+        /** number of finite buckets; the bound of bucket i is 2^i microseconds */
+        private static final int BUCKETS = 26;
+
+        private final LongAdder[] buckets;
+        private final LongAdder sum; // nanoseconds
+
+        private Latency() {
+            this.buckets = new LongAdder[BUCKETS + 1];
+            for (int i = 0; i < this.buckets.length; i++) this.buckets[i] = new LongAdder();
+            this.sum = new LongAdder();
+        }
+
+        /**
+         * record a duration
+         * @param nanos the duration in nanoseconds
+         */
+        public void update(final long nanos) {
+            final long micros = nanos <= 0 ? 0 : (nanos + 999) / 1000;
+            final int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+            this.buckets[Math.min(bucket, BUCKETS)].increment();
+            this.sum.add(Math.max(0, nanos));
+        }
+
+        /**
+         * record a duration
+         * @param millis the duration in milliseconds
+         */
+        public void updateMillis(final long millis) {
+            update(millis * 1000000L);
+        }
+
+        /**
+         * record the duration since a start time
+         * @param startNanos a start time from {@link System#nanoTime()}
+         */
+        public void since(final long startNanos) {
+            update(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * @return the number of recorded durations
+         */
+        public long count() {
+            long c = 0;
+            for (final LongAdder b: this.buckets) c += b.sum();
+            return c;
+        }
+
+        /**
+         * @return the sum of all recorded durations in nanoseconds
+         */
+        public long sum() {
+            return this.sum.sum();
+        }
+
+        /**
+         * estimate a quantile of the recorded durations
+         * @param q the quantile between 0 and 1
+         * @return the upper bound of the bucket containing the quantile in nanoseconds, Long.MAX_VALUE if it is beyond the largest bucket
+         */
+        public long quantile(final double q) {
+            final long[] counts = new long[this.buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) total += (counts[i] = this.buckets[i].sum());
+            if (total == 0) return 0;
+            final long rank = (long) Math.ceil(q * total);
+            long c = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                c += counts[i];
+                if (c >= rank) return (1L << i) * 1000L;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private void write(final Appendable out, final String base, final String labels) throws IOException {
+            final String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+            long c = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                c += this.buckets[i].sum();
+                out.append(base).append("_bucket").append(prefix).append("le=\"").append(format((1L << i) / 1000000.0d)).append("\"} ").append(Long.toString(c)).append('\n');
+            }
+            c += this.buckets[BUCKETS].sum();
+            out.append(base).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(Long.toString(c)).append('\n');
+            final String l = labels.isEmpty() ? "" : "{" + labels + "}";
+            out.append(base).append("_sum").append(l).append(' ').append(format(this.sum.sum() / 1.0e9d)).append('\n');
+            out.append(base).append("_count").append(l).append(' ').append(Long.toString(c)).append('\n');
+        }
+    }
+}
@@ -45,6 +45,7 @@ import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.solr.FailCategory;
 import net.yacy.cora.federate.solr.connector.SolrConnector.LoadTimeURL;
 import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.protocol.DNSPrefetcher;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.ftp.FTPClient;
 import net.yacy.cora.util.ConcurrentLog;
@@ -74,6 +75,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
     
     private final RobotsTxt robots;
     private final WorkflowProcessor<Request>  requestQueue;
+    private final DNSPrefetcher     dnsPrefetcher;
     public  final CrawlQueues       nextQueue;
     private final CrawlSwitchboard  crawler;
     private final Segment           indexSegment;
@@ -101,6 +103,8 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         this.acceptGlobalURLs = acceptGlobalURLs;
         this.domainList = domainList;
         this.requestQueue = new WorkflowProcessor<Request>("CrawlStacker", "This process checks new urls before they are enqueued into the balancer (proper, double-check, correct domain, filter)", new String[]{"Balancer"}, this, 10000, null, WorkflowProcessor.availableCPU);
+        // resolve the hosts of stacked urls in the background so that the stacker and loader threads find them in the name cache
+        this.dnsPrefetcher = new DNSPrefetcher(4 * WorkflowProcessor.availableCPU, 32, 10000);
         CrawlStacker.log.info("STACKCRAWL thread initialized.");
     }
 
@@ -108,6 +112,10 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         return this.requestQueue.getQueueSize();
     }
     
+    public DNSPrefetcher getDNSPrefetcher() {
+        return this.dnsPrefetcher;
+    }
+
     public boolean isEmpty() {
         if (!this.requestQueue.queueIsEmpty()) return false;
         return true;
@@ -128,6 +136,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
 
         CrawlStacker.log.info("Shutdown. Closing stackCrawl queue.");
 
+        this.dnsPrefetcher.close();
         clear();
     }
 
@@ -155,6 +164,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
 
         // DEBUG
         if (CrawlStacker.log.isFinest()) CrawlStacker.log.finest("ENQUEUE " + entry.url() + ", referer=" + entry.referrerhash() + ", initiator=" + ((entry.initiator() == null) ? "" : ASCII.String(entry.initiator())) + ", name=" + entry.name() + ", appdate=" + entry.appdate() + ", depth=" + entry.depth());
+        this.dnsPrefetcher.prefetch(entry.url().getHost());
         this.requestQueue.enQueue(entry);
     }
     
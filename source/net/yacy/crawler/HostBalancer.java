@@ -35,6 +35,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.codahale.metrics.Counter;
+
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.order.Base64Order;
@@ -42,6 +44,7 @@ import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.Latency;
@@ -64,7 +67,11 @@ import net.yacy.kelondro.util.FileUtils;
 public class HostBalancer implements Balancer {
 
     private final static ConcurrentLog log = new ConcurrentLog("HostBalancer");
-    public final static HandleMap depthCache = new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, 8 * 1024 * 1024, "HostBalancer.DepthCache");
+    public final static HandleMap depthCache = new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, 8 * 1024 * 1024, "HostBalancer.DepthCache", true);
+    private final static Counter pushCount = Metrics.counter("yacy_crawler_balancer_push_total", "Urls stacked into the crawl balancer");
+    private final static Counter rejectCount = Metrics.counter("yacy_crawler_balancer_reject_total", "Urls rejected by the crawl balancer");
+    private final static Counter popCount = Metrics.counter("yacy_crawler_balancer_pop_total", "Urls taken from the crawl balancer for loading");
+    private final static Metrics.Latency popLatency = Metrics.latency("yacy_crawler_balancer_pop_seconds", "Duration of taking the next url from the crawl balancer including the politeness delay");
 
     private final File hostsPath;
     private final boolean exceed134217727;
@@ -281,7 +288,10 @@ public class HostBalancer implements Balancer {
      */
     @Override
     public String push(final Request entry, CrawlProfile profile, final RobotsTxt robots) throws IOException, SpaceExceededException {
-        if (this.has(entry.url().hash())) return "double occurrence";
+        if (this.has(entry.url().hash())) {
+            rejectCount.inc();
+            return "double occurrence";
+        }
         depthCache.put(entry.url().hash(), entry.depth());
         String hosthash = entry.url().hosthash();
         synchronized (this) {
@@ -292,7 +302,9 @@ public class HostBalancer implements Balancer {
                 // profile might be null when continue crawls after YaCy restart
                 robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
             }
-            return queue.push(entry, profile, robots);
+            final String rejectReason = queue.push(entry, profile, robots);
+            if (rejectReason == null) pushCount.inc(); else rejectCount.inc();
+            return rejectReason;
         }
     }
 
@@ -310,6 +322,17 @@ public class HostBalancer implements Balancer {
      */
     @Override
     public Request pop(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            final Request request = popRequest(delay, cs, robots);
+            if (request != null) popCount.inc();
+            return request;
+        } finally {
+            popLatency.since(start);
+        }
+    }
+
+    private Request popRequest(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
         tryagain: while (true) try {
             HostQueue rhq = null;
             String rhh = null;
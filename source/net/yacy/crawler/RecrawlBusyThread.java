@@ -23,7 +23,6 @@
  */
 package net.yacy.crawler;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.time.LocalDateTime;
 import java.util.Date;
@@ -320,11 +319,9 @@ public class RecrawlBusyThread extends AbstractBusyThread {
                 }
             }
             
-            if (!tobedeletedIDs.isEmpty()) try {
-                solrConnector.deleteByIds(tobedeletedIDs);
+            if (!tobedeletedIDs.isEmpty()) {
+                this.sb.index.fulltext().remove(tobedeletedIDs); // logs its errors
                 solrConnector.commit(false);
-            } catch (IOException e) {
-                ConcurrentLog.severe(THREAD_NAME, "error deleting IDs ", e);
             }
             
             this.chunkstart = deleteOnRecrawl? 0 : this.chunkstart + this.chunksize;
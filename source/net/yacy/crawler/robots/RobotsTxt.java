@@ -33,12 +33,14 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -48,6 +50,8 @@ import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.yacy.CacheStrategy;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.storage.ARC;
+import net.yacy.cora.storage.ConcurrentTinyLFU;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.crawler.retrieval.Request;
@@ -66,7 +70,15 @@ public class RobotsTxt {
     protected static final String ROBOTS_DB_PATH_SEPARATOR = ";";
     protected static final Pattern ROBOTS_DB_PATH_SEPARATOR_MATCHER = Pattern.compile(ROBOTS_DB_PATH_SEPARATOR);
 
+    private static final int HOT_ENTRIES_SIZE = 10000;           // maximum number of hosts in the in-memory tier
+    private static final long REFRESH_AGE = 7*24*60*60*1000L;    // entries older than this are loaded again
+    private static final long RECHECK_AGE = 1*24*60*60*1000L;    // entries younger than this are not loaded again
+
     private final ConcurrentMap<String, DomSync> syncObjects;
+    /** in-memory tier above the robots table: host:port to entry with compiled rules; read without any lock */
+    private final ARC<String, RobotsTxtEntry> hotEntries;
+    /** hosts where an asynchronous refresh of an outdated entry is scheduled or running */
+    private final Set<String> pendingRefresh;
     //private static final HashSet<String> loadedRobots = new HashSet<String>(); // only for debugging
     private final WorkTables tables;
     private final LoaderDispatcher loader;
@@ -89,6 +101,8 @@ public class RobotsTxt {
                 new LinkedBlockingQueue<Runnable>(),
                 new NamePrefixThreadFactory(RobotsTxt.class.getSimpleName()));
         this.syncObjects = new ConcurrentHashMap<String, DomSync>();
+        this.hotEntries = new ConcurrentTinyLFU<String, RobotsTxtEntry>(HOT_ENTRIES_SIZE);
+        this.pendingRefresh = ConcurrentHashMap.newKeySet();
         this.tables = worktables;
         this.loader = loader;
         try {
@@ -106,6 +120,7 @@ public class RobotsTxt {
         log.info("clearing robots table");
         this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME).clear();
         this.syncObjects.clear();
+        this.hotEntries.clear();
     }
     
     public void close() {
@@ -126,7 +141,43 @@ public class RobotsTxt {
     }
 
     public RobotsTxtEntry getEntry(final String urlHostPort, final ClientIdentification.Agent agent, final boolean fetchOnlineIfNotAvailableOrNotFresh) {
-            // this method will always return a non-null value
+        // hosts that had been seen before are answered from the in-memory tier without accessing the table or a lock;
+        // an outdated entry is returned and refreshed asynchronously
+        RobotsTxtEntry robotsTxt4Host = this.hotEntries.get(urlHostPort);
+        if (robotsTxt4Host != null) {
+            if (fetchOnlineIfNotAvailableOrNotFresh && !isFresh(robotsTxt4Host, REFRESH_AGE)) refreshConcurrently(urlHostPort, agent);
+            return robotsTxt4Host;
+        }
+        return getEntryFromTable(urlHostPort, agent, fetchOnlineIfNotAvailableOrNotFresh);
+    }
+
+    private static boolean isFresh(final RobotsTxtEntry entry, final long maxAge) {
+        return entry.getLoadedDate() != null && System.currentTimeMillis() - entry.getLoadedDate().getTime() <= maxAge;
+    }
+
+    /**
+     * schedule a reload of the robots.txt of the given host in the thread pool, if it is not already scheduled
+     */
+    private void refreshConcurrently(final String urlHostPort, final ClientIdentification.Agent agent) {
+        if (!this.pendingRefresh.add(urlHostPort)) return;
+        try {
+            this.threadPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        getEntryFromTable(urlHostPort, agent, true);
+                    } finally {
+                        RobotsTxt.this.pendingRefresh.remove(urlHostPort);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // the pool is shut down
+            this.pendingRefresh.remove(urlHostPort);
+        }
+    }
+
+    private RobotsTxtEntry getEntryFromTable(final String urlHostPort, final ClientIdentification.Agent agent, final boolean fetchOnlineIfNotAvailableOrNotFresh) {
         RobotsTxtEntry robotsTxt4Host = null;
         Map<String, byte[]> record;
         BEncodedHeap robotsTable = null;
@@ -144,13 +195,12 @@ public class RobotsTxt {
             log.warn("cannot get robotstxt from table", e);
             record = null;
         }
-        if (record != null) robotsTxt4Host = new RobotsTxtEntry(urlHostPort, record);
+        if (record != null) {
+            robotsTxt4Host = new RobotsTxtEntry(urlHostPort, record);
+            this.hotEntries.insert(urlHostPort, robotsTxt4Host);
+        }
 
-        if (fetchOnlineIfNotAvailableOrNotFresh && (
-             robotsTxt4Host == null ||
-             robotsTxt4Host.getLoadedDate() == null ||
-             System.currentTimeMillis() - robotsTxt4Host.getLoadedDate().getTime() > 7*24*60*60*1000
-           )) {
+        if (fetchOnlineIfNotAvailableOrNotFresh && (robotsTxt4Host == null || !isFresh(robotsTxt4Host, REFRESH_AGE))) {
 
             // make or get a synchronization object
         	DomSync syncObj = this.syncObjects.get(urlHostPort);
@@ -174,9 +224,8 @@ public class RobotsTxt {
                     record = null;
                 }
                 if (record != null) robotsTxt4Host = new RobotsTxtEntry(urlHostPort, record);
-                if (robotsTxt4Host != null &&
-                    robotsTxt4Host.getLoadedDate() != null &&
-                    System.currentTimeMillis() - robotsTxt4Host.getLoadedDate().getTime() <= 1*24*60*60*1000) {
+                if (robotsTxt4Host != null && isFresh(robotsTxt4Host, RECHECK_AGE)) {
+                    this.hotEntries.insert(urlHostPort, robotsTxt4Host);
                     return robotsTxt4Host;
                 }
 
@@ -209,6 +258,7 @@ public class RobotsTxt {
     public void delete(final MultiProtocolURL theURL) {
         final String urlHostPort = getHostPort(theURL);
         if (urlHostPort == null) return;
+        this.hotEntries.remove(urlHostPort);
         final BEncodedHeap robotsTable;
         try {
             robotsTable = this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME);
@@ -227,6 +277,7 @@ public class RobotsTxt {
         if (theURL.isLocal()) return;
         final String urlHostPort = getHostPort(theURL);
         if (urlHostPort == null) return;
+        if (this.hotEntries.containsKey(urlHostPort)) return;
         final BEncodedHeap robotsTable;
         try {
             robotsTable = this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME);
@@ -300,6 +351,8 @@ public class RobotsTxt {
                     Integer.valueOf(0),
                     null);
         } else {
+            // the entry may be shared with concurrent readers through the in-memory tier
+            robotsTxt4Host = robotsTxt4Host.copy();
             robotsTxt4Host.setLoadedDate(new Date());
         }
 
@@ -363,6 +416,7 @@ public class RobotsTxt {
         try {
             final BEncodedHeap robotsTable = this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME);
             robotsTable.insert(robotsTable.encodedKey(entry.getHostName()), entry.getMem());
+            this.hotEntries.insert(entry.getHostName(), entry);
             return entry.getHostName();
         } catch (final Exception e) {
             log.warn("cannot write robots.txt entry", e);
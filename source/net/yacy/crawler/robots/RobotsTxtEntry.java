@@ -60,12 +60,11 @@ public class RobotsTxtEntry {
     private final Map<String, byte[]> mem;
     private final List<String> allowPathList, denyPathList, sitemapList;
     private final String hostName, agentName;
-    private String info; // this is filled if robots disallowed access; then the reason is noted there;
+    private final RobotsTxtRules rules; // the compiled allow and deny path lists
 
     protected RobotsTxtEntry(final String hostName, final Map<String, byte[]> mem) {
         this.hostName = hostName.toLowerCase(Locale.ROOT);
         this.mem = mem;
-        this.info = "";
 
         this.denyPathList = new LinkedList<String>();
         fillMultiValue(this.denyPathList, DISALLOW_PATH_LIST);
@@ -74,6 +73,7 @@ public class RobotsTxtEntry {
         this.sitemapList = new LinkedList<String>();
         fillMultiValue(this.sitemapList, SITEMAP_LIST);
         this.agentName = this.mem.containsKey(AGENT_NAME) ? UTF8.String(this.mem.get(AGENT_NAME)) : null;
+        this.rules = this.denyPathList.isEmpty() ? RobotsTxtRules.EMPTY : new RobotsTxtRules(this.allowPathList, this.denyPathList);
     }
 
     private void fillMultiValue(List<String> list, String listName) {
@@ -118,6 +118,7 @@ public class RobotsTxtEntry {
         readMultiValue(allowPathList,    this.allowPathList, ALLOW_PATH_LIST);
         readMultiValue(disallowPathList, this.denyPathList,  DISALLOW_PATH_LIST);
         readMultiValue(sitemapList,      this.sitemapList,   SITEMAP_LIST);
+        this.rules = this.denyPathList.isEmpty() ? RobotsTxtRules.EMPTY : new RobotsTxtRules(this.allowPathList, this.denyPathList);
     }
 
     private void readMultiValue(List<String> externallist, List<String> internallist, String listName) {
@@ -140,6 +141,13 @@ public class RobotsTxtEntry {
         return this.agentName;
     }
 
+    /**
+     * @return a copy of this entry which can be modified without affecting concurrent readers of this entry
+     */
+    protected RobotsTxtEntry copy() {
+        return new RobotsTxtEntry(this.hostName, new LinkedHashMap<String, byte[]>(this.mem));
+    }
+
     protected Map<String, byte[]> getMem() {
         if (!this.mem.containsKey(HOST_NAME)) this.mem.put(HOST_NAME, UTF8.getBytes(this.hostName));
         return this.mem;
@@ -212,15 +220,29 @@ public class RobotsTxtEntry {
     }
 
     public boolean isDisallowed(final MultiProtocolURL subpathURL) {
+        if (this.mem == null || this.denyPathList.isEmpty()) return false;
+        return this.rules.disallowingRule(normalizedPath(subpathURL)) != null;
+    }
+
+    /**
+     * explain the result of {@link #isDisallowed(MultiProtocolURL)}; the entry is shared between threads,
+     * therefore the reason is computed on request and not stored in the entry
+     * @param subpathURL the url which is checked
+     * @return the reason why the access is allowed or disallowed
+     */
+    public String getInfo(final MultiProtocolURL subpathURL) {
+        if (this.mem == null) return "no robots file available";
+        if (this.denyPathList.isEmpty()) return "no entry in robots.txt";
+        final String path = normalizedPath(subpathURL);
+
+        // the compiled rules select the most specific matching allow or disallow rule
+        final String rule = this.rules.disallowingRule(path);
+        if (rule != null) return "path '" + path + "' matches '" + rule + "' from deny path list = " + this.denyPathList.toString();
+        return "path '" + path + "' does not match any element from deny path list or is allowed by allow path list";
+    }
+
+    private static String normalizedPath(final MultiProtocolURL subpathURL) {
         String path = subpathURL.getFile();
-        if (this.mem == null) {
-            this.info = "no robots file available";
-            return false;
-        }
-        if (this.denyPathList.isEmpty()) {
-            this.info = "no entry in robots.txt";
-            return false;
-        }
 
         // if the path is null or empty we set it to /
         if (path == null || path.isEmpty()) {
@@ -236,20 +258,6 @@ public class RobotsTxtEntry {
             // escaping all occurences of ; because this char is used as special char in the Robots DB
         	path = RobotsTxt.ROBOTS_DB_PATH_SEPARATOR_MATCHER.matcher(path).replaceAll("%3B");
         }
-
-        for (final String element : this.denyPathList) {
-
-            // disallow rule
-            if (path.startsWith(element)) {
-                this.info = "path '" + path + "' starts with '" + element + "' from deny path list = " + this.denyPathList.toString();
-                return true;
-            }
-        }
-        this.info = "path '" + path + "' does not start with any element from deny path list";
-        return false;
-    }
-
-    public String getInfo() {
-        return this.info;
+        return path;
     }
 }
\ No newline at end of file
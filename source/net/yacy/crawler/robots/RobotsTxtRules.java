@@ -0,0 +1,196 @@
+// RobotsTxtRules.java
+// -------------------------------------
+// part of YACY
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.crawler.robots;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An immutable, compiled set of allow and disallow rules of one robots.txt for one agent.
+ * All rule paths are stored in a trie so that a path is matched against all rules in one walk.
+ * The wildcards of the robots exclusion protocol are supported: '*' matches any sequence of
+ * characters and a trailing '$' anchors the rule at the end of the path.
+ * The most specific (longest) matching rule decides; if an allow and a disallow rule
+ * of the same length match, the allow rule wins.
+ */
+public final class RobotsTxtRules {
+
+    /** a rule set without any rules: everything is allowed */
+    public static final RobotsTxtRules EMPTY = new RobotsTxtRules(null, null);
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Node star = null;                                       // the child for the '*' wildcard
+        private String allow = null, deny = null;                       // prefix rules ending at this node
+        private String allowAnchored = null, denyAnchored = null;       // rules ending with '$' at this node
+        private int id;
+
+        private Node child(final char c) {
+            final int p = Arrays.binarySearch(this.keys, c);
+            return p < 0 ? null : this.children[p];
+        }
+
+        private Node addChild(final char c, final int id) {
+            int p = Arrays.binarySearch(this.keys, c);
+            if (p >= 0) return this.children[p];
+            p = -p - 1;
+            final Node n = new Node();
+            n.id = id;
+            final char[] k = new char[this.keys.length + 1];
+            final Node[] ch = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, k, 0, p);
+            System.arraycopy(this.children, 0, ch, 0, p);
+            k[p] = c;
+            ch[p] = n;
+            System.arraycopy(this.keys, p, k, p + 1, this.keys.length - p);
+            System.arraycopy(this.children, p, ch, p + 1, this.children.length - p);
+            this.keys = k;
+            this.children = ch;
+            return n;
+        }
+    }
+
+    // the best match found so far during a walk
+    private static final class Match {
+        private String rule = null;
+        private boolean allow = true;
+        private void offer(final String candidate, final boolean isAllow) {
+            if (candidate == null) return;
+            if (this.rule == null || candidate.length() > this.rule.length() ||
+                (candidate.length() == this.rule.length() && isAllow && !this.allow)) {
+                this.rule = candidate;
+                this.allow = isAllow;
+            }
+        }
+    }
+
+    private final Node root;
+    private final int nodeCount;
+    private final boolean hasWildcards;
+    private final boolean hasDenyRules;
+
+    /**
+     * compile a rule set
+     * @param allowList the allow rule paths, may be null
+     * @param denyList the disallow rule paths, may be null
+     */
+    public RobotsTxtRules(final Collection<String> allowList, final Collection<String> denyList) {
+        this.root = new Node();
+        int ids = 1;
+        boolean wildcards = false;
+        if (allowList != null) for (final String rule: allowList) {
+            ids = add(rule, true, ids);
+            wildcards |= rule.indexOf('*') >= 0 || rule.endsWith("$");
+        }
+        if (denyList != null) for (final String rule: denyList) {
+            ids = add(rule, false, ids);
+            wildcards |= rule.indexOf('*') >= 0 || rule.endsWith("$");
+        }
+        this.nodeCount = ids;
+        this.hasWildcards = wildcards;
+        this.hasDenyRules = denyList != null && !denyList.isEmpty();
+    }
+
+    private int add(final String rule, final boolean allow, int ids) {
+        if (rule == null) return ids;
+        String pattern = rule;
+        final boolean anchored = pattern.endsWith("$");
+        if (anchored) pattern = pattern.substring(0, pattern.length() - 1);
+        Node n = this.root;
+        char last = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '*') {
+                if (last == '*') continue; // a sequence of wildcards is the same as one wildcard
+                if (n.star == null) {
+                    n.star = new Node();
+                    n.star.id = ids++;
+                }
+                n = n.star;
+            } else {
+                final Node next = n.child(c);
+                if (next == null) {
+                    n = n.addChild(c, ids++);
+                } else {
+                    n = next;
+                }
+            }
+            last = c;
+        }
+        if (anchored) {
+            if (allow) n.allowAnchored = longer(n.allowAnchored, rule); else n.denyAnchored = longer(n.denyAnchored, rule);
+        } else {
+            if (allow) n.allow = longer(n.allow, rule); else n.deny = longer(n.deny, rule);
+        }
+        return ids;
+    }
+
+    private static String longer(final String a, final String b) {
+        return a == null || b.length() > a.length() ? b : a;
+    }
+
+    /**
+     * find the rule that disallows the given path
+     * @param path the decoded path of an url, starting with '/'
+     * @return the disallow rule that decides about the path, or null if the path is allowed
+     */
+    public String disallowingRule(final String path) {
+        if (!this.hasDenyRules) return null;
+        final Match match = new Match();
+        walk(this.root, path, 0, match, this.hasWildcards ? new HashSet<Long>() : null);
+        return match.rule == null || match.allow ? null : match.rule;
+    }
+
+    /**
+     * @param path the decoded path of an url, starting with '/'
+     * @return true if the path is disallowed by this rule set
+     */
+    public boolean isDisallowed(final String path) {
+        return disallowingRule(path) != null;
+    }
+
+    private void walk(Node n, final String path, int pos, final Match match, final Set<Long> visited) {
+        while (n != null) {
+            if (visited != null && !visited.add(((long) n.id) * (path.length() + 1) + pos)) return;
+            match.offer(n.allow, true);
+            match.offer(n.deny, false);
+            if (pos == path.length()) {
+                match.offer(n.allowAnchored, true);
+                match.offer(n.denyAnchored, false);
+            }
+            if (n.star != null) {
+                // the wildcard may consume any number of characters
+                for (int k = pos; k <= path.length(); k++) walk(n.star, path, k, match, visited);
+            }
+            if (pos == path.length()) return;
+            n = n.child(path.charAt(pos++));
+        }
+    }
+
+    /**
+     * @return the number of nodes in the compiled trie
+     */
+    public int size() {
+        return this.nodeCount;
+    }
+
+}
@@ -58,6 +58,7 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.data.ymark.YMarkTables;
 import net.yacy.kelondro.blob.Tables;
+import net.yacy.kelondro.blob.TablesSortedIndex;
 import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.search.Switchboard;
@@ -96,6 +97,18 @@ public class WorkTables extends Tables {
     public WorkTables(final File workPath) {
         super(workPath, 12);
         this.bookmarks = new YMarkTables(this);
+        // sorted indexes for the lookups and orderings of the api call log and the scheduler
+        try {
+            ensureSortedIndex(TABLE_API_NAME, TABLE_API_COL_URL, TablesSortedIndex.KeyType.BYTES);
+            ensureSortedIndex(TABLE_API_NAME, TABLE_API_COL_TYPE, TablesSortedIndex.KeyType.BYTES);
+            ensureSortedIndex(TABLE_API_NAME, TABLE_API_COL_DATE_RECORDING, TablesSortedIndex.KeyType.BYTES);
+            ensureSortedIndex(TABLE_API_NAME, TABLE_API_COL_DATE_LAST_EXEC, TablesSortedIndex.KeyType.BYTES);
+            ensureSortedIndex(TABLE_API_NAME, TABLE_API_COL_DATE_NEXT_EXEC, TablesSortedIndex.KeyType.BYTES);
+            ensureSortedIndex(TABLE_API_NAME, TABLE_API_COL_APICALL_COUNT, TablesSortedIndex.KeyType.NUMBER);
+            ensureSortedIndex(TABLE_API_NAME, TABLE_API_COL_APICALL_SCHEDULE_TIME, TablesSortedIndex.KeyType.NUMBER);
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
     }
     
     /**
@@ -65,6 +65,9 @@ public final class Condenser extends Tokenizer {
     private final Identificator languageIdentificator;
     public LinkedHashSet<Date> dates_in_content;
     
+    private String sentenceText = null; // the indexed text, source for the snippet sentences
+    private SnippetSentences snippetSentences = null;
+    
     public Condenser(
             final Document document,
             final VocabularyScraper scraper,
@@ -100,6 +103,7 @@ public final class Condenser extends Tokenizer {
         Map.Entry<AnchorURL, String> entry;
         if (indexText) {
             String text = document.getTextString();
+            this.sentenceText = text;
             if (findDatesInContent) this.dates_in_content = DateDetection.parse(text, timezoneOffset);
             // the phrase counter:
             // phrase   0 are words taken from the URL
@@ -296,6 +300,18 @@ public final class Condenser extends Tokenizer {
         return oldsize - this.words.size();
     }
 
+    /**
+     * get the sentences of the indexed text for the snippet store; they are computed on first use
+     * @return the sentences or null if the text was not indexed
+     */
+    public SnippetSentences snippetSentences() {
+        if (this.snippetSentences == null && this.sentenceText != null) {
+            this.snippetSentences = SnippetSentences.split(this.sentenceText);
+            this.sentenceText = null;
+        }
+        return this.snippetSentences;
+    }
+
     public long fuzzySignature() {
         return this.fuzzy_signature;
     }
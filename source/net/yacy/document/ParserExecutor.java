@@ -0,0 +1,441 @@
+/**
+ *  ParserExecutor.java
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.document;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.workflow.WorkflowProcessor;
+
+/**
+ * Runs parsers in worker pools which are isolated from the indexing threads.
+ * The pool is chosen by the mime type of the document: all text formats (html, xml, rss, plain text ...)
+ * share the 'text' pool, every parser of binary formats gets its own pool; therefore html documents
+ * never queue behind slow binary formats like pdf.
+ * Each parse has a budget of wall-clock time and of allocated heap bytes. A parse that overruns
+ * its budget is cancelled cooperatively: the source stream throws an InterruptedIOException on the
+ * next read and the worker thread is interrupted. The caller gets a {@link BudgetExceededFailure} at
+ * once and does not wait for the parser to give up.
+ * Parses which are started from within a worker (i.e. the entries of an archive) run inline on
+ * the worker thread within the budget of their container, so nested parsing cannot deadlock a pool.
+ */
+public class ParserExecutor {
+
+    private final static ConcurrentLog log = new ConcurrentLog("PARSER");
+
+    /** the name of the pool shared by all text oriented parsers */
+    public static final String TEXT_POOL = "text";
+
+    /**
+     * the job which is executed within the budget
+     */
+    public interface Job {
+        /**
+         * @param source the source stream, which fails as soon as the budget is exceeded
+         * @return the parsed documents
+         */
+        public Document[] parse(InputStream source) throws Exception;
+    }
+
+    /**
+     * thrown if a parser exceeded its time or memory budget
+     */
+    public static class BudgetExceededFailure extends Parser.Failure {
+        private static final long serialVersionUID = -4725063521865284571L;
+        public BudgetExceededFailure(final String message, final DigestURL url) {
+            super(message, url);
+        }
+    }
+
+    /**
+     * statistics for one parser class
+     */
+    public static class Stats {
+        public final AtomicLong calls = new AtomicLong(0);
+        public final AtomicLong failures = new AtomicLong(0);
+        public final AtomicLong timeouts = new AtomicLong(0);
+        public final AtomicLong memoryExceeded = new AtomicLong(0);
+        public final AtomicLong totalTime = new AtomicLong(0);
+        public final AtomicLong maxTime = new AtomicLong(0);
+        public final AtomicLong queueTime = new AtomicLong(0);
+        public final AtomicLong allocatedBytes = new AtomicLong(0);
+
+        private void finished(final long time, final long allocated) {
+            this.totalTime.addAndGet(time);
+            long max;
+            while (time > (max = this.maxTime.get()) && !this.maxTime.compareAndSet(max, time)) {}
+            if (allocated > 0) this.allocatedBytes.addAndGet(allocated);
+        }
+
+        /**
+         * @return the average parse time in milliseconds
+         */
+        public long averageTime() {
+            final long c = this.calls.get();
+            return c == 0 ? 0 : this.totalTime.get() / c;
+        }
+    }
+
+    /**
+     * the state of one running parse, shared by the worker and the waiting caller
+     */
+    private static final class Budget {
+        private final long timeout, maxAllocation;
+        private volatile long started = 0; // 0 as long as the job is queued
+        private volatile long allocationStart = 0;
+        private volatile Thread worker = null;
+        private volatile String cancelReason = null;
+
+        private Budget(final long timeout, final long maxAllocation) {
+            this.timeout = timeout;
+            this.maxAllocation = maxAllocation;
+        }
+
+        private void start() {
+            this.worker = Thread.currentThread();
+            this.allocationStart = allocatedBytes(this.worker);
+            this.started = System.currentTimeMillis();
+        }
+
+        private long allocated() {
+            final Thread t = this.worker;
+            if (t == null || this.allocationStart < 0) return -1;
+            final long a = allocatedBytes(t);
+            return a < 0 ? -1 : a - this.allocationStart;
+        }
+
+        /**
+         * @return null if the budget is kept, otherwise the reason why it is exceeded
+         */
+        private String check() {
+            if (this.cancelReason != null) return this.cancelReason;
+            if (this.started == 0) return null;
+            if (this.timeout > 0 && System.currentTimeMillis() - this.started > this.timeout) {
+                return "parser time budget of " + this.timeout + " ms exceeded";
+            }
+            if (this.maxAllocation > 0 && allocated() > this.maxAllocation) {
+                return "parser memory budget of " + this.maxAllocation + " bytes exceeded";
+            }
+            return null;
+        }
+
+        private void cancel(final String reason) {
+            this.cancelReason = reason;
+        }
+    }
+
+    /**
+     * an input stream which stops reading when the budget is exceeded
+     */
+    private static final class BudgetInputStream extends FilterInputStream {
+        private final Budget budget;
+        private BudgetInputStream(final InputStream in, final Budget budget) {
+            super(in);
+            this.budget = budget;
+        }
+        private void check() throws InterruptedIOException {
+            final String reason = this.budget.check();
+            if (reason != null) {
+                this.budget.cancel(reason);
+                throw new InterruptedIOException(reason);
+            }
+        }
+        @Override
+        public int read() throws IOException {
+            check();
+            return super.read();
+        }
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            check();
+            return super.read(b, off, len);
+        }
+        @Override
+        public long skip(final long n) throws IOException {
+            check();
+            return super.skip(n);
+        }
+    }
+
+    private static final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final boolean allocationSupported;
+    static {
+        boolean supported = false;
+        try {
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+                if (bean.isThreadAllocatedMemorySupported()) {
+                    if (!bean.isThreadAllocatedMemoryEnabled()) bean.setThreadAllocatedMemoryEnabled(true);
+                    supported = bean.isThreadAllocatedMemoryEnabled();
+                }
+            }
+        } catch (final Throwable e) {
+            // not a HotSpot compatible jvm; the memory budget is not available
+        }
+        allocationSupported = supported;
+    }
+
+    private static long allocatedBytes(final Thread t) {
+        if (!allocationSupported) return -1;
+        try {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(t.getId());
+        } catch (final Throwable e) {
+            return -1;
+        }
+    }
+
+    // the budget of the parse which is running on the current worker thread
+    private static final ThreadLocal<Budget> currentBudget = new ThreadLocal<Budget>();
+
+    private final Map<String, ThreadPoolExecutor> pools = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+    private volatile long timeout;
+    private volatile long maxAllocation;
+    private volatile int textThreads, binaryThreads;
+
+    /**
+     * @param timeout the wall-clock time budget of one parse in milliseconds, 0 for no limit
+     * @param maxAllocation the maximum number of heap bytes which one parse may allocate, 0 for no limit
+     * @param textThreads the number of threads of the pool for text formats
+     * @param binaryThreads the number of threads of each pool for binary formats
+     */
+    public ParserExecutor(final long timeout, final long maxAllocation, final int textThreads, final int binaryThreads) {
+        setBudget(timeout, maxAllocation);
+        this.textThreads = Math.max(1, textThreads);
+        this.binaryThreads = Math.max(1, binaryThreads);
+    }
+
+    public ParserExecutor() {
+        this(120000L, 0L, 2 * WorkflowProcessor.availableCPU, Math.max(1, WorkflowProcessor.availableCPU / 2));
+    }
+
+    /**
+     * change the budget of future parses
+     * @param timeout the wall-clock time budget of one parse in milliseconds, 0 for no limit
+     * @param maxAllocation the maximum number of heap bytes which one parse may allocate, 0 for no limit
+     */
+    public void setBudget(final long timeout, final long maxAllocation) {
+        this.timeout = Math.max(0, timeout);
+        this.maxAllocation = Math.max(0, maxAllocation);
+        if (this.maxAllocation > 0 && !allocationSupported) {
+            log.warn("the jvm does not count allocated bytes per thread, the parser memory budget is not applied");
+        }
+    }
+
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    public long getMaxAllocation() {
+        return this.maxAllocation;
+    }
+
+    /**
+     * @param parser a parser
+     * @param mimeType the mime type of the parsed document, may be null
+     * @return the name of the worker pool which runs the parser
+     */
+    public static String poolName(final Parser parser, final String mimeType) {
+        if (parser.supportedMimeTypes().isEmpty()) return TEXT_POOL; // the generic parser only reads meta data
+        if (mimeType != null) {
+            final String mime = mimeType.toLowerCase(Locale.ROOT);
+            if (mime.startsWith("text/") || mime.endsWith("/xml") || mime.endsWith("+xml") ||
+                mime.endsWith("/json") || mime.endsWith("javascript")) return TEXT_POOL;
+        }
+        return parser.getClass().getSimpleName();
+    }
+
+    private ThreadPoolExecutor pool(final String name) {
+        ThreadPoolExecutor pool = this.pools.get(name);
+        if (pool != null) return pool;
+        synchronized (this.pools) {
+            pool = this.pools.get(name);
+            if (pool != null) return pool;
+            final int threads = TEXT_POOL.equals(name) ? this.textThreads : this.binaryThreads;
+            final AtomicInteger count = new AtomicInteger(0);
+            pool = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "Parser_" + name + "_" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            this.pools.put(name, pool);
+            return pool;
+        }
+    }
+
+    private Stats stats(final Parser parser) {
+        final String name = parser.getClass().getSimpleName();
+        Stats s = this.stats.get(name);
+        if (s == null) {
+            s = new Stats();
+            final Stats s0 = this.stats.putIfAbsent(name, s);
+            if (s0 != null) s = s0;
+        }
+        return s;
+    }
+
+    /**
+     * run a parser job within the budget
+     * @param parser the parser which is used by the job
+     * @param mimeType the mime type of the parsed document, may be null
+     * @param location the url of the parsed document
+     * @param source the source stream which is handed to the job
+     * @param job the parse call
+     * @return the documents returned by the job
+     * @throws Parser.Failure if the job failed; a {@link BudgetExceededFailure} if the budget was exceeded
+     */
+    public Document[] execute(final Parser parser, final String mimeType, final DigestURL location, final InputStream source, final Job job) throws Parser.Failure {
+        final Stats stats = stats(parser);
+        stats.calls.incrementAndGet();
+
+        // nested parse: run inline within the budget of the container
+        final Budget outer = currentBudget.get();
+        if (outer != null) {
+            try {
+                return job.parse(new BudgetInputStream(source, outer));
+            } catch (final Parser.Failure e) {
+                stats.failures.incrementAndGet();
+                throw e;
+            } catch (final Exception e) {
+                stats.failures.incrementAndGet();
+                final String reason = outer.check();
+                if (reason != null) throw new BudgetExceededFailure(reason, location);
+                throw new Parser.Failure("parser failed: " + parser.getName(), location, e);
+            }
+        }
+
+        final Budget budget = new Budget(this.timeout, this.maxAllocation);
+        final long queued = System.currentTimeMillis();
+        final Future<Document[]> future = pool(poolName(parser, mimeType)).submit(new Callable<Document[]>() {
+            @Override
+            public Document[] call() throws Exception {
+                final Thread t = Thread.currentThread();
+                final String origName = t.getName();
+                t.setName("parsing + " + location.toString()); // set a name to get the address in Thread Dump
+                currentBudget.set(budget);
+                budget.start();
+                try {
+                    return job.parse(new BudgetInputStream(source, budget));
+                } finally {
+                    currentBudget.remove();
+                    t.setName(origName);
+                }
+            }
+        });
+
+        try {
+            while (true) {
+                try {
+                    final Document[] docs = future.get(100, TimeUnit.MILLISECONDS);
+                    finished(stats, budget, queued);
+                    return docs;
+                } catch (final TimeoutException e) {
+                    final String reason = budget.check();
+                    if (reason != null) {
+                        budget.cancel(reason);
+                        future.cancel(true);
+                        if (reason.contains("memory")) stats.memoryExceeded.incrementAndGet(); else stats.timeouts.incrementAndGet();
+                        stats.failures.incrementAndGet();
+                        finished(stats, budget, queued);
+                        log.warn("cancelled parser " + parser.getName() + " for " + location.toNormalform(true) + ": " + reason);
+                        throw new BudgetExceededFailure(reason, location);
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            budget.cancel("interrupted");
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new Parser.Failure("interrupted", location);
+        } catch (final ExecutionException e) {
+            stats.failures.incrementAndGet();
+            finished(stats, budget, queued);
+            final Throwable cause = e.getCause();
+            if (cause instanceof Parser.Failure) throw (Parser.Failure) cause;
+            if (budget.cancelReason != null) {
+                if (budget.cancelReason.contains("memory")) stats.memoryExceeded.incrementAndGet(); else stats.timeouts.incrementAndGet();
+                throw new BudgetExceededFailure(budget.cancelReason, location);
+            }
+            if (cause instanceof OutOfMemoryError) {
+                throw new Parser.Failure("parser " + parser.getName() + " ran out of memory", location);
+            }
+            throw new Parser.Failure("parser failed: " + parser.getName(), location, cause);
+        }
+    }
+
+    private static void finished(final Stats stats, final Budget budget, final long queued) {
+        final long started = budget.started;
+        final long now = System.currentTimeMillis();
+        if (started == 0) {
+            stats.queueTime.addAndGet(now - queued);
+            return;
+        }
+        stats.queueTime.addAndGet(started - queued);
+        stats.finished(now - started, budget.allocated());
+    }
+
+    /**
+     * @return the statistics of all parser classes which have been used, sorted by the parser class name
+     */
+    public Map<String, Stats> stats() {
+        return new TreeMap<String, Stats>(this.stats);
+    }
+
+    /**
+     * @return the number of waiting parse jobs for each pool
+     */
+    public Map<String, Integer> queueSizes() {
+        final Map<String, Integer> sizes = new TreeMap<String, Integer>();
+        for (final Map.Entry<String, ThreadPoolExecutor> entry: this.pools.entrySet()) {
+            sizes.put(entry.getKey(), entry.getValue().getQueue().size());
+        }
+        return sizes;
+    }
+
+    public void shutdown() {
+        for (final ThreadPoolExecutor pool: this.pools.values()) pool.shutdownNow();
+        this.pools.clear();
+    }
+
+}
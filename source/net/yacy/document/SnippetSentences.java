@@ -0,0 +1,242 @@
+/**
+ *  SnippetSentences.java
+ *  part of YaCy
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.kelondro.data.word.Word;
+
+/**
+ * The sentences of a document text as computed at indexing time, to be used for snippet
+ * computation without loading and parsing the document again.
+ * The sentences are stored as one text together with the start offset of each sentence
+ * and a 64 bit signature of the word hashes in each sentence. With the signature the
+ * sentences which may contain the words of a query are selected from the query word hashes
+ * without tokenizing the whole text again.
+ * <pre>
+ * record: version(1 byte) truncated(1 byte) count(4 bytes) { offset(4 bytes) signature(8 bytes) } ... text(UTF-8)
+ * </pre>
+ */
+public final class SnippetSentences {
+
+    /** the maximum number of text characters kept for one document */
+    public static final int MAX_TEXT_LENGTH = 100000;
+
+    private static final byte VERSION = 1;
+
+    private final String text;
+    private final int[] offsets;
+    private final long[] signatures;
+    private final boolean truncated;
+
+    private SnippetSentences(final String text, final int[] offsets, final long[] signatures, final boolean truncated) {
+        this.text = text;
+        this.offsets = offsets;
+        this.signatures = signatures;
+        this.truncated = truncated;
+    }
+
+    /**
+     * split the given text into sentences and compute the word signature of each sentence
+     * @param text the document text
+     * @return the sentences of the text
+     */
+    public static SnippetSentences split(final String text) {
+        final StringBuilder all = new StringBuilder(Math.min(text.length(), MAX_TEXT_LENGTH));
+        int[] offsets = new int[16];
+        long[] signatures = new long[16];
+        int count = 0;
+        boolean truncated = false;
+        final SentenceReader reader = new SentenceReader(text, false);
+        try {
+            while (reader.hasNext()) {
+                final StringBuilder sentence = reader.next();
+                if (sentence.length() == 0) continue;
+                if (all.length() + sentence.length() > MAX_TEXT_LENGTH) {
+                    truncated = true;
+                    break;
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    signatures = Arrays.copyOf(signatures, count * 2);
+                }
+                offsets[count] = all.length();
+                signatures[count] = signature(sentence);
+                count++;
+                all.append(sentence);
+            }
+        } finally {
+            reader.close();
+        }
+        return new SnippetSentences(all.toString(), Arrays.copyOf(offsets, count), Arrays.copyOf(signatures, count), truncated);
+    }
+
+    private static long signature(final StringBuilder sentence) {
+        long signature = 0;
+        final WordTokenizer words = new WordTokenizer(new SentenceReader(sentence.toString()), null);
+        try {
+            while (words.hasMoreElements()) {
+                signature |= signature(Word.word2hash(words.nextElement()));
+            }
+        } finally {
+            words.close();
+        }
+        return signature;
+    }
+
+    /**
+     * @param wordhash a word hash
+     * @return the two signature bits of the word
+     */
+    private static long signature(final byte[] wordhash) {
+        return (1L << ((wordhash[2] * 31 + wordhash[5]) & 63)) | (1L << ((wordhash[8] * 31 + wordhash[11]) & 63));
+    }
+
+    /**
+     * @return the number of sentences
+     */
+    public int size() {
+        return this.offsets.length;
+    }
+
+    /**
+     * @return true if the document text was longer than {@link #MAX_TEXT_LENGTH} and only the beginning is kept
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * @param i the sentence number
+     * @return the sentence
+     */
+    public StringBuilder sentence(final int i) {
+        final int end = i + 1 < this.offsets.length ? this.offsets[i + 1] : this.text.length();
+        return new StringBuilder(this.text.substring(this.offsets[i], end));
+    }
+
+    /**
+     * select the sentences which may contain the query words; the sentences which may contain
+     * the most query words are preferred.
+     * @param queryhashes the word hashes of the query, may be null
+     * @param max the maximum number of sentences
+     * @return the selected sentences in document order. If no sentence matches or no query
+     *         hashes are given, the first sentences of the text are returned
+     */
+    public List<StringBuilder> candidates(final HandleSet queryhashes, final int max) {
+        final int n = this.offsets.length;
+        final List<StringBuilder> result = new ArrayList<StringBuilder>(Math.min(n, max));
+        final int[] scores = new int[n];
+        int matching = 0;
+        if (queryhashes != null && !queryhashes.isEmpty()) {
+            final long[] querySignatures = new long[queryhashes.size()];
+            int q = 0;
+            for (final byte[] hash: queryhashes) querySignatures[q++] = signature(hash);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < q; j++) {
+                    if ((this.signatures[i] & querySignatures[j]) == querySignatures[j]) scores[i]++;
+                }
+                if (scores[i] > 0) matching++;
+            }
+        }
+        if (matching == 0) {
+            for (int i = 0; i < n && i < max; i++) result.add(sentence(i));
+            return result;
+        }
+        // find the score limit which selects at most max sentences, prefer earlier sentences on equal score
+        final int[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        final int limit = matching > max ? sorted[n - max] : 1;
+        int above = 0;
+        for (int i = 0; i < n; i++) if (scores[i] > limit) above++;
+        int equal = max - above;
+        for (int i = 0; i < n && result.size() < max; i++) {
+            if (scores[i] > limit) {
+                result.add(sentence(i));
+            } else if (scores[i] == limit && equal > 0) {
+                result.add(sentence(i));
+                equal--;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the sentences as a byte array
+     */
+    public byte[] encode() {
+        final byte[] t = UTF8.getBytes(this.text);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(6 + this.offsets.length * 12 + t.length);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeByte(this.truncated ? 1 : 0);
+            out.writeInt(this.offsets.length);
+            for (int i = 0; i < this.offsets.length; i++) {
+                out.writeInt(this.offsets[i]);
+                out.writeLong(this.signatures[i]);
+            }
+            out.write(t);
+            out.flush();
+        } catch (final IOException e) {
+            // a ByteArrayOutputStream does not throw IOExceptions
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param b a record as produced by {@link #encode()}
+     * @return the sentences
+     * @throws IOException if the record is not valid
+     */
+    public static SnippetSentences decode(final byte[] b) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(b));
+        final byte version = in.readByte();
+        if (version != VERSION) throw new IOException("unsupported snippet sentences version " + version);
+        final boolean truncated = in.readByte() != 0;
+        final int count = in.readInt();
+        final int header = 6 + count * 12;
+        if (count < 0 || header > b.length) throw new IOException("bad sentence count " + count);
+        final int[] offsets = new int[count];
+        final long[] signatures = new long[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.readInt();
+            signatures[i] = in.readLong();
+        }
+        final String text = UTF8.String(b, header, b.length - header);
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < 0 || offsets[i] > text.length() || (i > 0 && offsets[i] < offsets[i - 1])) {
+                throw new IOException("bad sentence offset " + offsets[i]);
+            }
+        }
+        return new SnippetSentences(text, offsets, signatures, truncated);
+    }
+
+}
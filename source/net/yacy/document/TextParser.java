@@ -91,6 +91,9 @@ public final class TextParser {
     private static final Map<String, Object> denyMime = new ConcurrentHashMap<String, Object>();
     private static final Map<String, Object> denyExtensionx = new ConcurrentHashMap<String, Object>();
 
+    /** runs the parsers in isolated worker pools with time and memory budgets */
+    private static final ParserExecutor executor = new ParserExecutor();
+
     static {
         initParser(new apkParser());
         initParser(new bzipParser());
@@ -129,6 +132,22 @@ public final class TextParser {
         initParser(genericXMLIdiom);
     }
 
+    /**
+     * @return the executor which runs the parsers, i.e. to read the parser statistics
+     */
+    public static ParserExecutor executor() {
+        return executor;
+    }
+
+    /**
+     * set the budget of a single parse
+     * @param timeout the wall-clock time limit in milliseconds, 0 for no limit
+     * @param maxAllocation the maximum number of heap bytes allocated by one parse, 0 for no limit
+     */
+    public static void setParserBudget(final long timeout, final long maxAllocation) {
+        executor.setBudget(timeout, maxAllocation);
+    }
+
     public static Set<Parser> parsers() {
         final Set<Parser> c = new HashSet<Parser>();
         for (Set<Parser> pl: ext2parser.values()) c.addAll(pl);
@@ -332,6 +351,9 @@ public final class TextParser {
 					try {
 						return parseSource(location, mimeType, parser, charset, ignore_class_name, scraper, timezoneOffset,
 								nonCloseInputStream, maxLinks, maxBytes);
+					} catch (ParserExecutor.BudgetExceededFailure e) {
+						/* the cancelled parser may still hold the stream : do not try another parser on it */
+						throw e;
 					} catch (Parser.Failure e) {
 						/* Try to reset the marked stream. If the failed parser has consumed too many bytes : 
 						 * too bad, the marks is invalid and process fails now with an IOException */
@@ -488,21 +510,17 @@ public final class TextParser {
         assert parser != null;
 
         if (AbstractParser.log.isFine()) AbstractParser.log.fine("Parsing " + location + " with mimeType '" + mimeType + "' and file extension '" + fileExt + "'.");
-        try {
-            final Document[] docs;
-            if(parser.isParseWithLimitsSupported()) {
-            	docs = parser.parseWithLimits(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, sourceStream, maxLinks, maxBytes);
-            } else {
-            	/* Parser do not support partial parsing within limits : let's control it here*/
-    			InputStream limitedSource = new StrictLimitInputStream(sourceStream, maxBytes);
-            	docs = parser.parse(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, limitedSource);
+        return executor.execute(parser, mimeType, location, sourceStream, new ParserExecutor.Job() {
+            @Override
+            public Document[] parse(final InputStream source) throws Exception {
+                if(parser.isParseWithLimitsSupported()) {
+                	return parser.parseWithLimits(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, source, maxLinks, maxBytes);
+                }
+                /* Parser do not support partial parsing within limits : let's control it here*/
+                InputStream limitedSource = new StrictLimitInputStream(source, maxBytes);
+                return parser.parse(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, limitedSource);
             }
-            return docs;
-        } catch(Parser.Failure e) {
-        	throw e;
-        } catch (final Exception e) {
-            throw new Parser.Failure("parser failed: " + parser.getName(), location);
-        }
+        });
     }
 
     /**
@@ -539,8 +557,6 @@ public final class TextParser {
 
         Document[] docs = null;
         final Map<Parser, Parser.Failure> failedParser = new HashMap<Parser, Parser.Failure>();
-        String origName = Thread.currentThread().getName();
-        Thread.currentThread().setName("parsing + " + location.toString()); // set a name to get the address in Thread Dump
         for (final Parser parser: parsers) {
             if (MemoryControl.request(sourceArray.length * 6, false)) {
             	ByteArrayInputStream bis;
@@ -551,15 +567,19 @@ public final class TextParser {
             	    bis = new ByteArrayInputStream(sourceArray);
             	}
                 try {
-                	if(parser.isParseWithLimitsSupported()) {
-                		docs = parser.parseWithLimits(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, bis, maxLinks, maxBytes);
-                	} else {
-                        /* Partial parsing is not supported by this parser : check content length now */
-                       	if(sourceArray.length > maxBytes) {
-                       		throw new Parser.Failure("Content size is over maximum size of " + maxBytes + "", location);		
-                       	}
-                		docs = parser.parse(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, bis);
-                	}
+                    /* Partial parsing is not supported by this parser : check content length now */
+                    if(!parser.isParseWithLimitsSupported() && sourceArray.length > maxBytes) {
+                        throw new Parser.Failure("Content size is over maximum size of " + maxBytes + "", location);
+                    }
+                    docs = executor.execute(parser, mimeType, location, bis, new ParserExecutor.Job() {
+                        @Override
+                        public Document[] parse(final InputStream source) throws Exception {
+                            if(parser.isParseWithLimitsSupported()) {
+                                return parser.parseWithLimits(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, source, maxLinks, maxBytes);
+                            }
+                            return parser.parse(location, mimeType, documentCharset, ignore_class_name, scraper, timezoneOffset, source);
+                        }
+                    });
                 } catch (final Parser.Failure e) {
 					if(parser instanceof gzipParser && e.getCause() instanceof GZIPOpeningStreamException && 
 							(parsers.size() == 1 || (parsers.size() == 2 && parsers.contains(genericIdiom)))) {
@@ -606,7 +626,6 @@ public final class TextParser {
                 if (docs != null) break;
             }
         }
-        Thread.currentThread().setName(origName);
 
         if (docs == null) {
             if (failedParser.isEmpty()) {
@@ -40,7 +40,9 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -52,6 +54,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.zip.GZIPInputStream;
 
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.AnchorURL;
 import net.yacy.cora.document.id.DigestURL;
@@ -61,6 +64,9 @@ import net.yacy.cora.protocol.http.HTTPClient;
 import net.yacy.cora.util.ByteBuffer;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.NumberTools;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.retrieval.Response;
 import net.yacy.data.wiki.WikiCode;
 import net.yacy.data.wiki.WikiParser;
 import net.yacy.document.Document;
@@ -69,6 +75,8 @@ import net.yacy.document.TextParser;
 import net.yacy.document.VocabularyScraper;
 import net.yacy.document.content.SurrogateReader;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
+import net.yacy.search.IndexingQueueEntry;
+import net.yacy.search.Switchboard;
 
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 
@@ -87,11 +95,13 @@ public class MediawikiImporter extends Thread implements Importer {
     private static final byte[] pagestartb = UTF8.getBytes(pagestart);
     private static final byte[] pageendb = UTF8.getBytes(pageend);
     private static final int    docspermbinxmlbz2 = 800;  // documents per megabyte in a xml.bz2 mediawiki dump
+    private static final int    directbatchsize = 100;    // number of records handed over to the storage stage at once in direct mode
 
     public static Importer job; // if started from a servlet, this object is used to store the thread
 
     public    MultiProtocolURL sourcefile;
     public    File targetdir;
+    private   final Switchboard sb;
     public    int count;
     private   long start;
     private   final long docsize;
@@ -100,12 +110,33 @@ public class MediawikiImporter extends Thread implements Importer {
     private   String errorMessage;
 
 
+    /**
+     * create an importer which writes the articles as surrogate xml files into the target directory
+     * @param sourcefile the dump file
+     * @param targetdir the target directory, i.e. the surrogates input path
+     */
     public MediawikiImporter(final MultiProtocolURL sourcefile, final File targetdir) {
+        this(sourcefile, targetdir, null);
+    }
+
+    /**
+     * create an importer which hands the articles over to the index directly:
+     * the documents are condensed in memory by the converter threads and passed to the storage stage
+     * of the indexing queue without writing and re-reading surrogate xml files
+     * @param sourcefile the dump file
+     * @param sb the switchboard which stores the documents
+     */
+    public MediawikiImporter(final MultiProtocolURL sourcefile, final Switchboard sb) {
+        this(sourcefile, null, sb);
+    }
+
+    private MediawikiImporter(final MultiProtocolURL sourcefile, final File targetdir, final Switchboard sb) {
     	super("MediawikiImporter(" + sourcefile != null ? sourcefile.toNormalform(true) : "null sourcefile" +")");
     	this.sourcefile = sourcefile;
     	this.docsize = sourcefile.length();
     	this.approxdocs = (int) (this.docsize * docspermbinxmlbz2 / 1024L / 1024L);
     	this.targetdir = targetdir;
+    	this.sb = sb;
         this.count = 0;
         this.start = 0;
         this.hostport = null;
@@ -183,10 +214,10 @@ public class MediawikiImporter extends Thread implements Importer {
             final convertConsumer[] consumers = new convertConsumer[threads];
             final Future<?>[] consumerResults = (Future<?>[]) Array.newInstance(Future.class, threads);
             for (int i = 0; i < threads; i++) {
-                consumers[i] = new convertConsumer(in, out, poison);
+                consumers[i] = new convertConsumer(in, out, poison, this.sb);
                 consumerResults[i] = service.submit(consumers[i]);
             }
-            final convertWriter   writer = new convertWriter(out, poison, this.targetdir, targetstub);
+            final Callable<Integer> writer = this.sb == null ? new convertWriter(out, poison, this.targetdir, targetstub) : new directWriter(out, poison, this.sb);
             final Future<Integer> writerResult = service.submit(writer);
 
             wikiparserrecord record;
@@ -517,6 +548,7 @@ public class MediawikiImporter extends Thread implements Importer {
         String source, html, hostport, urlStub;
         AnchorURL url;
         Document document;
+        IndexingQueueEntry entry;
         public wikiparserrecord(final String hostport, final String urlStub, final String title, final StringBuilder sb) {
             this.title = title;
             this.hostport = hostport;
@@ -543,6 +575,36 @@ public class MediawikiImporter extends Thread implements Importer {
 			    ConcurrentLog.logException(e1);
 			}
         }
+        /**
+         * create the indexing queue entry of the document as the condensement and web structure analysis
+         * stages of the indexing queue would do it, but on the current thread
+         * @param sb the switchboard
+         */
+        public void genIndexEntry(final Switchboard sb) {
+            final Response response = genResponse(ASCII.getBytes(sb.peers.mySeed().hash), sb.crawler.defaultSurrogateProfile);
+            IndexingQueueEntry queueEntry = sb.condenseDocument(new IndexingQueueEntry(response, new Document[] {this.document}, null));
+            if (queueEntry.condenser != null) queueEntry = sb.webStructureAnalysis(queueEntry);
+            this.entry = queueEntry;
+        }
+        /**
+         * create the response of the parsed document like the surrogate reader does it for a surrogate file:
+         * the date of the document is the modification date of the parsed article, not the time of the import
+         * @param initiator the hash of the peer
+         * @param profile the crawl profile of the surrogates
+         * @return a response without content and header
+         */
+        public Response genResponse(final byte[] initiator, final CrawlProfile profile) {
+            final Request request = new Request(
+                    initiator,
+                    this.url,
+                    null,
+                    this.title,
+                    this.document.getLastModified(),
+                    profile.handle(),
+                    0,
+                    profile.timezoneOffset());
+            return new Response(request, null, null, profile, false, null);
+        }
         public void writeXML(final OutputStreamWriter os) throws IOException {
             this.document.writeXML(os);
         }
@@ -649,11 +711,16 @@ public class MediawikiImporter extends Thread implements Importer {
 
         private final BlockingQueue<wikiparserrecord> in, out;
         private final wikiparserrecord poison;
+        private final Switchboard sb;
 
-        public convertConsumer(final BlockingQueue<wikiparserrecord> in, final BlockingQueue<wikiparserrecord> out, final wikiparserrecord poison) {
+        /**
+         * @param sb the switchboard in direct mode, null if the records are written to surrogate files
+         */
+        public convertConsumer(final BlockingQueue<wikiparserrecord> in, final BlockingQueue<wikiparserrecord> out, final wikiparserrecord poison, final Switchboard sb) {
             this.poison = poison;
             this.in = in;
             this.out = out;
+            this.sb = sb;
         }
 
         @Override
@@ -669,6 +736,11 @@ public class MediawikiImporter extends Thread implements Importer {
                     try {
                         record.genHTML();
                         record.genDocument();
+                        if (record.document == null) continue;
+                        if (this.sb != null) {
+                            record.genIndexEntry(this.sb);
+                            if (record.entry.condenser == null) continue;
+                        }
                         this.out.put(record);
                     } catch (final RuntimeException e) {
                         ConcurrentLog.logException(e);
@@ -769,6 +841,54 @@ public class MediawikiImporter extends Thread implements Importer {
             return Integer.valueOf(0);
         }
 
+    }
+
+    /**
+     * the writer of the direct mode: hands the condensed records over to the storage stage of the indexing queue
+     */
+    private static class directWriter implements Callable<Integer> {
+
+        private final BlockingQueue<wikiparserrecord> in;
+        private final wikiparserrecord poison;
+        private final Switchboard sb;
+
+        public directWriter(
+                final BlockingQueue<wikiparserrecord> in,
+                final wikiparserrecord poison,
+                final Switchboard sb) {
+            this.poison = poison;
+            this.in = in;
+            this.sb = sb;
+        }
+
+        @Override
+        public Integer call() {
+            final List<wikiparserrecord> batch = new ArrayList<wikiparserrecord>(directbatchsize);
+            int rc = 0;
+            try {
+                boolean terminated = false;
+                while (!terminated) {
+                    batch.add(this.in.take());
+                    this.in.drainTo(batch, directbatchsize - 1);
+                    for (final wikiparserrecord record: batch) {
+                        if (record == this.poison) {
+                            ConcurrentLog.info("WIKITRANSLATION", "directWriter / got poison");
+                            terminated = true;
+                            break;
+                        }
+                        // the storage processor blocks when its queue is full, which slows down the converters
+                        this.sb.indexingStorageProcessor.enQueue(record.entry);
+                        rc++;
+                    }
+                    batch.clear();
+                }
+            } catch (final InterruptedException e) {
+                ConcurrentLog.logException(e);
+            }
+            ConcurrentLog.info("WIKITRANSLATION", "*** directWriter has terminated after " + rc + " records");
+            return Integer.valueOf(rc);
+        }
+
     }
 
 	public static void main(final String[] s) {
@@ -0,0 +1,639 @@
+/**
+ *  SurrogateIngestion
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This is a part of YaCy, a peer-to-peer based web search engine
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.document.importer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.solr.common.SolrInputDocument;
+import org.noggit.JSONParser;
+import org.noggit.JSONUtil;
+import org.noggit.ObjectBuilder;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.AnchorURL;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.Switchboard;
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * Ingestion of the files in the surrogates input path.
+ * Several files are processed at the same time, each one by a thread of a file pool.
+ * Files in the jsonlist/flatjson format (as generated with yacy_grid_parser) are decoded with a streaming
+ * json parser; the decoded objects are transformed into solr documents by a worker pool which is shared
+ * by all files and the documents are written in batches into the fulltext index by writer threads.
+ * Both the queue of the worker pool and the queue of the writers are bounded: a reader which is faster
+ * than the workers transforms documents itself and the workers wait if the index is not fast enough.
+ * All other surrogate formats are processed with Switchboard.processSurrogate inside of the file pool.
+ * A json file is moved to the surrogates output path if all its documents were handled; if documents could
+ * not be written into the index, the file is moved to the {@link #FAILED_DIR} directory of the input path
+ * instead, from where it can be moved back into the input path to process it again.
+ */
+public class SurrogateIngestion {
+
+    private final static ConcurrentLog log = new ConcurrentLog("SurrogateIngestion");
+
+    /** the maximum number of documents written to the index at once */
+    private static final int BATCH_SIZE = 100;
+    /** the number of finished files which are kept for the progress report */
+    private static final int HISTORY_SIZE = 20;
+    /** the directory inside of the input path for files with documents which could not be written */
+    public static final String FAILED_DIR = "failed";
+
+    private static final Item POISON_ITEM = new Item(null, null);
+
+    private static final class Item {
+        private final SolrInputDocument document;
+        private final FileIngestion file;
+        private Item(final SolrInputDocument document, final FileIngestion file) {
+            this.document = document;
+            this.file = file;
+        }
+    }
+
+    /**
+     * the target of the transformed documents
+     */
+    interface DocumentWriter {
+        public void putDocuments(Collection<SolrInputDocument> documents) throws IOException;
+    }
+
+    private final Switchboard sb;
+    private final File inPath, outPath;
+    private final DocumentWriter writer;
+    private final int concurrentFiles;
+    private final ThreadPoolExecutor filePool;
+    private final ThreadPoolExecutor workerPool;
+    private final BlockingQueue<Item> documents;
+    private final Thread[] writers;
+    private final Map<String, FileIngestion> active;
+    private final LinkedList<FileIngestion> finished;
+    private volatile boolean closed;
+
+    /**
+     * @param sb the switchboard
+     * @param concurrentFiles the maximum number of files processed at the same time
+     * @param workers the number of threads transforming json objects into solr documents, 0 for the number of processors
+     * @param queueSize the capacity of the queues in front of the workers and in front of the index writers
+     */
+    public SurrogateIngestion(final Switchboard sb, final int concurrentFiles, final int workers, final int queueSize) {
+        this(sb, sb.surrogatesInPath, sb.surrogatesOutPath, new DocumentWriter() {
+            @Override
+            public void putDocuments(final Collection<SolrInputDocument> documents) throws IOException {
+                sb.index.fulltext().putDocuments(documents);
+            }
+        }, concurrentFiles, workers, queueSize);
+    }
+
+    /**
+     * @param sb the switchboard or null if only json files are processed
+     * @param inPath the surrogates input path
+     * @param outPath the surrogates output path
+     * @param writer the target of the documents of json files
+     */
+    SurrogateIngestion(final Switchboard sb, final File inPath, final File outPath, final DocumentWriter writer,
+            final int concurrentFiles, final int workers, final int queueSize) {
+        this.sb = sb;
+        this.inPath = inPath;
+        this.outPath = outPath;
+        this.writer = writer;
+        this.concurrentFiles = Math.max(1, concurrentFiles);
+        final int workerCount = workers <= 0 ? Runtime.getRuntime().availableProcessors() : workers;
+        final int capacity = Math.max(BATCH_SIZE, queueSize);
+        this.filePool = new ThreadPoolExecutor(this.concurrentFiles, this.concurrentFiles, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory("SurrogateIngestion.file-"));
+        this.filePool.allowCoreThreadTimeOut(true);
+        // when the queue is full the reader thread transforms the document itself, which slows down the reading
+        this.workerPool = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(capacity), threadFactory("SurrogateIngestion.convert-"), new ThreadPoolExecutor.CallerRunsPolicy());
+        this.workerPool.allowCoreThreadTimeOut(true);
+        this.documents = new ArrayBlockingQueue<Item>(capacity);
+        this.active = new LinkedHashMap<String, FileIngestion>();
+        this.finished = new LinkedList<FileIngestion>();
+        this.closed = false;
+        this.writers = new Thread[this.concurrentFiles];
+        for (int i = 0; i < this.writers.length; i++) {
+            this.writers[i] = new Thread("SurrogateIngestion.write-" + i) {
+                @Override
+                public void run() {
+                    write();
+                }
+            };
+            this.writers[i].setDaemon(true); // an abandoned ingestion must not keep the JVM alive
+            this.writers[i].start();
+        }
+    }
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, prefix + this.count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * @param name the name of a file in the surrogates input path
+     * @return true if the file is processed by this service
+     */
+    public static boolean isJson(final String name) {
+        return name.endsWith(".jsonlist") || name.endsWith(".flatjson");
+    }
+
+    /**
+     * start the processing of a file in the surrogates input path
+     * @param name the file name
+     * @return true if the file was submitted, false if it is already processed or if all file slots are busy
+     */
+    public synchronized boolean submit(final String name) {
+        if (this.closed || this.active.size() >= this.concurrentFiles || this.active.containsKey(name)) return false;
+        final File infile = new File(this.inPath, name);
+        if (!infile.isFile() || !infile.canWrite() || !infile.canRead()) return false;
+        final FileIngestion file = new FileIngestion(infile, new File(this.outPath, name));
+        this.active.put(name, file);
+        try {
+            this.filePool.execute(file);
+        } catch (final RejectedExecutionException e) {
+            this.active.remove(name);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if no more files can be submitted
+     */
+    public synchronized boolean isBusy() {
+        return this.active.size() >= this.concurrentFiles;
+    }
+
+    /**
+     * @return the number of files which are processed at the moment
+     */
+    public synchronized int activeFiles() {
+        return this.active.size();
+    }
+
+    /**
+     * @return the number of documents waiting to be written into the index
+     */
+    public int writeQueueSize() {
+        return this.documents.size();
+    }
+
+    /**
+     * @return the number of json objects waiting to be transformed
+     */
+    public int workerQueueSize() {
+        return this.workerPool.getQueue().size();
+    }
+
+    /**
+     * @return the files which are processed at the moment and the latest finished files, most recent first
+     */
+    public synchronized List<FileIngestion> files() {
+        final List<FileIngestion> files = new ArrayList<FileIngestion>(this.active.size() + this.finished.size());
+        files.addAll(this.active.values());
+        files.addAll(this.finished);
+        return files;
+    }
+
+    private synchronized void finish(final FileIngestion file) {
+        this.active.remove(file.infile.getName());
+        this.finished.addFirst(file);
+        while (this.finished.size() > HISTORY_SIZE) this.finished.removeLast();
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (this.closed) return;
+            this.closed = true;
+        }
+        this.filePool.shutdownNow();
+        this.workerPool.shutdownNow();
+        try {
+            this.filePool.awaitTermination(10, TimeUnit.SECONDS);
+            this.workerPool.awaitTermination(10, TimeUnit.SECONDS);
+            for (int i = 0; i < this.writers.length; i++) this.documents.put(POISON_ITEM);
+            for (final Thread writer: this.writers) writer.join(10000);
+        } catch (final InterruptedException e) {
+        }
+    }
+
+    /**
+     * the loop of a writer thread: take documents from the queue and write them in batches
+     */
+    private void write() {
+        final List<Item> batch = new ArrayList<Item>(BATCH_SIZE);
+        final List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(BATCH_SIZE);
+        try {
+            Item item;
+            while ((item = this.documents.take()) != POISON_ITEM) {
+                batch.add(item);
+                this.documents.drainTo(batch, BATCH_SIZE - 1);
+                boolean poison = false;
+                for (final Item i: batch) {
+                    if (i == POISON_ITEM) poison = true; else docs.add(i.document);
+                }
+                boolean success = true;
+                try {
+                    this.writer.putDocuments(docs);
+                } catch (final IOException e) {
+                    log.warn("could not write " + docs.size() + " surrogate documents: " + e.getMessage());
+                    success = false;
+                }
+                for (final Item i: batch) {
+                    if (i != POISON_ITEM) i.file.written(success);
+                }
+                batch.clear();
+                docs.clear();
+                if (poison) break;
+            }
+        } catch (final InterruptedException e) {
+        }
+    }
+
+    private boolean shallTerminate() {
+        return this.sb != null && this.sb.shallTerminate();
+    }
+
+    /**
+     * transform a json object of the yacy_grid_parser output into a solr document
+     * see https://github.com/yacy/yacy_grid_parser/blob/master/README.md
+     * @param json the decoded json object with lists, numbers, booleans, strings and objects as values
+     * @return the solr document
+     * @throws MalformedURLException if an url can not be parsed
+     */
+    public static SolrInputDocument toSurrogate(final Map<String, Object> json) throws MalformedURLException {
+        final SolrInputDocument surrogate = new SolrInputDocument();
+        for (final Map.Entry<String, Object> entry: json.entrySet()) {
+            final String key = entry.getKey();
+            final Object o = entry.getValue();
+            if (o == null) continue;
+            if (o instanceof Collection) {
+                final Collection<?> a = (Collection<?>) o;
+                // patch altered yacy grid schema (yacy grid does not split url lists into protocol and urlstub)
+                if (key.equals("inboundlinks_sxt")) {
+                    addLinks(surrogate, a, CollectionSchema.inboundlinks_urlstub_sxt, CollectionSchema.inboundlinks_protocol_sxt);
+                } else if (key.equals("outboundlinks_sxt")) {
+                    addLinks(surrogate, a, CollectionSchema.outboundlinks_urlstub_sxt, CollectionSchema.outboundlinks_protocol_sxt);
+                } else if (key.equals("images_sxt")) {
+                    addLinks(surrogate, a, CollectionSchema.images_urlstub_sxt, CollectionSchema.images_protocol_sxt);
+                } else {
+                    final List<Object> list = new ArrayList<>(a.size());
+                    for (final Object v: a) list.add(v instanceof Long && (Long) v == ((Long) v).intValue() ? Integer.valueOf(((Long) v).intValue()) : v);
+                    CollectionSchema.valueOf(key).add(surrogate, list);
+                }
+            } else if (key.equals("url_s")) {
+                // patch yacy grid altered schema (yacy grid does not have IDs any more, but they can be re-computed here)
+                final DigestURL durl = new DigestURL(o.toString());
+                final String id = ASCII.String(durl.hash());
+                surrogate.setField(CollectionSchema.sku.getSolrFieldName(), durl.toNormalform(true));
+                surrogate.setField(CollectionSchema.id.getSolrFieldName(), id);
+                surrogate.setField(CollectionSchema.host_id_s.getSolrFieldName(), id.substring(6));
+            } else if (key.equals("referrer_url_s")) {
+                final DigestURL durl = new DigestURL(o.toString());
+                surrogate.setField(CollectionSchema.referrer_id_s.getSolrFieldName(), ASCII.String(durl.hash()));
+            } else {
+                surrogate.setField(key, o instanceof Map ? JSONUtil.toJSON(o, -1) : o.toString());
+            }
+        }
+        return surrogate;
+    }
+
+    private static void addLinks(final SolrInputDocument surrogate, final Collection<?> links, final CollectionSchema urlstubField, final CollectionSchema protocolField) throws MalformedURLException {
+        final List<Object> urlstub = new ArrayList<>(links.size());
+        final List<Object> protocol = new ArrayList<>(links.size());
+        for (final Object link: links) {
+            final AnchorURL b = new AnchorURL((String) link);
+            urlstub.add(b.urlstub(true, true));
+            protocol.add(b.getProtocol());
+        }
+        urlstubField.add(surrogate, urlstub);
+        protocolField.add(surrogate, protocol);
+    }
+
+    /**
+     * read a stream of json objects and hand each object to a consumer
+     * @param reader the json source, objects may be separated by line breaks or white space
+     * @param consumer the consumer of the decoded objects
+     * @return the number of decoded objects
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static int decode(final Reader reader, final JsonConsumer consumer) throws IOException {
+        final JSONParser parser = new JSONParser(reader);
+        int count = 0;
+        int event;
+        while ((event = parser.nextEvent()) != JSONParser.EOF) {
+            if (event != JSONParser.OBJECT_START) throw new IOException("json object expected at position " + parser.getPosition());
+            final Object o = new ObjectBuilder(parser).getVal();
+            if (!consumer.consume((Map<String, Object>) o)) break;
+            count++;
+        }
+        return count;
+    }
+
+    public interface JsonConsumer {
+        /**
+         * @param json a decoded json object
+         * @return false to stop the decoding
+         */
+        public boolean consume(Map<String, Object> json);
+    }
+
+    /**
+     * the processing of one surrogate file with its progress
+     */
+    public class FileIngestion implements Importer {
+
+        private final File infile, outfile;
+        private final long size;
+        private final AtomicInteger pending, count, failed, unwritten;
+        private volatile CountingInputStream input;
+        private volatile long startTime, endTime;
+        private volatile String status;
+        private volatile boolean alive, moved;
+
+        private FileIngestion(final File infile, final File outfile) {
+            this.infile = infile;
+            this.outfile = outfile;
+            this.size = infile.length();
+            this.pending = new AtomicInteger(0);
+            this.count = new AtomicInteger(0);
+            this.failed = new AtomicInteger(0);
+            this.unwritten = new AtomicInteger(0);
+            this.input = null;
+            this.startTime = System.currentTimeMillis();
+            this.endTime = 0;
+            this.status = "queued";
+            this.alive = true;
+            this.moved = false;
+        }
+
+        @Override
+        public String source() {
+            return this.infile.getName();
+        }
+
+        /**
+         * @return the number of documents written into the index
+         */
+        @Override
+        public int count() {
+            return this.count.get();
+        }
+
+        /**
+         * @return the number of documents which could not be transformed or written
+         */
+        public int failed() {
+            return this.failed.get();
+        }
+
+        /**
+         * @return the number of documents which could not be written into the index
+         */
+        public int unwritten() {
+            return this.unwritten.get();
+        }
+
+        /**
+         * @return the size of the file in bytes
+         */
+        public long size() {
+            return this.size;
+        }
+
+        /**
+         * @return the number of bytes read from the file, -1 if the file is not read by this service
+         */
+        public long consumed() {
+            final CountingInputStream in = this.input;
+            if (in == null) return this.endTime > 0 && this.moved ? this.size : -1;
+            return in.getByteCount();
+        }
+
+        @Override
+        public int speed() {
+            if (this.count.get() == 0) return 0;
+            return (int) (this.count.get() / Math.max(1L, runningTime()));
+        }
+
+        /**
+         * @return the number of bytes read per second, -1 if unknown
+         */
+        public long throughput() {
+            final long consumed = consumed();
+            if (consumed < 0) return -1;
+            return consumed / Math.max(1L, runningTime());
+        }
+
+        /**
+         * @return the time in seconds since the start or the processing time of a finished file
+         */
+        @Override
+        public long runningTime() {
+            return ((this.endTime > 0 ? this.endTime : System.currentTimeMillis()) - this.startTime) / 1000L;
+        }
+
+        /**
+         * @return the estimated remaining time in seconds computed from the file size and the bytes read so far
+         */
+        @Override
+        public long remainingTime() {
+            final long consumed = consumed();
+            if (consumed <= 0 || this.endTime > 0) return 0;
+            return runningTime() * Math.max(0, this.size - consumed) / consumed;
+        }
+
+        @Override
+        public String status() {
+            return this.status;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return this.alive;
+        }
+
+        @Override
+        public void start() {
+            SurrogateIngestion.this.filePool.execute(this);
+        }
+
+        private void written(final boolean success) {
+            if (success) {
+                this.count.incrementAndGet();
+            } else {
+                this.failed.incrementAndGet();
+                this.unwritten.incrementAndGet();
+            }
+            done();
+        }
+
+        private void done() {
+            if (this.pending.decrementAndGet() == 0) synchronized (this) {this.notifyAll();}
+        }
+
+        @Override
+        public void run() {
+            this.startTime = System.currentTimeMillis();
+            this.status = "running";
+            try {
+                if (isJson(this.infile.getName())) {
+                    this.moved = ingestJson();
+                } else {
+                    this.moved = SurrogateIngestion.this.sb.processSurrogate(this.infile.getName());
+                }
+                if (this.moved) {
+                    this.status = "finished";
+                } else if (!this.status.startsWith("failed")) {
+                    this.status = SurrogateIngestion.this.shallTerminate() || Thread.currentThread().isInterrupted() ? "interrupted" : "failed";
+                }
+            } catch (final RuntimeException e) {
+                log.warn("error processing surrogate " + this.infile, e);
+                this.status = "failed: " + e.getMessage();
+            } finally {
+                this.endTime = System.currentTimeMillis();
+                this.alive = false;
+                finish(this);
+            }
+        }
+
+        /**
+         * decode the json objects of the file, transform them concurrently and wait until all documents are written
+         * @return true if the file was moved to the surrogates output path; false if the processing was interrupted
+         * or if documents could not be written, then the file is moved to the failed directory
+         */
+        private boolean ingestJson() {
+            final String name = this.infile.getName();
+            try (final CountingInputStream in = new CountingInputStream(new BufferedInputStream(new FileInputStream(this.infile), 65536));
+                 final Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                this.input = in;
+                decode(reader, new JsonConsumer() {
+                    @Override
+                    public boolean consume(final Map<String, Object> json) {
+                        if (SurrogateIngestion.this.shallTerminate() || Thread.currentThread().isInterrupted()) return false;
+                        if (json.isEmpty() || (json.size() == 1 && json.containsKey("index"))) return true;
+                        FileIngestion.this.pending.incrementAndGet();
+                        try {
+                            SurrogateIngestion.this.workerPool.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    transform(json);
+                                }
+                            });
+                        } catch (final RejectedExecutionException e) {
+                            FileIngestion.this.failed.incrementAndGet();
+                            done();
+                            return false;
+                        }
+                        return true;
+                    }
+                });
+            } catch (final IOException | JSONParser.ParseException e) {
+                log.warn("IO Error processing flatjson file " + this.infile + ": " + e.getMessage());
+                this.input = null;
+                awaitPending();
+                return false;
+            }
+            this.input = null;
+            if (!awaitPending() || SurrogateIngestion.this.shallTerminate()) return false;
+            if (this.unwritten.get() > 0) {
+                // the index did not accept all documents; keep the file to process it again
+                final File failedPath = new File(SurrogateIngestion.this.inPath, FAILED_DIR);
+                failedPath.mkdirs();
+                final File failedfile = new File(failedPath, name);
+                if (failedfile.exists()) failedfile.delete(); // an older attempt of the same file
+                final boolean failedRenamed = this.infile.renameTo(failedfile);
+                log.warn("could not write " + this.unwritten.get() + " documents of surrogate " + name + ", "
+                        + (failedRenamed ? "moved to " + failedfile : "left in the input path"));
+                this.status = "failed: " + this.unwritten.get() + " documents not written";
+                return false;
+            }
+            final boolean renamed = this.infile.renameTo(this.outfile);
+            if (renamed) log.info("processed surrogate " + name + ": " + this.count.get() + " documents in " + runningTime() + " seconds");
+            return renamed;
+        }
+
+        private void transform(final Map<String, Object> json) {
+            try {
+                final SolrInputDocument surrogate = toSurrogate(json);
+                SurrogateIngestion.this.documents.put(new Item(surrogate, this));
+            } catch (final MalformedURLException | RuntimeException e) {
+                log.warn("could not transform a document of " + this.infile.getName() + ": " + e.getMessage());
+                this.failed.incrementAndGet();
+                done();
+            } catch (final InterruptedException e) {
+                this.failed.incrementAndGet();
+                done();
+            }
+        }
+
+        /**
+         * wait until all documents of this file are written
+         * @return true if all documents are written, false if the wait was interrupted
+         */
+        private boolean awaitPending() {
+            synchronized (this) {
+                while (this.pending.get() > 0) {
+                    if (SurrogateIngestion.this.closed) return false;
+                    try {
+                        this.wait(1000);
+                    } catch (final InterruptedException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -222,7 +222,8 @@ public class Jetty9HttpServerImpl implements YaCyHttpServer {
         htrootContext.setSecurityHandler(securityHandler);
 
         // wrap all handlers
-        Handler crashHandler = new CrashProtectionHandler(server, allrequesthandlers);
+        // the search admission control classifies and sheds search requests before they are dispatched
+        Handler crashHandler = new CrashProtectionHandler(server, new SearchAdmissionHandler(server, allrequesthandlers));
         // check server access restriction and add InetAccessHandler if restrictions are needed
         // otherwise don't (to save performance)
         final String white = sb.getConfig("serverClient", "*");
@@ -0,0 +1,99 @@
+/**
+ *  SearchAdmissionHandler
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.http;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HandlerContainer;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import net.yacy.cora.protocol.Domains;
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.search.Switchboard;
+import net.yacy.search.query.SearchAdmission;
+
+/**
+ * Applies the search admission control to the search interfaces before the request is
+ * dispatched to the servlets: the requester is classified, overloaded requests are rejected
+ * with 503 and the degradation for all other search requests is attached to the request.
+ */
+public class SearchAdmissionHandler extends HandlerWrapper implements Handler, HandlerContainer {
+
+    /** seconds after which a rejected client may retry */
+    private static final String RETRY_AFTER = "10";
+
+    public SearchAdmissionHandler(final Server s, final Handler h) {
+        super();
+        this.setServer(s);
+        this.setHandler(h);
+    }
+
+    /**
+     * @param target the request path
+     * @return true if the path is a search interface
+     */
+    public static boolean isSearch(final String target) {
+        return target.startsWith("/yacysearch.")
+                || target.equals("/yacy/search.html")
+                || target.equals("/gsa/search")
+                || (target.startsWith("/solr/") && target.endsWith("/select"));
+    }
+
+    private static SearchAdmission.Priority priority(final String target, final HttpServletRequest request) {
+        if (target.startsWith("/yacy/")) return SearchAdmission.Priority.P2P;
+        if (request.getHeader(RequestHeader.AUTHORIZATION) != null) {
+            final Switchboard sb = Switchboard.getSwitchboard();
+            if (sb != null && sb.adminAuthenticated(new RequestHeader(request)) == 4) return SearchAdmission.Priority.API;
+        }
+        final String client = request.getRemoteAddr();
+        if (Domains.isLocalhost(client) || Domains.isIntranet(client)) return SearchAdmission.Priority.LOCAL;
+        return SearchAdmission.Priority.ANONYMOUS;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+            final HttpServletResponse response) throws IOException, ServletException {
+        if (!SearchAdmission.isEnabled() || !isSearch(target)) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        final SearchAdmission.Ticket ticket = SearchAdmission.admit(priority(target, request));
+        if (ticket.getDegradation() == SearchAdmission.Degradation.REJECT) {
+            response.setHeader("Retry-After", RETRY_AFTER);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The search service is overloaded. Please try again later.");
+            baseRequest.setHandled(true);
+            return;
+        }
+        request.setAttribute(SearchAdmission.ATTRIBUTE, ticket.getDegradation());
+        try {
+            super.handle(target, baseRequest, request, response);
+        } finally {
+            ticket.finish();
+        }
+    }
+}
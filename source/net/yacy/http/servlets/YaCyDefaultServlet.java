@@ -83,6 +83,7 @@ import net.yacy.data.InvalidURLLicenceException;
 import net.yacy.data.TransactionManager;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.peers.SearchStream;
 import net.yacy.peers.Seed;
 import net.yacy.peers.graphics.EncodedImage;
 import net.yacy.peers.operation.yacyBuildProperties;
@@ -1157,6 +1158,10 @@ public class YaCyDefaultServlet extends HttpServlet  {
 			while ((l = inStream.read(buffer)) > 0) {
 				response.getOutputStream().write(buffer, 0, l);
 				size += l;
+				/* The next read of a streamed search result computes new results : send what we have */
+				if (inStream instanceof SearchStream.Source && inStream.available() == 0) {
+					response.flushBuffer();
+				}
 			}
 			response.setContentLength(size);
 		} catch(IOException e){
@@ -1280,7 +1285,10 @@ public class YaCyDefaultServlet extends HttpServlet  {
                     String n = job.getKey();
                     byte[] v = job.getValue();
                     String filename = args.get(n);
-                    if (filename != null && filename.endsWith(".gz")) {
+                    if (filename != null && filename.endsWith(".bin")) {
+                        // binary content which is read by the servlet itself
+                        args.putFile(n, v);
+                    } else if (filename != null && filename.endsWith(".gz")) {
                         // transform this value into base64
                         String b64 = Base64Order.standardCoder.encode(v);
                         args.put(n + "$file", b64);
@@ -1305,6 +1313,10 @@ public class YaCyDefaultServlet extends HttpServlet  {
                                 String n = job.getKey();
                                 byte[] v = job.getValue();
                                 String filename = args.get(n);
+                                if (filename != null && filename.endsWith(".bin")) {
+                                    args.putFile(n, v);
+                                    continue;
+                                }
                                 String b64 = Base64Order.standardCoder.encode(v);
                                 synchronized (args) {
                                     args.put(n + "$file", b64);
@@ -33,12 +33,14 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -48,6 +50,7 @@ import java.util.regex.Pattern;
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.NaturalOrder;
 import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.LookAheadIterator;
@@ -72,6 +75,8 @@ public class Tables implements Iterable<String> {
     private final File location;
     private final ConcurrentHashMap<String, BEncodedHeap> tables;
     private final ConcurrentHashMap<String, TablesColumnIndex> cidx;
+    private final ConcurrentHashMap<String, Map<String, TablesSortedIndex.KeyType>> sortedIndexTypes; // table -> column -> type, declared or found on disk
+    private final ConcurrentHashMap<String, Map<String, TablesSortedIndex>> sortedIndexes; // table -> column -> open index
     private int keymaxlen;
 
     // use our own formatter to prevent concurrency locks with other processes
@@ -82,6 +87,8 @@ public class Tables implements Iterable<String> {
         if (!this.location.exists()) this.location.mkdirs();
         this.keymaxlen = keymaxlen;
         this.tables = new ConcurrentHashMap<String, BEncodedHeap>();
+        this.sortedIndexTypes = new ConcurrentHashMap<String, Map<String, TablesSortedIndex.KeyType>>();
+        this.sortedIndexes = new ConcurrentHashMap<String, Map<String, TablesSortedIndex>>();
         final String[] files = this.location.list();
         File file;
         // lazy initialization: do not open the database files here
@@ -93,10 +100,102 @@ public class Tables implements Iterable<String> {
                     continue;
                 }
             }
+            // remember existing sorted indexes; they are opened together with their table
+            final String[] sidx = TablesSortedIndex.parseFilename(f);
+            if (sidx != null) declareSortedIndex(sidx[0], sidx[1], TablesSortedIndex.KeyType.valueOf(sidx[2]));
         }
         this.cidx = new ConcurrentHashMap<String, TablesColumnIndex>();
     }
 
+    private void declareSortedIndex(final String tablename, final String column, final TablesSortedIndex.KeyType type) {
+        Map<String, TablesSortedIndex.KeyType> types = this.sortedIndexTypes.get(tablename);
+        if (types == null) {
+            types = new ConcurrentHashMap<String, TablesSortedIndex.KeyType>();
+            final Map<String, TablesSortedIndex.KeyType> t = this.sortedIndexTypes.putIfAbsent(tablename, types);
+            if (t != null) types = t;
+        }
+        types.put(column, type);
+    }
+
+    /**
+     * Create a persistent sorted index on a column of a table if it does not exist yet.
+     * The index is maintained by all insert, update and delete operations of this class and is
+     * used by the iterators which select or order rows by the column.
+     * Tables which are modified directly through their {@link BEncodedHeap} must not be indexed.
+     * @param tablename
+     * @param column
+     * @param type the ordering of the column values
+     * @throws IOException
+     */
+    public synchronized void ensureSortedIndex(final String tablename, final String column, final TablesSortedIndex.KeyType type) throws IOException {
+        final Map<String, TablesSortedIndex.KeyType> types = this.sortedIndexTypes.get(tablename);
+        final TablesSortedIndex.KeyType known = types == null ? null : types.get(column);
+        if (known == type) return;
+        if (known != null) {
+            // the index has a different type: drop it
+            final Map<String, TablesSortedIndex> indexes = this.sortedIndexes.get(tablename);
+            final TablesSortedIndex index = indexes == null ? null : indexes.remove(column);
+            if (index != null) index.delete(); else FileUtils.deletedelete(new File(this.location, TablesSortedIndex.filename(tablename, column, known)));
+        }
+        declareSortedIndex(tablename, column, type);
+        // if the table is already open, build the index now; otherwise it is opened with the table
+        final BEncodedHeap heap = this.tables.get(tablename);
+        if (heap != null) openSortedIndexes(tablename, heap);
+    }
+
+    /**
+     * @return the open sorted index of a column of a table or null if the column is not indexed
+     */
+    public TablesSortedIndex getSortedIndex(final String tablename, final String column) {
+        if (!this.sortedIndexTypes.containsKey(tablename)) return null;
+        try {
+            getHeap(tablename);
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+            return null;
+        }
+        final Map<String, TablesSortedIndex> indexes = this.sortedIndexes.get(tablename);
+        return indexes == null ? null : indexes.get(column);
+    }
+
+    public boolean hasSortedIndex(final String tablename, final String column) {
+        return getSortedIndex(tablename, column) != null;
+    }
+
+    private synchronized void openSortedIndexes(final String tablename, final BEncodedHeap heap) {
+        final Map<String, TablesSortedIndex.KeyType> types = this.sortedIndexTypes.get(tablename);
+        if (types == null) return;
+        Map<String, TablesSortedIndex> indexes = this.sortedIndexes.get(tablename);
+        if (indexes == null) indexes = new ConcurrentHashMap<String, TablesSortedIndex>();
+        for (final Map.Entry<String, TablesSortedIndex.KeyType> type: types.entrySet()) {
+            if (indexes.containsKey(type.getKey())) continue;
+            try {
+                indexes.put(type.getKey(), new TablesSortedIndex(this.location, tablename, type.getKey(), type.getValue(), this.keymaxlen, heap));
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+            }
+        }
+        this.sortedIndexes.put(tablename, indexes);
+    }
+
+    private void closeSortedIndexes(final String tablename) {
+        final Map<String, TablesSortedIndex> indexes = this.sortedIndexes.remove(tablename);
+        if (indexes == null) return;
+        for (final TablesSortedIndex index: indexes.values()) index.close();
+    }
+
+    /**
+     * @return the open sorted indexes of the table or null if the table has no index
+     */
+    private Map<String, TablesSortedIndex> sortedIndexes(final String tablename) {
+        final Map<String, TablesSortedIndex> indexes = this.sortedIndexes.get(tablename);
+        return indexes == null || indexes.isEmpty() ? null : indexes;
+    }
+
+    private static void updateSortedIndexes(final Map<String, TablesSortedIndex> indexes, final byte[] pk, final Map<String, byte[]> oldRow, final Map<String, byte[]> newRow) throws IOException {
+        for (final TablesSortedIndex index: indexes.values()) index.update(pk, oldRow, newRow);
+    }
+
     public TablesColumnIndex getIndex(final String tableName, TablesColumnIndex.INDEXTYPE indexType) throws TableColumnIndexException, IOException {
     	final TablesColumnIndex index;
     	switch(indexType) {
@@ -268,10 +367,12 @@ public class Tables implements Iterable<String> {
         final BEncodedHeap heap = this.tables.remove(tablename);
         if (heap == null) return;
         heap.close();
+        closeSortedIndexes(tablename);
     }
 
     public synchronized void close() {
         for (final BEncodedHeap heap: this.tables.values()) heap.close();
+        for (final String tablename: this.sortedIndexes.keySet()) closeSortedIndexes(tablename);
         this.tables.clear();
     }
     
@@ -294,6 +395,9 @@ public class Tables implements Iterable<String> {
             ConcurrentLog.logException(e);
         } finally {
             this.tables.remove(tablename);
+            // the indexes are rebuilt empty when the table is opened again
+            final Map<String, TablesSortedIndex> indexes = this.sortedIndexes.remove(tablename);
+            if (indexes != null) for (final TablesSortedIndex index: indexes.values()) index.delete();
         }
     }
 
@@ -320,6 +424,7 @@ public class Tables implements Iterable<String> {
         final File heapf = new File(this.location, table);
         heap = new BEncodedHeap(heapf, this.keymaxlen);
         this.tables.put(tablename, heap);
+        openSortedIndexes(tablename, heap);
         return heap;
     }
 
@@ -385,37 +490,49 @@ public class Tables implements Iterable<String> {
     public void insert(final String table, final byte[] pk, final Map<String, byte[]> map) throws IOException {
         final BEncodedHeap heap = getHeap(table);
         try {
-            heap.insert(pk, map);
+            final Map<String, TablesSortedIndex> indexes = sortedIndexes(table);
+            if (indexes == null) {
+                heap.insert(pk, map);
+                return;
+            }
+            synchronized (indexes) {
+                final Map<String, byte[]> old = heap.get(pk);
+                heap.insert(pk, map);
+                updateSortedIndexes(indexes, pk, old, map);
+            }
         } catch (final SpaceExceededException e) {
             throw new IOException(e.getMessage());
         }
     }
 
     public void insert(final String table, final Row row) throws IOException {
-        final BEncodedHeap heap = getHeap(table);
-        try {
-            heap.insert(row.pk, row);
-        } catch (final SpaceExceededException e) {
-            throw new IOException(e.getMessage());
-        }
+        insert(table, row.pk, row);
     }
 
     public void update(final String table, final byte[] pk, final Map<String, byte[]> map) throws IOException {
         final BEncodedHeap heap = getHeap(table);
         try {
-            heap.update(pk, map);
+            final Map<String, TablesSortedIndex> indexes = sortedIndexes(table);
+            if (indexes == null) {
+                heap.update(pk, map);
+                return;
+            }
+            synchronized (indexes) {
+                final Map<String, byte[]> old = heap.get(pk);
+                heap.update(pk, map);
+                // the heap merges the new columns into the old row
+                final Map<String, byte[]> merged = new HashMap<String, byte[]>();
+                if (old != null) merged.putAll(old);
+                merged.putAll(map);
+                updateSortedIndexes(indexes, pk, old, merged);
+            }
         } catch (final SpaceExceededException e) {
             throw new IOException(e.getMessage());
         }
     }
 
     public void update(final String table, final Row row) throws IOException {
-        final BEncodedHeap heap = getHeap(table);
-        try {
-            heap.update(row.pk, row);
-        } catch (final SpaceExceededException e) {
-            throw new IOException(e.getMessage());
-        }
+        update(table, row.pk, row);
     }
 
     public byte[] createRow(final String table) throws IOException, SpaceExceededException {
@@ -431,7 +548,21 @@ public class Tables implements Iterable<String> {
 
     public void delete(final String table, final byte[] pk) throws IOException {
         final BEncodedHeap heap = getHeap(table);
-        heap.delete(pk);
+        final Map<String, TablesSortedIndex> indexes = sortedIndexes(table);
+        if (indexes == null) {
+            heap.delete(pk);
+            return;
+        }
+        synchronized (indexes) {
+            final Map<String, byte[]> old;
+            try {
+                old = heap.get(pk);
+            } catch (final SpaceExceededException e) {
+                throw new IOException(e.getMessage());
+            }
+            heap.delete(pk);
+            updateSortedIndexes(indexes, pk, old, null);
+        }
     }
 
     public boolean has(final String table, final byte[] key) throws IOException {
@@ -454,10 +585,15 @@ public class Tables implements Iterable<String> {
     }
 
     public Iterator<Row> iterator(final String table, final String whereColumn, final byte[] whereValue) throws IOException {
+        final TablesSortedIndex index = whereValue == null ? null : getSortedIndex(table, whereColumn);
+        if (index != null) return new IndexRowIterator(table, index.range(whereValue, whereValue), whereColumn, whereValue, null);
         return new HeapRowIterator(table, whereColumn, whereValue);
     }
 
     public Iterator<Row> iterator(final String table, final String whereColumn, final Pattern wherePattern) throws IOException {
+        final TablesSortedIndex index = getSortedIndex(table, whereColumn);
+        final String prefix = index == null ? null : literalPrefix(wherePattern);
+        if (prefix != null) return new IndexRowIterator(table, index.prefix(UTF8.getBytes(prefix)), whereColumn, null, wherePattern);
         return new HeapRowIterator(table, whereColumn, wherePattern);
     }
 
@@ -470,16 +606,133 @@ public class Tables implements Iterable<String> {
     }
 
     public Iterator<Row> iterator(final String table, final String whereColumn, final byte[] whereValue, final boolean up) throws IOException {
+        final TablesSortedIndex index = whereValue == null ? null : getSortedIndex(table, whereColumn);
+        if (index != null) return new IndexRowIterator(table, orderByPK(table, index.range(whereValue, whereValue), up), whereColumn, whereValue, null);
         return new OrderedRowIterator(table, whereColumn, whereValue, up);
     }
 
     public Iterator<Row> iterator(final String table, final String whereColumn, final Pattern wherePattern, final boolean up) throws IOException {
+        final TablesSortedIndex index = getSortedIndex(table, whereColumn);
+        final String prefix = index == null ? null : literalPrefix(wherePattern);
+        if (prefix != null) return new IndexRowIterator(table, orderByPK(table, index.prefix(UTF8.getBytes(prefix)), up), whereColumn, null, wherePattern);
         return new OrderedRowIterator(table, whereColumn, wherePattern, up);
     }
 
     public Iterator<Row> iterator(final String table, final Pattern wherePattern, final boolean up) throws IOException {
         return new OrderedRowIterator(table, wherePattern, up);
     }
+
+    /**
+     * iterate all rows where the value of a column is within the given bounds,
+     * ordered by the column value and the primary key. The column must have a sorted index.
+     * @param table
+     * @param column
+     * @param from the lowest value, inclusive, or null for no lower bound
+     * @param to the highest value, inclusive, or null for no upper bound
+     * @param up true for ascending order
+     * @return the matching rows
+     * @throws IOException if the table cannot be opened or the column has no sorted index
+     */
+    public Iterator<Row> rangeIterator(final String table, final String column, final byte[] from, final byte[] to, final boolean up) throws IOException {
+        final TablesSortedIndex index = sortedIndex(table, column);
+        final List<TablesSortedIndex.Key> keys = index.range(from, to);
+        if (!up) Collections.reverse(keys);
+        return new IndexRowIterator(table, keys, column, null, null) {
+            @Override
+            protected boolean accept(final Row row) {
+                // the index compares only a prefix of long values
+                if (index.getType() == TablesSortedIndex.KeyType.NUMBER) return true;
+                final byte[] v = row.get(column);
+                return v != null && (from == null || NaturalOrder.naturalOrder.compare(v, from) >= 0) && (to == null || NaturalOrder.naturalOrder.compare(v, to) <= 0);
+            }
+        };
+    }
+
+    /**
+     * iterate all rows where the value of a column starts with the given prefix,
+     * ordered by the column value and the primary key. The column must have a sorted index.
+     * @param table
+     * @param column
+     * @param prefix
+     * @param up true for ascending order
+     * @return the matching rows
+     * @throws IOException if the table cannot be opened or the column has no sorted index
+     */
+    public Iterator<Row> prefixIterator(final String table, final String column, final byte[] prefix, final boolean up) throws IOException {
+        final TablesSortedIndex index = sortedIndex(table, column);
+        final List<TablesSortedIndex.Key> keys = index.prefix(prefix);
+        if (!up) Collections.reverse(keys);
+        return new IndexRowIterator(table, keys, column, null, null) {
+            @Override
+            protected boolean accept(final Row row) {
+                if (index.getType() == TablesSortedIndex.KeyType.NUMBER) return true;
+                final byte[] v = row.get(column);
+                return v != null && v.length >= prefix.length && NaturalOrder.naturalOrder.compare(v, 0, prefix, 0, prefix.length) == 0;
+            }
+        };
+    }
+
+    /**
+     * iterate all rows of a table ordered by the value of a column and then by the primary key,
+     * like {@link #orderByString(Iterator, String, String, SortDirection)} and its variants for the other value types
+     * but without reading and sorting the whole table first. The column must have a sorted index.
+     * @param table
+     * @param column
+     * @param defaultValue the value used for rows which do not have the column or null to place them first
+     * @param sortDir the sorting direction. When null, {@link SortDirection#ASC} is applied.
+     * @return all rows of the table
+     * @throws IOException if the table cannot be opened or the column has no sorted index
+     */
+    public Iterator<Row> orderedIterator(final String table, final String column, final byte[] defaultValue, final SortDirection sortDir) throws IOException {
+        final TablesSortedIndex index = sortedIndex(table, column);
+        final List<TablesSortedIndex.Key> keys = index.ordered(defaultValue);
+        if (sortDir == SortDirection.DESC) Collections.reverse(keys);
+        return new IndexRowIterator(table, keys, column, null, null) {
+            @Override
+            protected Comparator<Row> truncatedOrder() {
+                // order rows with the same value prefix by their complete value
+                Comparator<Row> comparator = Comparator.<Row, String>comparing(row -> row.get(column, defaultValue == null ? "" : UTF8.String(defaultValue)))
+                        .thenComparing(row -> UTF8.String(row.pk));
+                if (sortDir == SortDirection.DESC) comparator = comparator.reversed();
+                return comparator;
+            }
+        };
+    }
+
+    private TablesSortedIndex sortedIndex(final String table, final String column) throws IOException {
+        final TablesSortedIndex index = getSortedIndex(table, column);
+        if (index == null) throw new IOException("no sorted index for column " + column + " of table " + table);
+        return index;
+    }
+
+    private List<TablesSortedIndex.Key> orderByPK(final String table, final List<TablesSortedIndex.Key> keys, final boolean up) throws IOException {
+        final Comparator<byte[]> ordering = getHeap(table).getOrdering();
+        Collections.sort(keys, (a, b) -> ordering.compare(a.getPK(), b.getPK()));
+        if (!up) Collections.reverse(keys);
+        return keys;
+    }
+
+    /**
+     * compute the literal prefix which all strings matching the pattern must start with
+     * @param pattern
+     * @return the prefix or null if the pattern does not start with a literal
+     */
+    protected static String literalPrefix(final Pattern pattern) {
+        if (pattern == null || pattern.flags() != 0) return null;
+        String p = pattern.pattern();
+        if (p.indexOf('|') >= 0) return null;
+        if (p.startsWith("^")) p = p.substring(1);
+        if (p.startsWith("\\Q")) {
+            final int e = p.indexOf("\\E");
+            final String q = e < 0 ? p.substring(2) : p.substring(2, e);
+            if (e >= 0 && e + 2 < p.length() && "*?{".indexOf(p.charAt(e + 2)) >= 0) return null; // a quantifier applies to the last character only
+            return q.isEmpty() ? null : q;
+        }
+        int i = 0;
+        while (i < p.length() && "\\[](){}.*+?^$".indexOf(p.charAt(i)) < 0) i++;
+        if (i < p.length() && "*?{".indexOf(p.charAt(i)) >= 0) i--; // the last character is optional
+        return i <= 0 ? null : p.substring(0, i);
+    }
     
 	/**
 	 * @param rowIterator
@@ -832,6 +1085,87 @@ public class Tables implements Iterable<String> {
 
     }
     
+    /**
+     * iterator over the rows of a table in the order of a list of sorted index keys.
+     * The rows are read when they are reached, so the table may be modified during the iteration.
+     */
+    public class IndexRowIterator extends LookAheadIterator<Row> implements Iterator<Row> {
+
+        private final String whereColumn;
+        private final byte[] whereValue;
+        private final Pattern wherePattern;
+        private final List<TablesSortedIndex.Key> keys;
+        private final BEncodedHeap heap;
+        private final List<Row> run;
+        private int p;
+
+        /**
+         * @param table
+         * @param keys the keys of the rows in the order of iteration
+         * @param whereColumn the column for the where condition
+         * @param whereValue if not null only rows where the column has this value are returned
+         * @param wherePattern if not null only rows where the column matches are returned
+         * @throws IOException
+         */
+        public IndexRowIterator(final String table, final List<TablesSortedIndex.Key> keys, final String whereColumn, final byte[] whereValue, final Pattern wherePattern) throws IOException {
+            this.whereColumn = whereColumn;
+            this.whereValue = whereValue;
+            this.wherePattern = wherePattern == null || wherePattern.toString().isEmpty() ? null : wherePattern;
+            this.keys = keys;
+            this.heap = getHeap(table);
+            this.run = new ArrayList<Row>();
+            this.p = 0;
+        }
+
+        /**
+         * check a row against the condition of the iteration; the index has only selected candidates
+         */
+        protected boolean accept(final Row row) {
+            if (this.whereValue != null) return Arrays.equals(row.get(this.whereColumn), this.whereValue);
+            if (this.wherePattern != null) return this.wherePattern.matcher(UTF8.String(row.get(this.whereColumn, new byte[0]))).matches();
+            return true;
+        }
+
+        /**
+         * @return the order of rows which have the same truncated value in the index or null if their order does not matter
+         */
+        protected Comparator<Row> truncatedOrder() {
+            return null;
+        }
+
+        private Row row(final TablesSortedIndex.Key key) {
+            try {
+                final Map<String, byte[]> map = this.heap.get(key.getPK());
+                return map == null ? null : new Row(key.getPK(), map);
+            } catch (IOException | SpaceExceededException e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected Row next0() {
+            while (true) {
+                if (!this.run.isEmpty()) return this.run.remove(0);
+                if (this.p >= this.keys.size()) return null;
+                final TablesSortedIndex.Key key = this.keys.get(this.p++);
+                final Comparator<Row> order = key.isTruncated() ? truncatedOrder() : null;
+                if (order == null) {
+                    final Row r = row(key);
+                    if (r != null && accept(r)) return r;
+                    continue;
+                }
+                // collect all rows with the same value prefix and sort them by their complete value
+                Row r = row(key);
+                if (r != null && accept(r)) this.run.add(r);
+                while (this.p < this.keys.size() && this.keys.get(this.p).sameValue(key)) {
+                    r = row(this.keys.get(this.p++));
+                    if (r != null && accept(r)) this.run.add(r);
+                }
+                Collections.sort(this.run, order);
+            }
+        }
+    }
+
     public static class Data extends LinkedHashMap<String, byte[]> {
 
         private static final long serialVersionUID = 978426054043749337L;
@@ -0,0 +1,401 @@
+// TablesSortedIndex.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ByteArray;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.table.Table;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A persistent secondary index on one column of a {@link BEncodedHeap} table.
+ * Every row of the table has an entry in the index which is ordered by the column value
+ * and then by the primary key, so that equality lookups, range scans, prefix scans and
+ * ordered scans do not need to read and sort the whole table.
+ * The index is kept in a kelondro {@link Table} file beside the heap file. A marker file
+ * is written when the index is closed; if it is missing on the next start the index
+ * is rebuilt from the heap because it may have missed updates.
+ */
+public class TablesSortedIndex {
+
+    /** how the column values are ordered in the index */
+    public enum KeyType {
+        /** values are ordered by their byte representation */
+        BYTES,
+        /** values are decimal numbers and ordered by their numeric value */
+        NUMBER
+    }
+
+    /** only the first VALUELENGTH bytes of a value are stored in the index */
+    public static final int VALUELENGTH = 48;
+
+    public static final String suffix = ".sidx";
+    private static final String okSuffix = ".ok";
+
+    private static final byte MISSING = 1;
+    private static final byte PRESENT = 2;
+
+    private static final ConcurrentLog log = new ConcurrentLog("TablesSortedIndex");
+
+    private final File file;
+    private final String column;
+    private final KeyType type;
+    private final int keylength;
+    private final Table index;
+
+    /**
+     * an index entry as returned by the scan methods
+     */
+    public static final class Key {
+        /** the presence flag and the (possibly truncated) encoded value */
+        private final byte[] value;
+        /** the primary key of the row in the heap */
+        private final byte[] pk;
+        /** true if the value was longer than the stored part of it */
+        private final boolean truncated;
+
+        private Key(final byte[] value, final byte[] pk, final boolean truncated) {
+            this.value = value;
+            this.pk = pk;
+            this.truncated = truncated;
+        }
+
+        public byte[] getPK() {
+            return this.pk;
+        }
+
+        /**
+         * @return true if the value in the index is only a prefix of the column value;
+         * the order of keys with the same prefix is then only given by their primary key
+         */
+        public boolean isTruncated() {
+            return this.truncated;
+        }
+
+        /**
+         * @return true if both keys have the same stored value
+         */
+        public boolean sameValue(final Key other) {
+            return NaturalOrder.naturalOrder.compare(this.value, other.value) == 0;
+        }
+    }
+
+    /**
+     * open or create the index for a column of a table
+     * @param location the folder of the tables
+     * @param tablename the name of the table
+     * @param column the indexed column
+     * @param type the ordering of the column values
+     * @param keylength the length of the primary keys of the table
+     * @param heap the table, used to rebuild the index if necessary
+     * @throws IOException
+     */
+    public TablesSortedIndex(final File location, final String tablename, final String column, final KeyType type, final int keylength, final BEncodedHeap heap) throws IOException {
+        this.file = new File(location, filename(tablename, column, type));
+        this.column = column;
+        this.type = type;
+        this.keylength = keylength;
+        final File ok = okFile(this.file);
+        final boolean consistent = this.file.exists() && ok.exists();
+        if (!consistent) deleteFiles(this.file);
+        ok.delete();
+        final Row rowdef = new Row("byte[] key-" + (1 + VALUELENGTH + keylength) + ", Cardinal l-2 {b256}", NaturalOrder.naturalOrder);
+        try {
+            this.index = new Table(this.file, rowdef, 10, 0, true, false, true);
+        } catch (final SpaceExceededException e) {
+            throw new IOException(e.getMessage());
+        }
+        if (!consistent) rebuild(heap);
+    }
+
+    public static String filename(final String tablename, final String column, final KeyType type) {
+        return tablename + "." + column + "." + type.name().toLowerCase(Locale.ROOT) + suffix;
+    }
+
+    /**
+     * parse the name of an index file
+     * @param filename
+     * @return an array with the table name, the column name and the key type or null if the file is not an index
+     */
+    public static String[] parseFilename(final String filename) {
+        if (!filename.endsWith(suffix)) return null;
+        final String s = filename.substring(0, filename.length() - suffix.length());
+        final int t = s.lastIndexOf('.');
+        if (t <= 0) return null;
+        final int c = s.lastIndexOf('.', t - 1);
+        if (c <= 0) return null;
+        try {
+            return new String[]{s.substring(0, c), s.substring(c + 1, t), KeyType.valueOf(s.substring(t + 1).toUpperCase(Locale.ROOT)).name()};
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static File okFile(final File f) {
+        return new File(f.getParentFile(), f.getName() + okSuffix);
+    }
+
+    private static void deleteFiles(final File f) {
+        if (f.exists()) FileUtils.deletedelete(f);
+        final File snapshot = Table.snapshotFile(f);
+        if (snapshot.exists()) FileUtils.deletedelete(snapshot);
+        okFile(f).delete();
+    }
+
+    public String getColumn() {
+        return this.column;
+    }
+
+    public KeyType getType() {
+        return this.type;
+    }
+
+    private synchronized void rebuild(final BEncodedHeap heap) throws IOException {
+        final long start = System.currentTimeMillis();
+        final Iterator<Map.Entry<byte[], Map<String, byte[]>>> i = heap.iterator();
+        Map.Entry<byte[], Map<String, byte[]>> entry;
+        while (i.hasNext()) {
+            entry = i.next();
+            put(entry.getKey(), entry.getValue().get(this.column));
+        }
+        log.info("rebuilt index " + this.file.getName() + " with " + this.index.size() + " entries in " + (System.currentTimeMillis() - start) + " milliseconds");
+    }
+
+    /**
+     * encode a column value so that the natural byte order is the order of the key type
+     * @return the encoded value or null if the value is missing or cannot be parsed
+     */
+    private byte[] encode(final byte[] value) {
+        if (value == null) return null;
+        if (this.type == KeyType.BYTES) return value;
+        final long l;
+        try {
+            l = ByteArray.parseDecimal(value);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        final long x = l ^ Long.MIN_VALUE; // flip the sign bit to make negative numbers sort before positive numbers
+        final byte[] b = new byte[8];
+        for (int j = 7; j >= 0; j--) {
+            b[j] = (byte) (x >>> (8 * (7 - j)));
+        }
+        return b;
+    }
+
+    /**
+     * compute the stored value part of an index key: a presence flag followed by the encoded value
+     * padded with zeros or truncated to VALUELENGTH. The flag is never zero because kelondro
+     * tables treat keys starting with a zero byte as empty.
+     */
+    private static byte[] valuePart(final byte[] encoded) {
+        final byte[] v = new byte[1 + VALUELENGTH];
+        if (encoded == null) {
+            v[0] = MISSING;
+        } else {
+            v[0] = PRESENT;
+            System.arraycopy(encoded, 0, v, 1, Math.min(encoded.length, VALUELENGTH));
+        }
+        return v;
+    }
+
+    private byte[] key(final byte[] valuePart, final byte[] pk) {
+        final byte[] k = new byte[1 + VALUELENGTH + this.keylength];
+        System.arraycopy(valuePart, 0, k, 0, valuePart.length);
+        if (pk != null) System.arraycopy(pk, 0, k, valuePart.length, Math.min(pk.length, this.keylength));
+        return k;
+    }
+
+    private Key key(final Row.Entry entry) {
+        final byte[] k = entry.getPrimaryKeyBytes();
+        final byte[] v = new byte[1 + VALUELENGTH];
+        final byte[] pk = new byte[this.keylength];
+        System.arraycopy(k, 0, v, 0, v.length);
+        System.arraycopy(k, v.length, pk, 0, pk.length);
+        return new Key(v, pk, entry.getColLong(1) > VALUELENGTH);
+    }
+
+    private synchronized void put(final byte[] pk, final byte[] value) throws IOException {
+        final byte[] encoded = encode(value);
+        final Row.Entry entry = this.index.row().newEntry();
+        entry.setCol(0, key(valuePart(encoded), pk));
+        entry.setCol(1, encoded == null ? 0 : Math.min(encoded.length, 65535));
+        try {
+            this.index.put(entry);
+        } catch (final SpaceExceededException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * reflect the change of a row in the index
+     * @param pk the primary key of the row
+     * @param oldRow the row before the change or null if the row did not exist
+     * @param newRow the row after the change or null if the row was deleted
+     * @throws IOException
+     */
+    public synchronized void update(final byte[] pk, final Map<String, byte[]> oldRow, final Map<String, byte[]> newRow) throws IOException {
+        final byte[] oldKey = oldRow == null ? null : key(valuePart(encode(oldRow.get(this.column))), pk);
+        if (newRow == null) {
+            if (oldKey != null) this.index.delete(oldKey);
+            return;
+        }
+        final byte[] newValue = newRow.get(this.column);
+        if (oldKey != null && NaturalOrder.naturalOrder.compare(oldKey, key(valuePart(encode(newValue)), pk)) != 0) {
+            this.index.delete(oldKey);
+        }
+        put(pk, newValue);
+    }
+
+    /**
+     * scan all rows where the column value is within the given bounds.
+     * Rows without a value for the column are not included. Values longer than VALUELENGTH
+     * are compared by their prefix only, so the caller must check the bounds against the rows.
+     * @param from the lowest value, inclusive, or null for no lower bound
+     * @param to the highest value, inclusive, or null for no upper bound
+     * @return the matching keys in ascending order of the value and the primary key
+     * @throws IOException
+     */
+    public synchronized List<Key> range(final byte[] from, final byte[] to) throws IOException {
+        final byte[] fromValue = valuePart(from == null ? new byte[0] : encode(from));
+        fromValue[0] = PRESENT;
+        final byte[] toValue = to == null ? null : valuePart(encode(to));
+        final List<Key> keys = new ArrayList<Key>();
+        final Iterator<Row.Entry> i = this.index.rows(true, key(fromValue, null));
+        Key k;
+        while (i.hasNext()) {
+            k = key(i.next());
+            if (k.value[0] != PRESENT) continue;
+            if (toValue != null && NaturalOrder.naturalOrder.compare(k.value, toValue) > 0) break;
+            keys.add(k);
+        }
+        return keys;
+    }
+
+    /**
+     * scan all rows where the column value starts with the given prefix.
+     * Prefixes longer than VALUELENGTH are truncated, so the caller must check the prefix against the rows.
+     * @param prefix
+     * @return the matching keys in ascending order of the value and the primary key
+     * @throws IOException
+     */
+    public synchronized List<Key> prefix(final byte[] prefix) throws IOException {
+        if (this.type != KeyType.BYTES) return range(prefix, prefix);
+        final byte[] fromValue = valuePart(prefix);
+        final int length = Math.min(prefix.length, VALUELENGTH);
+        final List<Key> keys = new ArrayList<Key>();
+        final Iterator<Row.Entry> i = this.index.rows(true, key(fromValue, null));
+        Key k;
+        while (i.hasNext()) {
+            k = key(i.next());
+            if (NaturalOrder.naturalOrder.compare(k.value, 0, fromValue, 0, 1 + length) != 0) break;
+            keys.add(k);
+        }
+        return keys;
+    }
+
+    /**
+     * scan all rows ordered by the column value and the primary key.
+     * Rows without a value for the column are placed as if they had the default value.
+     * @param dflt the default value for rows without a value or null to place them before all others
+     * @return all keys in ascending order
+     * @throws IOException
+     */
+    public synchronized List<Key> ordered(final byte[] dflt) throws IOException {
+        final List<Key> missing = new ArrayList<Key>();
+        final List<Key> present = new ArrayList<Key>(this.index.size());
+        final Iterator<Row.Entry> i = this.index.rows(true, null);
+        Key k;
+        while (i.hasNext()) {
+            k = key(i.next());
+            if (k.value[0] == MISSING) missing.add(k); else present.add(k);
+        }
+        final byte[] encoded = encode(dflt);
+        if (missing.isEmpty() || encoded == null) {
+            missing.addAll(present);
+            return missing;
+        }
+        // merge the rows without a value at the position of the default value
+        final byte[] dfltValue = valuePart(encoded);
+        final boolean dfltTruncated = encoded.length > VALUELENGTH;
+        final List<Key> keys = new ArrayList<Key>(missing.size() + present.size());
+        int m = 0, p = 0;
+        while (m < missing.size() || p < present.size()) {
+            if (m < missing.size()) {
+                final Key mk = new Key(dfltValue, missing.get(m).pk, dfltTruncated);
+                if (p >= present.size() || compare(mk, present.get(p)) <= 0) {
+                    keys.add(mk);
+                    m++;
+                    continue;
+                }
+            }
+            keys.add(present.get(p++));
+        }
+        return keys;
+    }
+
+    private static int compare(final Key a, final Key b) {
+        final int c = NaturalOrder.naturalOrder.compare(a.value, b.value);
+        if (c != 0) return c;
+        return NaturalOrder.naturalOrder.compare(a.pk, b.pk);
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    public synchronized void clear() throws IOException {
+        this.index.clear();
+    }
+
+    /**
+     * close the index and mark it as consistent with the heap
+     */
+    public synchronized void close() {
+        this.index.close();
+        try {
+            okFile(this.file).createNewFile();
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
+    /**
+     * close the index and delete its files
+     */
+    public synchronized void delete() {
+        this.index.close();
+        deleteFiles(this.file);
+    }
+
+}
@@ -32,7 +32,7 @@ import java.util.Locale;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
 import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
+import net.yacy.cora.storage.ConcurrentTinyLFU;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
@@ -56,10 +56,10 @@ public class Word {
     private static ARC<String, byte[]> hashCache = null;
     static {
         try {
-            hashCache = new ConcurrentARC<String, byte[]>(hashCacheSize, Math.min(32, 2 * Runtime.getRuntime().availableProcessors()));
+            hashCache = new ConcurrentTinyLFU<String, byte[]>(hashCacheSize);
             ConcurrentLog.info("Word", "hashCache.size = " + hashCacheSize);
         } catch (final OutOfMemoryError e) {
-            hashCache = new ConcurrentARC<String, byte[]>(1000, Math.min(8, 1 + Runtime.getRuntime().availableProcessors()));
+            hashCache = new ConcurrentTinyLFU<String, byte[]>(1000);
             ConcurrentLog.info("Word", "hashCache.size = " + 1000);
         }
     }
@@ -0,0 +1,331 @@
+// ChunkSort.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import net.yacy.cora.order.AbstractOrder;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.util.MemoryControl;
+
+/**
+ * Sorts the rows of a chunkcache array in place, without creating Row.Entry objects for the comparisons.
+ * Keys in a Base64Order or NaturalOrder are sorted with a MSD radix sort (American flag sort) on the key
+ * bytes; all other orders, a rotated order and keys which are not well-formed are sorted with a merge sort.
+ * Large ranges are sorted concurrently in the common fork-join pool.
+ * If only the end of the array is unsorted, only this part is sorted and merged with the sorted part.
+ */
+final class ChunkSort {
+
+    /** ranges with less rows are sorted with an insertion sort */
+    private static final int INSERTION_LIMIT = 16;
+
+    /** ranges with less rows are sorted in the current thread */
+    private static final int PARALLEL_LIMIT = 8192;
+
+    private final byte[] chunkcache;
+    private final int objectsize;
+    private final int keylength;
+    private final ByteOrder order;
+    private final int[] rank; // the radix of each byte value or null if radix sorting is not possible
+    private final boolean parallel;
+    private byte[] mergespace; // the buffer of the merge sort, allocated on demand
+
+    private ChunkSort(final byte[] chunkcache, final int count, final int objectsize, final int keylength, final ByteOrder order) {
+        this.chunkcache = chunkcache;
+        this.objectsize = objectsize;
+        this.keylength = keylength;
+        this.order = order;
+        this.rank = ranks(order);
+        this.parallel = count >= PARALLEL_LIMIT && Runtime.getRuntime().availableProcessors() > 1;
+        this.mergespace = null;
+    }
+
+    /**
+     * sort the rows of a chunkcache array
+     * @param chunkcache the array of rows
+     * @param count the number of rows in the array
+     * @param sortBound the number of rows at the beginning of the array which are already sorted
+     * @param objectsize the size of a row
+     * @param keylength the length of the key at the beginning of a row
+     * @param order the order of the keys
+     * @return false if the rows could not be sorted because there is not enough memory for a merge sort;
+     *         then the rows are unchanged
+     */
+    static boolean sort(final byte[] chunkcache, final int count, int sortBound, final int objectsize, final int keylength, final ByteOrder order) {
+        if (sortBound >= count) return true;
+        final ChunkSort s = new ChunkSort(chunkcache, count, objectsize, keylength, order);
+        if (sortBound < count / 2) sortBound = 0; // a sort of all rows is cheaper than a merge
+        if (sortBound > 0 && !MemoryControl.request(((long) (count - sortBound)) * objectsize, true)) sortBound = 0;
+        final boolean radix = s.rank != null && s.wellformed(sortBound, count);
+        if (!radix && !s.allocateMergespace(count - sortBound)) return false;
+        final RecursiveAction task = radix ? s.new RadixTask(sortBound, count, 0) : s.new MergeTask(sortBound, count);
+        if (s.parallel) ForkJoinPool.commonPool().invoke(task); else task.invoke();
+        if (sortBound > 0) s.mergeTail(sortBound, count);
+        return true;
+    }
+
+    /**
+     * compute the radix table for an order
+     * @param order
+     * @return an array with the radix for each unsigned byte value, -1 for bytes which are not allowed in the order,
+     *         or null if the order cannot be sorted by the key bytes
+     */
+    private static int[] ranks(final ByteOrder order) {
+        if (!(order instanceof AbstractOrder)) return null;
+        final AbstractOrder<?> o = (AbstractOrder<?>) order;
+        if (o.zero() != null) return null; // a rotated order
+        final int[] rank = new int[256];
+        if (order instanceof NaturalOrder) {
+            for (int i = 0; i < 256; i++) rank[i] = o.isAscending() ? i : 255 - i;
+            return rank;
+        }
+        if (order.getClass() == Base64Order.class) {
+            for (int i = 0; i < 256; i++) {
+                final int r = i < 128 ? ((Base64Order) order).decodeByte((byte) i) : -1;
+                rank[i] = r < 0 ? -1 : o.isAscending() ? r : 63 - r;
+            }
+            return rank;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if all keys consist of bytes which have a radix; otherwise the comparison of the order differs from the radix order
+     */
+    private boolean wellformed(final int from, final int to) {
+        if (this.rank[0] >= 0 && this.rank[255] >= 0) return true; // all bytes are allowed
+        for (int i = from; i < to; i++) {
+            final int p = i * this.objectsize;
+            for (int k = 0; k < this.keylength; k++) {
+                if (this.rank[this.chunkcache[p + k] & 0xff] < 0) return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean allocateMergespace(final int rows) {
+        final long bytes = ((long) rows) * this.objectsize;
+        if (bytes > Integer.MAX_VALUE || !MemoryControl.request(bytes, true)) return false;
+        try {
+            this.mergespace = new byte[(int) bytes];
+        } catch (final OutOfMemoryError e) {
+            return false;
+        }
+        return true;
+    }
+
+    private int compare(final int i, final int j, final int depth) {
+        return this.order.compare(
+                this.chunkcache, i * this.objectsize + depth,
+                this.chunkcache, j * this.objectsize + depth,
+                this.keylength - depth);
+    }
+
+    private void swap(final int i, final int j, final byte[] swapspace) {
+        System.arraycopy(this.chunkcache, i * this.objectsize, swapspace, 0, this.objectsize);
+        System.arraycopy(this.chunkcache, j * this.objectsize, this.chunkcache, i * this.objectsize, this.objectsize);
+        System.arraycopy(swapspace, 0, this.chunkcache, j * this.objectsize, this.objectsize);
+    }
+
+    /**
+     * sort a small range with an insertion sort
+     * @param from the first row
+     * @param to the row after the last row
+     * @param depth the number of key bytes which are equal in all rows of the range
+     * @param swapspace a buffer of the size of a row
+     */
+    private void insertionSort(final int from, final int to, final int depth, final byte[] swapspace) {
+        for (int i = from + 1; i < to; i++) {
+            if (compare(i - 1, i, depth) <= 0) continue;
+            System.arraycopy(this.chunkcache, i * this.objectsize, swapspace, 0, this.objectsize);
+            int j = i - 1;
+            while (j > from && this.order.compare(swapspace, depth, this.chunkcache, (j - 1) * this.objectsize + depth, this.keylength - depth) < 0) j--;
+            System.arraycopy(this.chunkcache, j * this.objectsize, this.chunkcache, (j + 1) * this.objectsize, (i - j) * this.objectsize);
+            System.arraycopy(swapspace, 0, this.chunkcache, j * this.objectsize, this.objectsize);
+        }
+    }
+
+    /**
+     * radix sort of a range of rows which are equal in the first key bytes
+     */
+    private final class RadixTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to, depth;
+
+        private RadixTask(final int from, final int to, final int depth) {
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            radix(this.from, this.to, this.depth, new byte[ChunkSort.this.objectsize]);
+        }
+
+        private void radix(final int from, final int to, final int depth, final byte[] swapspace) {
+            if (to - from <= INSERTION_LIMIT) {
+                insertionSort(from, to, depth, swapspace);
+                return;
+            }
+            if (depth >= ChunkSort.this.keylength) return; // all keys are equal
+            final byte[] c = ChunkSort.this.chunkcache;
+            final int os = ChunkSort.this.objectsize;
+            final int[] rank = ChunkSort.this.rank;
+
+            // count the rows in each bucket
+            final int[] next = new int[256];
+            final int[] end = new int[256];
+            for (int i = from; i < to; i++) end[rank[c[i * os + depth] & 0xff]]++;
+            int p = from;
+            for (int b = 0; b < 256; b++) {
+                next[b] = p;
+                p += end[b];
+                end[b] = p;
+            }
+
+            // move each row into its bucket
+            for (int b = 0; b < 256; b++) {
+                while (next[b] < end[b]) {
+                    final int r = rank[c[next[b] * os + depth] & 0xff];
+                    if (r == b) {
+                        next[b]++;
+                    } else {
+                        swap(next[b], next[r]++, swapspace);
+                    }
+                }
+            }
+
+            // sort the buckets by the next key byte
+            List<RadixTask> tasks = null;
+            int start = from;
+            for (int b = 0; b < 256; b++) {
+                final int size = end[b] - start;
+                if (size >= PARALLEL_LIMIT && ChunkSort.this.parallel) {
+                    if (tasks == null) tasks = new ArrayList<RadixTask>();
+                    tasks.add(new RadixTask(start, end[b], depth + 1));
+                } else if (size > 1) {
+                    radix(start, end[b], depth + 1, swapspace);
+                }
+                start = end[b];
+            }
+            if (tasks != null) ForkJoinTask.invokeAll(tasks);
+        }
+    }
+
+    /**
+     * merge sort of a range of rows for orders without radix
+     */
+    private final class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to, offset;
+
+        private MergeTask(final int from, final int to) {
+            this(from, to, from);
+        }
+
+        private MergeTask(final int from, final int to, final int offset) {
+            this.from = from;
+            this.to = to;
+            this.offset = offset; // the row which is stored at the beginning of the merge space
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= INSERTION_LIMIT) {
+                insertionSort(this.from, this.to, 0, new byte[ChunkSort.this.objectsize]);
+                return;
+            }
+            final int middle = (this.from + this.to) >>> 1;
+            final MergeTask left = new MergeTask(this.from, middle, this.offset);
+            final MergeTask right = new MergeTask(middle, this.to, this.offset);
+            if (this.to - this.from >= PARALLEL_LIMIT && ChunkSort.this.parallel) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            if (compare(middle - 1, middle, 0) <= 0) return; // already in order
+            merge(middle);
+        }
+
+        private void merge(final int middle) {
+            final byte[] c = ChunkSort.this.chunkcache;
+            final byte[] m = ChunkSort.this.mergespace;
+            final int os = ChunkSort.this.objectsize;
+            final int kl = ChunkSort.this.keylength;
+            final ByteOrder order = ChunkSort.this.order;
+            // copy the left half into the merge space, then merge it with the right half into the array
+            final int mbase = (this.from - this.offset) * os;
+            System.arraycopy(c, this.from * os, m, mbase, (middle - this.from) * os);
+            int i = mbase, iend = mbase + (middle - this.from) * os;
+            int j = middle * os, jend = this.to * os;
+            int k = this.from * os;
+            while (i < iend && j < jend) {
+                if (order.compare(c, j, m, i, kl) < 0) {
+                    System.arraycopy(c, j, c, k, os);
+                    j += os;
+                } else {
+                    System.arraycopy(m, i, c, k, os);
+                    i += os;
+                }
+                k += os;
+            }
+            if (i < iend) System.arraycopy(m, i, c, k, iend - i);
+        }
+    }
+
+    /**
+     * merge the sorted rows before and after the sort bound
+     * @param sortBound the first row of the second sequence
+     * @param count the number of rows
+     */
+    private void mergeTail(final int sortBound, final int count) {
+        final int os = this.objectsize;
+        final byte[] c = this.chunkcache;
+        final byte[] tail = new byte[(count - sortBound) * os];
+        System.arraycopy(c, sortBound * os, tail, 0, tail.length);
+        // merge from the end of the array so that no row of the first sequence is overwritten before it is moved
+        int i = (sortBound - 1) * os;
+        int j = tail.length - os;
+        int k = (count - 1) * os;
+        while (j >= 0) {
+            if (i >= 0 && this.order.compare(c, i, tail, j, this.keylength) > 0) {
+                System.arraycopy(c, i, c, k, os);
+                i -= os;
+            } else {
+                System.arraycopy(tail, j, c, k, os);
+                j -= os;
+            }
+            k -= os;
+        }
+    }
+
+}
@@ -0,0 +1,637 @@
+/**
+ *  ConcurrentCache.java
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.Cache.StatKeys;
+import net.yacy.kelondro.index.Row.Entry;
+import net.yacy.kelondro.util.MemoryControl;
+
+/**
+ * A hit/miss cache in front of an Index, like {@link Cache}, but without a single object lock.
+ * The cached rows are partitioned into stripes by the key; every stripe has its own hit and miss
+ * cache and its own lock, so that readers and writers of different keys do not block each other.
+ * The stripe lock is not held during the back-end access, so a slow back-end read does not block
+ * the other keys of the stripe; the back-end index must therefore be thread-safe. Every stripe counts
+ * its modifications, and the result of a back-end access is only learned if no write to the stripe
+ * happened in the meantime, which keeps the hit and miss caches consistent with the back-end.
+ * The memory limits of {@link Cache#getMemStopGrow()} and {@link Cache#getMemStartShrink()} are
+ * applied: below the stop-grow limit no new entries are learned, below the start-shrink limit
+ * stripes are flushed one after another.
+ */
+public final class ConcurrentCache implements Index, Iterable<Row.Entry> {
+
+    // static object tracker; stores information about object cache usage
+    private static final Map<String, ConcurrentCache> objectTracker = new ConcurrentHashMap<String, ConcurrentCache>();
+
+    private final static int defaultStripes = Math.max(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4));
+
+    private final static class Stripe {
+        private RowSet readHitCache;  // contains a complete copy of the cached objects
+        private RowSet readMissCache; // contains only the keys of the objects that had been a miss
+        private long modifications;   // incremented at the start and at the end of every write to the stripe
+        private Stripe(final Row row, final Row keyrow) {
+            this.readHitCache = new RowSet(row);
+            this.readMissCache = new RowSet(keyrow);
+            this.modifications = 0;
+        }
+
+        /**
+         * remove a key from the hit and miss cache and count the modification; must be called while holding the stripe lock
+         * @return the modification count which is expected at the end of the write if no other write is done in the meantime
+         */
+        private long invalidate(final byte[] key) {
+            this.readHitCache.delete(key);
+            this.readMissCache.delete(key);
+            return ++this.modifications + 1;
+        }
+    }
+
+    // class objects
+    private final Index       index;         // the back-end of the cache
+    private final Row         keyrow;
+    private final Stripe[]    stripes;
+    private final int         hitLimit, missLimit; // limits per stripe; 0 if only the RAM limits the size
+    private final AtomicLong  readHit, readMiss, writeUnique, writeDouble, cacheDelete, cacheFlush;
+    private final AtomicLong  hasnotHit, hasnotMiss, hasnotUnique, hasnotDouble, hasnotDelete;
+    private final AtomicLong  shrinkCursor;
+    private volatile boolean  closed;
+
+    /**
+     * create a concurrent cache with a default number of stripes
+     * @param backupIndex the thread-safe Index that is cached
+     * @param hitLimit a limit of cache hit entries. If given as value <= 0, then only the RAM limits the size
+     * @param missLimit a limit of cache miss entries. If given as value <= 0, then only the RAM limits the size
+     */
+    public ConcurrentCache(final Index backupIndex, final int hitLimit, final int missLimit) {
+        this(backupIndex, hitLimit, missLimit, defaultStripes);
+    }
+
+    /**
+     * create a concurrent cache
+     * @param backupIndex the thread-safe Index that is cached
+     * @param hitLimit a limit of cache hit entries. If given as value <= 0, then only the RAM limits the size
+     * @param missLimit a limit of cache miss entries. If given as value <= 0, then only the RAM limits the size
+     * @param stripeCount the number of independently locked partitions of the cache
+     */
+    public ConcurrentCache(final Index backupIndex, final int hitLimit, final int missLimit, final int stripeCount) {
+        assert stripeCount > 0 : "stripeCount = " + stripeCount;
+        this.index = backupIndex;
+        final Row row = this.index.row();
+        this.keyrow = new Row(new Column[]{row.column(0)}, row.objectOrder);
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < this.stripes.length; i++) this.stripes[i] = new Stripe(row, this.keyrow);
+        this.hitLimit = hitLimit <= 0 ? 0 : Math.max(1, hitLimit / this.stripes.length);
+        this.missLimit = missLimit <= 0 ? 0 : Math.max(1, missLimit / this.stripes.length);
+        this.readHit = new AtomicLong(0);
+        this.readMiss = new AtomicLong(0);
+        this.writeUnique = new AtomicLong(0);
+        this.writeDouble = new AtomicLong(0);
+        this.cacheDelete = new AtomicLong(0);
+        this.cacheFlush = new AtomicLong(0);
+        this.hasnotHit = new AtomicLong(0);
+        this.hasnotMiss = new AtomicLong(0);
+        this.hasnotUnique = new AtomicLong(0);
+        this.hasnotDouble = new AtomicLong(0);
+        this.hasnotDelete = new AtomicLong(0);
+        this.shrinkCursor = new AtomicLong(0);
+        this.closed = false;
+        if (backupIndex.filename() != null) objectTracker.put(backupIndex.filename(), this);
+    }
+
+    private final Stripe stripeFor(final byte[] key) {
+        return this.stripes[(int) ((this.keyrow.objectOrder.cardinal(key) / 17) % this.stripes.length)];
+    }
+
+    public final int stripes() {
+        return this.stripes.length;
+    }
+
+    public static final Iterator<String> filenames() {
+        // iterates string objects; all file names from record tracker
+        return new TreeMap<String, ConcurrentCache>(objectTracker).keySet().iterator();
+    }
+
+    public static final Map<StatKeys, String> memoryStats(final String filename) {
+        // returns a map for each file in the tracker;
+        // the map represents properties for each record objects,
+        // i.e. for cache memory allocation
+        final ConcurrentCache theObjectsCache = objectTracker.get(filename);
+        return theObjectsCache == null ? null : theObjectsCache.memoryStats();
+    }
+
+    final Map<StatKeys, String> memoryStats() {
+        // returns statistical data about this object
+        int hitCount = 0, missCount = 0;
+        for (final Stripe stripe: this.stripes) {
+            synchronized (stripe) {
+                hitCount += stripe.readHitCache.size();
+                missCount += stripe.readMissCache.size();
+            }
+        }
+        final int hitChunkSize = this.index.row().objectsize;
+        final int missChunkSize = this.keyrow.objectsize;
+        final HashMap<StatKeys, String> map = new HashMap<StatKeys, String>(20);
+        map.put(StatKeys.objectHitChunkSize, Integer.toString(hitChunkSize));
+        map.put(StatKeys.objectHitCacheCount, Integer.toString(hitCount));
+        map.put(StatKeys.objectHitMem, Long.toString(((long) hitChunkSize) * hitCount));
+        map.put(StatKeys.objectHitCacheReadHit, Long.toString(this.readHit.get()));
+        map.put(StatKeys.objectHitCacheReadMiss, Long.toString(this.readMiss.get()));
+        map.put(StatKeys.objectHitCacheWriteUnique, Long.toString(this.writeUnique.get()));
+        map.put(StatKeys.objectHitCacheWriteDouble, Long.toString(this.writeDouble.get()));
+        map.put(StatKeys.objectHitCacheDeletes, Long.toString(this.cacheDelete.get()));
+        map.put(StatKeys.objectHitCacheFlushes, Long.toString(this.cacheFlush.get()));
+
+        map.put(StatKeys.objectMissChunkSize, Integer.toString(missChunkSize));
+        map.put(StatKeys.objectMissCacheCount, Integer.toString(missCount));
+        map.put(StatKeys.objectMissMem, Long.toString(((long) missChunkSize) * missCount));
+        map.put(StatKeys.objectMissCacheReadHit, Long.toString(this.hasnotHit.get()));
+        map.put(StatKeys.objectMissCacheReadMiss, Long.toString(this.hasnotMiss.get()));
+        map.put(StatKeys.objectMissCacheWriteUnique, Long.toString(this.hasnotUnique.get()));
+        map.put(StatKeys.objectMissCacheWriteDouble, Long.toString(this.hasnotDouble.get()));
+        map.put(StatKeys.objectMissCacheDeletes, Long.toString(this.hasnotDelete.get()));
+        map.put(StatKeys.objectMissCacheFlushes, "0");
+        return map;
+    }
+
+    /**
+     * memory-aware eviction: if the available memory falls below Cache.getMemStartShrink(),
+     * the next stripe in a round-robin order is flushed. This is called without holding a stripe lock.
+     */
+    private final void shrink() {
+        if (MemoryControl.available() >= Cache.getMemStartShrink() && !MemoryControl.shortStatus()) return;
+        final Stripe stripe = this.stripes[(int) (this.shrinkCursor.getAndIncrement() % this.stripes.length)];
+        synchronized (stripe) {
+            if (stripe.readHitCache.isEmpty() && stripe.readMissCache.isEmpty()) return;
+            stripe.readHitCache.clear();
+            stripe.readMissCache.clear();
+        }
+        this.cacheFlush.incrementAndGet();
+    }
+
+    /**
+     * checks if a new entry may be written into the given cache of a stripe; must be called while holding the stripe lock
+     * @return true if it is allowed to write into this cache
+     */
+    private final boolean checkSpace(final RowSet cache, final int limit) {
+        if (this.closed) return false;
+        if (limit > 0 && cache.size() >= limit) {
+            // the stripe is full: flush it instead of refusing new entries, the stripe is small compared to the whole cache
+            cache.clear();
+            this.cacheFlush.incrementAndGet();
+        }
+        final long available = MemoryControl.available();
+        return available > Cache.getMemStopGrow() && available - 2 * 1024 * 1024 > cache.memoryNeededForGrow();
+    }
+
+    private final void learnHit(final Stripe stripe, final Row.Entry row) {
+        if (checkSpace(stripe.readHitCache, this.hitLimit)) try {
+            final Row.Entry dummy = stripe.readHitCache.replace(row);
+            if (dummy == null) this.writeUnique.incrementAndGet(); else this.writeDouble.incrementAndGet();
+        } catch (final SpaceExceededException e) {
+            stripe.readHitCache.clear();
+            this.cacheFlush.incrementAndGet();
+        }
+    }
+
+    private final void learnMiss(final Stripe stripe, final byte[] key) {
+        if (checkSpace(stripe.readMissCache, this.missLimit)) try {
+            final Row.Entry dummy = stripe.readMissCache.replace(this.keyrow.newEntry(key));
+            if (dummy == null) this.hasnotUnique.incrementAndGet(); else this.hasnotDouble.incrementAndGet();
+        } catch (final SpaceExceededException e) {
+            stripe.readMissCache.clear();
+        }
+    }
+
+    public final void clearCache() {
+        for (final Stripe stripe: this.stripes) {
+            synchronized (stripe) {
+                stripe.readHitCache.clear();
+                stripe.readMissCache.clear();
+                stripe.modifications++; // concurrent back-end accesses must not learn their results
+            }
+        }
+    }
+
+    @Override
+    public long mem() {
+        long m = this.index.mem();
+        for (final Stripe stripe: this.stripes) {
+            synchronized (stripe) {
+                m += stripe.readHitCache.mem() + stripe.readMissCache.mem();
+            }
+        }
+        return m;
+    }
+
+    @Override
+    public void optimize() {
+        this.index.optimize();
+        for (final Stripe stripe: this.stripes) {
+            synchronized (stripe) {
+                stripe.readHitCache.optimize();
+                stripe.readMissCache.optimize();
+            }
+        }
+    }
+
+    public final int getHitLimit() {
+        return this.hitLimit * this.stripes.length;
+    }
+
+    public final int getMissLimit() {
+        return this.missLimit * this.stripes.length;
+    }
+
+    @Override
+    public byte[] smallestKey() {
+        return this.index.smallestKey();
+    }
+
+    @Override
+    public byte[] largestKey() {
+        return this.index.largestKey();
+    }
+
+    @Override
+    public final void close() {
+        this.closed = true;
+        if (this.index.filename() != null) objectTracker.remove(this.index.filename());
+        clearCache();
+        this.index.close();
+    }
+
+    @Override
+    public final boolean has(final byte[] key) {
+        final Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            // first look into the miss cache
+            if (stripe.readMissCache.has(key)) {
+                this.hasnotHit.incrementAndGet();
+                return false;
+            }
+            this.hasnotMiss.incrementAndGet();
+
+            // then try the hit cache
+            if (stripe.readHitCache.has(key)) {
+                this.readHit.incrementAndGet();
+                return true;
+            }
+            this.readMiss.incrementAndGet();
+        }
+
+        // finally ask the back-end index
+        return this.index.has(key);
+    }
+
+    @Override
+    public final Row.Entry get(final byte[] key, final boolean cachecopy) throws IOException {
+        final Stripe stripe = stripeFor(key);
+        Row.Entry entry;
+        final long modifications;
+        synchronized (stripe) {
+            // first look into the miss cache
+            if (stripe.readMissCache.has(key)) {
+                this.hasnotHit.incrementAndGet();
+                return null;
+            }
+            this.hasnotMiss.incrementAndGet();
+
+            // then try the hit cache
+            entry = stripe.readHitCache.get(key, cachecopy);
+            if (entry != null) {
+                this.readHit.incrementAndGet();
+                return entry;
+            }
+            this.readMiss.incrementAndGet();
+            modifications = stripe.modifications;
+        }
+
+        // finally ask the back-end index
+        entry = this.index.get(key, cachecopy);
+
+        // learn from result if the stripe was not written in the meantime
+        synchronized (stripe) {
+            if (stripe.modifications == modifications) {
+                if (entry == null) learnMiss(stripe, key); else learnHit(stripe, entry);
+            }
+        }
+        shrink();
+        return entry;
+    }
+
+    /**
+     * batched get: the keys are grouped by stripe so that every stripe lock is taken only once;
+     * the keys of a stripe which are not in the hit or miss cache are requested from the back-end in one call.
+     */
+    @Override
+    public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
+        final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(row().objectOrder);
+        final List<List<byte[]>> grouped = new ArrayList<List<byte[]>>(this.stripes.length);
+        for (int i = 0; i < this.stripes.length; i++) grouped.add(null);
+        for (final byte[] key: keys) {
+            final int i = (int) ((this.keyrow.objectOrder.cardinal(key) / 17) % this.stripes.length);
+            if (grouped.get(i) == null) grouped.set(i, new ArrayList<byte[]>());
+            grouped.get(i).add(key);
+        }
+        for (int i = 0; i < this.stripes.length; i++) {
+            if (grouped.get(i) == null) continue;
+            final Stripe stripe = this.stripes[i];
+            final List<byte[]> missing = new ArrayList<byte[]>();
+            final long modifications;
+            synchronized (stripe) {
+                for (final byte[] key: grouped.get(i)) {
+                    if (stripe.readMissCache.has(key)) {
+                        this.hasnotHit.incrementAndGet();
+                        continue;
+                    }
+                    this.hasnotMiss.incrementAndGet();
+                    final Row.Entry entry = stripe.readHitCache.get(key, forcecopy);
+                    if (entry == null) {
+                        this.readMiss.incrementAndGet();
+                        missing.add(key);
+                    } else {
+                        this.readHit.incrementAndGet();
+                        map.put(key, entry);
+                    }
+                }
+                modifications = stripe.modifications;
+            }
+            if (missing.isEmpty()) continue;
+            final Map<byte[], Row.Entry> fetched = this.index.get(missing, forcecopy);
+            synchronized (stripe) {
+                final boolean learn = stripe.modifications == modifications;
+                for (final byte[] key: missing) {
+                    final Row.Entry entry = fetched.get(key);
+                    if (entry == null) {
+                        if (learn) learnMiss(stripe, key);
+                    } else {
+                        if (learn) learnHit(stripe, entry);
+                        map.put(key, entry);
+                    }
+                }
+            }
+        }
+        shrink();
+        return map;
+    }
+
+    @Override
+    public final boolean put(final Row.Entry row) throws IOException, SpaceExceededException {
+        assert (row != null);
+        assert (row.columns() == row().columns());
+
+        final byte[] key = row.getPrimaryKeyBytes();
+        final Stripe stripe = stripeFor(key);
+        final long expected;
+        synchronized (stripe) {
+            // remove entry from miss-cache
+            if (stripe.readMissCache.has(key)) this.hasnotHit.incrementAndGet();
+            expected = stripe.invalidate(key);
+        }
+
+        // write to the back-end
+        boolean c;
+        try {
+            c = this.index.put(row);
+        } catch (final SpaceExceededException e1) {
+            // flush all caches of this stripe to get more memory
+            clearHits(stripe);
+            c = this.index.put(row); // try again
+        }
+        learnWritten(stripe, expected, row);
+        shrink();
+        return c;
+    }
+
+    @Override
+    public final Row.Entry replace(final Row.Entry row) throws IOException, SpaceExceededException {
+        assert (row != null);
+        assert (row.columns() == row().columns());
+
+        final byte[] key = row.getPrimaryKeyBytes();
+        final Stripe stripe = stripeFor(key);
+        final boolean miss;
+        final long expected;
+        synchronized (stripe) {
+            miss = stripe.readMissCache.has(key);
+            expected = stripe.invalidate(key);
+        }
+        Row.Entry entry = null;
+        if (miss) {
+            // the entry does not exist before
+            this.hasnotHit.incrementAndGet();
+            try {
+                this.index.put(row);
+            } catch (final SpaceExceededException e1) {
+                clearHits(stripe);
+                this.index.put(row); // try again
+            }
+        } else {
+            try {
+                entry = this.index.replace(row);
+            } catch (final SpaceExceededException e1) {
+                clearHits(stripe);
+                entry = this.index.replace(row); // try again
+            }
+        }
+        learnWritten(stripe, expected, row);
+        shrink();
+        return entry;
+    }
+
+    @Override
+    public final void addUnique(final Row.Entry row) throws IOException, SpaceExceededException {
+        assert (row != null);
+        assert (row.columns() == row().columns());
+
+        final byte[] key = row.getPrimaryKeyBytes();
+        final Stripe stripe = stripeFor(key);
+        final long expected;
+        synchronized (stripe) {
+            if (stripe.readMissCache.has(key)) this.hasnotDelete.incrementAndGet();
+            expected = stripe.invalidate(key);
+        }
+        try {
+            this.index.addUnique(row);
+        } catch (final SpaceExceededException e1) {
+            clearHits(stripe);
+            this.index.addUnique(row); // try again
+        }
+        learnWritten(stripe, expected, row);
+        shrink();
+    }
+
+    @Override
+    public final List<RowCollection> removeDoubles() throws IOException, SpaceExceededException {
+        final List<RowCollection> doubles = this.index.removeDoubles();
+        // the hit cache may contain any of the removed rows
+        if (!doubles.isEmpty()) clearCache();
+        return doubles;
+    }
+
+    @Override
+    public final boolean delete(final byte[] key) throws IOException {
+        final Stripe stripe = stripeFor(key);
+        final long expected;
+        synchronized (stripe) {
+            if (stripe.readHitCache.has(key)) this.cacheDelete.incrementAndGet();
+            expected = stripe.invalidate(key);
+        }
+        final boolean deleted = this.index.delete(key);
+        learnDeleted(stripe, expected, key);
+        return deleted;
+    }
+
+    @Override
+    public final Row.Entry remove(final byte[] key) throws IOException {
+        final Stripe stripe = stripeFor(key);
+        final long expected;
+        synchronized (stripe) {
+            if (stripe.readHitCache.has(key)) this.cacheDelete.incrementAndGet();
+            expected = stripe.invalidate(key);
+        }
+        final Row.Entry entry = this.index.remove(key);
+        learnDeleted(stripe, expected, key);
+        return entry;
+    }
+
+    @Override
+    public final Row.Entry removeOne() throws IOException {
+        // the key is not known in advance, therefore the back-end is asked first;
+        // afterwards the stripe of the removed key is corrected
+        final Row.Entry entry = this.index.removeOne();
+        if (entry == null) return null;
+        final byte[] key = entry.getPrimaryKeyBytes();
+        final Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            if (stripe.readHitCache.has(key)) this.cacheDelete.incrementAndGet();
+            // a concurrent write of the same key may have happened after the removal, so the key is not learned as a miss
+            stripe.invalidate(key);
+        }
+        return entry;
+    }
+
+    private final void clearHits(final Stripe stripe) {
+        synchronized (stripe) {
+            stripe.readHitCache.clear();
+        }
+    }
+
+    /**
+     * end a write to the back-end and learn the written row if no other write to the stripe happened concurrently
+     */
+    private final void learnWritten(final Stripe stripe, final long expected, final Row.Entry row) {
+        synchronized (stripe) {
+            if (++stripe.modifications == expected) learnHit(stripe, row); else stripe.invalidate(row.getPrimaryKeyBytes());
+        }
+    }
+
+    /**
+     * end a deletion in the back-end and learn the key as a miss if no other write to the stripe happened concurrently
+     */
+    private final void learnDeleted(final Stripe stripe, final long expected, final byte[] key) {
+        synchronized (stripe) {
+            if (++stripe.modifications == expected) learnMiss(stripe, key); else stripe.invalidate(key);
+        }
+    }
+
+    @Override
+    public List<Row.Entry> top(final int count) throws IOException {
+        return this.index.top(count);
+    }
+
+    @Override
+    public List<Row.Entry> random(final int count) throws IOException {
+        return this.index.random(count);
+    }
+
+    @Override
+    public final Row row() {
+        return this.index.row();
+    }
+
+    @Override
+    public final CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) throws IOException {
+        return this.index.keys(up, firstKey);
+    }
+
+    @Override
+    public final CloneableIterator<Row.Entry> rows(final boolean up, final byte[] firstKey) throws IOException {
+        return this.index.rows(up, firstKey);
+    }
+
+    @Override
+    public final Iterator<Entry> iterator() {
+        try {
+            return rows();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public final CloneableIterator<Row.Entry> rows() throws IOException {
+        return this.index.rows();
+    }
+
+    @Override
+    public final int size() {
+        return this.index.size();
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return this.index.isEmpty();
+    }
+
+    @Override
+    public final String filename() {
+        return this.index.filename();
+    }
+
+    @Override
+    public final void clear() throws IOException {
+        // the caches are flushed before and after the back-end is cleared and every stripe counts this as a modification,
+        // so no concurrent access can learn an entry of the old content
+        clearCache();
+        this.index.clear();
+        clearCache();
+    }
+
+    @Override
+    public final void deleteOnExit() {
+        this.index.deleteOnExit();
+    }
+
+}
@@ -0,0 +1,337 @@
+// OffHeapRowStore.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * Storage of fixed-size rows outside of the java heap, used as backing store of a RowCollection
+ * in place of the chunkcache array. The rows are stored in direct buffers of the same size (segments),
+ * each holding a power of two of complete rows. The store grows by adding segments, so existing
+ * rows are never copied when the store grows; only the first segment is allocated with a smaller size
+ * for small collections and is re-allocated until it has reached the full segment size.
+ *
+ * The store is not synchronized for write access; the owning collection must synchronize
+ * all write operations. Read operations may be done concurrently.
+ */
+public final class OffHeapRowStore {
+
+    /** the maximum size of a segment in bytes */
+    public static final int SEGMENT_BYTES = 1 << 20;
+
+    /** the minimum number of rows in the first segment */
+    private static final int MIN_ROWS = 64;
+
+    /** the size of the heap buffer which is used to move rows */
+    private static final int MOVE_BYTES = 1 << 16;
+
+    private static final ByteBuffer[] EMPTY = new ByteBuffer[0];
+
+    /** buffers to copy keys for comparison and rows for swapping, the orders can only compare arrays */
+    private static final ThreadLocal<byte[]> keyBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[64];
+        }
+    };
+
+    private final int objectsize;
+    private final int shift; // rows in a segment = 1 << shift
+    private final int mask;
+    private ByteBuffer[] segments;
+    private int capacity; // number of rows which fit into the segments
+
+    /**
+     * @param objectsize the size of a row in bytes
+     */
+    public OffHeapRowStore(final int objectsize) {
+        assert objectsize > 0 : "objectsize = " + objectsize;
+        this.objectsize = objectsize;
+        this.shift = 31 - Integer.numberOfLeadingZeros(Math.max(1, SEGMENT_BYTES / objectsize));
+        this.mask = (1 << this.shift) - 1;
+        this.segments = EMPTY;
+        this.capacity = 0;
+    }
+
+    public int objectsize() {
+        return this.objectsize;
+    }
+
+    /**
+     * @return the number of rows which can be stored without allocation of a new segment
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the number of allocated bytes outside of the heap
+     */
+    public long mem() {
+        return ((long) this.capacity) * this.objectsize;
+    }
+
+    private static ByteBuffer allocate(final long bytes) throws SpaceExceededException {
+        try {
+            return ByteBuffer.allocateDirect((int) bytes);
+        } catch (final OutOfMemoryError e) {
+            // the direct memory is limited by -XX:MaxDirectMemorySize
+            throw new SpaceExceededException(bytes, "OffHeapRowStore allocation: " + e.getMessage());
+        }
+    }
+
+    /**
+     * allocate segments until the given number of rows can be stored
+     * @param rows
+     * @throws SpaceExceededException if the direct memory is exhausted
+     */
+    public void ensure(final int rows) throws SpaceExceededException {
+        if (rows <= this.capacity) return;
+        final int rowsPerSegment = 1 << this.shift;
+        if (this.segments.length <= 1 && this.capacity < rowsPerSegment) {
+            // a small store: the single segment grows until it has the full segment size
+            final int grow = rows >= rowsPerSegment ? rowsPerSegment :
+                Math.min(rowsPerSegment, Math.max(MIN_ROWS, (int) (rows * RowCollection.growfactorLarge100 / 100L)));
+            final ByteBuffer segment = allocate(((long) grow) * this.objectsize);
+            if (this.segments.length == 1) {
+                final ByteBuffer old = this.segments[0].duplicate();
+                ((Buffer) old).clear();
+                segment.put(old);
+                ((Buffer) segment).clear();
+            }
+            this.segments = new ByteBuffer[]{segment};
+            this.capacity = grow;
+            if (rows <= this.capacity) return;
+        }
+        final int needed = ((rows - 1) >>> this.shift) + 1;
+        final ByteBuffer[] s = new ByteBuffer[needed];
+        System.arraycopy(this.segments, 0, s, 0, this.segments.length);
+        for (int i = this.segments.length; i < needed; i++) s[i] = allocate(((long) rowsPerSegment) * this.objectsize);
+        this.segments = s;
+        this.capacity = needed << this.shift;
+    }
+
+    /**
+     * release the segments which are not needed to store the given number of rows
+     * @param rows
+     */
+    public void trim(final int rows) {
+        if (this.segments.length <= 1) return;
+        final int needed = Math.max(1, ((rows - 1) >>> this.shift) + 1);
+        if (needed >= this.segments.length) return;
+        final ByteBuffer[] s = new ByteBuffer[needed];
+        System.arraycopy(this.segments, 0, s, 0, needed);
+        this.segments = s;
+        this.capacity = needed << this.shift;
+    }
+
+    /**
+     * release all segments; the direct memory is freed when the buffers are collected
+     */
+    public void clear() {
+        this.segments = EMPTY;
+        this.capacity = 0;
+    }
+
+    /**
+     * @param rows the number of rows to copy
+     * @return a new store containing the first rows of this store
+     * @throws SpaceExceededException
+     */
+    public OffHeapRowStore copy(final int rows) throws SpaceExceededException {
+        final OffHeapRowStore c = new OffHeapRowStore(this.objectsize);
+        c.ensure(rows);
+        final byte[] buffer = new byte[Math.max(1, MOVE_BYTES / this.objectsize) * this.objectsize];
+        final int batch = buffer.length / this.objectsize;
+        for (int row = 0; row < rows; row += batch) {
+            final int n = Math.min(batch, rows - row);
+            transfer(row, 0, buffer, 0, n * this.objectsize, false);
+            c.transfer(row, 0, buffer, 0, n * this.objectsize, true);
+        }
+        return c;
+    }
+
+    /**
+     * @param rows
+     * @return a heap array with the content of the first rows
+     */
+    public byte[] toArray(final int rows) {
+        final byte[] a = new byte[rows * this.objectsize];
+        if (rows > 0) transfer(0, 0, a, 0, a.length, false);
+        return a;
+    }
+
+    /**
+     * copy bytes from or into the store; the bytes may span several rows and segments
+     * @param row the row at which the transfer starts
+     * @param offset the offset inside the row
+     * @param a the heap array
+     * @param astart the offset in the heap array
+     * @param length the number of bytes to transfer
+     * @param write true to copy from the array into the store
+     */
+    private void transfer(int row, int offset, final byte[] a, int astart, int length, final boolean write) {
+        assert ((long) row) * this.objectsize + offset + length <= mem() : "row = " + row + ", offset = " + offset + ", length = " + length + ", mem = " + mem();
+        while (length > 0) {
+            final ByteBuffer segment = this.segments[row >>> this.shift].duplicate();
+            final int pos = (row & this.mask) * this.objectsize + offset;
+            final int n = Math.min(length, segment.capacity() - pos);
+            ((Buffer) segment).position(pos);
+            if (write) segment.put(a, astart, n); else segment.get(a, astart, n);
+            length -= n;
+            astart += n;
+            row = ((row >>> this.shift) + 1) << this.shift;
+            offset = 0;
+        }
+    }
+
+    public void read(final int row, final int offset, final byte[] target, final int targetOffset, final int length) {
+        assert offset + length <= this.objectsize;
+        transfer(row, offset, target, targetOffset, length, false);
+    }
+
+    public void write(final int row, final byte[] source, final int sourceOffset, final int length) {
+        assert length <= this.objectsize;
+        transfer(row, 0, source, sourceOffset, length, true);
+    }
+
+    /**
+     * write consecutive rows from an array
+     * @param row the first target row
+     * @param source the array containing the rows
+     * @param sourceOffset the offset of the first row in the array
+     * @param count the number of rows
+     */
+    public void writeRows(final int row, final byte[] source, final int sourceOffset, final int count) {
+        transfer(row, 0, source, sourceOffset, count * this.objectsize, true);
+    }
+
+    private byte get(final int row, final int offset) {
+        return this.segments[row >>> this.shift].get((row & this.mask) * this.objectsize + offset);
+    }
+
+    /**
+     * move rows inside the store; the source and the target area may overlap
+     * @param from the first source row
+     * @param to the first target row
+     * @param count the number of rows to move
+     */
+    public void move(final int from, final int to, final int count) {
+        if (from == to || count <= 0) return;
+        final int batch = Math.max(1, Math.min(count, MOVE_BYTES / this.objectsize));
+        final byte[] buffer = new byte[batch * this.objectsize];
+        if (to < from) {
+            for (int i = 0; i < count; i += batch) {
+                final int n = Math.min(batch, count - i);
+                transfer(from + i, 0, buffer, 0, n * this.objectsize, false);
+                transfer(to + i, 0, buffer, 0, n * this.objectsize, true);
+            }
+        } else {
+            for (int i = count; i > 0; i -= batch) {
+                final int n = Math.min(batch, i);
+                transfer(from + i - n, 0, buffer, 0, n * this.objectsize, false);
+                transfer(to + i - n, 0, buffer, 0, n * this.objectsize, true);
+            }
+        }
+    }
+
+    /**
+     * swap two rows
+     * @param i
+     * @param j
+     * @param swapspace a buffer of at least the row size
+     */
+    public void swap(final int i, final int j, final byte[] swapspace) {
+        if (i == j) return;
+        assert swapspace.length >= this.objectsize;
+        final byte[] b = keyBuffer(this.objectsize);
+        transfer(i, 0, swapspace, 0, this.objectsize, false);
+        transfer(j, 0, b, 0, this.objectsize, false);
+        transfer(i, 0, b, 0, this.objectsize, true);
+        transfer(j, 0, swapspace, 0, this.objectsize, true);
+    }
+
+    private static byte[] keyBuffer(final int length) {
+        byte[] b = keyBuffer.get();
+        if (b.length < length) {
+            b = new byte[length];
+            keyBuffer.set(b);
+        }
+        return b;
+    }
+
+    /**
+     * compare the first bytes of two rows
+     * @param order
+     * @param i
+     * @param j
+     * @param length the length of the key at the beginning of the rows
+     * @return the result of the comparison of row i with row j
+     */
+    public int compare(final ByteOrder order, final int i, final int j, final int length) {
+        final byte[] b = keyBuffer(2 * length);
+        transfer(i, 0, b, 0, length, false);
+        transfer(j, 0, b, length, length, false);
+        return order.compare(b, 0, b, length, length);
+    }
+
+    /**
+     * compare a key with the first bytes of a row
+     * @param order
+     * @param a the array containing the key
+     * @param astart the offset of the key in the array
+     * @param row
+     * @param length the length of the key
+     * @return the result of the comparison of the key with the row
+     */
+    public int compare(final ByteOrder order, final byte[] a, final int astart, final int row, final int length) {
+        final byte[] b = keyBuffer(length);
+        transfer(row, 0, b, 0, length, false);
+        return order.compare(a, astart, b, 0, length);
+    }
+
+    /**
+     * @return true if the first length bytes of the rows i and j are equal
+     */
+    public boolean match(final int i, final int j, final int length) {
+        for (int k = 0; k < length; k++) {
+            if (get(i, k) != get(j, k)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the key in the array is equal to the first bytes of the row
+     */
+    public boolean match(final byte[] a, final int astart, final int row, final int length) {
+        for (int k = 0; k < length; k++) {
+            if (a[astart + k] != get(row, k)) return false;
+        }
+        return true;
+    }
+
+}
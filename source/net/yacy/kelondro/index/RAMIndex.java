@@ -49,12 +49,23 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
     private RowSet index0;
     private RowSet index1;
     private final Row.EntryComparator entryComparator;
+    private final boolean offHeap;
     //private final int spread;
 
     public RAMIndex(final String name, final Row rowdef) {
+        this(name, rowdef, false);
+    }
+
+    /**
+     * @param name
+     * @param rowdef
+     * @param offHeap true to store the rows outside of the java heap
+     */
+    public RAMIndex(final String name, final Row rowdef, final boolean offHeap) {
         this.name = name;
         this.rowdef = rowdef;
         this.entryComparator = new Row.EntryComparator(rowdef.objectOrder);
+        this.offHeap = offHeap;
         reset();
         objectTracker.put(name, this);
     }
@@ -62,6 +73,7 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
     private RAMIndex(final String name, final Row rowdef, final RowSet index0, final RowSet index1, final Row.EntryComparator entryComparator) {
         this.name = name;
         this.rowdef = rowdef;
+        this.offHeap = index0.isOffHeap();
         this.index0 = index0;
         this.index1 = index1;
         this.entryComparator = entryComparator;
@@ -90,13 +102,13 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
 
     public final synchronized void reset() {
         this.index0 = null; // first flush RAM to make room
-        this.index0 = new RowSet(this.rowdef);
+        this.index0 = new RowSet(this.rowdef, this.offHeap);
         this.index1 = null; // to show that this is the initialization phase
     }
 
     public final synchronized void reset(final int initialspace) throws SpaceExceededException {
         this.index0 = null; // first flush RAM to make room
-        this.index0 = new RowSet(this.rowdef, initialspace);
+        this.index0 = new RowSet(this.rowdef, initialspace, this.offHeap);
         this.index1 = null; // to show that this is the initialization phase
     }
 
@@ -111,7 +123,7 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
             this.index0.sort();
             this.index0.uniq();
             this.index0.trim();
-            this.index1 = new RowSet(this.rowdef); //new RowSetArray(rowdef, spread);
+            this.index1 = new RowSet(this.rowdef, this.offHeap); //new RowSetArray(rowdef, spread);
         }
     }
 
@@ -359,7 +371,7 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
             // finish initialization phase
             this.index0.sort();
             this.index0.uniq();
-            this.index1 = new RowSet(this.rowdef); //new RowSetArray(rowdef, spread);
+            this.index1 = new RowSet(this.rowdef, this.offHeap); //new RowSetArray(rowdef, spread);
             return this.index0.keys(up, firstKey);
         }
         assert (this.index1 != null);
@@ -389,7 +401,7 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
             // finish initialization phase
             this.index0.sort();
             this.index0.uniq();
-            this.index1 = new RowSet(this.rowdef); //new RowSetArray(rowdef, spread);
+            this.index1 = new RowSet(this.rowdef, this.offHeap); //new RowSetArray(rowdef, spread);
             return this.index0.rows(up, firstKey);
         }
         assert (this.index1 != null);
@@ -425,7 +437,7 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
             // finish initialization phase
             this.index0.sort();
             this.index0.uniq();
-            this.index1 = new RowSet(this.rowdef); //new RowSetArray(rowdef, spread);
+            this.index1 = new RowSet(this.rowdef, this.offHeap); //new RowSetArray(rowdef, spread);
             return this.index0.rows();
         }
         assert (this.index1 != null);
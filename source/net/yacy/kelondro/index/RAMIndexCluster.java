@@ -48,21 +48,34 @@ public final class RAMIndexCluster implements Index, Iterable<Row.Entry>, Clonea
     private final String             name;
     private final Row                rowdef;
     private final RAMIndex[] cluster;
+    private final boolean offHeap;
 
     public RAMIndexCluster(final String name, final Row rowdef, final int clusterSize) {
+        this(name, rowdef, clusterSize, false);
+    }
+
+    /**
+     * @param name
+     * @param rowdef
+     * @param clusterSize
+     * @param offHeap true to store the rows of the cluster outside of the java heap
+     */
+    public RAMIndexCluster(final String name, final Row rowdef, final int clusterSize, final boolean offHeap) {
         //assert arraySize < 100 : arraySize;
         this.name = name;
         this.cluster = new RAMIndex[clusterSize];
         this.rowdef = rowdef;
+        this.offHeap = offHeap;
         for (int i = 0; i < this.cluster.length; i++) {
             this.cluster[i] = null; // lazy initialization, the actual initialization is at accessArray()
         }
     }
 
-    private RAMIndexCluster(final String name, final Row rowdef, final RAMIndex[] array) {
+    private RAMIndexCluster(final String name, final Row rowdef, final RAMIndex[] array, final boolean offHeap) {
         this.name = name;
         this.cluster = array;
         this.rowdef = rowdef;
+        this.offHeap = offHeap;
     }
 
     @Override
@@ -76,7 +89,7 @@ public final class RAMIndexCluster implements Index, Iterable<Row.Entry>, Clonea
         for (int i = 0; i < this.cluster.length; i++) {
             a[i] = this.cluster[i] == null ? null : this.cluster[i].clone();
         }
-        return new RAMIndexCluster(this.name + ".clone", this.rowdef, a);
+        return new RAMIndexCluster(this.name + ".clone", this.rowdef, a, this.offHeap);
     }
 
     private final int indexFor(final byte[] key) {
@@ -118,7 +131,7 @@ public final class RAMIndexCluster implements Index, Iterable<Row.Entry>, Clonea
         if (r == null) synchronized (this.cluster) {
             r = this.cluster[i];
             if (r == null) {
-                r = new RAMIndex(this.name + "." + i, this.rowdef);
+                r = new RAMIndex(this.name + "." + i, this.rowdef, this.offHeap);
                 this.cluster[i] = r;
             }
         }
@@ -66,6 +66,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
 
     protected final Row    rowdef;
     protected       byte[] chunkcache;
+    protected       OffHeapRowStore offheap; // the backing store if the rows are stored outside of the heap, otherwise null
     protected       int    chunkcount;
     protected       int    sortBound;
     protected       long   lastTimeWrote;
@@ -73,6 +74,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     protected RowCollection(final RowCollection rc) {
         this.rowdef = rc.rowdef;
         this.chunkcache = rc.chunkcache;
+        this.offheap = rc.offheap;
         this.chunkcount = rc.chunkcount;
         this.sortBound = rc.sortBound;
         this.lastTimeWrote = rc.lastTimeWrote;
@@ -83,14 +85,32 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         this.sortBound = 0;
         this.lastTimeWrote = System.currentTimeMillis();
        	this.chunkcache = EMPTY_CACHE;
+        this.offheap = null;
         this.chunkcount = 0;
     }
 
+    /**
+     * create a collection which stores the rows outside of the java heap if offHeap is true.
+     * Such a collection grows without copying the stored rows and does not produce large arrays in the heap;
+     * this is useful for large and long-living collections.
+     * @param rowdef
+     * @param offHeap true to use direct buffers instead of the heap array
+     */
+    protected RowCollection(final Row rowdef, final boolean offHeap) {
+        this(rowdef);
+        if (offHeap) this.offheap = new OffHeapRowStore(rowdef.objectsize);
+    }
+
     public RowCollection(final Row rowdef, final int objectCount) throws SpaceExceededException {
         this(rowdef);
         ensureSize(objectCount);
     }
 
+    public RowCollection(final Row rowdef, final int objectCount, final boolean offHeap) throws SpaceExceededException {
+        this(rowdef, offHeap);
+        ensureSize(objectCount);
+    }
+
     protected RowCollection(final Row rowdef, final int objectCount, final byte[] cache, final int sortBound) {
         this.rowdef = rowdef;
         this.chunkcache = cache;
@@ -137,13 +157,32 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         this.lastTimeWrote = lastTimeWrote;
     }
 
+    protected RowCollection(final Row rowdef, final OffHeapRowStore offheap, final int chunkcount, final int sortBound, final long lastTimeWrote) {
+        this.rowdef = rowdef;
+        this.chunkcache = EMPTY_CACHE;
+        this.offheap = offheap;
+        this.chunkcount = chunkcount;
+        this.sortBound = sortBound;
+        this.lastTimeWrote = lastTimeWrote;
+    }
+
     @Override
     public RowCollection clone() {
+        if (this.offheap != null) return new RowCollection(this.rowdef, copyOffHeap(), this.chunkcount, this.sortBound, this.lastTimeWrote);
         return new RowCollection(this.rowdef, this.chunkcache, this.chunkcount, this.sortBound, this.lastTimeWrote);
     }
 
+    protected final OffHeapRowStore copyOffHeap() {
+        try {
+            return this.offheap.copy(this.chunkcount);
+        } catch (final SpaceExceededException e) {
+            throw new kelondroException("cannot clone off-heap collection: " + e.getMessage());
+        }
+    }
+
 	public void reset() {
 		this.chunkcache = new byte[0];
+		if (this.offheap != null) this.offheap.clear();
         this.chunkcount = 0;
         this.sortBound = 0;
 	}
@@ -153,7 +192,21 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
 	 * @return number of bytes in use
 	 */
 	public long mem() {
-	    return this.chunkcache.length;
+	    return this.offheap == null ? this.chunkcache.length : this.offheap.mem();
+	}
+
+	/**
+	 * @return true if the rows are stored outside of the java heap
+	 */
+	public boolean isOffHeap() {
+	    return this.offheap != null;
+	}
+
+	/**
+	 * @return the number of bytes which are allocated for rows
+	 */
+	private final long allocated() {
+	    return this.offheap == null ? this.chunkcache.length : this.offheap.mem();
 	}
 
     private static final Row exportMeasureRow = exportRow(0 /* no relevance */);
@@ -216,17 +269,17 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         //uniq();
         //trim();
         assert this.sortBound == this.chunkcount; // on case the collection is sorted
-        assert size() * this.rowdef.objectsize <= this.chunkcache.length : "this.size() = " + size() + ", objectsize = " + this.rowdef.objectsize + ", chunkcache.length = " + this.chunkcache.length;
+        assert size() * this.rowdef.objectsize <= allocated() : "this.size() = " + size() + ", objectsize = " + this.rowdef.objectsize + ", allocated = " + allocated();
         final Row row = exportRow(size() * this.rowdef.objectsize);
         final Row.Entry entry = row.newEntry();
         assert (this.sortBound <= this.chunkcount) : "sortBound = " + this.sortBound + ", chunkcount = " + this.chunkcount;
-        assert (this.chunkcount <= this.chunkcache.length / this.rowdef.objectsize) : "chunkcount = " + this.chunkcount + ", chunkcache.length = " + this.chunkcache.length + ", rowdef.objectsize = " + this.rowdef.objectsize;
+        assert (this.chunkcount <= allocated() / this.rowdef.objectsize) : "chunkcount = " + this.chunkcount + ", allocated = " + allocated() + ", rowdef.objectsize = " + this.rowdef.objectsize;
         entry.setCol(exp_chunkcount, this.chunkcount);
         entry.setCol(exp_last_read, daysSince2000(System.currentTimeMillis()));
         entry.setCol(exp_last_wrote, daysSince2000(this.lastTimeWrote));
         entry.setCol(exp_order_type, (this.rowdef.objectOrder == null) ? ASCII.getBytes("__") : ASCII.getBytes(this.rowdef.objectOrder.signature()));
         entry.setCol(exp_order_bound, this.sortBound);
-        entry.setCol(exp_collection, this.chunkcache);
+        entry.setCol(exp_collection, this.offheap == null ? this.chunkcache : this.offheap.toArray(this.chunkcount));
         return entry.bytes();
     }
 
@@ -241,6 +294,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     private final long neededSpaceForEnsuredSize(final int elements) {
         assert elements > 0 : "elements = " + elements;
         final long needed = elements * this.rowdef.objectsize;
+        if (this.offheap != null) return 0; // an off-heap collection grows without a copy in the heap
         if (this.chunkcache.length >= needed) return 0;
         assert needed > 0 : "needed = " + needed;
         long allocram = Math.max(1024, (needed * growfactorLarge100) / 100L);
@@ -255,6 +309,10 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
 
     private final void ensureSize(final int elements) throws SpaceExceededException {
         if (elements == 0) return;
+        if (this.offheap != null) {
+            this.offheap.ensure(elements);
+            return;
+        }
         final long allocram = neededSpaceForEnsuredSize(elements);
         if (allocram == 0) return;
         assert this.chunkcache.length < elements * this.rowdef.objectsize : "wrong alloc computation (1): elements * rowdef.objectsize = " + (elements * this.rowdef.objectsize) + ", chunkcache.length = " + this.chunkcache.length;
@@ -303,17 +361,30 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     public void swap(final int i, final int j, final Entry buffer) {
         if (i == j) return;
         final byte[] swapspace = buffer.bytes();
+        if (this.offheap != null) {
+            this.offheap.swap(i, j, swapspace);
+            return;
+        }
         System.arraycopy(this.chunkcache, this.rowdef.objectsize * i, swapspace, 0, this.rowdef.objectsize);
         System.arraycopy(this.chunkcache, this.rowdef.objectsize * j, this.chunkcache, this.rowdef.objectsize * i, this.rowdef.objectsize);
         System.arraycopy(swapspace, 0, this.chunkcache, this.rowdef.objectsize * j, this.rowdef.objectsize);
     }
 
     private final void checkShrink() {
+        if (this.offheap != null) {
+            // release unused segments, the remaining rows are not copied
+            this.offheap.trim(this.chunkcount);
+            return;
+        }
         final long allocram = this.rowdef.objectsize * this.chunkcount;
         if (allocram < this.chunkcache.length / 2 && MemoryControl.request(allocram + 32, true)) trim();
     }
     
     protected synchronized void trim() {
+        if (this.offheap != null) {
+            this.offheap.trim(this.chunkcount);
+            return;
+        }
         if (this.chunkcache.length == 0) return;
         final long needed = this.chunkcount * this.rowdef.objectsize;
         assert needed <= this.chunkcache.length;
@@ -347,11 +418,15 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     protected synchronized final byte[] getKey(final int index) {
         assert (index >= 0) : "get: access with index " + index + " is below zero";
         assert (index < this.chunkcount) : "get: access with index " + index + " is above chunkcount " + this.chunkcount + "; sortBound = " + this.sortBound;
-        assert (index * this.rowdef.objectsize < this.chunkcache.length);
         if ((this.chunkcache == null) || (this.rowdef == null)) return null; // case may appear during shutdown
+        assert (index * this.rowdef.objectsize < allocated());
         if (index >= this.chunkcount) return null;
-        if ((index + 1) * this.rowdef.objectsize > this.chunkcache.length) return null; // the whole chunk does not fit into the chunkcache
+        if ((index + 1) * this.rowdef.objectsize > allocated()) return null; // the whole chunk does not fit into the chunkcache
         final byte[] b = new byte[this.rowdef.primaryKeyLength];
+        if (this.offheap != null) {
+            this.offheap.read(index, 0, b, 0, b.length);
+            return b;
+        }
         System.arraycopy(this.chunkcache, index * this.rowdef.objectsize, b, 0, b.length);
         return b;
     }
@@ -360,13 +435,19 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     public synchronized final Row.Entry get(final int index, final boolean clone) {
         assert (index >= 0) : "get: access with index " + index + " is below zero";
         assert (index < this.chunkcount) : "get: access with index " + index + " is above chunkcount " + this.chunkcount + "; sortBound = " + this.sortBound;
-        assert (this.chunkcache != null && index * this.rowdef.objectsize < this.chunkcache.length);
+        assert (this.chunkcache != null && index * this.rowdef.objectsize < allocated());
         assert this.sortBound <= this.chunkcount : "sortBound = " + this.sortBound + ", chunkcount = " + this.chunkcount;
         if ((this.chunkcache == null) || (this.rowdef == null)) return null; // case may appear during shutdown
         Row.Entry entry;
         final int addr = index * this.rowdef.objectsize;
         if (index >= this.chunkcount) return null;
-        if (addr + this.rowdef.objectsize > this.chunkcache.length) return null; // the whole chunk does not fit into the chunkcache
+        if (addr + this.rowdef.objectsize > allocated()) return null; // the whole chunk does not fit into the chunkcache
+        if (this.offheap != null) {
+            // an off-heap row is always a copy
+            final byte[] b = new byte[this.rowdef.objectsize];
+            this.offheap.read(index, 0, b, 0, b.length);
+            return this.rowdef.newEntry(b, 0, false);
+        }
         entry = this.rowdef.newEntry(this.chunkcache, addr, clone);
         return entry;
     }
@@ -379,7 +460,13 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         assert column.length >= this.rowdef.primaryKeyLength;
         final boolean sameKey = match(column, 0, index);
         //if (sameKey) System.out.print("$");
-        a.writeToArray(this.chunkcache, index * this.rowdef.objectsize);
+        if (this.offheap == null) {
+            a.writeToArray(this.chunkcache, index * this.rowdef.objectsize);
+        } else {
+            final byte[] b = new byte[this.rowdef.objectsize];
+            a.writeToArray(b, 0);
+            this.offheap.write(index, b, 0, b.length);
+        }
         if (index >= this.chunkcount) this.chunkcount = index + 1;
         if (!sameKey && index < this.sortBound) this.sortBound = index;
         this.lastTimeWrote = System.currentTimeMillis();
@@ -391,7 +478,11 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         if (index < this.chunkcount) {
             // make room
             ensureSize(this.chunkcount + 1);
-            System.arraycopy(this.chunkcache, this.rowdef.objectsize * index, this.chunkcache, this.rowdef.objectsize * (index + 1), (this.chunkcount - index) * this.rowdef.objectsize);
+            if (this.offheap != null) {
+                this.offheap.move(index, index + 1, this.chunkcount - index);
+            } else {
+                System.arraycopy(this.chunkcache, this.rowdef.objectsize * index, this.chunkcache, this.rowdef.objectsize * (index + 1), (this.chunkcount - index) * this.rowdef.objectsize);
+            }
             this.chunkcount++;
         }
         // insert entry into gap
@@ -423,7 +514,11 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         assert alength == this.rowdef.objectsize : "alength =" + alength + ", rowdef.objectsize = " + this.rowdef.objectsize;
         final int l = Math.min(this.rowdef.objectsize, Math.min(alength, a.length - astart));
         ensureSize(this.chunkcount + 1);
-        System.arraycopy(a, astart, this.chunkcache, this.rowdef.objectsize * this.chunkcount, l);
+        if (this.offheap != null) {
+            this.offheap.write(this.chunkcount, a, astart, l);
+        } else {
+            System.arraycopy(a, astart, this.chunkcache, this.rowdef.objectsize * this.chunkcount, l);
+        }
         this.chunkcount++;
         // if possible, increase the sortbound value to suppress unnecessary sorting
         if (this.chunkcount == 1) {
@@ -431,8 +526,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
             this.sortBound = 1;
         } else if (
                 this.sortBound + 1 == this.chunkcount &&
-                this.rowdef.objectOrder.compare(this.chunkcache, this.rowdef.objectsize * (this.chunkcount - 2),
-                                                this.chunkcache, this.rowdef.objectsize * (this.chunkcount - 1), this.rowdef.primaryKeyLength) == -1) {
+                compare(this.chunkcount - 2, this.chunkcount - 1) == -1) {
             this.sortBound = this.chunkcount;
         }
         this.lastTimeWrote = System.currentTimeMillis();
@@ -447,7 +541,11 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         assert alength == this.rowdef.objectsize : "alength =" + alength + ", rowdef.objectsize = " + this.rowdef.objectsize;
         final int l = Math.min(this.rowdef.objectsize, Math.min(alength, a.length - astart));
         ensureSize(this.chunkcount + 1);
-        System.arraycopy(a, astart, this.chunkcache, this.rowdef.objectsize * this.chunkcount, l);
+        if (this.offheap != null) {
+            this.offheap.write(this.chunkcount, a, astart, l);
+        } else {
+            System.arraycopy(a, astart, this.chunkcache, this.rowdef.objectsize * this.chunkcount, l);
+        }
         this.chunkcount++;
         this.sortBound = this.chunkcount;
         this.lastTimeWrote = System.currentTimeMillis();
@@ -462,7 +560,20 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         if (c == null) return;
         assert(this.rowdef.objectsize == c.rowdef.objectsize);
         ensureSize(this.chunkcount + c.size());
-        System.arraycopy(c.chunkcache, 0, this.chunkcache, this.rowdef.objectsize * this.chunkcount, this.rowdef.objectsize * c.size());
+        if (this.offheap == null && c.offheap == null) {
+            System.arraycopy(c.chunkcache, 0, this.chunkcache, this.rowdef.objectsize * this.chunkcount, this.rowdef.objectsize * c.size());
+        } else {
+            final byte[] b = new byte[this.rowdef.objectsize];
+            for (int i = 0; i < c.size(); i++) {
+                final byte[] cc = c.chunkArray(i, b);
+                final int cp = c.chunkOffset(i);
+                if (this.offheap != null) {
+                    this.offheap.write(this.chunkcount + i, cc, cp, this.rowdef.objectsize);
+                } else {
+                    System.arraycopy(cc, cp, this.chunkcache, this.rowdef.objectsize * (this.chunkcount + i), this.rowdef.objectsize);
+                }
+            }
+        }
         this.chunkcount += c.size();
     }
 
@@ -483,15 +594,21 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         assert this.sortBound <= this.chunkcount : "sortBound = " + this.sortBound + ", chunkcount = " + this.chunkcount;
         if (keepOrder && (p < this.sortBound)) {
             // remove by shift (quite expensive for big collections)
-            final int addr = p * this.rowdef.objectsize;
-            System.arraycopy(
-                    this.chunkcache, addr + this.rowdef.objectsize,
-                    this.chunkcache, addr,
-                    (this.chunkcount - p - 1) * this.rowdef.objectsize);
+            if (this.offheap != null) {
+                this.offheap.move(p + 1, p, this.chunkcount - p - 1);
+            } else {
+                final int addr = p * this.rowdef.objectsize;
+                System.arraycopy(
+                        this.chunkcache, addr + this.rowdef.objectsize,
+                        this.chunkcache, addr,
+                        (this.chunkcount - p - 1) * this.rowdef.objectsize);
+            }
             this.sortBound--; // this is only correct if p < sortBound, but this was already checked above
         } else {
             // remove by copying the top-element to the remove position
-            if (p != this.chunkcount - 1) {
+            if (p != this.chunkcount - 1 && this.offheap != null) {
+                this.offheap.move(this.chunkcount - 1, p, 1);
+            } else if (p != this.chunkcount - 1) {
                 System.arraycopy(
                         this.chunkcache, (this.chunkcount - 1) * this.rowdef.objectsize,
                         this.chunkcache, p * this.rowdef.objectsize,
@@ -578,8 +695,9 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     }
 
     public synchronized void clear() {
-        if (this.chunkcache.length == 0) return;
+        if (allocated() == 0) return;
         this.chunkcache = new byte[0];
+        if (this.offheap != null) this.offheap.clear();
         this.chunkcount = 0;
         this.sortBound = 0;
         this.lastTimeWrote = System.currentTimeMillis();
@@ -686,7 +804,11 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         synchronized (this) {
             if (this.sortBound == this.chunkcount) return; // check again
             //Log.logInfo("RowCollection.sort()", "sorting array of size " + this.chunkcount + ", sortBound = " + this.sortBound);
-            net.yacy.cora.sorting.Array.sort(this);
+            // sort the chunkcache in place; the generic sort is used for off-heap rows and if there is no memory for a merge
+            if (this.offheap != null || this.rowdef.objectOrder == null ||
+                !ChunkSort.sort(this.chunkcache, this.chunkcount, this.sortBound, this.rowdef.objectsize, this.rowdef.primaryKeyLength, this.rowdef.objectOrder)) {
+                net.yacy.cora.sorting.Array.sort(this);
+            }
             this.sortBound = this.chunkcount;
         }
     }
@@ -821,9 +943,13 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
 
     private final int swap(final int i, final int j, final int p, final byte[] swapspace) {
         if (i == j) return p;
-        System.arraycopy(this.chunkcache, this.rowdef.objectsize * i, swapspace, 0, this.rowdef.objectsize);
-        System.arraycopy(this.chunkcache, this.rowdef.objectsize * j, this.chunkcache, this.rowdef.objectsize * i, this.rowdef.objectsize);
-        System.arraycopy(swapspace, 0, this.chunkcache, this.rowdef.objectsize * j, this.rowdef.objectsize);
+        if (this.offheap != null) {
+            this.offheap.swap(i, j, swapspace);
+        } else {
+            System.arraycopy(this.chunkcache, this.rowdef.objectsize * i, swapspace, 0, this.rowdef.objectsize);
+            System.arraycopy(this.chunkcache, this.rowdef.objectsize * j, this.chunkcache, this.rowdef.objectsize * i, this.rowdef.objectsize);
+            System.arraycopy(swapspace, 0, this.chunkcache, this.rowdef.objectsize * j, this.rowdef.objectsize);
+        }
         if (i == p) return j; else if (j == p) return i; else return p;
     }
 
@@ -893,13 +1019,14 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     }
 
     private final int compare(final int i, final int j) {
-        assert (this.chunkcount * this.rowdef.objectsize <= this.chunkcache.length) : "chunkcount = " + this.chunkcount + ", objsize = " + this.rowdef.objectsize + ", chunkcache.length = " + this.chunkcache.length;
+        assert (this.chunkcount * this.rowdef.objectsize <= allocated()) : "chunkcount = " + this.chunkcount + ", objsize = " + this.rowdef.objectsize + ", allocated = " + allocated();
         assert (i >= 0) && (i < this.chunkcount) : "i = " + i + ", chunkcount = " + this.chunkcount;
         assert (j >= 0) && (j < this.chunkcount) : "j = " + j + ", chunkcount = " + this.chunkcount;
         assert (this.rowdef.objectOrder != null);
         if (i == j) return 0;
         //assert (!bugappearance(chunkcache, i * this.rowdef.objectsize + colstart, this.rowdef.primaryKeyLength));
         //assert (!bugappearance(chunkcache, j * this.rowdef.objectsize + colstart, this.rowdef.primaryKeyLength));
+        if (this.offheap != null) return this.offheap.compare(this.rowdef.objectOrder, i, j, this.rowdef.primaryKeyLength);
         final int c = this.rowdef.objectOrder.compare(
                 this.chunkcache,
                 i * this.rowdef.objectsize,
@@ -913,17 +1040,19 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         assert (chunknumber < this.chunkcount);
         assert a.length - astart >= this.rowdef.primaryKeyLength;
         final int len = Math.min(a.length - astart, this.rowdef.primaryKeyLength);
+        if (this.offheap != null) return this.offheap.compare(this.rowdef.objectOrder, a, astart, chunknumber, len);
         return this.rowdef.objectOrder.compare(a, astart, this.chunkcache, chunknumber * this.rowdef.objectsize, len);
     }
 
     protected final boolean match(final int i, final int j) {
-        assert (this.chunkcount * this.rowdef.objectsize <= this.chunkcache.length) : "chunkcount = " + this.chunkcount + ", objsize = " + this.rowdef.objectsize + ", chunkcache.length = " + this.chunkcache.length;
+        assert (this.chunkcount * this.rowdef.objectsize <= allocated()) : "chunkcount = " + this.chunkcount + ", objsize = " + this.rowdef.objectsize + ", allocated = " + allocated();
         assert (i >= 0) && (i < this.chunkcount) : "i = " + i + ", chunkcount = " + this.chunkcount;
         assert (j >= 0) && (j < this.chunkcount) : "j = " + j + ", chunkcount = " + this.chunkcount;
         if (i >= this.chunkcount) return false;
         if (j >= this.chunkcount) return false;
         assert (this.rowdef.objectOrder != null);
         if (i == j) return true;
+        if (this.offheap != null) return this.offheap.match(i, j, this.rowdef.primaryKeyLength);
         int astart = i * this.rowdef.objectsize;
         int bstart = j * this.rowdef.objectsize;
         int k = this.rowdef.primaryKeyLength;
@@ -936,6 +1065,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     protected boolean match(final byte[] a, int astart, final int chunknumber) {
         if (chunknumber >= this.chunkcount) return false;
         assert a.length - astart >= this.rowdef.primaryKeyLength;
+        if (this.offheap != null) return this.offheap.match(a, astart, chunknumber, Math.min(a.length - astart, this.rowdef.primaryKeyLength));
         for (int p = chunknumber * this.rowdef.objectsize,
              len = Math.min(a.length - astart, this.rowdef.primaryKeyLength);
              len != 0;
@@ -945,8 +1075,30 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         return true;
     }
 
+    /**
+     * the array which holds the row at the given position: for a collection in the heap this is the chunkcache,
+     * otherwise the row is copied into the given buffer. The row starts in the array at {@link #chunkOffset(int)}.
+     * @param index the position of the row
+     * @param buffer a buffer of the size of a row
+     * @return the chunkcache or the buffer
+     */
+    protected final byte[] chunkArray(final int index, final byte[] buffer) {
+        if (this.offheap == null) return this.chunkcache;
+        this.offheap.read(index, 0, buffer, 0, this.rowdef.objectsize);
+        return buffer;
+    }
+
+    /**
+     * @param index the position of a row
+     * @return the start of the row in the array returned by {@link #chunkArray(int, byte[])}
+     */
+    protected final int chunkOffset(final int index) {
+        return this.offheap == null ? index * this.rowdef.objectsize : 0;
+    }
+
     public synchronized void close() {
         this.chunkcache = null;
+        if (this.offheap != null) this.offheap.clear();
     }
 
     private static long d(final long a, final long b) {
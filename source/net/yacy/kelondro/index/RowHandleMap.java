@@ -32,6 +32,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -72,8 +73,21 @@ public final class RowHandleMap implements HandleMap, Iterable<Map.Entry<byte[],
      * @param space
      */
     public RowHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final int expectedspace, final String name) {
+        this(keylength, objectOrder, idxbytes, expectedspace, name, false);
+    }
+
+    /**
+     * initialize a HandleMap which may store its entries outside of the java heap
+     * @param keylength
+     * @param objectOrder
+     * @param idxbytes
+     * @param expectedspace
+     * @param name
+     * @param offHeap true to store the entries in direct buffers; use this for large maps
+     */
+    public RowHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final int expectedspace, final String name, final boolean offHeap) {
         this.rowdef = new Row(new Column[]{new Column("key", Column.celltype_binary, Column.encoder_bytes, keylength, "key"), new Column("long c-" + idxbytes + " {b256}")}, objectOrder);
-        this.index = new RAMIndexCluster(name, this.rowdef, spread(expectedspace));
+        this.index = new RAMIndexCluster(name, this.rowdef, spread(expectedspace), offHeap);
     }
 
     /**
@@ -119,6 +133,27 @@ public final class RowHandleMap implements HandleMap, Iterable<Map.Entry<byte[],
         optimize();
     }
 
+    /**
+     * initialize a HandleMap with the entries of a dump in a buffer
+     * @param keylength
+     * @param objectOrder
+     * @param idxbytes
+     * @param dump the remaining bytes of the buffer are the sorted entries as written by {@link #write(OutputStream)}
+     * @param name
+     * @throws SpaceExceededException
+     */
+    public RowHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final ByteBuffer dump, final String name) throws SpaceExceededException {
+        this(keylength, objectOrder, idxbytes, dump.remaining() / (keylength + idxbytes), name);
+        final byte[] a = new byte[keylength + idxbytes];
+        Row.Entry entry;
+        while (dump.remaining() >= a.length) {
+            dump.get(a);
+            entry = this.rowdef.newEntry(a); // may be null if a is not well-formed
+            if (entry != null) this.index.addUnique(entry);
+        }
+        optimize();
+    }
+
     @Override
     public void optimize() {
         this.index.optimize();
@@ -227,6 +262,22 @@ public final class RowHandleMap implements HandleMap, Iterable<Map.Entry<byte[],
         return c;
     }
 
+    /**
+     * write all entries in order to a stream, like {@link #dump(File)} but without closing the stream
+     * @param os the target stream
+     * @return the number of written entries
+     * @throws IOException
+     */
+    public final int write(final OutputStream os) throws IOException {
+        final Iterator<Row.Entry> i = this.index.rows(true, null);
+        int c = 0;
+        while (i.hasNext()) {
+            os.write(i.next().bytes());
+            c++;
+        }
+        return c;
+    }
+
     public final Row row() {
         return this.index.row();
     }
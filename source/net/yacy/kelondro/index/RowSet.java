@@ -67,6 +67,23 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         assert rowdef.objectOrder != null;
     }
 
+    /**
+     * create a row set which stores the rows outside of the java heap if offHeap is true
+     * @param rowdef
+     * @param objectCount the initial space
+     * @param offHeap true to use direct buffers instead of the heap array
+     * @throws SpaceExceededException
+     */
+    public RowSet(final Row rowdef, final int objectCount, final boolean offHeap) throws SpaceExceededException {
+        super(rowdef, objectCount, offHeap);
+        assert rowdef.objectOrder != null;
+    }
+
+    public RowSet(final Row rowdef, final boolean offHeap) {
+        super(rowdef, offHeap);
+        assert rowdef.objectOrder != null;
+    }
+
     /**
      * import an exported collection
      * @param rowdef
@@ -120,8 +137,13 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         super(rowdef, chunkcache, chunkcount, sortBound, lastTimeWrote);
     }
 
+    private RowSet(final Row rowdef, final OffHeapRowStore offheap, final int chunkcount, final int sortBound, final long lastTimeWrote) {
+        super(rowdef, offheap, chunkcount, sortBound, lastTimeWrote);
+    }
+
     @Override
     public RowSet clone() {
+        if (super.offheap != null) return new RowSet(super.rowdef, copyOffHeap(), super.chunkcount, super.sortBound, super.lastTimeWrote);
         return new RowSet(super.rowdef, super.chunkcache, super.chunkcount, super.sortBound, super.lastTimeWrote);
     }
 
@@ -505,7 +527,7 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
      */
     protected final static RowSet mergeEnum(final RowCollection c0, final RowCollection c1) throws SpaceExceededException {
         assert c0.rowdef == c1.rowdef : c0.rowdef.toString() + " != " + c1.rowdef.toString();
-        final RowSet r = new RowSet(c0.rowdef, c0.size() + c1.size());
+        final RowSet r = new RowSet(c0.rowdef, c0.size() + c1.size(), c0.isOffHeap());
         try {
         	c0.sort();
         } catch (final Throwable e) {
@@ -524,35 +546,41 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         final int objectsize = c0.rowdef.objectsize;
         final int c0s = c0.size();
         final int c1s = c1.size();
+        // the rows of off-heap collections are copied into these buffers
+        final byte[] b0 = new byte[objectsize];
+        final byte[] b1 = new byte[objectsize];
+        byte[] a0, a1;
         while (c0i < c0s && c1i < c1s) {
-            c0p = c0i * objectsize;
-            c1p = c1i * objectsize;
+            a0 = c0.chunkArray(c0i, b0);
+            a1 = c1.chunkArray(c1i, b1);
+            c0p = c0.chunkOffset(c0i);
+            c1p = c1.chunkOffset(c1i);
             o = c0.rowdef.objectOrder.compare(
-                    c0.chunkcache, c0p,
-                    c1.chunkcache, c1p, c0.rowdef.primaryKeyLength);
+                    a0, c0p,
+                    a1, c1p, c0.rowdef.primaryKeyLength);
             if (o == 0) {
-                r.addSorted(c0.chunkcache, c0p, objectsize);
+                r.addSorted(a0, c0p, objectsize);
                 c0i++;
                 c1i++;
                 continue;
             }
             if (o < 0) {
-                r.addSorted(c0.chunkcache, c0p, objectsize);
+                r.addSorted(a0, c0p, objectsize);
                 c0i++;
                 continue;
             }
             if (o > 0) {
-                r.addSorted(c1.chunkcache, c1p, objectsize);
+                r.addSorted(a1, c1p, objectsize);
                 c1i++;
                 continue;
             }
         }
         while (c0i < c0.size()) {
-            r.addSorted(c0.chunkcache, c0i * objectsize, objectsize);
+            r.addSorted(c0.chunkArray(c0i, b0), c0.chunkOffset(c0i), objectsize);
             c0i++;
         }
         while (c1i < c1.size()) {
-            r.addSorted(c1.chunkcache, c1i * objectsize, objectsize);
+            r.addSorted(c1.chunkArray(c1i, b1), c1.chunkOffset(c1i), objectsize);
             c1i++;
         }
         return r;
@@ -0,0 +1,580 @@
+// SamplingProfiler.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A sampling profiler which can run during normal operation. A daemon thread takes the stack traces of all threads in a
+ * fixed interval and counts the stacks of the threads which are running on a CPU, aggregated
+ * by subsystem. The subsystem of a thread is the prefix of its name, as given to pools by the
+ * {@link net.yacy.kelondro.util.NamePrefixThreadFactory}.
+ *
+ * The stacks are kept for a sliding window: the counts of the current and the previous window
+ * are reported, so a report covers between one and two window lengths. A finished window can
+ * be written as a collapsed stack file, which is the input format of the usual flame graph tools.
+ * Frames are interned once for all windows, a stack is stored as an array of frame ids.
+ */
+public class SamplingProfiler {
+
+    private static final ConcurrentLog log = new ConcurrentLog("SamplingProfiler");
+
+    /** the maximum number of frames of a stack, frames near the root are dropped */
+    public static final int MAX_DEPTH = 64;
+
+    /** the maximum number of distinct stacks in a window, further stacks are only counted per subsystem */
+    public static final int MAX_STACKS = 20000;
+
+    /** the maximum number of distinct frames, further frames are replaced by {@link #TRUNCATED} */
+    public static final int MAX_FRAMES = 100000;
+
+    /** the frame used for dropped frames and for stacks beyond {@link #MAX_STACKS} */
+    public static final String TRUNCATED = "[truncated]";
+
+    /**
+     * Native methods in which a thread is reported as runnable while it waits for the network.
+     * Threads with one of these methods on top of the stack do not use the CPU and are not counted.
+     */
+    private static final Set<String> IDLE_FRAMES = new HashSet<String>();
+    static {
+        IDLE_FRAMES.add("java.net.PlainSocketImpl.socketAccept");
+        IDLE_FRAMES.add("java.net.PlainSocketImpl.accept0");
+        IDLE_FRAMES.add("java.net.DualStackPlainSocketImpl.accept0");
+        IDLE_FRAMES.add("java.net.SocketInputStream.socketRead0");
+        IDLE_FRAMES.add("java.net.PlainDatagramSocketImpl.receive0");
+        IDLE_FRAMES.add("sun.nio.ch.ServerSocketChannelImpl.accept0");
+        IDLE_FRAMES.add("sun.nio.ch.EPollArrayWrapper.epollWait");
+        IDLE_FRAMES.add("sun.nio.ch.EPoll.wait");
+        IDLE_FRAMES.add("sun.nio.ch.EPoll.epollWait");
+        IDLE_FRAMES.add("sun.nio.ch.KQueue.poll");
+        IDLE_FRAMES.add("sun.nio.ch.KQueueArrayWrapper.kevent0");
+        IDLE_FRAMES.add("sun.nio.ch.WindowsSelectorImpl$SubSelector.poll0");
+        IDLE_FRAMES.add("sun.nio.ch.Net.poll");
+        IDLE_FRAMES.add("sun.nio.ch.Net.accept");
+        IDLE_FRAMES.add("sun.nio.ch.SocketDispatcher.read0");
+        IDLE_FRAMES.add("java.lang.ProcessImpl.waitFor");
+        IDLE_FRAMES.add("java.lang.UNIXProcess.waitForProcessExit");
+        IDLE_FRAMES.add("java.lang.ProcessHandleImpl.waitForProcessExit0");
+    }
+
+    private final ThreadMXBean bean;
+    private final long interval;
+    private final long window;
+    private final File dumpFile;
+    private Window current, previous;
+    private Sampler sampler;
+    private long samples, sampleNanos;
+
+    // the interned frames; new frames are added under the monitor of the profiler
+    private final Map<String, Integer> frameIds;
+    private volatile String[] frameNames;
+    private int frameCount;
+
+    /**
+     * create a profiler; sampling starts with {@link #start()}
+     * @param interval the milliseconds between two samples
+     * @param window the milliseconds of a window
+     * @param dumpFile the file which gets the collapsed stacks of each finished window, may be null
+     */
+    public SamplingProfiler(final long interval, final long window, final File dumpFile) {
+        this.bean = ManagementFactory.getThreadMXBean();
+        this.interval = Math.max(10, interval);
+        this.window = Math.max(this.interval * 10, window);
+        this.dumpFile = dumpFile;
+        this.current = new Window(System.currentTimeMillis());
+        this.previous = null;
+        this.sampler = null;
+        this.samples = 0;
+        this.sampleNanos = 0;
+        this.frameIds = new HashMap<String, Integer>();
+        this.frameNames = new String[1024];
+        this.frameCount = 0;
+        intern(TRUNCATED);
+    }
+
+    public synchronized void start() {
+        if (this.sampler != null) return;
+        this.sampler = new Sampler();
+        this.sampler.start();
+    }
+
+    public void stop() {
+        final Sampler s;
+        synchronized (this) {
+            s = this.sampler;
+            this.sampler = null;
+        }
+        if (s == null) return;
+        s.running = false;
+        s.interrupt();
+        try {
+            s.join(5000);
+        } catch (final InterruptedException e) {}
+    }
+
+    public synchronized boolean isRunning() {
+        return this.sampler != null;
+    }
+
+    public long interval() {
+        return this.interval;
+    }
+
+    public long window() {
+        return this.window;
+    }
+
+    /**
+     * @return the average duration of a sample in microseconds
+     */
+    public synchronized long averageSampleMicros() {
+        return this.samples == 0 ? 0 : this.sampleNanos / this.samples / 1000;
+    }
+
+    /**
+     * @return the start time of the reported samples in milliseconds since the epoch
+     */
+    public synchronized long reportStart() {
+        return this.previous == null ? this.current.start : this.previous.start;
+    }
+
+    /**
+     * take a sample of all threads; this is called by the sampler thread
+     */
+    public void sample() {
+        final long start = System.nanoTime();
+        final ThreadInfo[] infos = this.bean.dumpAllThreads(false, false);
+        final long self = Thread.currentThread().getId();
+        final List<String[]> stacks = new ArrayList<String[]>();
+        final List<String> blocked = new ArrayList<String>();
+        for (final ThreadInfo info: infos) {
+            if (info == null || info.getThreadId() == self) continue;
+            final StackTraceElement[] trace = info.getStackTrace();
+            if (trace == null || trace.length == 0) continue;
+            final String subsystem = subsystem(info.getThreadName());
+            final Thread.State state = info.getThreadState();
+            if (state == Thread.State.BLOCKED) {
+                blocked.add(subsystem);
+            } else if (state == Thread.State.RUNNABLE && !IDLE_FRAMES.contains(trace[0].getClassName() + "." + trace[0].getMethodName())) {
+                stacks.add(frames(subsystem, trace));
+            }
+        }
+        final long now = System.currentTimeMillis();
+        Window finished = null;
+        synchronized (this) {
+            if (now - this.current.start >= this.window) {
+                this.previous = this.current;
+                this.current = new Window(now);
+                finished = this.previous;
+            }
+            for (final String[] frames: stacks) this.current.add(intern(frames));
+            for (final String subsystem: blocked) this.current.block(subsystem);
+            this.current.samples++;
+            this.samples++;
+            this.sampleNanos += System.nanoTime() - start;
+        }
+        // the finished window is not changed any more, it is written without blocking the reports
+        if (finished != null && this.dumpFile != null) dump(finished);
+    }
+
+    private int intern(final String frame) {
+        final Integer id = this.frameIds.get(frame);
+        if (id != null) return id.intValue();
+        if (this.frameCount >= MAX_FRAMES) return 0; // the id of TRUNCATED
+        String[] names = this.frameNames;
+        if (this.frameCount == names.length) names = Arrays.copyOf(names, names.length * 2);
+        names[this.frameCount] = frame;
+        this.frameNames = names;
+        this.frameIds.put(frame, this.frameCount);
+        return this.frameCount++;
+    }
+
+    private Stack intern(final String[] frames) {
+        final int[] ids = new int[frames.length];
+        for (int i = 0; i < frames.length; i++) ids[i] = intern(frames[i]);
+        return new Stack(ids);
+    }
+
+    private void dump(final Window finished) {
+        try {
+            final File tmp = new File(this.dumpFile.getParentFile(), this.dumpFile.getName() + ".tmp");
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8);
+            try {
+                writeCollapsed(collapse(finished.stacks, this.frameNames), null, writer);
+            } finally {
+                writer.close();
+            }
+            FileUtils.deletedelete(this.dumpFile);
+            if (!tmp.renameTo(this.dumpFile)) log.warn("cannot write profile to " + this.dumpFile);
+        } catch (final IOException e) {
+            log.warn("cannot write profile to " + this.dumpFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the counted stacks of the current and the previous window
+     */
+    private Map<String, long[]> stacks() {
+        final Map<Stack, long[]> stacks;
+        synchronized (this) {
+            stacks = new HashMap<Stack, long[]>(this.current.stacks.size() * 2);
+            if (this.previous != null) merge(stacks, this.previous.stacks);
+            merge(stacks, this.current.stacks);
+        }
+        // the frame names are read after the stacks, so they contain all frames of the stacks
+        return collapse(stacks, this.frameNames);
+    }
+
+    private static void merge(final Map<Stack, long[]> target, final Map<Stack, long[]> source) {
+        for (final Map.Entry<Stack, long[]> entry: source.entrySet()) {
+            final long[] c = target.get(entry.getKey());
+            if (c == null) target.put(entry.getKey(), new long[]{entry.getValue()[0]});
+            else c[0] += entry.getValue()[0];
+        }
+    }
+
+    private static Map<String, long[]> collapse(final Map<Stack, long[]> stacks, final String[] names) {
+        final Map<String, long[]> collapsed = new HashMap<String, long[]>(stacks.size() * 2);
+        for (final Map.Entry<Stack, long[]> entry: stacks.entrySet()) {
+            collapsed.put(entry.getKey().toString(names), entry.getValue());
+        }
+        return collapsed;
+    }
+
+    /**
+     * write the stacks in the collapsed format: one line per stack with the frames from the
+     * subsystem to the leaf separated by semicolons, followed by a blank and the count
+     * @param subsystem only stacks of this subsystem, all stacks if null
+     * @param out the target
+     * @throws IOException
+     */
+    public void writeCollapsed(final String subsystem, final Appendable out) throws IOException {
+        writeCollapsed(stacks(), subsystem, out);
+    }
+
+    private static void writeCollapsed(final Map<String, long[]> stacks, final String subsystem, final Appendable out) throws IOException {
+        final String prefix = subsystem == null ? null : subsystem + ";";
+        for (final Map.Entry<String, long[]> entry: new TreeMap<String, long[]>(stacks).entrySet()) {
+            if (prefix != null && !entry.getKey().startsWith(prefix)) continue;
+            out.append(entry.getKey()).append(' ').append(Long.toString(entry.getValue()[0])).append('\n');
+        }
+    }
+
+    /**
+     * @return the subsystems with the number of running and blocked samples, the busiest subsystem first
+     */
+    public List<Subsystem> subsystems() {
+        final Map<String, Subsystem> map = new HashMap<String, Subsystem>();
+        synchronized (this) {
+            final String[] names = this.frameNames;
+            for (final Window w: new Window[]{this.previous, this.current}) {
+                if (w == null) continue;
+                for (final Map.Entry<Stack, long[]> entry: w.stacks.entrySet()) {
+                    subsystem(map, names[entry.getKey().frames[0]]).running += entry.getValue()[0];
+                }
+                for (final Map.Entry<String, long[]> entry: w.blocked.entrySet()) {
+                    subsystem(map, entry.getKey()).blocked += entry.getValue()[0];
+                }
+            }
+        }
+        final List<Subsystem> list = new ArrayList<Subsystem>(map.values());
+        Collections.sort(list, new Comparator<Subsystem>() {
+            @Override
+            public int compare(final Subsystem o1, final Subsystem o2) {
+                if (o1.running != o2.running) return o1.running > o2.running ? -1 : 1;
+                return o1.name.compareTo(o2.name);
+            }
+        });
+        return list;
+    }
+
+    private static Subsystem subsystem(final Map<String, Subsystem> map, final String name) {
+        Subsystem s = map.get(name);
+        if (s == null) {
+            s = new Subsystem(name);
+            map.put(name, s);
+        }
+        return s;
+    }
+
+    /**
+     * @return the number of samples of the current and the previous window
+     */
+    public synchronized long sampleCount() {
+        return this.current.samples + (this.previous == null ? 0 : this.previous.samples);
+    }
+
+    /**
+     * build the flame graph of the stacks
+     * @param subsystem only stacks of this subsystem, all stacks if null
+     * @return the root node; its children are the subsystems
+     */
+    public Node flameGraph(final String subsystem) {
+        return flameGraph(stacks(), subsystem);
+    }
+
+    /**
+     * build a flame graph from collapsed stacks
+     * @param stacks the stacks with their counts
+     * @param subsystem only stacks of this subsystem, all stacks if null
+     * @return the root node
+     */
+    public static Node flameGraph(final Map<String, long[]> stacks, final String subsystem) {
+        final Node root = new Node("all");
+        final String prefix = subsystem == null ? null : subsystem + ";";
+        for (final Map.Entry<String, long[]> entry: stacks.entrySet()) {
+            if (prefix != null && !entry.getKey().startsWith(prefix)) continue;
+            final long count = entry.getValue()[0];
+            Node node = root;
+            node.total += count;
+            for (final String frame: entry.getKey().split(";")) {
+                node = node.child(frame);
+                node.total += count;
+            }
+            node.self += count;
+        }
+        return root;
+    }
+
+    /**
+     * compute the subsystem of a thread from its name: the prefix given by the
+     * NamePrefixThreadFactory or the name without a trailing number
+     * @param threadName the name of a thread
+     * @return the subsystem name
+     */
+    public static String subsystem(final String threadName) {
+        if (threadName == null) return "unnamed";
+        String name = threadName;
+        final int p = name.indexOf("_pool-");
+        if (p > 0) return name.substring(0, p);
+        if (name.startsWith("pool-") && name.indexOf("-thread-") > 0) return "pool";
+        // remove trailing numbers with their separators, like in 'Thread-12' or 'qtp1234-56'
+        int end = name.length();
+        boolean changed = true;
+        while (changed && end > 0) {
+            changed = false;
+            while (end > 0 && Character.isDigit(name.charAt(end - 1))) {end--; changed = true;}
+            while (end > 0 && " _-#:.".indexOf(name.charAt(end - 1)) >= 0) {end--; changed = true;}
+        }
+        name = name.substring(0, end);
+        if (name.isEmpty()) return "unnamed";
+        return name.replace(';', ',');
+    }
+
+    /**
+     * produce the collapsed form of a stack trace
+     * @param subsystem the subsystem of the thread, used as root frame
+     * @param trace the stack trace, leaf first
+     * @return the frames from the root to the leaf separated by semicolons
+     */
+    public static String collapse(final String subsystem, final StackTraceElement[] trace) {
+        final String[] frames = frames(subsystem, trace);
+        final StringBuilder sb = new StringBuilder(frames.length * 48);
+        for (final String frame: frames) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(frame);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param subsystem the subsystem of the thread, used as root frame
+     * @param trace the stack trace, leaf first
+     * @return the frames from the root to the leaf
+     */
+    private static String[] frames(final String subsystem, final StackTraceElement[] trace) {
+        final int depth = Math.min(trace.length, MAX_DEPTH);
+        final boolean truncated = trace.length > MAX_DEPTH;
+        final String[] frames = new String[depth + (truncated ? 2 : 1)];
+        int f = 0;
+        frames[f++] = subsystem;
+        if (truncated) frames[f++] = TRUNCATED;
+        for (int i = depth - 1; i >= 0; i--) {
+            frames[f++] = trace[i].getClassName() + "." + trace[i].getMethodName();
+        }
+        return frames;
+    }
+
+    /**
+     * the running and blocked samples of a subsystem
+     */
+    public static class Subsystem {
+        public final String name;
+        public long running, blocked;
+        private Subsystem(final String name) {
+            this.name = name;
+            this.running = 0;
+            this.blocked = 0;
+        }
+    }
+
+    /**
+     * a frame in the flame graph
+     */
+    public static class Node {
+        public final String name;
+        /** samples with this frame on the stack */
+        public long total;
+        /** samples with this frame on top of the stack */
+        public long self;
+        private final Map<String, Node> children;
+        private Node(final String name) {
+            this.name = name;
+            this.total = 0;
+            this.self = 0;
+            this.children = new HashMap<String, Node>();
+        }
+        private Node child(final String frame) {
+            Node child = this.children.get(frame);
+            if (child == null) {
+                child = new Node(frame);
+                this.children.put(frame, child);
+            }
+            return child;
+        }
+        /**
+         * @return the children ordered by name, as usual for flame graphs
+         */
+        public List<Node> children() {
+            final List<Node> list = new ArrayList<Node>(this.children.values());
+            Collections.sort(list, new Comparator<Node>() {
+                @Override
+                public int compare(final Node o1, final Node o2) {
+                    return o1.name.compareTo(o2.name);
+                }
+            });
+            return list;
+        }
+    }
+
+    /**
+     * a stack as frame ids from the root to the leaf; the first frame is the subsystem
+     */
+    private static final class Stack {
+        private final int[] frames;
+        private final int hash;
+        private Stack(final int[] frames) {
+            this.frames = frames;
+            this.hash = Arrays.hashCode(frames);
+        }
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Stack && Arrays.equals(this.frames, ((Stack) obj).frames);
+        }
+        private String toString(final String[] names) {
+            final StringBuilder sb = new StringBuilder(this.frames.length * 48);
+            for (final int frame: this.frames) {
+                if (sb.length() > 0) sb.append(';');
+                sb.append(names[frame]);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static class Window {
+        private final long start;
+        private final Map<Stack, long[]> stacks;
+        private final Map<String, long[]> blocked;
+        private long samples;
+        private Window(final long start) {
+            this.start = start;
+            this.stacks = new HashMap<Stack, long[]>();
+            this.blocked = new HashMap<String, long[]>();
+            this.samples = 0;
+        }
+        private void add(Stack stack) {
+            long[] c = this.stacks.get(stack);
+            if (c == null) {
+                if (this.stacks.size() >= MAX_STACKS) {
+                    // keep the memory bounded, count the stack only for its subsystem; 0 is the id of TRUNCATED
+                    stack = new Stack(new int[]{stack.frames[0], 0});
+                    c = this.stacks.get(stack);
+                }
+                if (c == null) {
+                    c = new long[]{0};
+                    this.stacks.put(stack, c);
+                }
+            }
+            c[0]++;
+        }
+        private void block(final String subsystem) {
+            final long[] c = this.blocked.get(subsystem);
+            if (c == null) this.blocked.put(subsystem, new long[]{1});
+            else c[0]++;
+        }
+    }
+
+    private class Sampler extends Thread {
+
+        private volatile boolean running;
+
+        private Sampler() {
+            super("SamplingProfiler");
+            setDaemon(true);
+            setPriority(Thread.MAX_PRIORITY);
+            this.running = true;
+        }
+
+        @Override
+        public void run() {
+            while (this.running) {
+                try {
+                    Thread.sleep(SamplingProfiler.this.interval);
+                } catch (final InterruptedException e) {
+                    break;
+                }
+                try {
+                    sample();
+                } catch (final RuntimeException e) {
+                    log.warn("cannot take sample", e);
+                }
+            }
+        }
+    }
+
+}
@@ -29,7 +29,10 @@ import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Semaphore;
 
+import com.codahale.metrics.Gauge;
+
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.util.MemoryControl;
 
@@ -49,6 +52,8 @@ import net.yacy.kelondro.util.MemoryControl;
 public class IODispatcher extends Thread {
 
     private static final ConcurrentLog log = new ConcurrentLog("IODispatcher");
+    private static final Metrics.Latency dumpLatency = Metrics.latency("yacy_rwi_dump_seconds", "Duration of writing a RWI cache to a BLOB file");
+    private static final Metrics.Latency mergeLatency = Metrics.latency("yacy_rwi_merge_seconds", "Duration of merging or rewriting RWI BLOB files");
 
     private   Semaphore                    controlQueue; // controls that only one io job is running
     private   final Semaphore              termination; // released if thread is safe to terminate
@@ -65,6 +70,20 @@ public class IODispatcher extends Thread {
         this.mergeQueue = new ArrayBlockingQueue<MergeJob>(mergeQueueLength);
         this.writeBufferSize = writeBufferSize;
         this.terminate = false;
+        Metrics.gauge("yacy_rwi_dump_queue_size", "Queued RWI dump jobs", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                final ArrayBlockingQueue<DumpJob<? extends Reference>> q = IODispatcher.this.dumpQueue;
+                return q == null ? 0 : q.size();
+            }
+        });
+        Metrics.gauge("yacy_rwi_merge_queue_size", "Queued RWI merge jobs", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                final ArrayBlockingQueue<MergeJob> q = IODispatcher.this.mergeQueue;
+                return q == null ? 0 : q.size();
+            }
+        });
     }
 
     public void terminate() {
@@ -226,12 +245,14 @@ public class IODispatcher extends Thread {
             this.array = array;
         }
         private void dump() {
+            final long start = System.nanoTime();
             try {
                 if (!this.cache.isEmpty()) this.cache.dump(this.file, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize), true);
                 this.array.mountBLOBFile(this.file);
             } catch (final IOException e) {
                 ConcurrentLog.logException(e);
             }
+            dumpLatency.since(start);
         }
     }
 
@@ -263,7 +284,10 @@ public class IODispatcher extends Thread {
         	    log.warn("merge of file (2) " + this.f2.getName() + " failed: file does not exists");
         		return null;
         	}
-            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            final long start = System.nanoTime();
+            final File merged = this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            mergeLatency.since(start);
+            return merged;
         }
     }
 
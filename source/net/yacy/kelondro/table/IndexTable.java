@@ -25,6 +25,8 @@ import java.io.IOException;
 
 import net.yacy.cora.order.NaturalOrder;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.ConcurrentCache;
+import net.yacy.kelondro.index.Index;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.util.kelondroException;
 
@@ -33,10 +35,14 @@ import net.yacy.kelondro.util.kelondroException;
  */
 public class IndexTable {
 
-    private final Table table;
+    private final static int cacheHitLimit = 100000;
+    private final static int cacheMissLimit = 100000;
+
+    private final Index table;
 
     /**
-     * create an index with given (fixed) key and value length 
+     * create an index with given (fixed) key and value length.
+     * Without a tail cache the rows are read from the file, therefore recently used rows are then kept in a {@link ConcurrentCache}.
      * @param location
      * @param keysize
      * @param payloadsize
@@ -53,16 +59,18 @@ public class IndexTable {
                 "long num-" + payloadsize + " {b256}",
                 NaturalOrder.naturalOrder);
         Table t;
+        boolean tailCache = useTailCache;
         try {
             t = new Table(location, row, 1024*1024, 0, useTailCache, exceed134217727, true);
         } catch (final SpaceExceededException e) {
             try {
+                tailCache = false;
                 t = new Table(location, row, 0, 0, false, exceed134217727, true);
             } catch (kelondroException | SpaceExceededException e1) {
                 throw new IOException(e);
             }
         }
-        this.table = t;
+        this.table = tailCache ? t : new ConcurrentCache(t, cacheHitLimit, cacheMissLimit);
     }
 
     /**
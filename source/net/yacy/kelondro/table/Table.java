@@ -24,11 +24,18 @@
 
 package net.yacy.kelondro.table;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
@@ -36,6 +43,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.CloneableIterator;
@@ -76,6 +85,12 @@ public class Table implements Index, Iterable<Row.Entry> {
     private final static TreeMap<String, Table> tableTracker = new TreeMap<String, Table>();
     private final static long maxarraylength = 134217727L; // (2^27-1) that may be the maximum size of array length in some JVMs
 
+    /** extension of the index snapshot file which is written on close to speed up the next start */
+    public final static String SNAPSHOT_EXT = ".snapshot";
+    private final static int SNAPSHOT_MAGIC = 0x59545331; // "YTS1"
+    private final static int SNAPSHOT_HEADER = 32;
+    private final static int SNAPSHOT_MIN_RECORDS = 1000; // smaller tables are read fast enough
+
     private final long minmemremaining; // if less than this memory is remaininig, the memory copy of a table is abandoned
     private final int buffersize;
     private final Row rowdef;
@@ -83,6 +98,7 @@ public class Table implements Index, Iterable<Row.Entry> {
     private       HandleMap index;
     private       BufferedRecords file;
     private       RowSet table;
+    private       boolean snapshotIndex = false; // true if the index was loaded from a snapshot
 
     public Table(
     		final File tablefile,
@@ -92,6 +108,22 @@ public class Table implements Index, Iterable<Row.Entry> {
     		boolean useTailCache,
     		final boolean exceed134217727,
     		final boolean warmUp) throws SpaceExceededException, kelondroException {
+        this(tablefile, rowdef, buffersize, initialSpace, useTailCache, exceed134217727, warmUp, false);
+    }
+
+    /**
+     * @param offHeapTailCache if true, the tail cache is stored outside of the java heap; then it is not limited
+     * by the maximum array length and does not produce a large array in the heap
+     */
+    public Table(
+            final File tablefile,
+            final Row rowdef,
+            final int buffersize,
+            final int initialSpace,
+            boolean useTailCache,
+            final boolean exceed134217727,
+            final boolean warmUp,
+            final boolean offHeapTailCache) throws SpaceExceededException, kelondroException {
 
         this.rowdef = rowdef;
         this.buffersize = buffersize;
@@ -133,9 +165,14 @@ public class Table implements Index, Iterable<Row.Entry> {
             this.table = null;
             
             try {
-                this.table = ((exceed134217727 || neededRAM4table < maxarraylength) &&
-            	    	      useTailCache && MemoryControl.available() > 600L * 1024L * 1024L &&
-            	    	      MemoryControl.request(neededRAM4table, true)) ? new RowSet(this.taildef, records) : null;
+                if (offHeapTailCache) {
+                    // the tail cache does not need space in the heap
+                    this.table = useTailCache ? new RowSet(this.taildef, records, true) : null;
+                } else {
+                    this.table = ((exceed134217727 || neededRAM4table < maxarraylength) &&
+                                  useTailCache && MemoryControl.available() > 600L * 1024L * 1024L &&
+                                  MemoryControl.request(neededRAM4table, true)) ? new RowSet(this.taildef, records) : null;
+                }
             } catch (final SpaceExceededException e) {
             	this.table = null;
             } catch (final Throwable e) {
@@ -160,7 +197,36 @@ public class Table implements Index, Iterable<Row.Entry> {
             if (log.isFine()) log.fine("initializing RAM index for TABLE " + tablefile.getName() + ", please wait.");
             int i = 0;
             byte[] key;
-            if (this.table == null) {
+            final RowHandleMap snapshot = readSnapshot(tablefile, rowdef, fileSize);
+            if (snapshot != null) {
+                // the index is taken from the snapshot of the last clean close, only the table copy must be read
+                this.index.close();
+                this.index = snapshot;
+                this.snapshotIndex = true;
+                if (this.table != null) {
+                    final ChunkIterator ri = new ChunkIterator(tablefile, rowdef.objectsize, rowdef.objectsize);
+                    try {
+                        while (ri.hasNext()) {
+                            this.table.addUnique(this.taildef.newEntry(ri.next(), rowdef.primaryKeyLength, true));
+                        }
+                    } catch (final SpaceExceededException e) {
+                        this.table = null;
+                    } finally {
+                        if (ri.hasNext()) {
+                            try {
+                                ri.close();
+                            } catch (IOException ioe) {
+                                /* Do not block if closing is not possible but anyway keep a trace in log */
+                                log.warn("Could not close input stream on the file " + tablefile);
+                            }
+                        }
+                    }
+                    Runtime.getRuntime().gc();
+                    if (abandonTable()) {
+                        this.table = null;
+                    }
+                }
+            } else if (this.table == null) {
                 final ChunkIterator ki = new ChunkIterator(tablefile, rowdef.objectsize, rowdef.primaryKeyLength);
                 try {
                 	while (ki.hasNext()) {
@@ -328,6 +394,7 @@ public class Table implements Index, Iterable<Row.Entry> {
 
     private boolean abandonTable() {
         // check if not enough memory is there to maintain a memory copy of the table
+        if (this.table != null && this.table.isOffHeap()) return false; // abandoning the table would not free heap memory
         return MemoryControl.shortStatus() || MemoryControl.available() < this.minmemremaining;
     }
 
@@ -361,6 +428,141 @@ public class Table implements Index, Iterable<Row.Entry> {
         }
     }
 
+    /**
+     * @param tablefile a table file
+     * @return the file of the index snapshot of the table
+     */
+    public static File snapshotFile(final File tablefile) {
+        return new File(tablefile.getParentFile(), tablefile.getName() + SNAPSHOT_EXT);
+    }
+
+    /**
+     * Write the index of a closed table to its snapshot file. The snapshot consists of a header with the
+     * row sizes, the number of entries and the length and modification date of the table file, the sorted
+     * index entries and a CRC32 checksum of all preceding bytes.
+     * @param tablefile the closed table file
+     * @param rowdef the row definition of the table
+     * @param index the index of the table
+     */
+    private static void writeSnapshot(final File tablefile, final Row rowdef, final RowHandleMap index) {
+        final long start = System.currentTimeMillis();
+        final File f = snapshotFile(tablefile);
+        final File tmp = new File(f.getParentFile(), f.getName() + ".prt");
+        try {
+            final int records = (int) Records.tableSize(tablefile, rowdef.objectsize);
+            if (records != index.size()) {
+                log.warn("no snapshot for " + tablefile.getName() + ": the index has " + index.size() + " entries for " + records + " records");
+                return;
+            }
+            final CRC32 crc = new CRC32();
+            try (final FileOutputStream fos = new FileOutputStream(tmp)) {
+                final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fos, crc), 1024 * 1024));
+                os.writeInt(SNAPSHOT_MAGIC);
+                os.writeInt(rowdef.objectsize);
+                os.writeInt(rowdef.primaryKeyLength);
+                os.writeInt(records);
+                os.writeLong(tablefile.length());
+                os.writeLong(tablefile.lastModified());
+                if (index.write(os) != records) throw new IOException("index changed while writing the snapshot");
+                os.flush();
+                new DataOutputStream(fos).writeLong(crc.getValue());
+            }
+            FileUtils.deletedelete(f);
+            if (!tmp.renameTo(f)) throw new IOException("cannot rename " + tmp + " to " + f);
+            if (log.isFine()) log.fine("wrote a snapshot for the " + records + " index entries of " + tablefile.getName() + " in " + (System.currentTimeMillis() - start) + " milliseconds");
+        } catch (final IOException e) {
+            log.warn("cannot write the snapshot of " + tablefile.getName() + ": " + e.getMessage());
+            FileUtils.deletedelete(tmp);
+        }
+    }
+
+    /**
+     * Read the index snapshot of a table with a single bulk read. The snapshot is deleted afterwards because
+     * the table is changed after opening; a new snapshot is written on the next clean close.
+     * If there is not enough memory for the buffer of the snapshot, the index is built from the table file.
+     * @param tablefile the table file, not yet opened
+     * @param rowdef the row definition of the table
+     * @param records the number of records in the table file
+     * @return the index of the table or null if there is no snapshot or the snapshot does not fit to the table file
+     */
+    private static RowHandleMap readSnapshot(final File tablefile, final Row rowdef, final int records) {
+        final File f = snapshotFile(tablefile);
+        if (!f.exists()) return null;
+        final long start = System.currentTimeMillis();
+        final int entrysize = rowdef.primaryKeyLength + 4;
+        try {
+            final long size = f.length();
+            if (size != SNAPSHOT_HEADER + (long) records * entrysize + 8L || size > Integer.MAX_VALUE) {
+                log.info("snapshot of " + tablefile.getName() + " does not fit to the table, re-building index");
+                return null;
+            }
+            if (!MemoryControl.request(size, true)) {
+                log.info("not enough memory (" + (MemoryControl.available() / 1024L / 1024L) + "MB) to read the snapshot of " + tablefile.getName() + ", re-building index");
+                return null;
+            }
+            final ByteBuffer b = ByteBuffer.allocate((int) size);
+            try (final FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                while (b.hasRemaining()) if (channel.read(b) < 0) throw new IOException("unexpected end of file");
+            }
+            b.flip();
+            final CRC32 crc = new CRC32();
+            crc.update(b.array(), 0, (int) size - 8);
+            if (b.getLong((int) size - 8) != crc.getValue() ||
+                b.getInt(0) != SNAPSHOT_MAGIC ||
+                b.getInt(4) != rowdef.objectsize ||
+                b.getInt(8) != rowdef.primaryKeyLength ||
+                b.getInt(12) != records ||
+                b.getLong(16) != tablefile.length() ||
+                b.getLong(24) != tablefile.lastModified()) {
+                log.warn("validation of the snapshot of " + tablefile.getName() + " failed, re-building index");
+                return null;
+            }
+            b.position(SNAPSHOT_HEADER);
+            b.limit((int) size - 8);
+            final RowHandleMap index = new RowHandleMap(rowdef.primaryKeyLength, rowdef.objectOrder, 4, b.slice(), tablefile.getAbsolutePath());
+            if (index.size() != records || !verifySnapshot(tablefile, rowdef, b)) {
+                log.warn("verification of the snapshot of " + tablefile.getName() + " failed, re-building index");
+                index.close();
+                return null;
+            }
+            log.info("using the index snapshot of " + tablefile.getName() + " with " + records + " entries, loaded in " + (System.currentTimeMillis() - start) + " milliseconds");
+            return index;
+        } catch (final IOException e) {
+            log.warn("cannot read the snapshot of " + tablefile.getName() + ": " + e.getMessage());
+            return null;
+        } catch (final SpaceExceededException e) {
+            log.warn("no space for the snapshot of " + tablefile.getName() + ": " + e.getMessage());
+            return null;
+        } finally {
+            FileUtils.deletedelete(f);
+        }
+    }
+
+    /**
+     * compare the keys of some snapshot entries with the keys at the referenced positions of the table file
+     * @param b the snapshot entries between position and limit
+     * @return true if all keys are equal
+     */
+    private static boolean verifySnapshot(final File tablefile, final Row rowdef, final ByteBuffer b) throws IOException {
+        final int entrysize = rowdef.primaryKeyLength + 4;
+        final int entries = (b.limit() - SNAPSHOT_HEADER) / entrysize;
+        if (entries == 0) return true;
+        final byte[] key = new byte[rowdef.primaryKeyLength];
+        final byte[] record = new byte[rowdef.primaryKeyLength];
+        try (final RandomAccessFile raf = new RandomAccessFile(tablefile, "r")) {
+            final int step = Math.max(1, entries / 16);
+            for (int e = 0; e < entries; e += step) {
+                final int p = SNAPSHOT_HEADER + e * entrysize;
+                for (int j = 0; j < key.length; j++) key[j] = b.get(p + j);
+                final long pos = b.getInt(p + key.length) & 0xFFFFFFFFL;
+                raf.seek(pos * rowdef.objectsize);
+                raf.readFully(record);
+                if (!Arrays.equals(key, record)) return false;
+            }
+        }
+        return true;
+    }
+
     public static final Iterator<String> filenames() {
         // iterates string objects; all file names from record tracker
         return tableTracker.keySet().iterator();
@@ -463,6 +665,13 @@ public class Table implements Index, Iterable<Row.Entry> {
         return this.table != null;
     }
 
+    /**
+     * @return true if the index was loaded from the snapshot of the last clean close instead of the table file
+     */
+    public boolean usesSnapshotIndex() {
+        return this.snapshotIndex;
+    }
+
     public static long staticRAMIndexNeed(final File f, final Row rowdef) {
         return (((rowdef.primaryKeyLength + 4)) * tableSize(f, rowdef.objectsize, true) * RowCollection.growfactorLarge100 / 100L);
     }
@@ -585,6 +794,9 @@ public class Table implements Index, Iterable<Row.Entry> {
         	this.file.close();
         }
         this.file = null;
+        if (tablefile != null && this.index instanceof RowHandleMap && this.index.size() >= SNAPSHOT_MIN_RECORDS) {
+            writeSnapshot(new File(tablefile), this.rowdef, (RowHandleMap) this.index);
+        }
         if (this.table != null) this.table.close();
         this.table = null;
         if (this.index != null) this.index.close();
@@ -991,7 +1203,7 @@ public class Table implements Index, Iterable<Row.Entry> {
     public synchronized void clear() throws IOException {
         this.file.clear();
         // initialize index and copy table
-        this.table = (this.table == null) ? null : new RowSet(this.taildef);
+        this.table = (this.table == null) ? null : new RowSet(this.taildef, this.table.isOffHeap());
         this.index.clear();
     }
 
@@ -33,7 +33,10 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.codahale.metrics.Gauge;
+
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
@@ -50,8 +53,10 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     private final WorkflowTask<J> task;
     private final String processName, description;
     private final String[] childs;
-    private long blockTime, execTime, passOnTime;
+    private long blockTime, execTime, passOnTime; // execTime in nanoseconds
     private long execCount;
+    private final Metrics.Latency jobLatency;
+    private final String queueGauge;
 
     public WorkflowProcessor(
             final String name, final String description, final String[] childnames,
@@ -79,6 +84,14 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.execTime = 0;
         this.passOnTime = 0;
         this.execCount = 0;
+        this.jobLatency = Metrics.latency(Metrics.name("yacy_workflow_job_seconds", "processor", name), "Processing time of the jobs of the workflow processors");
+        this.queueGauge = Metrics.name("yacy_workflow_queue_size", "processor", name);
+        Metrics.gauge(this.queueGauge, "Queued jobs of the workflow processors", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getQueueSize();
+            }
+        });
 
         // store this object for easy monitoring
         processMonitor.add(this);
@@ -237,6 +250,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         ConcurrentLog.info("serverProcessor", "queue " + this.processName + ": shutdown.");
         this.executor = null;
         this.input = null;
+        Metrics.remove(this.queueGauge);
         // remove entry from monitor
         final Iterator<WorkflowProcessor<?>> i = processes();
         WorkflowProcessor<?> p;
@@ -253,9 +267,10 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         return processMonitor.iterator();
     }
 
-    protected void increaseJobTime(final long time) {
-        this.execTime += time;
+    protected void increaseJobTime(final long nanos) {
+        this.execTime += nanos;
         this.execCount++;
+        this.jobLatency.update(nanos);
     }
 
     public String getName() {
@@ -288,7 +303,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
      * @return
      */
     public long getExecTime() {
-        return this.execTime;
+        return this.execTime / 1000000L;
     }
     public long getExecCount() {
         return this.execCount;
@@ -163,13 +163,35 @@ public class DHTSelection {
                 // we pick some random peers from the vertical position.
                 // All of them should be valid, but picking a random subset is a distributed load balancing on the whole YaCy network.
                 // without picking a random subset, always the same peers would be targeted for the same word resulting in (possible) DoS on the target.
+                // The chance of a peer is inverse to its measured cost, so fast and reliable peers are preferred but slow peers are still asked sometimes.
                 for (int i = 0; i < redundancy; i++) {
-                    collectedSeeds.add(seeds.remove(random.nextInt(seeds.size())));
+                    collectedSeeds.add(removeWeighted(seeds, random));
                 }
             }
         }
         return collectedSeeds;
     }
+
+    /**
+     * remove a random seed from the list with a probability which is inverse to the cost of the peer
+     * @param seeds a non-empty list of seeds
+     * @param random a random generator instance
+     * @return the removed seed
+     */
+    private static Seed removeWeighted(final List<Seed> seeds, final Random random) {
+        final double[] weights = new double[seeds.size()];
+        double sum = 0.0d;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 1.0d / Math.max(1.0d, PeerPerformance.cost(seeds.get(i).hash));
+            sum += weights[i];
+        }
+        double r = random.nextDouble() * sum;
+        for (int i = 0; i < weights.length - 1; i++) {
+            r -= weights[i];
+            if (r < 0.0d) return seeds.remove(i);
+        }
+        return seeds.remove(weights.length - 1);
+    }
     
     /**
      * @param seedDB the seeds database. Must not be null.
@@ -183,7 +205,21 @@ public class DHTSelection {
         // this method is called from the distribution target computation
         List<Seed>[] seedlists = (List<Seed>[]) Array.newInstance(ArrayList.class, seedDB.scheme.verticalPartitions());
         for (int verticalPosition = 0; verticalPosition < seedDB.scheme.verticalPartitions(); verticalPosition++) {
-            seedlists[verticalPosition] = selectVerticalDHTPositions(seedDB, wordhash, minage, Integer.MIN_VALUE, redundancy, verticalPosition);
+            // all redundant positions must get the references, therefore peers are not sampled here;
+            // one spare position is selected to replace a peer where most of the recent requests failed
+            final ArrayList<Seed> candidates = selectVerticalDHTPositions(seedDB, wordhash, minage, Integer.MIN_VALUE, redundancy + 1, verticalPosition);
+            final ArrayList<Seed> seeds = new ArrayList<>(redundancy);
+            int spare = candidates.size() - redundancy;
+            for (final Seed seed: candidates) {
+                if (seeds.size() >= redundancy) break;
+                if (spare > 0 && PeerPerformance.unreliable(seed.hash)) {
+                    if (RemoteSearch.log.isInfo()) RemoteSearch.log.info("selectPeers/DHTorder: replaced unreliable peer " + seed.hash + ":" + seed.getName());
+                    spare--;
+                    continue;
+                }
+                seeds.add(seed);
+            }
+            seedlists[verticalPosition] = seeds;
         }
         return seedlists;
     }
@@ -0,0 +1,169 @@
+// PeerPerformance.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks the measured latency and failure rate of the requests to other peers.
+ * Both values are exponentially weighted moving averages per seed hash; in addition the
+ * difference to a neutral score fades with the time since the last measurement, so a peer which
+ * was slow or unreachable is tried again after a while and a peer which is not measured any more
+ * becomes an unknown peer again.
+ * The score is used by the DHT target selection to prefer fast and reliable peers among the redundant
+ * positions of a vertical partition.
+ */
+public final class PeerPerformance {
+
+    /** the weight of a new measurement in the moving averages */
+    private static final double ALPHA = 0.3d;
+
+    /** the time after which the deviation from the neutral score is halved */
+    private static final long HALFLIFE = 10L * 60L * 1000L;
+
+    /** the latency which is assumed for peers without measurement */
+    private static final double NEUTRAL_LATENCY = 1000.0d;
+
+    /** the latency which is added to the cost for a failure rate of 1, the cost of a timed out request */
+    private static final double FAILURE_PENALTY = 10000.0d;
+
+    /** peers with a higher failure rate are replaced with a spare peer where possible */
+    private static final double UNRELIABLE = 0.5d;
+
+    private static final int MAXSIZE = 10000;
+
+    private static final ConcurrentMap<String, Score> scores = new ConcurrentHashMap<String, Score>();
+
+    private PeerPerformance() {}
+
+    private static class Score {
+
+        private double latency = NEUTRAL_LATENCY;
+        private double failure = 0.0d;
+        private long updated = System.currentTimeMillis();
+
+        /**
+         * move the values towards the neutral score according to the time since the last update
+         */
+        private void decay(final long now) {
+            if (now <= this.updated) return;
+            final double w = Math.pow(0.5d, (double) (now - this.updated) / (double) HALFLIFE);
+            this.latency = NEUTRAL_LATENCY + (this.latency - NEUTRAL_LATENCY) * w;
+            this.failure = this.failure * w;
+            this.updated = now;
+        }
+
+        private synchronized void record(final long latency, final boolean failed, final long now) {
+            decay(now);
+            if (latency >= 0) this.latency += ALPHA * (latency - this.latency);
+            this.failure += ALPHA * ((failed ? 1.0d : 0.0d) - this.failure);
+        }
+
+        private synchronized double failure(final long now) {
+            decay(now);
+            return this.failure;
+        }
+
+        private synchronized double cost(final long now) {
+            decay(now);
+            return this.latency + this.failure * FAILURE_PENALTY;
+        }
+    }
+
+    private static void record(final String hash, final long latency, final boolean failed) {
+        if (hash == null) return;
+        final long now = System.currentTimeMillis();
+        Score score = scores.get(hash);
+        if (score == null) {
+            if (scores.size() >= MAXSIZE) cleanup(now);
+            score = new Score();
+            final Score s = scores.putIfAbsent(hash, score);
+            if (s != null) score = s;
+        }
+        score.record(latency, failed, now);
+    }
+
+    /**
+     * remove the scores which have faded to the neutral score
+     */
+    private static void cleanup(final long now) {
+        final Iterator<Score> i = scores.values().iterator();
+        while (i.hasNext()) {
+            if (now - i.next().updated > 5 * HALFLIFE) i.remove();
+        }
+        if (scores.size() >= MAXSIZE) scores.clear();
+    }
+
+    /**
+     * record a successful request
+     * @param hash the hash of the peer
+     * @param latency the time until the response was complete in milliseconds
+     */
+    public static void success(final String hash, final long latency) {
+        record(hash, Math.max(0, latency), false);
+    }
+
+    /**
+     * record a successful request where the time is not comparable with the latency of a search,
+     * for example a transfer of a large amount of data
+     * @param hash the hash of the peer
+     */
+    public static void success(final String hash) {
+        record(hash, -1, false);
+    }
+
+    /**
+     * record a request which failed or timed out
+     * @param hash the hash of the peer
+     */
+    public static void failure(final String hash) {
+        record(hash, -1, true);
+    }
+
+    /**
+     * @param hash the hash of the peer
+     * @return the expected cost of a request to the peer in milliseconds: the latency plus a penalty for failures
+     */
+    public static double cost(final String hash) {
+        final Score score = scores.get(hash);
+        return score == null ? NEUTRAL_LATENCY : score.cost(System.currentTimeMillis());
+    }
+
+    /**
+     * @param hash the hash of the peer
+     * @return true if most of the recent requests to the peer failed
+     */
+    public static boolean unreliable(final String hash) {
+        final Score score = scores.get(hash);
+        return score != null && score.failure(System.currentTimeMillis()) > UNRELIABLE;
+    }
+
+    /**
+     * forget all scores
+     */
+    public static void clear() {
+        scores.clear();
+    }
+}
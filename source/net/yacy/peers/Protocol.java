@@ -43,9 +43,11 @@
 
 package net.yacy.peers;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
@@ -53,6 +55,7 @@ import java.time.DateTimeException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -95,6 +98,7 @@ import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.Domains;
+import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.http.HTTPClient;
 import net.yacy.cora.sorting.ClusteredScoreMap;
 import net.yacy.cora.sorting.ReversibleScoreMap;
@@ -124,6 +128,7 @@ import net.yacy.search.EventTracker;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
+import net.yacy.search.query.QueryTrace;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SecondarySearchSuperviser;
 import net.yacy.search.schema.CollectionSchema;
@@ -216,10 +221,13 @@ public final class Protocol {
                     false, true);
             responseTime = System.currentTimeMillis() - start;
             result = FileUtils.table(content);
+            // the response time of a hello includes the back-ping of the remote peer, it is not comparable with the latency of a search
+            PeerPerformance.success(targetHash);
         } catch (final Exception e ) {
             if ( Thread.currentThread().isInterrupted() ) {Network.log.info("yacyClient.hello thread '" + Thread.currentThread().getName() + "' interrupted.");
                 return null;
             }
+            PeerPerformance.failure(targetHash);
             Network.log.info("yacyClient.hello thread '" + Thread.currentThread().getName() + "', peer " + targetBaseURL + "; exception: " + e.getMessage());
             // try again (go into loop)
             result = null;
@@ -517,7 +525,9 @@ public final class Protocol {
 
         final long timestamp = System.currentTimeMillis();
         event.addExpectedRemoteReferences(count);
+        final ResultFeed feed = new ResultFeed(event, count, wordhashes, target, blacklist, timestamp);
         SearchResult result = null;
+        final QueryTrace.Span span = event.trace.span(QueryTrace.REMOTE, target.getName());
         for (String ip: target.getIPs()) {
             //if (ip.indexOf(':') >= 0) System.out.println("Search target: IPv6: " + ip);
 			final String targetBaseURL;
@@ -545,7 +555,8 @@ public final class Protocol {
                         partitions,
                         target.getHexHash() + ".yacyh",
                         targetBaseURL,
-                        secondarySearchSuperviser
+                        secondarySearchSuperviser,
+                        feed
                         );
                 break;
             } catch (final IOException e ) {
@@ -557,20 +568,18 @@ public final class Protocol {
                 } else {
                 	event.peers.peerActions.interfaceDeparture(target, ip);
                 }
+                span.end(-1, "failed: " + e.getMessage());
+                PeerPerformance.failure(target.hash);
                 return -1;
             }
         }
+        endSpan(span, result);
         if (result == null) return -1;
+        PeerPerformance.success(target.hash, System.currentTimeMillis() - timestamp);
         
-        // computation time
-        final long totalrequesttime = System.currentTimeMillis() - timestamp;
-
-        try {
-            remoteSearchProcess(event, count, totalrequesttime, wordhashes, target, blacklist, result);
-        } catch (final SpaceExceededException e) {
-            ConcurrentLog.logException(e);
-            return -1;
-        }
+        // feed the links which have not been fed while the result was streamed
+        feed.feed(result.links, result.totalCount);
+        feed.finish(result);
 
         // read index abstract
         if ( secondarySearchSuperviser != null ) {
@@ -616,7 +625,9 @@ public final class Protocol {
 
         final long timestamp = System.currentTimeMillis();
         event.addExpectedRemoteReferences(count);
+        final ResultFeed feed = new ResultFeed(event, count, wordhashes, target, blacklist, timestamp);
         SearchResult result = null;
+        final QueryTrace.Span span = event.trace.span(QueryTrace.REMOTE, target.getName());
         for (String ip: target.getIPs()) {
         	final String targetBaseURL = target.getPublicURL(ip,
 					Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.REMOTESEARCH_HTTPS_PREFERRED,
@@ -638,7 +649,8 @@ public final class Protocol {
                         partitions,
                         target.getHexHash() + ".yacyh",
                         targetBaseURL,
-                        null
+                        null,
+                        feed
                         );
                 break;
             } catch (final IOException e ) {
@@ -650,21 +662,31 @@ public final class Protocol {
                 } else {
                 	event.peers.peerActions.interfaceDeparture(target, ip);
                 }
+                span.end(-1, "failed: " + e.getMessage());
+                PeerPerformance.failure(target.hash);
                 return -1;
             }
         }
+        endSpan(span, result);
         if (result == null) return -1;
+        PeerPerformance.success(target.hash, System.currentTimeMillis() - timestamp);
         
-        // computation time
-        final long totalrequesttime = System.currentTimeMillis() - timestamp;
+        // feed the links which have not been fed while the result was streamed
+        feed.feed(result.links, result.totalCount);
+        feed.finish(result);
+        return result.availableCount;
+    }
 
-        try {
-            remoteSearchProcess(event, count, totalrequesttime, wordhashes, target, blacklist, result);
-        } catch (final SpaceExceededException e) {
-            ConcurrentLog.logException(e);
-            return -1;
+    /**
+     * end the span of a remote search request with the search time and the trace id reported by the remote peer,
+     * so the latency of the request can be split into the search on the remote peer and the transport
+     */
+    private static void endSpan(final QueryTrace.Span span, final SearchResult result) {
+        if (result == null) {
+            span.end(-1, "failed");
+        } else {
+            span.end(result.availableCount, "peer time " + (result.searchtime < 0 ? "?" : result.searchtime + " ms") + (result.traceId == null ? "" : ", trace " + result.traceId));
         }
-        return result.availableCount;
     }
 
     private static void remoteSearchProcess(
@@ -674,9 +696,14 @@ public final class Protocol {
         final String wordhashes,
         final Seed target,
         final Blacklist blacklist,
-        final SearchResult result
+        final List<URIMetadataNode> links,
+        final int totalCount,
+        final ResultFeed feed
         ) throws SpaceExceededException, InterruptedException {
 
+        // the peer and its number of hits are counted with the first portion of links which is not empty
+        final boolean first = !feed.counted;
+
         // create containers
         final int words = wordhashes.length() / Word.commonHashLength;
         assert words > 0 : "wordhashes = " + wordhashes;
@@ -685,20 +712,19 @@ public final class Protocol {
             container.add(ReferenceContainer.emptyContainer(
                         Segment.wordReferenceFactory,
                         ASCII.getBytes(wordhashes.substring(i * Word.commonHashLength, (i + 1) * Word.commonHashLength)),
-                        count)); // throws SpaceExceededException
+                        links.size())); // throws SpaceExceededException
         }
 
         // insert results to containers
-        int term = count;
         Map<String, LinkedHashSet<String>> snip;
         if (event.addResultsToLocalIndex) {
             snip = null;
         } else {
             snip = new HashMap<String, LinkedHashSet<String>>(); // needed to display nodestack results
         }
-        List<URIMetadataNode> storeDocs = new ArrayList<URIMetadataNode>(result.links.size());
-        for ( final URIMetadataNode urlEntry : result.links ) {
-            if ( term-- <= 0 ) {
+        List<URIMetadataNode> storeDocs = new ArrayList<URIMetadataNode>(links.size());
+        for ( final URIMetadataNode urlEntry : links ) {
+            if ( feed.term-- <= 0 ) {
                 break; // do not process more that requested (in case that evil peers fill us up with rubbish)
             }
             // get one single search result
@@ -776,6 +802,7 @@ public final class Protocol {
                 }
             }
         }
+        feed.fed += storeDocs.size();
 
         // store remote result to local result container
         // insert one container into the search result buffer
@@ -799,14 +826,20 @@ public final class Protocol {
 				writerToLocalIndex.stopWriting();
 				throw new InterruptedException("remoteProcess stopped!");
 			}
-            event.addRWIs(container.get(0), false, target.getName() + "/" + target.hash, result.totalCount, time);
+            event.addRWIs(container.get(0), false, target.getName() + "/" + target.hash, first ? totalCount : 0, time);
+            if (!container.get(0).isEmpty()) {
+                if (!first) event.remote_rwi_peerCount.decrementAndGet(); // the peer was counted with an earlier portion
+                feed.counted = true;
+            }
         } else {
             // feed results as nodes (SolrQuery results) which carry metadata,
             // to prevent a call to getMetaData for RWI results, which would fail (if no metadata in index and no display of these results)
-            event.addNodes(storeDocs, null, snip, false, target.getName() + "/" + target.hash, count, true);
+            event.addNodes(storeDocs, null, snip, false, target.getName() + "/" + target.hash, first ? count : 0, true);
+            if (!storeDocs.isEmpty()) {
+                if (!first) event.remote_solr_peerCount.decrementAndGet(); // the peer was counted with an earlier portion
+                feed.counted = true;
+            }
         }
-        event.addFinalize();
-        event.addExpectedRemoteReferences(-count);
 
         // insert the containers to the index
         for ( final ReferenceContainer<WordReference> c : container ) {
@@ -816,6 +849,20 @@ public final class Protocol {
                 ConcurrentLog.logException(e);
             }
         }
+    }
+
+    /**
+     * finish the feed of a remote search result when all links of the result have been fed
+     */
+    private static void remoteSearchFinish(
+        final SearchEvent event,
+        final int count,
+        final Seed target,
+        final SearchResult result,
+        final int fed
+        ) {
+        event.addFinalize();
+        event.addExpectedRemoteReferences(-count);
 
         // integrate remote top-words/topics
         if ( result.references != null && result.references.length > 0 ) {
@@ -826,7 +873,60 @@ public final class Protocol {
                 event.addTopic(result.references);
             }
         }
-        Network.log.info("remote search: peer " + target.getName() + " sent " + container.get(0).size() + "/" + result.totalCount + " references");
+        Network.log.info("remote search: peer " + target.getName() + " sent " + fed + "/" + result.totalCount + " references" + (result.streamed ? " (streamed)" : ""));
+    }
+
+    /**
+     * The state of the feed of a remote search result to the search event. The links of a streamed result
+     * are fed in several portions as soon as they are received, the links of a text table all at once.
+     */
+    private static class ResultFeed {
+
+        private final SearchEvent event;
+        private final int count;
+        private final String wordhashes;
+        private final Seed target;
+        private final Blacklist blacklist;
+        private final long timestamp;
+        private int term; // the number of links which may still be processed
+        private int fed; // the number of links which have been fed to the search event
+        private boolean counted; // true if the peer and its number of hits have been counted by the search event
+
+        private ResultFeed(final SearchEvent event, final int count, final String wordhashes, final Seed target, final Blacklist blacklist, final long timestamp) {
+            this.event = event;
+            this.count = count;
+            this.wordhashes = wordhashes;
+            this.target = target;
+            this.blacklist = blacklist;
+            this.timestamp = timestamp;
+            this.term = count;
+            this.fed = 0;
+            this.counted = false;
+        }
+
+        /**
+         * check the links and feed them to the search event
+         * @param links a portion of the links of the result
+         * @param totalCount the number of hits at the remote peer
+         * @throws InterruptedException
+         */
+        private void feed(final List<URIMetadataNode> links, final int totalCount) throws InterruptedException {
+            // computation time
+            final long time = System.currentTimeMillis() - this.timestamp;
+            try {
+                remoteSearchProcess(this.event, this.count, time, this.wordhashes, this.target, this.blacklist, links, totalCount, this);
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.logException(e);
+            }
+        }
+
+        /**
+         * finish the feed when all links of the result have been fed
+         * @param result
+         */
+        private void finish(final SearchResult result) {
+            remoteSearchFinish(this.event, this.count, this.target, result, this.fed);
+        }
     }
     
     /**
@@ -880,14 +980,19 @@ public final class Protocol {
 		}
 	}
 
+    /** the maximum size of a remote search result, larger results are rejected */
+    private static final int MAX_RESULT_BYTES = 200000;
+
     private static class SearchResult {
         public int availableCount; // number of returned LURL's for this search
         public int totalCount; //
         public Map<byte[], Integer> indexcount; //
-        //public long searchtime; // time that the peer actually spent to create the result
+        public long searchtime; // time that the peer actually spent to create the result, -1 if unknown
+        public String traceId; // the id of the trace of the search at the remote peer, null if unknown
         public String[] references; // search hints, the top-words
         public List<URIMetadataNode> links; // LURLs of search
         public Map<byte[], String> indexabstract; // index abstracts, a collection of url-hashes per word
+        public boolean streamed; // true if the peer sent a stream; the links which were received before the end of the stream have been fed already
 
         public SearchResult(
             final SearchEvent event,
@@ -904,8 +1009,9 @@ public final class Protocol {
             final int partitions,
             final String hostname,
             final String targetBaseURL,
-            final SecondarySearchSuperviser secondarySearchSuperviser
-            ) throws IOException {
+            final SecondarySearchSuperviser secondarySearchSuperviser,
+            final ResultFeed feed
+            ) throws IOException, InterruptedException {
             // send a search request to peer with remote Hash
 
             //if (hostaddress.equals(mySeed.getClusterAddress())) hostaddress = "127.0.0.1:" + mySeed.getPort(); // for debugging
@@ -956,34 +1062,66 @@ public final class Protocol {
             parts.put("maxdist", UTF8.StringBody(Integer.toString(maxDistance)));
             parts.put("profile", UTF8.StringBody(crypt.simpleEncode(event.query.ranking.toExternalString())));
             parts.put("constraint", UTF8.StringBody((event.query.constraint == null) ? "" : event.query.constraint.exportB64()));
+            parts.put("trace", UTF8.StringBody(event.trace.id));
+            parts.put("traced", UTF8.StringBody(Boolean.toString(event.trace.sampled)));
             if ( secondarySearchSuperviser != null ) {
                 parts.put("abstracts", UTF8.StringBody("auto"));
                 // resultMap = FileUtils.table(HTTPConnector.getConnector(MultiProtocolURI.yacybotUserAgent).post(new MultiProtocolURI("http://" + hostaddress + "/yacy/search.html"), 60000, hostname, parts));
                 //resultMap = FileUtils.table(HTTPConnector.getConnector(MultiProtocolURI.crawlerUserAgent).post(new MultiProtocolURI("http://" + target.getClusterAddress() + "/yacy/search.html"), 60000, target.getHexHash() + ".yacyh", parts));
             }
 
+            final boolean stream = Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.REMOTESEARCH_STREAM, SwitchboardConstants.REMOTESEARCH_STREAM_DEFAULT);
+            this.streamed = false;
             final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 8000);
-            byte[] a = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL + "/yacy/search.html"), hostname, parts, false, true);
-            if (a != null && a.length > 200000) {
-                // there is something wrong. This is too large, maybe a hack on the other side?
-                a = null;
+            if (!stream) {
+                byte[] a = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL + "/yacy/search.html"), hostname, parts, false, true);
+                if (a != null && a.length > MAX_RESULT_BYTES) {
+                    // there is something wrong. This is too large, maybe a hack on the other side?
+                    a = null;
+                }
+                resultMap = FileUtils.table(a);
+            } else {
+                // ask for a stream; peers which do not know streams answer with the text table
+                parts.put(SearchStream.PARAMETER, UTF8.StringBody(Integer.toString(SearchStream.VERSION)));
+                // a compressed stream can not tell if the next result has already been received
+                httpClient.setHeader(Collections.singletonMap(HeaderFramework.ACCEPT_ENCODING, "identity").entrySet());
+                httpClient.POST(new MultiProtocolURL(targetBaseURL + "/yacy/search.html"), hostname, parts, false, false);
+                try {
+                    final InputStream content = httpClient.getStatusCode() == 200 ? httpClient.getContentstream() : null;
+                    if (content == null) throw new IOException("no content, status " + httpClient.getStatusCode());
+                    final BufferedInputStream in = new BufferedInputStream(content);
+                    in.mark(SearchStream.HEADER_LENGTH);
+                    final byte[] head = FileUtils.read(in, SearchStream.HEADER_LENGTH);
+                    final int version = SearchStream.version(head);
+                    if (version > SearchStream.VERSION) throw new IOException("unknown stream version " + version);
+                    if (version > 0) {
+                        resultMap = readStream(new SearchStream.Reader(in, MAX_RESULT_BYTES), feed);
+                        this.streamed = true;
+                    } else {
+                        in.reset();
+                        byte[] a = FileUtils.read(in, MAX_RESULT_BYTES + 1);
+                        if (a.length > MAX_RESULT_BYTES) {
+                            // there is something wrong. This is too large, maybe a hack on the other side?
+                            a = null;
+                        }
+                        resultMap = FileUtils.table(a);
+                    }
+                } finally {
+                    httpClient.finish();
+                }
             }
-            resultMap = FileUtils.table(a);
 
             // evaluate request result
             if ( resultMap == null || resultMap.isEmpty() ) {
                 throw new IOException("resultMap is NULL");
             }
-            /*
             try {
-                this.searchtime = Integer.parseInt(resultMap.get("searchtime"));
+                this.searchtime = Long.parseLong(resultMap.get("searchtime"));
             } catch (final NumberFormatException e ) {
-                throw new IOException("wrong output format for searchtime: "
-                    + e.getMessage()
-                    + ", map = "
-                    + resultMap.toString());
+                this.searchtime = -1; // not essential for the result
             }
-            */
+            this.traceId = resultMap.get("trace");
+            if (this.traceId != null && this.traceId.isEmpty()) this.traceId = null;
             try {
                 this.totalCount = Integer.parseInt(resultMap.get("joincount")); // the complete number of hits at remote site; rwi+solr (via: theSearch.getResultCount())
             } catch (final NumberFormatException e ) {
@@ -1008,6 +1146,7 @@ public final class Protocol {
                 }
             }
             this.references = CommonPattern.COMMA.split(resultMap.get("references"));
+            if (this.streamed) return; // the links have been read with the stream
             this.links = new ArrayList<URIMetadataNode>(this.availableCount);
             for ( int n = 0; n < this.availableCount; n++ ) {
                 // get one single search result
@@ -1022,6 +1161,54 @@ public final class Protocol {
                 this.links.add(urlEntry);
             }
         }
+
+        /**
+         * Read a streamed result. The links are fed to the search event as soon as they are received:
+         * a portion of links ends when the next frame has not yet arrived. The links of the last portion
+         * are left in the links list.
+         * @param reader the frames of the stream
+         * @param feed
+         * @return the fields of the stream, as they would appear in the text table
+         * @throws IOException if the stream is broken before a link was received
+         * @throws InterruptedException
+         */
+        private Map<String, String> readStream(final SearchStream.Reader reader, final ResultFeed feed) throws IOException, InterruptedException {
+            final Map<String, String> fields = new HashMap<String, String>();
+            this.links = new ArrayList<URIMetadataNode>();
+            int received = 0;
+            try {
+                byte type;
+                while ((type = reader.next()) != SearchStream.END) {
+                    final String payload = reader.payload();
+                    if (type == SearchStream.FIELD) {
+                        final int p = payload.indexOf('=');
+                        if (p > 0) fields.put(payload.substring(0, p), payload.substring(p + 1));
+                        continue;
+                    }
+                    received++;
+                    final URIMetadataNode urlEntry = URIMetadataNode.importEntry(payload, "dht");
+                    if (urlEntry != null) this.links.add(urlEntry);
+                    if (!reader.ready() && !this.links.isEmpty()) {
+                        // the peer is still searching: process what we have
+                        int joincount;
+                        try {
+                            joincount = Integer.parseInt(fields.get("joincount"));
+                        } catch (final NumberFormatException e) {
+                            throw new IOException("wrong output format for joincount: " + e.getMessage());
+                        }
+                        feed.feed(this.links, joincount);
+                        this.links = new ArrayList<URIMetadataNode>();
+                    }
+                }
+            } catch (final IOException e) {
+                if (received == 0) throw e;
+                // keep the links which have been received before the stream broke
+                Network.log.info("remote search: stream broken after " + received + " links (" + e.getMessage() + ")");
+            }
+            if (!fields.containsKey("count")) fields.put("count", Integer.toString(received));
+            if (!fields.containsKey("references")) fields.put("references", "");
+            return fields;
+        }
     }
 
     /**
@@ -1821,11 +2008,17 @@ public final class Protocol {
                 gzipBody = false;
             }
 
+            // peers which know the binary format get the rows of the references, others one text line for each reference
+            final boolean binary = targetSeed.getFlagAcceptBinaryRWI();
             int indexcount = 0;
-            final StringBuilder entrypost = new StringBuilder(indexes.size() * 73);
+            final StringBuilder entrypost = new StringBuilder(binary ? 0 : indexes.size() * 73);
             Iterator<WordReference> eenum;
             Reference entry;
             for ( final ReferenceContainer<WordReference> ic : indexes ) {
+                if ( binary ) {
+                    indexcount += ic.size();
+                    continue;
+                }
                 eenum = ic.entries();
                 while ( eenum.hasNext() ) {
                     entry = eenum.next();
@@ -1848,7 +2041,9 @@ public final class Protocol {
                 final Map<String, ContentBody> parts = basicRequestParts(Switchboard.getSwitchboard(), targetSeed.hash, salt);
                 parts.put("wordc", UTF8.StringBody(Integer.toString(indexes.size())));
                 parts.put("entryc", UTF8.StringBody(Integer.toString(indexcount)));
-                parts.put("indexes", UTF8.StringBody(entrypost.toString()));
+                // the binary rows are encoded while the request is written
+                final RWIWireFormat.Body rows = binary ? new RWIWireFormat.Body(indexes) : null;
+                parts.put("indexes", binary ? rows : UTF8.StringBody(entrypost.toString()));
                 final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
                 byte[] content = null;
                 try {
@@ -1873,7 +2068,7 @@ public final class Protocol {
 
                 final Map<String, String> result = FileUtils.table(v);
                 // return the transfered index data in bytes (for debugging only)
-                result.put("indexPayloadSize", Integer.toString(entrypost.length()));
+                result.put("indexPayloadSize", Long.toString(binary ? rows.written() : entrypost.length()));
                 result.put(Seed.IP, ip); // add used ip to result for error handling (in case no "result" key was received)
                 return result;
             } catch (final Exception e ) {
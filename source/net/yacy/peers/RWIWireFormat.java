@@ -0,0 +1,369 @@
+// RWIWireFormat.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceFactory;
+
+/**
+ * Binary wire format for the transmission of RWIs with transferRWI.
+ * Instead of one text line in property form for each reference, the fixed-width kelondro rows
+ * of the references are sent, grouped by term and compressed in chunks:
+ * <pre>
+ * header: "YRWI" version(1 byte) rowWidth(2 bytes) termHashLength(2 bytes)
+ * chunk:  rawLength(4 bytes) compressedLength(4 bytes) deflated payload
+ * ...
+ * end:    rawLength = 0
+ * payload: { termHash, count(4 bytes), count * row } ...
+ * </pre>
+ * The receiver turns every term group into a ReferenceContainer which uses the received bytes
+ * as its row storage, so the references are never converted to strings or single objects.
+ * Only peers which announce the format with {@link Seed#getFlagAcceptBinaryRWI()} get it, all others the text format.
+ */
+public class RWIWireFormat {
+
+    /** the file name of the binary part in the transferRWI request; the servlet hands parts with a '.bin' suffix over as bytes */
+    public static final String FILENAME = "indexes.rwi.bin";
+
+    private static final byte[] MAGIC = new byte[]{'Y', 'R', 'W', 'I'};
+    private static final byte VERSION = 1;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+
+    /**
+     * encode the references of the given containers
+     * @param containers the reference containers to send
+     * @return the encoded bytes
+     * @throws IOException
+     */
+    public static byte[] encode(final Iterable<ReferenceContainer<WordReference>> containers) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+        encode(containers, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * encode the references of the given containers and write every chunk as soon as it is complete
+     * @param containers the reference containers to send
+     * @param os the target of the encoded bytes
+     * @return the number of written bytes
+     * @throws IOException
+     */
+    public static long encode(final Iterable<ReferenceContainer<WordReference>> containers, final OutputStream os) throws IOException {
+        final Row row = WordReferenceRow.urlEntryRow;
+        final int rowWidth = row.objectsize;
+        final DataOutputStream out = new DataOutputStream(os);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(rowWidth);
+        out.writeShort(Word.commonHashLength);
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        byte[] compressed = new byte[CHUNK_SIZE + 64];
+        int p = 0;
+        try {
+            for (final ReferenceContainer<WordReference> container: containers) {
+                final byte[] termHash = container.getTermHash();
+                assert termHash.length == Word.commonHashLength;
+                final int size = container.size();
+                int i = 0;
+                while (i < size) {
+                    // a term group needs at least the header and one row
+                    if (p + Word.commonHashLength + 4 + rowWidth > CHUNK_SIZE) {
+                        compressed = writeChunk(out, deflater, chunk, p, compressed);
+                        p = 0;
+                    }
+                    final int count = Math.min(size - i, (CHUNK_SIZE - p - Word.commonHashLength - 4) / rowWidth);
+                    System.arraycopy(termHash, 0, chunk, p, Word.commonHashLength);
+                    p += Word.commonHashLength;
+                    chunk[p++] = (byte) (count >>> 24);
+                    chunk[p++] = (byte) (count >>> 16);
+                    chunk[p++] = (byte) (count >>> 8);
+                    chunk[p++] = (byte) count;
+                    for (int j = 0; j < count; j++) {
+                        final Row.Entry entry = container.get(i++, false);
+                        if (entry == null) {
+                            throw new IOException("container of term " + new String(termHash) + " changed during encoding");
+                        }
+                        entry.writeToArray(chunk, p);
+                        p += rowWidth;
+                    }
+                }
+            }
+            if (p > 0) writeChunk(out, deflater, chunk, p, compressed);
+        } finally {
+            deflater.end();
+        }
+        out.writeInt(0);
+        out.flush();
+        return out.size();
+    }
+
+    /**
+     * a request part which encodes the references while the request is written,
+     * so the encoded transmission is never held in memory as a whole
+     */
+    public static class Body extends AbstractContentBody {
+
+        private final Iterable<ReferenceContainer<WordReference>> containers;
+        private long written;
+
+        public Body(final Iterable<ReferenceContainer<WordReference>> containers) {
+            super(ContentType.APPLICATION_OCTET_STREAM);
+            this.containers = containers;
+            this.written = 0;
+        }
+
+        @Override
+        public void writeTo(final OutputStream outputStream) throws IOException {
+            this.written = encode(this.containers, outputStream);
+        }
+
+        /**
+         * @return the number of bytes which were written by the last {@link #writeTo(OutputStream)}
+         */
+        public long written() {
+            return this.written;
+        }
+
+        @Override
+        public String getFilename() {
+            return FILENAME;
+        }
+
+        @Override
+        public String getCharset() {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1; // unknown before the references are encoded
+        }
+
+        @Override
+        public String getTransferEncoding() {
+            return MIME.ENC_BINARY;
+        }
+    }
+
+    private static byte[] writeChunk(final DataOutputStream out, final Deflater deflater, final byte[] chunk, final int length, byte[] compressed) throws IOException {
+        deflater.reset();
+        deflater.setInput(chunk, 0, length);
+        deflater.finish();
+        int c = 0;
+        while (!deflater.finished()) {
+            if (c == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            c += deflater.deflate(compressed, c, compressed.length - c);
+        }
+        out.writeInt(length);
+        out.writeInt(c);
+        out.write(compressed, 0, c);
+        return compressed;
+    }
+
+    /**
+     * test if the given bytes start with the header of the binary format
+     * @param b the received bytes
+     * @return true if the bytes are in the binary format
+     */
+    public static boolean isBinary(final byte[] b) {
+        if (b == null || b.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) if (b[i] != MAGIC[i]) return false;
+        return true;
+    }
+
+    /**
+     * a streaming decoder which returns one reference container for each term group
+     */
+    public static class Decoder implements Iterator<ReferenceContainer<WordReference>> {
+
+        private final DataInputStream in;
+        private final int rowWidth;
+        private final Inflater inflater;
+        private byte[] chunk;
+        private int chunkLength, p;
+        private ReferenceContainer<WordReference> next;
+        private IOException error;
+        private long containers, references, compressedBytes;
+
+        /**
+         * @param source the encoded references
+         * @throws IOException if the header is not valid
+         */
+        public Decoder(final InputStream source) throws IOException {
+            this.in = new DataInputStream(source);
+            final byte[] magic = new byte[MAGIC.length];
+            this.in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("not a binary RWI transmission");
+            final byte version = this.in.readByte();
+            if (version != VERSION) throw new IOException("unsupported binary RWI version " + version);
+            this.rowWidth = this.in.readShort();
+            if (this.rowWidth != WordReferenceRow.urlEntryRow.objectsize) {
+                throw new IOException("wrong row width " + this.rowWidth + ", expected " + WordReferenceRow.urlEntryRow.objectsize);
+            }
+            final int termHashLength = this.in.readShort();
+            if (termHashLength != Word.commonHashLength) throw new IOException("wrong term hash length " + termHashLength);
+            this.inflater = new Inflater();
+            this.chunk = new byte[0];
+            this.chunkLength = 0;
+            this.p = 0;
+            this.containers = 0;
+            this.references = 0;
+            this.compressedBytes = 0;
+            this.error = null;
+            this.next = advance();
+        }
+
+        private boolean nextChunk() throws IOException {
+            final int rawLength;
+            try {
+                rawLength = this.in.readInt();
+            } catch (final EOFException e) {
+                throw new IOException("binary RWI transmission is truncated");
+            }
+            if (rawLength == 0) return false;
+            final int compressedLength = this.in.readInt();
+            if (rawLength < 0 || rawLength > MAX_CHUNK_SIZE || compressedLength < 0 || compressedLength > MAX_CHUNK_SIZE) {
+                throw new IOException("bad chunk size " + rawLength + "/" + compressedLength);
+            }
+            final byte[] compressed = new byte[compressedLength];
+            this.in.readFully(compressed);
+            this.compressedBytes += compressedLength;
+            if (this.chunk.length < rawLength) this.chunk = new byte[rawLength];
+            this.inflater.reset();
+            this.inflater.setInput(compressed);
+            try {
+                int c = 0;
+                while (c < rawLength && !this.inflater.finished()) {
+                    final int n = this.inflater.inflate(this.chunk, c, rawLength - c);
+                    if (n == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) break;
+                    c += n;
+                }
+                if (c != rawLength) throw new IOException("chunk decompressed to " + c + " bytes, expected " + rawLength);
+            } catch (final DataFormatException e) {
+                throw new IOException("bad chunk compression: " + e.getMessage());
+            }
+            this.chunkLength = rawLength;
+            this.p = 0;
+            return true;
+        }
+
+        private ReferenceContainer<WordReference> advance() throws IOException {
+            if (this.p >= this.chunkLength) {
+                if (!nextChunk()) {
+                    this.inflater.end();
+                    return null;
+                }
+            }
+            if (this.p + Word.commonHashLength + 4 > this.chunkLength) throw new IOException("truncated term group");
+            final byte[] termHash = new byte[Word.commonHashLength];
+            System.arraycopy(this.chunk, this.p, termHash, 0, Word.commonHashLength);
+            this.p += Word.commonHashLength;
+            final int count = ((this.chunk[this.p] & 0xff) << 24) | ((this.chunk[this.p + 1] & 0xff) << 16) |
+                              ((this.chunk[this.p + 2] & 0xff) << 8) | (this.chunk[this.p + 3] & 0xff);
+            this.p += 4;
+            final int length = count * this.rowWidth;
+            if (count <= 0 || this.p + length > this.chunkLength) throw new IOException("bad term group size " + count);
+            final byte[] rows = new byte[length];
+            System.arraycopy(this.chunk, this.p, rows, 0, length);
+            this.p += length;
+            this.containers++;
+            this.references += count;
+            return new ReferenceContainer<WordReference>(factory, termHash, new RowSet(WordReferenceRow.urlEntryRow, count, rows, 0));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        /**
+         * @return the next term group; if the transmission is corrupted, the iteration ends early and
+         * the reason is available with {@link #error()}
+         */
+        @Override
+        public ReferenceContainer<WordReference> next() {
+            if (this.next == null) throw new NoSuchElementException();
+            final ReferenceContainer<WordReference> c = this.next;
+            try {
+                this.next = advance();
+            } catch (final IOException e) {
+                this.next = null;
+                this.error = e;
+                this.inflater.end();
+            }
+            return c;
+        }
+
+        /**
+         * @return the reason why the decoding ended before the end of the transmission, or null
+         */
+        public IOException error() {
+            return this.error;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public long containers() {
+            return this.containers;
+        }
+
+        public long references() {
+            return this.references;
+        }
+
+        public long compressedBytes() {
+            return this.compressedBytes;
+        }
+    }
+
+}
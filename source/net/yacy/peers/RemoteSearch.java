@@ -47,6 +47,7 @@ import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
 import net.yacy.search.query.QueryParams;
+import net.yacy.search.query.QueryTrace;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SecondarySearchSuperviser;
 
@@ -197,6 +198,7 @@ public class RemoteSearch extends Thread {
         if (indexingQueueSize > 10) robinsoncount = Math.max(1, robinsoncount / 2);
         if (indexingQueueSize > 50) robinsoncount = Math.max(1, robinsoncount / 2);
         if (shortmem) {redundancy = 1; robinsoncount = Math.max(1, robinsoncount / 2); healthMessage.append(", shortmem");}
+        if (event.query.isReducedRemoteSearch()) {redundancy = Math.max(1, redundancy - 1); robinsoncount = Math.max(1, robinsoncount / 2); healthMessage.append(", admission control");}
         
         
         // prepare seed targets and threads
@@ -406,6 +408,7 @@ public class RemoteSearch extends Thread {
             @Override
             public void run() {
                     int urls = 0;
+                    final QueryTrace.Span span = event.trace.span(QueryTrace.SOLR, targetPeer == null ? "local" : targetPeer.getName());
                     try {
                         event.oneFeederStarted();
                         urls = Protocol.solrQuery(
@@ -432,6 +435,7 @@ public class RemoteSearch extends Thread {
                     } catch (final Exception e) {
                         ConcurrentLog.logException(e);
                     } finally {
+                        span.end(urls, null);
                         event.oneFeederTerminated();
                     }
             }
@@ -0,0 +1,239 @@
+// SearchStream.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.yacy.cora.document.encoding.UTF8;
+
+/**
+ * The streamed response format of the remote search interface yacy/search.html.
+ * A peer which asks for a stream with the request parameter 'stream' gets the search results
+ * as soon as they are ranked, instead of a text table which is sent when the search is complete.
+ * Peers which do not know the parameter answer with the text table, the requester distinguishes
+ * both formats with the magic bytes at the beginning of the stream.
+ *
+ * The stream consists of the magic bytes 'YSS', one byte with the version of the format, and a sequence of frames.
+ * Each frame has a type byte, a four byte (big endian) length of the payload and the payload.
+ * A field frame carries a line 'key=value' with the same keys as the text table,
+ * a resource frame carries one search result in the format of URIMetadataNode.resource().
+ * The stream is terminated with an end frame; a stream without an end frame was truncated.
+ */
+public final class SearchStream {
+
+    /** the version of the stream format which is understood and produced by this peer */
+    public static final int VERSION = 1;
+
+    /** the name of the request parameter to ask for a stream, the value is the highest understood version */
+    public static final String PARAMETER = "stream";
+
+    public static final byte END = 0;
+    public static final byte FIELD = 1;
+    public static final byte RESOURCE = 2;
+
+    private static final byte[] MAGIC = {'Y', 'S', 'S'};
+
+    /** the number of bytes which are needed to recognize a stream */
+    public static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    private SearchStream() {}
+
+    /**
+     * @param head the first bytes of a response
+     * @return the version of the stream format, or 0 if the response is not a stream
+     */
+    public static int version(final byte[] head) {
+        if (head == null || head.length < HEADER_LENGTH) return 0;
+        for (int i = 0; i < MAGIC.length; i++) if (head[i] != MAGIC[i]) return 0;
+        return head[MAGIC.length] & 0xff;
+    }
+
+    /**
+     * An input stream which produces a search stream on demand: the frames are created when the stream is read,
+     * so the producer is driven by the thread which writes the response. The number of available bytes is
+     * zero when the next read must compute new frames, which is the moment to flush the already written bytes.
+     */
+    public static abstract class Source extends InputStream {
+
+        private byte[] buffer = new byte[4096];
+        private int start = 0, end = 0;
+        private boolean header = false, finished = false;
+
+        /**
+         * produce the next frames with {@link #field(String, String)} and {@link #resource(String)}
+         * @return false if there are no more frames; the end frame is then appended by the stream
+         * @throws IOException
+         */
+        protected abstract boolean next() throws IOException;
+
+        /**
+         * called once when the end of the stream was produced or the stream was closed before
+         */
+        protected void finish() {}
+
+        protected final void field(final String key, final String value) {
+            frame(FIELD, UTF8.getBytes(key + "=" + value));
+        }
+
+        protected final void resource(final String resource) {
+            frame(RESOURCE, UTF8.getBytes(resource));
+        }
+
+        private void frame(final byte type, final byte[] payload) {
+            ensure(5 + payload.length);
+            this.buffer[this.end++] = type;
+            this.buffer[this.end++] = (byte) (payload.length >>> 24);
+            this.buffer[this.end++] = (byte) (payload.length >>> 16);
+            this.buffer[this.end++] = (byte) (payload.length >>> 8);
+            this.buffer[this.end++] = (byte) payload.length;
+            System.arraycopy(payload, 0, this.buffer, this.end, payload.length);
+            this.end += payload.length;
+        }
+
+        private void ensure(final int length) {
+            if (this.end + length <= this.buffer.length) return;
+            final int size = this.end - this.start;
+            final byte[] b = size + length <= this.buffer.length ? this.buffer : new byte[Math.max(2 * this.buffer.length, size + length)];
+            System.arraycopy(this.buffer, this.start, b, 0, size);
+            this.buffer = b;
+            this.start = 0;
+            this.end = size;
+        }
+
+        private boolean fill() throws IOException {
+            while (this.start == this.end) {
+                if (this.finished) return false;
+                this.start = this.end = 0;
+                if (!this.header) {
+                    System.arraycopy(MAGIC, 0, this.buffer, 0, MAGIC.length);
+                    this.buffer[MAGIC.length] = (byte) VERSION;
+                    this.end = HEADER_LENGTH;
+                    this.header = true;
+                } else if (!next()) {
+                    frame(END, new byte[0]);
+                    this.finished = true;
+                    finish();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return this.buffer[this.start++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            final int n = Math.min(len, this.end - this.start);
+            System.arraycopy(this.buffer, this.start, b, off, n);
+            this.start += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public void close() {
+            if (!this.finished) {
+                this.finished = true;
+                finish();
+            }
+            this.start = this.end = 0;
+        }
+    }
+
+    /**
+     * Reads the frames of a search stream after the header.
+     */
+    public static class Reader {
+
+        private final InputStream in;
+        private final int maxBytes;
+        private int bytes;
+        private byte type;
+        private String payload;
+
+        /**
+         * @param in the stream, positioned after the header
+         * @param maxBytes the maximum number of payload bytes which are accepted from the stream
+         */
+        public Reader(final InputStream in, final int maxBytes) {
+            this.in = in;
+            this.maxBytes = maxBytes;
+            this.bytes = 0;
+        }
+
+        /**
+         * read the next frame
+         * @return the type of the frame; END if the stream is complete
+         * @throws IOException if the stream is truncated, malformed or too large
+         */
+        public byte next() throws IOException {
+            final byte[] h = new byte[5];
+            readFully(h);
+            this.type = h[0];
+            final int length = ((h[1] & 0xff) << 24) | ((h[2] & 0xff) << 16) | ((h[3] & 0xff) << 8) | (h[4] & 0xff);
+            if (length < 0 || length > this.maxBytes - this.bytes) throw new IOException("search stream exceeds " + this.maxBytes + " bytes");
+            this.bytes += length;
+            final byte[] p = new byte[length];
+            readFully(p);
+            this.payload = UTF8.String(p);
+            if (this.type != END && this.type != FIELD && this.type != RESOURCE) throw new IOException("unknown frame type " + this.type);
+            return this.type;
+        }
+
+        /**
+         * @return true if the next frame has already been received at least in part, false if a read may wait for the peer
+         * @throws IOException
+         */
+        public boolean ready() throws IOException {
+            return this.in.available() > 0;
+        }
+
+        /**
+         * @return the payload of the last frame: a resource or a field 'key=value'
+         */
+        public String payload() {
+            return this.payload;
+        }
+
+        private void readFully(final byte[] b) throws IOException {
+            int p = 0;
+            while (p < b.length) {
+                final int n = this.in.read(b, p, b.length - p);
+                if (n < 0) throw new EOFException("search stream truncated");
+                p += n;
+            }
+        }
+    }
+
+}
@@ -227,6 +227,7 @@ public class Transmission {
             if (error == null) {
                 // words successfully transfered
                 final long transferTime = System.currentTimeMillis() - start;
+                PeerPerformance.success(this.dhtTarget.hash);
                 final Iterator<ReferenceContainer<WordReference>> i = this.containers.iterator();
                 final ReferenceContainer<WordReference> firstContainer = (i == null) ? null : i.next();
                 Transmission.this.log.info("Index transfer of " + this.containers.size() +
@@ -246,6 +247,7 @@ public class Transmission {
             Transmission.this.log.info(
                     "Index transfer to peer " + this.dhtTarget.getName() + ":" + this.dhtTarget.hash +
                     " failed: " + error);
+            PeerPerformance.failure(this.dhtTarget.hash);
             // write information that peer does not receive index transmissions
             Transmission.this.log.info("Transfer failed of chunk to target " + this.dhtTarget.hash + "/" + this.dhtTarget.getName() + ": " + error);
             // get possibly newer target Info
@@ -0,0 +1,949 @@
+// HostGraph.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers.graphics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A directed graph of hosts with counted edges, as used by the {@link WebStructureGraph}.
+ * <p>Every host hash gets a primitive int id. The edges of the compacted graph are held in
+ * compressed sparse row form outside of the java heap, once by source (outgoing references)
+ * and once by target (incoming references), so both directions are answered without a scan.</p>
+ * <p>New edges are accumulated concurrently in a delta which is merged into the compressed rows
+ * by {@link #compact()}; when the delta grows too large, this happens in a background thread while
+ * the graph stays readable and writable. If the graph has a location, every addition is appended to
+ * a log. At each compaction the log is rotated and the compacted graph is written as a snapshot,
+ * after that the rotated log is deleted. At start the snapshot is loaded and the logs are replayed.</p>
+ */
+public class HostGraph {
+
+    private final static ConcurrentLog log = new ConcurrentLog("HostGraph");
+
+    /** number of edges in the delta which triggers a background compaction */
+    public static final int COMPACTION_THRESHOLD = 100000;
+
+    private static final byte[] MAGIC = new byte[]{'Y', 'W', 'S', 'G'};
+    private static final byte VERSION = 1;
+
+    /** compressed sparse row adjacency, stored in direct buffers */
+    private static final class Adjacency {
+        private final int size;
+        private final IntBuffer offsets, nodes, counts;
+
+        /**
+         * @param spare an adjacency which is not used any more; its buffers are reused if they are large enough
+         */
+        private Adjacency(final int size, final int[] offsets, final int[] nodes, final int[] counts, final int edges, final Adjacency spare) {
+            this.size = size;
+            this.offsets = direct(offsets, size + 1, spare == null ? null : spare.offsets);
+            this.nodes = direct(nodes, edges, spare == null ? null : spare.nodes);
+            this.counts = direct(counts, edges, spare == null ? null : spare.counts);
+        }
+
+        private static IntBuffer direct(final int[] a, final int length, final IntBuffer spare) {
+            IntBuffer b = spare;
+            if (b == null || b.capacity() < length) {
+                // leave some room for the growth until the next compaction
+                b = ByteBuffer.allocateDirect(Math.max(1, length + length / 8) * 4).asIntBuffer();
+            }
+            b.clear();
+            b.put(a, 0, length);
+            b.flip();
+            return b;
+        }
+
+        private int start(final int id) {
+            return id < this.size ? this.offsets.get(id) : 0;
+        }
+
+        private int end(final int id) {
+            return id < this.size ? this.offsets.get(id + 1) : 0;
+        }
+
+        private int edges() {
+            return this.offsets.get(this.size);
+        }
+    }
+
+    private static final Adjacency EMPTY = new Adjacency(0, new int[]{0}, new int[0], new int[0], 0, null);
+
+    private static final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>> NO_DELTA = new ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>>();
+
+    private final File snapshotFile, logFile, rotatedLogFile;
+    private final ReentrantReadWriteLock lock;
+
+    // only one compaction at a time; the compactLock is always taken before the write lock
+    private final Object compactLock;
+    private final AtomicBoolean compacting;
+    private volatile boolean background;
+
+    // the host table; new hosts are appended under the hostLock
+    private final Object hostLock;
+    private final ConcurrentHashMap<String, Integer> ids;
+    private final ConcurrentHashMap<String, String[]> nameIndex;
+    private volatile String[] hashes, names;
+    private volatile int[] dates;
+    private volatile int hostCount;
+
+    // the compacted graph, the delta which is merged by a running compaction and the delta since the last compaction
+    private Adjacency out, in;
+    private ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>> pendingOut, pendingIn, deltaOut, deltaIn;
+    private int pendingSize;
+    private final AtomicInteger deltaSize;
+    // the adjacencies which were replaced by the last compaction, their buffers are reused by the next compaction
+    private Adjacency spareOut, spareIn;
+    private final AtomicLong modifications;
+    private final int maxref;
+
+    private DataOutputStream logStream;
+
+    /**
+     * @param location the path of the snapshot; the log is stored next to it. If null, the graph is not persistent
+     * @param maxref the maximum number of outgoing references of a host which is kept at compaction
+     */
+    public HostGraph(final File location, final int maxref) {
+        this.snapshotFile = location;
+        this.logFile = location == null ? null : new File(location.getParentFile(), location.getName() + ".log");
+        this.rotatedLogFile = location == null ? null : new File(location.getParentFile(), location.getName() + ".log.old");
+        this.lock = new ReentrantReadWriteLock();
+        this.compactLock = new Object();
+        this.compacting = new AtomicBoolean(false);
+        this.background = false;
+        this.hostLock = new Object();
+        this.ids = new ConcurrentHashMap<String, Integer>();
+        this.nameIndex = new ConcurrentHashMap<String, String[]>();
+        this.deltaSize = new AtomicInteger(0);
+        this.modifications = new AtomicLong(0);
+        this.maxref = maxref;
+        init();
+        if (this.snapshotFile != null) {
+            if (this.snapshotFile.exists()) try {
+                loadSnapshot();
+            } catch (final IOException e) {
+                log.warn("cannot load web structure snapshot " + this.snapshotFile + ": " + e.getMessage());
+                init();
+            }
+            // the rotated log exists if the last snapshot was not written
+            for (final File f: new File[]{this.rotatedLogFile, this.logFile}) {
+                if (f.exists()) try {
+                    final int n = replayLog(f);
+                    if (n > 0) log.info("replayed " + n + " web structure log entries from " + f);
+                } catch (final IOException e) {
+                    log.warn("cannot replay web structure log " + f + ": " + e.getMessage());
+                }
+            }
+            openLog(true);
+        }
+        compact();
+        this.background = true;
+    }
+
+    private void init() {
+        this.ids.clear();
+        this.nameIndex.clear();
+        this.hashes = new String[256];
+        this.names = new String[256];
+        this.dates = new int[256];
+        this.hostCount = 0;
+        this.out = EMPTY;
+        this.in = EMPTY;
+        this.pendingOut = NO_DELTA;
+        this.pendingIn = NO_DELTA;
+        this.pendingSize = 0;
+        this.deltaOut = new ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>>();
+        this.deltaIn = new ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>>();
+        this.deltaSize.set(0);
+        this.spareOut = null;
+        this.spareIn = null;
+    }
+
+    // host table
+
+    private int id(final String hosthash, final String hostname, final int date) {
+        Integer id = this.ids.get(hosthash);
+        if (id != null) {
+            final int i = id.intValue();
+            if (hostname != null && !hostname.isEmpty() && this.names[i].isEmpty()) {
+                synchronized (this.hostLock) {
+                    this.names[i] = hostname;
+                    indexName(hosthash, hostname);
+                }
+            }
+            if (date > this.dates[i]) {
+                synchronized (this.hostLock) {
+                    if (date > this.dates[i]) this.dates[i] = date;
+                }
+            }
+            return i;
+        }
+        synchronized (this.hostLock) {
+            id = this.ids.get(hosthash);
+            if (id != null) return id.intValue();
+            final int i = this.hostCount;
+            if (i == this.hashes.length) {
+                final int size = i * 2;
+                this.hashes = Arrays.copyOf(this.hashes, size);
+                this.names = Arrays.copyOf(this.names, size);
+                this.dates = Arrays.copyOf(this.dates, size);
+            }
+            this.hashes[i] = hosthash;
+            this.names[i] = hostname == null ? "" : hostname;
+            this.dates[i] = date;
+            this.hostCount = i + 1;
+            this.ids.put(hosthash, i);
+            if (hostname != null && !hostname.isEmpty()) indexName(hosthash, hostname);
+            return i;
+        }
+    }
+
+    private void indexName(final String hosthash, final String hostname) {
+        final String key = hostname.toLowerCase(Locale.ROOT);
+        final String[] h = this.nameIndex.get(key);
+        if (h == null) {
+            this.nameIndex.put(key, new String[]{hosthash});
+        } else {
+            for (final String s: h) if (s.equals(hosthash)) return;
+            final String[] n = Arrays.copyOf(h, h.length + 1);
+            n[h.length] = hosthash;
+            this.nameIndex.put(key, n);
+        }
+    }
+
+    /**
+     * @param hosthash a host hash
+     * @return the id of the host or -1 if the host is not known
+     */
+    public int id(final String hosthash) {
+        final Integer id = this.ids.get(hosthash);
+        return id == null ? -1 : id.intValue();
+    }
+
+    public String hash(final int id) {
+        return this.hashes[id];
+    }
+
+    /**
+     * @param id a host id
+     * @return the host name or null if the name is not known
+     */
+    public String name(final int id) {
+        final String name = this.names[id];
+        return name == null || name.isEmpty() ? null : name;
+    }
+
+    /**
+     * @param id a host id
+     * @return the day of the last change as yyyymmdd
+     */
+    public int date(final int id) {
+        return this.dates[id];
+    }
+
+    /**
+     * @return the number of hosts
+     */
+    public int size() {
+        return this.hostCount;
+    }
+
+    /**
+     * @param hostname a host name
+     * @return the hashes of all hosts with that name (with different protocols or ports)
+     */
+    public Set<String> hashes(final String hostname) {
+        final Set<String> result = new HashSet<String>();
+        final String[] h = this.nameIndex.get(hostname.toLowerCase(Locale.ROOT));
+        if (h != null) for (final String s: h) result.add(s);
+        return result;
+    }
+
+    // edges
+
+    /**
+     * add references from one host to other hosts; may be called concurrently
+     * @param sourceHash the hash of the referencing host
+     * @param sourceName the name of the referencing host
+     * @param date the day of the references as yyyymmdd
+     * @param targetHashes the hashes of the referenced hosts
+     * @param targetNames the names of the referenced hosts
+     * @param counts the number of references to each host
+     * @param length the number of referenced hosts
+     */
+    public void add(final String sourceHash, final String sourceName, final int date,
+            final String[] targetHashes, final String[] targetNames, final int[] counts, final int length) {
+        this.lock.readLock().lock();
+        try {
+            final int source = id(sourceHash, sourceName, date);
+            ConcurrentHashMap<Integer, AtomicInteger> targets = this.deltaOut.get(source);
+            if (targets == null) {
+                targets = new ConcurrentHashMap<Integer, AtomicInteger>();
+                final ConcurrentHashMap<Integer, AtomicInteger> t = this.deltaOut.putIfAbsent(source, targets);
+                if (t != null) targets = t;
+            }
+            for (int i = 0; i < length; i++) {
+                final int target = id(targetHashes[i], targetNames[i], 0);
+                AtomicInteger c = targets.get(target);
+                if (c == null) {
+                    final AtomicInteger n = new AtomicInteger(0);
+                    c = targets.putIfAbsent(target, n);
+                    if (c == null) {
+                        c = n;
+                        this.deltaSize.incrementAndGet();
+                        ConcurrentHashMap<Integer, AtomicInteger> sources = this.deltaIn.get(target);
+                        if (sources == null) {
+                            sources = new ConcurrentHashMap<Integer, AtomicInteger>();
+                            final ConcurrentHashMap<Integer, AtomicInteger> s = this.deltaIn.putIfAbsent(target, sources);
+                            if (s != null) sources = s;
+                        }
+                        sources.put(source, c); // the same counter in both directions
+                    }
+                }
+                c.addAndGet(counts[i]);
+            }
+            this.modifications.incrementAndGet();
+            writeLog(sourceHash, sourceName, date, targetHashes, targetNames, counts, length);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        if (this.deltaSize.get() > COMPACTION_THRESHOLD && this.background && this.compacting.compareAndSet(false, true)) {
+            new Thread("HostGraph.compact") {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } finally {
+                        HostGraph.this.compacting.set(false);
+                    }
+                }
+            }.start();
+        }
+    }
+
+    /**
+     * register a host without references
+     * @param hosthash the host hash
+     * @param hostname the host name
+     */
+    public void add(final String hosthash, final String hostname) {
+        this.lock.readLock().lock();
+        try {
+            if (id(hosthash) < 0) {
+                id(hosthash, hostname, 0);
+                writeLog(hosthash, hostname, 0, null, null, null, 0);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id a host id
+     * @param incoming true for the referencing hosts, false for the referenced hosts
+     * @return a map from host hashes to reference counts
+     */
+    public Map<String, Integer> references(final int id, final boolean incoming) {
+        final Map<String, Integer> map = new HashMap<String, Integer>();
+        this.lock.readLock().lock();
+        try {
+            final Adjacency a = incoming ? this.in : this.out;
+            for (int i = a.start(id), end = a.end(id); i < end; i++) {
+                map.put(this.hashes[a.nodes.get(i)], a.counts.get(i));
+            }
+            merge(map, (incoming ? this.pendingIn : this.pendingOut).get(id));
+            merge(map, (incoming ? this.deltaIn : this.deltaOut).get(id));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return map;
+    }
+
+    private void merge(final Map<String, Integer> map, final ConcurrentHashMap<Integer, AtomicInteger> delta) {
+        if (delta == null) return;
+        for (final Map.Entry<Integer, AtomicInteger> e: delta.entrySet()) {
+            final String h = this.hashes[e.getKey().intValue()];
+            final Integer c = map.get(h);
+            map.put(h, (c == null ? 0 : c.intValue()) + e.getValue().get());
+        }
+    }
+
+    /**
+     * @param id a host id
+     * @return the number of referenced hosts
+     */
+    public int outDegree(final int id) {
+        this.lock.readLock().lock();
+        try {
+            int d = this.out.end(id) - this.out.start(id);
+            final ConcurrentHashMap<Integer, AtomicInteger> pending = this.pendingOut.get(id);
+            final ConcurrentHashMap<Integer, AtomicInteger> delta = this.deltaOut.get(id);
+            if (pending != null) {
+                for (final Integer target: pending.keySet()) if (!contains(this.out, id, target.intValue())) d++;
+            }
+            if (delta != null) {
+                for (final Integer target: delta.keySet()) {
+                    if (!contains(this.out, id, target.intValue()) && (pending == null || !pending.containsKey(target))) d++;
+                }
+            }
+            return d;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private static boolean contains(final Adjacency a, final int id, final int node) {
+        // the nodes of each row are sorted
+        int low = a.start(id), high = a.end(id) - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int n = a.nodes.get(mid);
+            if (n < node) low = mid + 1; else if (n > node) high = mid - 1; else return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param latest if true, the hosts with references which are not compacted yet, otherwise the hosts with compacted references
+     * @return the ids of the hosts with outgoing references
+     */
+    public int[] sources(final boolean latest) {
+        this.lock.readLock().lock();
+        try {
+            if (latest) {
+                final Set<Integer> ids = new HashSet<Integer>(this.pendingOut.keySet());
+                ids.addAll(this.deltaOut.keySet());
+                final int[] s = new int[ids.size()];
+                int c = 0;
+                for (final Integer id: ids) s[c++] = id.intValue();
+                return s;
+            }
+            final int[] s = new int[this.out.size];
+            int c = 0;
+            for (int id = 0; id < this.out.size; id++) if (this.out.end(id) > this.out.start(id)) s[c++] = id;
+            return Arrays.copyOf(s, c);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id a host id
+     * @param latest if true, only the references which are not compacted yet, otherwise only the compacted references
+     * @return a map from the referenced host hashes to reference counts
+     */
+    public Map<String, Integer> outgoing(final int id, final boolean latest) {
+        final Map<String, Integer> map = new HashMap<String, Integer>();
+        this.lock.readLock().lock();
+        try {
+            if (latest) {
+                merge(map, this.pendingOut.get(id));
+                merge(map, this.deltaOut.get(id));
+            } else {
+                for (int i = this.out.start(id), end = this.out.end(id); i < end; i++) {
+                    map.put(this.hashes[this.out.nodes.get(i)], this.out.counts.get(i));
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return map;
+    }
+
+    /**
+     * @return the number of edges; references which were added again since the last compaction are counted twice
+     */
+    public int edges() {
+        this.lock.readLock().lock();
+        try {
+            return this.out.edges() + this.pendingSize + this.deltaSize.get();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a counter which changes with every modification of the graph
+     */
+    public long modifications() {
+        return this.modifications.get();
+    }
+
+    // compaction
+
+    /**
+     * merge the delta into the compressed rows; hosts with more than maxref outgoing references
+     * keep only the most referenced 90% of maxref. If the graph is persistent, the log is rotated
+     * and a snapshot is written.
+     * The graph is locked only to take the delta and to exchange the compressed rows.
+     */
+    public void compact() {
+        compact(true);
+    }
+
+    private void compact(final boolean snapshot) {
+        synchronized (this.compactLock) {
+            final Adjacency base;
+            final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>> delta;
+            final int n;
+            final boolean rotated;
+            this.lock.writeLock().lock();
+            try {
+                if (this.deltaSize.get() == 0 && this.out.size == this.hostCount) return;
+                base = this.out;
+                delta = this.deltaOut;
+                n = this.hostCount;
+                this.pendingOut = this.deltaOut;
+                this.pendingIn = this.deltaIn;
+                this.pendingSize = this.deltaSize.get();
+                this.deltaOut = new ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>>();
+                this.deltaIn = new ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, AtomicInteger>>();
+                this.deltaSize.set(0);
+                // the new log holds only the references which are not part of this compaction
+                rotated = snapshot && rotateLog();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+
+            // the base and the pending delta are not changed any more
+            final long start = System.currentTimeMillis();
+            final int[] offsets = new int[n + 1];
+            int[] targets = new int[Math.max(16, base.edges() + this.pendingSize)];
+            int[] counts = new int[targets.length];
+            int e = 0;
+            final Map<Integer, Integer> row = new HashMap<Integer, Integer>();
+            for (int source = 0; source < n; source++) {
+                offsets[source] = e;
+                final ConcurrentHashMap<Integer, AtomicInteger> d = delta.get(source);
+                final int s = base.start(source), t = base.end(source);
+                if (d == null && t - s <= this.maxref) {
+                    // unchanged row
+                    for (int i = s; i < t; i++) {
+                        targets[e] = base.nodes.get(i);
+                        counts[e++] = base.counts.get(i);
+                    }
+                    continue;
+                }
+                row.clear();
+                for (int i = s; i < t; i++) row.put(base.nodes.get(i), base.counts.get(i));
+                if (d != null) for (final Map.Entry<Integer, AtomicInteger> r: d.entrySet()) {
+                    final Integer c = row.get(r.getKey());
+                    row.put(r.getKey(), (c == null ? 0 : c.intValue()) + r.getValue().get());
+                }
+                if (row.size() > this.maxref) shrink(row, this.maxref * 9 / 10);
+                if (e + row.size() > targets.length) {
+                    targets = Arrays.copyOf(targets, (e + row.size()) * 2);
+                    counts = Arrays.copyOf(counts, targets.length);
+                }
+                final int[] sorted = new int[row.size()];
+                int k = 0;
+                for (final Integer target: row.keySet()) sorted[k++] = target.intValue();
+                Arrays.sort(sorted);
+                for (final int target: sorted) {
+                    targets[e] = target;
+                    counts[e++] = row.get(target).intValue();
+                }
+            }
+            offsets[n] = e;
+            final Adjacency compactedOut = new Adjacency(n, offsets, targets, counts, e, this.spareOut);
+            final Adjacency compactedIn = reverse(n, offsets, targets, counts, e, this.spareIn);
+
+            this.lock.writeLock().lock();
+            try {
+                // readers hold the read lock, so nobody reads the replaced rows after the exchange
+                this.spareOut = this.out == EMPTY ? null : this.out;
+                this.spareIn = this.in == EMPTY ? null : this.in;
+                this.out = compactedOut;
+                this.in = compactedIn;
+                this.pendingOut = NO_DELTA;
+                this.pendingIn = NO_DELTA;
+                this.pendingSize = 0;
+                this.modifications.incrementAndGet();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            if (log.isFine()) log.fine("compacted web structure: " + n + " hosts, " + e + " references in " + (System.currentTimeMillis() - start) + " milliseconds");
+
+            if (rotated) saveSnapshot(compactedOut, n);
+        }
+    }
+
+    private static void shrink(final Map<Integer, Integer> row, final int size) {
+        final int[] c = new int[row.size()];
+        int k = 0;
+        for (final Integer v: row.values()) c[k++] = v.intValue();
+        Arrays.sort(c);
+        final int limit = c[c.length - size];
+        // remove the smallest counts; on equal counts, remove until the size is reached
+        int above = 0;
+        for (final int v: c) if (v > limit) above++;
+        int equal = size - above;
+        final List<Integer> remove = new ArrayList<Integer>();
+        for (final Map.Entry<Integer, Integer> e: row.entrySet()) {
+            final int v = e.getValue().intValue();
+            if (v < limit || (v == limit && equal-- <= 0)) remove.add(e.getKey());
+        }
+        for (final Integer r: remove) row.remove(r);
+    }
+
+    private static Adjacency reverse(final int n, final int[] offsets, final int[] targets, final int[] counts, final int edges, final Adjacency spare) {
+        final int[] roffsets = new int[n + 1];
+        for (int i = 0; i < edges; i++) roffsets[targets[i] + 1]++;
+        for (int i = 0; i < n; i++) roffsets[i + 1] += roffsets[i];
+        final int[] fill = Arrays.copyOf(roffsets, n);
+        final int[] sources = new int[edges];
+        final int[] rcounts = new int[edges];
+        for (int source = 0; source < n; source++) {
+            for (int i = offsets[source]; i < offsets[source + 1]; i++) {
+                final int p = fill[targets[i]]++;
+                sources[p] = source; // sources are visited in order, so each row is sorted
+                rcounts[p] = counts[i];
+            }
+        }
+        return new Adjacency(n, roffsets, sources, rcounts, edges, spare);
+    }
+
+    /**
+     * remove hosts from the graph together with all their references; used to limit the size of the graph at start
+     * @param maxhosts the maximum number of hosts
+     * @return the number of removed hosts
+     */
+    public int limit(final int maxhosts) {
+        synchronized (this.compactLock) {
+            this.lock.writeLock().lock();
+            try {
+                return limitLocked(maxhosts);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private int limitLocked(final int maxhosts) {
+        final int n = this.hostCount;
+        if (n <= maxhosts) return 0;
+        compact(false);
+        // remove the hosts with the oldest changes
+        final long[] order = new long[n];
+        for (int i = 0; i < n; i++) order[i] = ((long) this.dates[i] << 32) | i;
+        Arrays.sort(order);
+        final boolean[] keep = new boolean[n];
+        Arrays.fill(keep, true);
+        final int delcount = n - (maxhosts * 9 / 10);
+        for (int i = 0; i < delcount; i++) keep[(int) order[i]] = false;
+        final String[] oldHashes = this.hashes, oldNames = this.names;
+        final int[] oldDates = this.dates;
+        final Adjacency oldOut = this.out, oldIn = this.in, spareOut = this.spareOut, spareIn = this.spareIn;
+        init();
+        final int[] map = new int[n];
+        for (int i = 0; i < n; i++) map[i] = keep[i] ? id(oldHashes[i], oldNames[i], oldDates[i]) : -1;
+        final int m = this.hostCount;
+        final int[] offsets = new int[m + 1];
+        final int[] targets = new int[oldOut.edges()];
+        final int[] counts = new int[targets.length];
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            if (map[i] < 0) continue;
+            offsets[map[i]] = e;
+            for (int j = oldOut.start(i), end = oldOut.end(i); j < end; j++) {
+                final int t = map[oldOut.nodes.get(j)];
+                if (t < 0) continue;
+                targets[e] = t;
+                counts[e++] = oldOut.counts.get(j);
+            }
+        }
+        offsets[m] = e;
+        this.out = new Adjacency(m, offsets, targets, counts, e, spareOut);
+        this.in = reverse(m, offsets, targets, counts, e, spareIn);
+        this.spareOut = oldOut == EMPTY ? null : oldOut;
+        this.spareIn = oldIn == EMPTY ? null : oldIn;
+        this.modifications.incrementAndGet();
+        if (rotateLog()) saveSnapshot(this.out, m);
+        return delcount;
+    }
+
+    /**
+     * remove all hosts and references
+     */
+    public void clear() {
+        synchronized (this.compactLock) {
+            this.lock.writeLock().lock();
+            try {
+                init();
+                this.modifications.incrementAndGet();
+                if (rotateLog()) saveSnapshot(this.out, 0);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // persistence
+
+    private void writeLog(final String sourceHash, final String sourceName, final int date,
+            final String[] targetHashes, final String[] targetNames, final int[] counts, final int length) {
+        if (this.logStream == null) return;
+        synchronized (this.logStream) {
+            try {
+                this.logStream.write(ASCII.getBytes(sourceHash));
+                this.logStream.writeUTF(sourceName == null ? "" : sourceName);
+                this.logStream.writeInt(date);
+                this.logStream.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    this.logStream.write(ASCII.getBytes(targetHashes[i]));
+                    this.logStream.writeUTF(targetNames[i] == null ? "" : targetNames[i]);
+                    this.logStream.writeInt(counts[i]);
+                }
+            } catch (final IOException e) {
+                log.warn("cannot write web structure log: " + e.getMessage());
+            }
+        }
+    }
+
+    private int replayLog(final File f) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 65536));
+        final byte[] hash = new byte[6];
+        int records = 0;
+        try {
+            while (true) {
+                final String sourceHash, sourceName;
+                final int date, length;
+                final String[] targetHashes, targetNames;
+                final int[] counts;
+                try {
+                    in.readFully(hash);
+                    sourceHash = ASCII.String(hash);
+                    sourceName = in.readUTF();
+                    date = in.readInt();
+                    length = in.readInt();
+                    if (length < 0 || length > 1000000) throw new IOException("bad log record length " + length);
+                    targetHashes = new String[length];
+                    targetNames = new String[length];
+                    counts = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        in.readFully(hash);
+                        targetHashes[i] = ASCII.String(hash);
+                        targetNames[i] = in.readUTF();
+                        counts[i] = in.readInt();
+                    }
+                } catch (final EOFException e) {
+                    // end of the log, the last record may be incomplete
+                    return records;
+                }
+                if (length == 0) {
+                    add(sourceHash, sourceName);
+                } else {
+                    add(sourceHash, sourceName, date, targetHashes, targetNames, counts, length);
+                }
+                records++;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void openLog(final boolean append) {
+        try {
+            this.logStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.logFile, append), 65536));
+        } catch (final IOException e) {
+            log.warn("cannot open web structure log " + this.logFile + ": " + e.getMessage());
+            this.logStream = null;
+        }
+    }
+
+    /**
+     * move the log aside and start a new one; the rotated log is deleted when the next snapshot is written.
+     * The caller holds the write lock.
+     * @return true if the log was rotated, false if the graph is not persistent or the log cannot be rotated
+     */
+    private boolean rotateLog() {
+        if (this.logStream == null) return false;
+        boolean rotated = false;
+        try {
+            this.logStream.close();
+            if (this.rotatedLogFile.exists()) {
+                // the last snapshot was not written, the rotated log must be kept together with the new entries
+                final FileOutputStream os = new FileOutputStream(this.rotatedLogFile, true);
+                try {
+                    FileUtils.copy(this.logFile, os);
+                } finally {
+                    os.close();
+                }
+                rotated = true;
+            } else {
+                rotated = this.logFile.renameTo(this.rotatedLogFile);
+                if (!rotated) log.warn("cannot rename web structure log " + this.logFile);
+            }
+        } catch (final IOException e) {
+            log.warn("cannot rotate web structure log " + this.logFile + ": " + e.getMessage());
+        }
+        openLog(!rotated);
+        return rotated && this.logStream != null;
+    }
+
+    private void loadSnapshot() throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.snapshotFile), 65536));
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("not a web structure snapshot");
+            final byte version = in.readByte();
+            if (version != VERSION) throw new IOException("unsupported web structure snapshot version " + version);
+            final int n = in.readInt();
+            final byte[] hash = new byte[6];
+            for (int i = 0; i < n; i++) {
+                in.readFully(hash);
+                final String name = in.readUTF();
+                final int date = in.readInt();
+                if (id(ASCII.String(hash), name, date) != i) throw new IOException("duplicate host in snapshot");
+            }
+            final int edges = in.readInt();
+            final int[] offsets = new int[n + 1];
+            for (int i = 0; i <= n; i++) offsets[i] = in.readInt();
+            final int[] targets = new int[edges];
+            final int[] counts = new int[edges];
+            for (int i = 0; i < edges; i++) {
+                targets[i] = in.readInt();
+                counts[i] = in.readInt();
+                if (targets[i] < 0 || targets[i] >= n) throw new IOException("bad host id " + targets[i]);
+            }
+            if (offsets[n] != edges) throw new IOException("bad edge count " + edges);
+            this.out = new Adjacency(n, offsets, targets, counts, edges, null);
+            this.in = reverse(n, offsets, targets, counts, edges, null);
+            log.info("loaded web structure snapshot with " + n + " hosts and " + edges + " references from " + this.snapshotFile);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * write the compacted graph to the snapshot file and delete the rotated log which is contained in the snapshot.
+     * The caller holds the compactLock, so the rows and the host table up to n are not changed.
+     * @param a the compacted rows
+     * @param n the number of hosts in the compacted rows
+     */
+    private void saveSnapshot(final Adjacency a, final int n) {
+        final long start = System.currentTimeMillis();
+        final File tmp = new File(this.snapshotFile.getParentFile(), this.snapshotFile.getName() + ".tmp");
+        final String[] hashes = this.hashes, names = this.names;
+        final int[] dates = this.dates;
+        try {
+            final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536));
+            try {
+                os.write(MAGIC);
+                os.writeByte(VERSION);
+                os.writeInt(n);
+                for (int i = 0; i < n; i++) {
+                    os.write(ASCII.getBytes(hashes[i]));
+                    os.writeUTF(names[i]);
+                    os.writeInt(dates[i]);
+                }
+                final int edges = a.edges();
+                os.writeInt(edges);
+                for (int i = 0; i <= n; i++) os.writeInt(a.offsets.get(i));
+                for (int i = 0; i < edges; i++) {
+                    os.writeInt(a.nodes.get(i));
+                    os.writeInt(a.counts.get(i));
+                }
+            } finally {
+                os.close();
+            }
+            if (this.snapshotFile.exists() && !this.snapshotFile.delete()) throw new IOException("cannot delete " + this.snapshotFile);
+            if (!tmp.renameTo(this.snapshotFile)) throw new IOException("cannot rename " + tmp);
+            // the snapshot contains everything of the rotated log
+            if (this.rotatedLogFile.exists() && !this.rotatedLogFile.delete()) log.warn("cannot delete " + this.rotatedLogFile);
+            log.info("saved web structure snapshot with " + n + " hosts in " + (System.currentTimeMillis() - start) + " milliseconds");
+        } catch (final IOException e) {
+            log.warn("cannot save web structure snapshot " + this.snapshotFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * write all log entries to the file system
+     */
+    public void flush() {
+        this.lock.readLock().lock();
+        try {
+            if (this.logStream == null) return;
+            synchronized (this.logStream) {
+                this.logStream.flush();
+            }
+        } catch (final IOException e) {
+            log.warn("cannot flush web structure log: " + e.getMessage());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * compact the graph, write the snapshot and close the log
+     */
+    public void close() {
+        this.background = false;
+        synchronized (this.compactLock) {
+            this.lock.writeLock().lock();
+            try {
+                compact(false);
+                if (rotateLog()) {
+                    saveSnapshot(this.out, this.out.size);
+                }
+                if (this.logStream != null) {
+                    try {
+                        this.logStream.close();
+                    } catch (final IOException e) {
+                    }
+                    this.logStream = null;
+                    if (!this.rotatedLogFile.exists()) this.logFile.delete();
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ import java.util.concurrent.TimeUnit;
 
 import net.yacy.search.EventTracker;
 import net.yacy.search.EventTracker.Event;
+import net.yacy.search.PerformanceHistory;
 import net.yacy.search.query.SearchEventType;
 import net.yacy.visualization.ChartPlotter;
 import net.yacy.visualization.RasterPlotter;
@@ -213,6 +214,100 @@ public class ProfilingGraph {
         return chart;
     }
 
+    /**
+     * draw a long range graph from the persistent performance history
+     * @param width width of the graph in pixels
+     * @param height height of the graph in pixels
+     * @param subline the eventual graph subtitle. May be null.
+     * @param history the performance history
+     * @param seconds the time range up to now
+     * @param traffic if true, draw the searches, the search time, DHT and crawl throughput;
+     *                otherwise the memory, the word cache and the PPM
+     * @return a RasterPlotter instance drawn from the history
+     */
+    public static RasterPlotter historyGraph(final int width, final int height, final String subline, final PerformanceHistory history, final long seconds, final boolean traffic) {
+        final String[] datasources = traffic ?
+                new String[]{PerformanceHistory.SEARCHES, PerformanceHistory.SEARCHTIME, PerformanceHistory.DHTOUT, PerformanceHistory.DHTIN, PerformanceHistory.CRAWL} :
+                new String[]{PerformanceHistory.WORDCACHE, PerformanceHistory.MEMORY, PerformanceHistory.PPM};
+        final PerformanceHistory.Series[] series = new PerformanceHistory.Series[datasources.length];
+        for (int i = 0; i < datasources.length; i++) series[i] = history.series(datasources[i], false, seconds);
+
+        // the time unit of the bottom scale
+        final TimeUnit timeUnit = seconds <= 2 * 86400 ? TimeUnit.HOURS : TimeUnit.DAYS;
+        final int maxTime = (int) Math.max(1, timeUnit.convert(seconds, TimeUnit.SECONDS));
+        final int bottomscale = Math.max(1, maxTime / 10);
+
+        final int leftborder = 30;
+        final int rightborder = 30;
+        final int topborder = 20;
+        final int bottomborder = 20;
+        final int vspace = height - topborder - bottomborder;
+        final int hspace = width - leftborder - rightborder;
+        final ChartPlotter chart = new ChartPlotter(width, height, 0xFFFFFFl, 0x000000l, 0xAAAAAAl, leftborder, rightborder, topborder, bottomborder,
+                traffic ? "YACY PEER HISTORY: SEARCHES, SEARCH TIME, DHT AND CRAWL THROUGHPUT" : "YACY PEER HISTORY: MAIN MEMORY, WORD CACHE AND PAGES/MINUTE (PPM)", subline);
+        chart.declareDimension(ChartPlotter.DIMENSION_BOTTOM, bottomscale, hspace / (maxTime / bottomscale), -maxTime, 0x000000l, 0xCCCCCCl, "TIME/" + timeUnit.toString());
+
+        final int[] dimensions;
+        final long[] colors;
+        final double[] factors;
+        if (traffic) {
+            final int maxsearches = (int) Math.ceil(max(series[0], 10));
+            final int maxsearchtime = (int) Math.ceil(max(series[1], 1000));
+            final int maxdht = (int) Math.ceil(Math.max(max(series[2], 100), max(series[3], 100)));
+            final int maxcrawl = (int) Math.ceil(max(series[4], 100));
+            final int leftscale = Math.max(1, maxsearches / 10);
+            final int rightscale = Math.max(1, maxsearchtime / 10);
+            chart.declareDimension(ChartPlotter.DIMENSION_LEFT, leftscale, (int) ((long) vspace * (long) leftscale / maxsearches), 0, 0x008800l, null, "SEARCHES/MINUTE");
+            chart.declareDimension(ChartPlotter.DIMENSION_RIGHT, rightscale, (int) ((long) vspace * (long) rightscale / maxsearchtime), 0, 0x0000FFl, 0xCCCCCCl, "SEARCH TIME/MILLISECONDS");
+            chart.declareDimension(ChartPlotter.DIMENSION_ANOT0, maxdht, vspace, 0, 0xAA2222l, null, "DHT REFERENCES/MINUTE");
+            chart.declareDimension(ChartPlotter.DIMENSION_ANOT1, maxcrawl, vspace, 0, 0x888800l, null, "CRAWL PAGES/MINUTE");
+            dimensions = new int[]{ChartPlotter.DIMENSION_LEFT, ChartPlotter.DIMENSION_RIGHT, ChartPlotter.DIMENSION_ANOT0, ChartPlotter.DIMENSION_ANOT0, ChartPlotter.DIMENSION_ANOT1};
+            colors = new long[]{0x008800l, 0x0000FFl, 0xAA2222l, 0xFF8888l, 0x888800l};
+            factors = new double[]{1.0d, 1.0d, 1.0d, 1.0d, 1.0d};
+        } else {
+            final int maxwords = (int) Math.ceil(max(series[0], 12000));
+            final int maxmbytes = (int) Math.ceil(max(series[1], 110 * 1024 * 1024) / 1024 / 1024);
+            final int maxppm = (int) Math.ceil(max(series[2], 25));
+            final int leftscale = (maxwords > 150000) ? maxwords / 150000 * 20000 : 10000;
+            final int rightscale = (maxmbytes > 1500) ? maxmbytes / 1500 * 200 : 100;
+            chart.declareDimension(ChartPlotter.DIMENSION_LEFT, leftscale, (int) ((long) vspace * (long) leftscale / maxwords), 0, 0x008800l, null, "WORDS IN INDEXING CACHE");
+            chart.declareDimension(ChartPlotter.DIMENSION_RIGHT, rightscale, (int) ((long) vspace * (long) rightscale / maxmbytes), 0, 0x0000FFl, 0xCCCCCCl, "MEMORY/MEGABYTE");
+            chart.declareDimension(ChartPlotter.DIMENSION_ANOT0, maxppm, vspace, 0, 0xAA2222l, null, "PPM [PAGES/MINUTE]");
+            dimensions = new int[]{ChartPlotter.DIMENSION_LEFT, ChartPlotter.DIMENSION_RIGHT, ChartPlotter.DIMENSION_ANOT0};
+            colors = new long[]{0x008800l, 0x0000FFl, 0xAA2222l};
+            factors = new double[]{1.0d, 1.0d / 1024 / 1024, 1.0d};
+        }
+
+        // draw the series; unknown values interrupt the lines
+        final long now = System.currentTimeMillis() / 1000;
+        final double unit = TimeUnit.SECONDS.convert(1, timeUnit);
+        for (int s = 0; s < series.length; s++) {
+            if (series[s] == null) continue;
+            chart.setColor(colors[s]);
+            boolean connected = false;
+            float x0 = 0;
+            int y0 = 0;
+            for (int i = 0; i < series[s].times.length; i++) {
+                final double v = series[s].values[i];
+                if (Double.isNaN(v)) {
+                    connected = false;
+                    continue;
+                }
+                final float x1 = (float) ((series[s].times[i] - now) / unit);
+                if (x1 < -maxTime) continue;
+                final int y1 = (int) Math.round(v * factors[s]);
+                if (connected) chart.chartLine(ChartPlotter.DIMENSION_BOTTOM, dimensions[s], x0, y0, x1, y1);
+                x0 = x1; y0 = y1;
+                connected = true;
+            }
+        }
+        return chart;
+    }
+
+    private static double max(final PerformanceHistory.Series series, final double min) {
+        return series == null ? min : series.max(min);
+    }
+
     public static class EventSearch {
         public SearchEventType processName;
         public String comment;
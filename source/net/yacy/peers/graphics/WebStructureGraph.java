@@ -36,11 +36,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.date.MicroDate;
@@ -67,6 +63,8 @@ import net.yacy.search.Switchboard;
 
 /**
  * Holds lists of links per host names to allow reconstructing a web graph structure of links.
+ * The links are counted in a {@link HostGraph}, which keeps the graph in compressed sparse rows
+ * for both directions and persists it with a log and snapshots.
  */
 public class WebStructureGraph {
 
@@ -81,31 +79,11 @@ public class WebStructureGraph {
 
     private final static ConcurrentLog log = new ConcurrentLog("WebStructureGraph");
 
-    /** Eventual backup file */
+    /** Eventual backup file of the elder map based structure, imported if no graph snapshot exists */
     private final File structureFile;
     
-    /** 
-     * <p>Older structure entries (notably loaded from the backup file).</p>
-     * <p>Maps from two parts concatenated string keys to byte array encoded references lists : 
-     * "'b64hash(6)','hostname" to 'date-yyyymmdd(8)'{'target-b64hash(6)''target-count-hex(4)'}*</p> 
-     * */
-    private final TreeMap<String, byte[]> structure_old;
-    
-    /** 
-     * <p>Recently computed structure entries</p>
-     * <p>Maps from two parts concatenated string keys to byte array encoded references lists : 
-     * "'b64hash(6)','hostname" to 'date-yyyymmdd(8)'{'target-b64hash(6)''target-count-hex(4)'}*</p> 
-     *  */
-    private final TreeMap<String, byte[]> structure_new;
-    
-    /** Queue used to receive new entries to store */
-    private final BlockingQueue<LearnObject> publicRefDNSResolvingQueue;
-    
-    /** Worker thread consuming the publicRefDNSResolvingQueue */
-    private final PublicRefDNSResolvingProcess publicRefDNSResolvingWorker;
-
-    /** Entry used to terminate the worker thread */
-    private final static LearnObject leanrefObjectPOISON = new LearnObject(null, null);
+    /** The host graph holding the references */
+    private final HostGraph graph;
 
     /**
      * Used to feed a new entry to this web structure
@@ -124,83 +102,86 @@ public class WebStructureGraph {
     }
 
 	/**
-	 * Constructs an instance, eventually loads entries from the supplied backup
-	 * structureFile when it exists and starts the worker thread.
+	 * Constructs an instance and loads the graph stored next to the supplied
+	 * structureFile. If no graph was stored yet, the entries of an existing
+	 * structureFile are imported.
 	 * 
 	 * @param structureFile
 	 *            backup file
 	 */
     public WebStructureGraph(final File structureFile) {
-        this.structure_old = new TreeMap<String, byte[]>();
-        this.structure_new = new TreeMap<String, byte[]>();
         this.structureFile = structureFile;
-        this.publicRefDNSResolvingQueue = new LinkedBlockingQueue<LearnObject>();
+        final File graphFile = graphFile(structureFile);
+        final boolean importMap = graphFile != null && !graphFile.exists() && structureFile.exists();
+        this.graph = new HostGraph(graphFile, maxref);
 
-        // load web structure from file if exists
-        Map<String, byte[]> loadedStructureB;
-        try {
-        	if(this.structureFile != null && this.structureFile.exists()) {
-        		loadedStructureB = FileUtils.loadMapB(this.structureFile);
+        // import the web structure from the elder file format
+        if (importMap) {
+            Map<String, byte[]> loadedStructureB;
+            try {
+                loadedStructureB = FileUtils.loadMapB(this.structureFile);
                 log.info("loaded dump of " + loadedStructureB.size() + " entries from " + this.structureFile.toString());
-        	} else {
-        		loadedStructureB = new TreeMap<String, byte[]>();
-        	}
-        } catch (final OutOfMemoryError e ) {
-            loadedStructureB = new TreeMap<String, byte[]>();
-        }
-        this.structure_old.putAll(loadedStructureB);
-        
-        // delete out-dated entries in case the structure is too big
-        if ( this.structure_old.size() > maxhosts ) {
-            // fill a set with last-modified - dates of the structure
-            final TreeSet<String> delset = new TreeSet<String>();
-            String key;
-            byte[] value;
-            for ( final Map.Entry<String, byte[]> entry : this.structure_old.entrySet() ) {
-                key = entry.getKey();
-                value = entry.getValue();
-                if ( value != null && value.length >= 8 ) {
-                    delset.add(UTF8.String(value).substring(0, 8) + key);
+            } catch (final OutOfMemoryError e ) {
+                loadedStructureB = new TreeMap<String, byte[]>();
+            }
+            for (final Map.Entry<String, byte[]> entry: loadedStructureB.entrySet()) {
+                final String key = entry.getKey();
+                final String refs = UTF8.String(entry.getValue());
+                if (key.length() < 8 || refs.length() < 8 || (refs.length() - 8) % 10 != 0) continue;
+                final Map<String, Integer> references = refstr2map(refs);
+                if (references.isEmpty()) {
+                    this.graph.add(key.substring(0, 6), key.substring(7));
+                } else {
+                    learn(key.substring(0, 6), key.substring(7), date(refs.substring(0, 8)), references, null);
                 }
             }
-            int delcount = this.structure_old.size() - (maxhosts * 9 / 10);
-            final Iterator<String> j = delset.iterator();
-            while ( (delcount > 0) && (j.hasNext()) ) {
-                this.structure_old.remove(j.next().substring(8));
-                delcount--;
-            }
+            this.graph.compact();
         }
 
-        this.publicRefDNSResolvingWorker = new PublicRefDNSResolvingProcess();
-        this.publicRefDNSResolvingWorker.start();
+        // delete out-dated entries in case the structure is too big
+        final int deleted = this.graph.limit(maxhosts);
+        if (deleted > 0) log.info("removed " + deleted + " out-dated hosts from the web structure");
     }
 
     /**
-     * Task consuming the queue of new entries to compute and add to the structure
+     * @param structureFile the file of the elder map based structure
+     * @return the location of the graph snapshot
      */
-    private class PublicRefDNSResolvingProcess extends Thread {
-        private PublicRefDNSResolvingProcess() {
-            super("WebStructureGraph.PublicRefDNSResolvingProcess");
-        }
+    private static File graphFile(final File structureFile) {
+        if (structureFile == null) return null;
+        String name = structureFile.getName();
+        if (name.endsWith(".map")) name = name.substring(0, name.length() - 4);
+        return new File(structureFile.getParentFile(), name + ".graph");
+    }
 
-        @Override
-        public void run() {
-            LearnObject lro;
-            try {
-                while ( (lro = WebStructureGraph.this.publicRefDNSResolvingQueue.take()) != leanrefObjectPOISON ) {
-                    learnrefs(lro);
-                }
-            } catch (final InterruptedException e ) {
-            }
+    /**
+     * @param day a day in the form yyyymmdd
+     * @return the day as int
+     */
+    private static int date(final String day) {
+        try {
+            return Integer.parseInt(day);
+        } catch (final NumberFormatException e) {
+            return 0;
         }
     }
 
+    /**
+     * @param day a day as int in the form yyyymmdd
+     * @return the day as String, the current day if not known
+     */
+    private static String date(final int day) {
+        return day <= 0 ? GenericFormatter.SHORT_DAY_FORMATTER.format() : Integer.toString(day);
+    }
+
     /**
      * Clear the complete web structure.
      */
     public void clear() {
-        this.structure_old.clear();
-        this.structure_new.clear();
+        this.graph.clear();
+        synchronized (this) {
+            this.hostReferenceIndexCache = null;
+        }
     }
     
     public void generateCitationReference(final DigestURL url, final Document document) {
@@ -221,17 +202,9 @@ public class WebStructureGraph {
                 globalRefURLs.add(u);
             }
         }
-        final LearnObject lro = new LearnObject(url, globalRefURLs);
         if (!globalRefURLs.isEmpty()) {
-            try {
-                if (this.publicRefDNSResolvingWorker.isAlive()) {
-                    this.publicRefDNSResolvingQueue.put(lro);
-                } else {
-                    learnrefs(lro);
-                }
-            } catch (final InterruptedException e ) {
-                learnrefs(lro);
-            }
+            // the graph accepts concurrent additions, so the references are learned in the calling thread
+            learnrefs(new LearnObject(url, globalRefURLs));
         }
     }
     
@@ -239,17 +212,8 @@ public class WebStructureGraph {
         final HashSet<DigestURL> globalRefURLs = new HashSet<DigestURL>();
         final String refhost = from.getHost();
         if (refhost != null && to.getHost() != null && !to.getHost().equals(refhost)) globalRefURLs.add(to);
-        final LearnObject lro = new LearnObject(from, globalRefURLs);
         if ( !globalRefURLs.isEmpty() ) {
-            try {
-                if (this.publicRefDNSResolvingWorker.isAlive()) {
-                    this.publicRefDNSResolvingQueue.put(lro);
-                } else {
-                    learnrefs(lro);
-                }
-            } catch (final InterruptedException e ) {
-                learnrefs(lro);
-            }
+            learnrefs(new LearnObject(from, globalRefURLs));
         }
     }
 
@@ -285,69 +249,13 @@ public class WebStructureGraph {
         return map;
     }
 
-    /**
-     * @return an empty references map serialized to a string
-     */
-    private static String none2refstr() {
-        return GenericFormatter.SHORT_DAY_FORMATTER.format();
-    }
-    
-    /**
-     * @param map references mapping from host hashes to counts
-     * @return the map serialized as a string
-     */
-    private static String map2refstr(final Map<String, Integer> map) {
-        final StringBuilder s = new StringBuilder(GenericFormatter.PATTERN_SHORT_DAY.length() + map.size() * 10);
-        s.append(GenericFormatter.SHORT_DAY_FORMATTER.format());
-        String h;
-        for ( final Map.Entry<String, Integer> entry : map.entrySet() ) {
-            s.append(entry.getKey());
-            h = Integer.toHexString(entry.getValue().intValue());
-            final int hl = h.length();
-            if ( hl == 0 ) {
-                s.append("0000");
-            } else if ( hl == 1 ) {
-                s.append("000").append(h);
-            } else if ( hl == 2 ) {
-                s.append("00").append(h);
-            } else if ( hl == 3 ) {
-                s.append('0').append(h);
-            } else if ( hl == 4 ) {
-                s.append(h);
-            } else {
-                s.append("FFFF");
-            }
-        }
-        return s.toString();
-    }
-
     /**
      * @param hosthash host hash
      * @return true when this host hash is present in this web structure (either in latest or elder known entries)
      */
     public boolean exists(final String hosthash) {
-        // returns a map with a hosthash(String):refcount(Integer) relation
         assert hosthash.length() == 6;
-        SortedMap<String, byte[]> tailMap;
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    return true;
-                }
-            }
-        }
-        synchronized ( this.structure_new ) {
-            tailMap = this.structure_new.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return this.graph.id(hosthash) >= 0;
     }
     
     /**
@@ -358,41 +266,12 @@ public class WebStructureGraph {
     public StructureEntry outgoingReferences(final String hosthash) {
         // returns a map with a hosthash(String):refcount(Integer) relation
         assert hosthash.length() == 6;
-        SortedMap<String, byte[]> tailMap;
-        Map<String, Integer> h = new HashMap<String, Integer>();
-        String hostname = "";
-        String date = "";
-        String ref;
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    hostname = key.substring(7);
-                    ref = ASCII.String(tailMap.get(key));
-                    date = ref.substring(0, 8);
-                    h = refstr2map(ref);
-                }
-            }
-        }
-        synchronized ( this.structure_new ) {
-            tailMap = this.structure_new.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    ref = ASCII.String(tailMap.get(key));
-                    if ( hostname.isEmpty() ) {
-                        hostname = key.substring(7);
-                    }
-                    if ( date.isEmpty() ) {
-                        date = ref.substring(0, 8);
-                    }
-                    h.putAll(refstr2map(ref));
-                }
-            }
-        }
+        final int id = this.graph.id(hosthash);
+        if (id < 0) return null;
+        final Map<String, Integer> h = this.graph.references(id, false);
         if (h.isEmpty()) return null;
-        return new StructureEntry(hosthash, hostname, date, h);
+        final String hostname = this.graph.name(id);
+        return new StructureEntry(hosthash, hostname == null ? "" : hostname, date(this.graph.date(id)), h);
     }
     
     /**
@@ -436,23 +315,8 @@ public class WebStructureGraph {
         if ( hostname == null ) {
             return null;
         }
-        // collect the references
-        WebStructureGraph.StructureEntry sentry;
-        final HashMap<String, Integer> hosthashes = new HashMap<String, Integer>();
-        Iterator<WebStructureGraph.StructureEntry> i = new StructureIterator(false);
-        while ( i.hasNext() ) {
-            sentry = i.next();
-            if ( sentry.references.containsKey(hosthash) ) {
-                hosthashes.put(sentry.hosthash, sentry.references.get(hosthash));
-            }
-        }
-        i = new StructureIterator(true);
-        while ( i.hasNext() ) {
-            sentry = i.next();
-            if ( sentry.references.containsKey(hosthash) ) {
-                hosthashes.put(sentry.hosthash, sentry.references.get(hosthash));
-            }
-        }
+        // the references are taken from the reverse index of the graph
+        final Map<String, Integer> hosthashes = this.graph.references(this.graph.id(hosthash), true);
         // construct a new structureEntry Object
         return new StructureEntry(
             hosthash,
@@ -565,76 +429,58 @@ public class WebStructureGraph {
     }
 
     public static final HostReferenceFactory hostReferenceFactory = new HostReferenceFactory();
-    private static ReferenceContainerCache<HostReference> hostReferenceIndexCache = null;
-    private static long hostReferenceIndexCacheTime = 0;
+    private ReferenceContainerCache<HostReference> hostReferenceIndexCache = null;
+    private long hostReferenceIndexCacheTime = 0;
+    private long hostReferenceIndexCacheModifications = -1;
     private static final long hostReferenceIndexCacheTTL = 1000 * 60 * 60 * 12; // 12 hours time to live for cache
 
     public synchronized ReferenceContainerCache<HostReference> incomingReferences() {
-        // we return a cache if the cache is filled and not stale
-        if ( hostReferenceIndexCache != null
-            && hostReferenceIndexCacheTime + hostReferenceIndexCacheTTL > System.currentTimeMillis() ) {
-            return hostReferenceIndexCache;
+        // we return a cache if the cache is filled and the graph did not change or the cache is not stale
+        if ( this.hostReferenceIndexCache != null
+            && (this.hostReferenceIndexCacheModifications == this.graph.modifications()
+            || this.hostReferenceIndexCacheTime + hostReferenceIndexCacheTTL > System.currentTimeMillis()) ) {
+            return this.hostReferenceIndexCache;
         }
 
-        // collect the references
+        // collect the references from the reverse index of the graph
+        final long modifications = this.graph.modifications();
         final ReferenceContainerCache<HostReference> idx =
             new ReferenceContainerCache<HostReference>(hostReferenceFactory, Base64Order.enhancedCoder, 6);
-
-        // we iterate over all structure entries.
-        // one structure entry has information that a specific host links to a list of other hosts
-        incomingReferencesEnrich(idx, new StructureIterator(false), 3000);
-        incomingReferencesEnrich(idx, new StructureIterator(true), 3000);
-
-        // fill the cache again and set fill time
-        hostReferenceIndexCache = idx;
-        hostReferenceIndexCacheTime = System.currentTimeMillis();
-        //incomingReferencesTest(hostReferenceIndexCache);
-        return hostReferenceIndexCache;
-    }
-
-    private void incomingReferencesEnrich(
-        final ReferenceContainerCache<HostReference> idx,
-        final Iterator<WebStructureGraph.StructureEntry> structureIterator,
-        final long time) {
-        // we iterate over all structure entries.
-        // one structure entry has information that a specific host links to a list of other hosts
-        final long timeout = time == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + time;
-        byte[] term;
-        HostReference hr;
-        WebStructureGraph.StructureEntry sentry;
-        structureLoop: while ( structureIterator.hasNext() ) {
-            sentry = structureIterator.next();
-            // then we loop over all the hosts that are linked from sentry.hosthash
-            refloop: for ( final Map.Entry<String, Integer> refhosthashandcounter : sentry.references
-                .entrySet() ) {
-                term = UTF8.getBytes(refhosthashandcounter.getKey());
-                try {
-                    hr =
-                        new HostReference(
-                            ASCII.getBytes(sentry.hosthash),
-                            GenericFormatter.SHORT_DAY_FORMATTER.parse(sentry.date, 0).getTime().getTime(),
-                            refhosthashandcounter.getValue().intValue());
-                } catch (final ParseException e ) {
-                    continue refloop;
+        final Map<String, Long> dates = new HashMap<String, Long>();
+        final int size = this.graph.size();
+        targetLoop: for (int target = 0; target < size; target++) {
+            final Map<String, Integer> references = this.graph.references(target, true);
+            if (references.isEmpty()) continue targetLoop;
+            final ReferenceContainer<HostReference> r = new ReferenceContainer<HostReference>(hostReferenceFactory, ASCII.getBytes(this.graph.hash(target)));
+            for (final Map.Entry<String, Integer> reference: references.entrySet()) {
+                final String sourceHash = reference.getKey();
+                Long date = dates.get(sourceHash);
+                if (date == null) {
+                    try {
+                        date = GenericFormatter.SHORT_DAY_FORMATTER.parse(date(this.graph.date(this.graph.id(sourceHash))), 0).getTime().getTime();
+                    } catch (final ParseException e) {
+                        date = System.currentTimeMillis();
+                    }
+                    dates.put(sourceHash, date);
                 }
-                // each term refers to an index entry. look if we already have such an entry
-                ReferenceContainer<HostReference> r = idx.get(term, null);
                 try {
-                    if ( r == null ) {
-                        r = new ReferenceContainer<HostReference>(hostReferenceFactory, term);
-                        r.add(hr);
-                        idx.add(r);
-                    } else {
-                        r.put(hr);
-                    }
-                } catch (final SpaceExceededException e ) {
-                    continue refloop;
+                    r.add(new HostReference(ASCII.getBytes(sourceHash), date.longValue(), reference.getValue().intValue()));
+                } catch (final SpaceExceededException e) {
+                    continue targetLoop;
                 }
             }
-            if ( System.currentTimeMillis() > timeout ) {
-                break structureLoop;
+            try {
+                idx.add(r);
+            } catch (final SpaceExceededException e) {
+                break targetLoop;
             }
         }
+
+        // fill the cache again and set fill time
+        this.hostReferenceIndexCache = idx;
+        this.hostReferenceIndexCacheTime = System.currentTimeMillis();
+        this.hostReferenceIndexCacheModifications = modifications;
+        return this.hostReferenceIndexCache;
     }
 
     /**
@@ -645,31 +491,8 @@ public class WebStructureGraph {
     public int referencesCount(final String hosthash) {
         assert hosthash.length() == 6 : "hosthash = " + hosthash;
         if (hosthash == null || hosthash.length() != 6) return 0;
-        SortedMap<String, byte[]> tailMap;
-        int c = 0;
-        try {
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    c = refstr2count(UTF8.String(tailMap.get(key)));
-                }
-            }
-        }
-        synchronized ( this.structure_new ) {
-            tailMap = this.structure_new.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    c += refstr2count(UTF8.String(tailMap.get(key)));
-                }
-            }
-        }
-        } catch (final Throwable t) {
-            this.clear();
-        }
-        return c;
+        final int id = this.graph.id(hosthash);
+        return id < 0 ? 0 : this.graph.outDegree(id);
     }
 
     /**
@@ -679,26 +502,8 @@ public class WebStructureGraph {
     public String hostHash2hostName(final String hosthash) {
         // returns the host as string, null if unknown
         assert hosthash.length() == 6;
-        SortedMap<String, byte[]> tailMap;
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    return key.substring(7);
-                }
-            }
-        }
-        synchronized ( this.structure_new ) {
-            tailMap = this.structure_new.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    return key.substring(7);
-                }
-            }
-        }
-        return null;
+        final int id = this.graph.id(hosthash);
+        return id < 0 ? null : this.graph.name(id);
     }
     
 	/**
@@ -713,28 +518,7 @@ public class WebStructureGraph {
 	 *         the host name is not known
 	 */
 	public Set<String> hostName2HostHashes(final String hostName) {
-		Set<String> hashes = new HashSet<>();
-		synchronized (this.structure_old) {
-			String keyHostName, hash;
-			for (String key : structure_old.keySet()) {
-				hash = key.substring(0, 6);
-				keyHostName = key.substring(7);
-				if (keyHostName.equalsIgnoreCase(hostName)) {
-					hashes.add(hash);
-				}
-			}
-		}
-		synchronized (this.structure_new) {
-			String keyHostName, hash;
-			for (String key : structure_new.keySet()) {
-				hash = key.substring(0, 6);
-				keyHostName = key.substring(7);
-				if (keyHostName.equalsIgnoreCase(hostName)) {
-					hashes.add(hash);
-				}
-			}
-		}
-		return hashes;
+		return this.graph.hashes(hostName);
 	}
 
 
@@ -742,85 +526,40 @@ public class WebStructureGraph {
         final DigestURL url = lro.url;
         final String sourceHosthash = url.hosthash();
 
-        // parse the new reference string and join it with the stored references
-        final StructureEntry structure = outgoingReferences(sourceHosthash);
-        final Map<String, Integer> refs = (structure == null) ? new HashMap<String, Integer>() : structure.references;
-        int c;
+        // count the references for each referenced host
+        final Map<String, Integer> refs = new HashMap<String, Integer>();
+        final Map<String, String> names = new HashMap<String, String>();
         for (final DigestURL u : lro.globalRefURLs) {
         	String domain = u.hosthash();
         	if (Switchboard.getSwitchboard() != null && Switchboard.getSwitchboard().shallTerminate()) break;
-            if (!exists(domain)) {
-                // this must be recorded as an host with no references
-                synchronized ( this.structure_new ) {
-                    this.structure_new.put(domain + "," + u.getHost(), UTF8.getBytes(none2refstr()));
-                }
-            }
-            c = 0;
-            Integer existingCount = refs.get(domain);
-            if ( existingCount != null) {
-                c = existingCount.intValue();
-            }
-            refs.put(domain, Integer.valueOf(++c));
-        }
-
-        // check if the maxref is exceeded
-        if ( refs.size() > maxref ) {
-            int shrink = refs.size() - (maxref * 9 / 10);
-            delloop: while ( shrink > 0 ) {
-                // shrink the references: the entry with the smallest number of references is removed
-                int minrefcount = Integer.MAX_VALUE;
-                String minrefkey = null;
-                findloop: for ( final Map.Entry<String, Integer> entry : refs.entrySet() ) {
-                    if ( entry.getValue().intValue() < minrefcount ) {
-                        minrefcount = entry.getValue().intValue();
-                        minrefkey = entry.getKey();
-                    }
-                    if ( minrefcount == 1 ) {
-                        break findloop;
-                    }
-                }
-                // remove the smallest
-                if ( minrefkey == null ) {
-                    break delloop;
-                }
-                refs.remove(minrefkey);
-                shrink--;
-            }
+            final Integer existingCount = refs.get(domain);
+            refs.put(domain, Integer.valueOf(existingCount == null ? 1 : existingCount.intValue() + 1));
+            names.put(domain, u.getHost());
         }
 
-        // store the map back to the structure
-        synchronized ( this.structure_new ) {
-            this.structure_new.put(sourceHosthash + "," + url.getHost(), UTF8.getBytes(map2refstr(refs)));
-        }
+        // store the references in the graph; the number of references of a host is limited to maxref when the graph is compacted
+        learn(sourceHosthash, url.getHost(), date(GenericFormatter.SHORT_DAY_FORMATTER.format()), refs, names);
     }
 
-    private static void joinStructure(final TreeMap<String, byte[]> into, final TreeMap<String, byte[]> from) {
-        for ( final Map.Entry<String, byte[]> e : from.entrySet() ) {
-            if ( into.containsKey(e.getKey()) ) {
-                final Map<String, Integer> s0 = refstr2map(UTF8.String(into.get(e.getKey())));
-                final Map<String, Integer> s1 = refstr2map(UTF8.String(e.getValue()));
-                for ( final Map.Entry<String, Integer> r : s1.entrySet() ) {
-                    if ( s0.containsKey(r.getKey()) ) {
-                        s0.put(r.getKey(), s0.get(r.getKey()).intValue() + r.getValue().intValue());
-                    } else {
-                        s0.put(r.getKey(), r.getValue().intValue());
-                    }
-                }
-                into.put(e.getKey(), UTF8.getBytes(map2refstr(s0)));
-            } else {
-                into.put(e.getKey(), e.getValue());
-            }
-        }
+    private void learn(final String sourceHosthash, final String sourceHost, final int date, final Map<String, Integer> refs, final Map<String, String> names) {
+        final int n = refs.size();
+        final String[] targetHashes = new String[n];
+        final String[] targetNames = new String[n];
+        final int[] counts = new int[n];
+        int i = 0;
+        for (final Map.Entry<String, Integer> ref: refs.entrySet()) {
+            targetHashes[i] = ref.getKey();
+            targetNames[i] = names == null ? null : names.get(ref.getKey());
+            counts[i++] = ref.getValue().intValue();
+        }
+        this.graph.add(sourceHosthash, sourceHost, date, targetHashes, targetNames, counts, n);
     }
 
     /**
-     * Feed the elder entries structure map with latest computed entries map and then clear this last one.
+     * Merge the latest computed references into the elder references.
      */
     public void joinOldNew() {
-        synchronized ( this.structure_new ) {
-            joinStructure(this.structure_old, this.structure_new);
-            this.structure_new.clear();
-        }
+        this.graph.compact();
     }
 
     /**
@@ -828,66 +567,39 @@ public class WebStructureGraph {
      */
     public String hostWithMaxReferences() {
         // find host with most references
-        Map<String, Integer> hostNamesToRefsNb = new TreeMap<>();
-        int refsize, maxref = 0;
+        final Map<String, Integer> hostNamesToRefsNb = new HashMap<>();
+        int maxref = -1;
         String hostName, maxHostName = null;
         Integer refsNb;
-        synchronized ( this.structure_old ) {
-            for ( final Map.Entry<String, byte[]> entry : this.structure_old.entrySet() ) {
-                refsize = entry.getValue().length;
-                hostName = entry.getKey().substring(7);
-                refsNb = hostNamesToRefsNb.get(hostName);
-                if(refsNb == null) {
-                	refsNb = refsize;
-                } else {
-                	refsNb += refsize;
-                }
-                if ( refsNb > maxref ) {
-                    maxref = refsNb;
-                    maxHostName = hostName;
-                }
-                hostNamesToRefsNb.put(hostName, refsNb);
-            }
-        }
-        synchronized ( this.structure_new ) {
-            for ( final Map.Entry<String, byte[]> entry : this.structure_new.entrySet() ) {
-                refsize = entry.getValue().length;
-                hostName = entry.getKey().substring(7);
-                refsNb = hostNamesToRefsNb.get(hostName);
-                if(refsNb == null) {
-                	refsNb = refsize;
-                } else {
-                	refsNb += refsize;
-                }
-                if ( refsNb > maxref ) {
-                    maxref = refsNb;
-                    maxHostName = hostName;
-                }
-                hostNamesToRefsNb.put(hostName, refsNb);
-            }
+        final int size = this.graph.size();
+        for (int id = 0; id < size; id++) {
+            hostName = this.graph.name(id);
+            if (hostName == null) continue;
+            refsNb = hostNamesToRefsNb.get(hostName);
+            refsNb = (refsNb == null ? 0 : refsNb.intValue()) + this.graph.outDegree(id);
+            if ( refsNb > maxref ) {
+                maxref = refsNb;
+                maxHostName = hostName;
+            }
+            hostNamesToRefsNb.put(hostName, refsNb);
         }
         return maxHostName;
     }
     
     public ReversibleScoreMap<String> hostReferenceScore() {
         ReversibleScoreMap<String> result = new ClusteredScoreMap<String>(ASCII.identityASCIIComparator);
-        synchronized ( this.structure_old ) {
-            for ( final Map.Entry<String, byte[]> entry : this.structure_old.entrySet() ) {
-                result.set(entry.getKey().substring(7), (entry.getValue().length - 8) / 10);
-            }
-        }
-        synchronized ( this.structure_new ) {
-            for ( final Map.Entry<String, byte[]> entry : this.structure_new.entrySet() ) {
-                result.set(entry.getKey().substring(7), (entry.getValue().length - 8) / 10);
-            }
+        final int size = this.graph.size();
+        for (int id = 0; id < size; id++) {
+            final String hostName = this.graph.name(id);
+            if (hostName != null) result.set(hostName, this.graph.outDegree(id));
         }
         return result;
     }
     
     /**
      * @param latest <ul>
-     * <li>true : iterate only the latest computed entries</li>
-     * <li>false : iterate only the elder computed entries, excluding the latest</li>
+     * <li>true : iterate only the references computed since the last {@link #joinOldNew()}</li>
+     * <li>false : iterate only the elder references, excluding the latest</li>
      * </ul>
      * @return an iterator over the web structure
      */
@@ -900,8 +612,10 @@ public class WebStructureGraph {
      */
     private class StructureIterator extends LookAheadIterator<StructureEntry> implements Iterator<StructureEntry> {
 
-    	/** Internal iterator instance */
-        private final Iterator<Map.Entry<String, byte[]>> i;
+    	/** the ids of the hosts with references */
+        private final int[] sources;
+        private final boolean latest;
+        private int p;
 
         /**
          * @param latest <ul>
@@ -910,40 +624,25 @@ public class WebStructureGraph {
          * </ul>
          */
         private StructureIterator(final boolean latest) {
-            this.i = ((latest) ? WebStructureGraph.this.structure_new : WebStructureGraph.this.structure_old).entrySet().iterator();
+            this.sources = WebStructureGraph.this.graph.sources(latest);
+            this.latest = latest;
+            this.p = 0;
         }
 
         /**
-         * Iterate to the next structure entry, decoding on the fly the references information from the byte array
+         * Iterate to the next structure entry
          */
         @Override
         public StructureEntry next0() {
-            Map.Entry<String, byte[]> entry = null;
-            String dom = null;
-            byte[] ref = null;
-            String refs;
-            while ( this.i.hasNext() ) {
-                entry = this.i.next();
-                ref = entry.getValue();
-                if ( (ref.length - 8) % 10 != 0 ) {
-                    continue;
-                }
-                dom = entry.getKey();
-                if ( dom.length() >= 8 ) {
-                    break;
-                }
-                dom = null;
-            }
-            if ( entry == null || dom == null ) {
-                return null;
+            final HostGraph graph = WebStructureGraph.this.graph;
+            while (this.p < this.sources.length) {
+                final int id = this.sources[this.p++];
+                final Map<String, Integer> references = graph.outgoing(id, this.latest);
+                if (references.isEmpty()) continue;
+                final String hostname = graph.name(id);
+                return new StructureEntry(graph.hash(id), hostname == null ? "" : hostname, date(graph.date(id)), references);
             }
-            assert (ref.length - 8) % 10 == 0 : "refs = " + ref + ", length = " + ref.length;
-            refs = UTF8.String(ref);
-            return new StructureEntry(
-                dom.substring(0, 6),
-                dom.substring(7),
-                refs.substring(0, 8),
-                refstr2map(refs));
+            return null;
         }
     }
 
@@ -997,47 +696,18 @@ public class WebStructureGraph {
         }
     }
 
-    public synchronized void close() {
-        // finish dns resolving queue
-        if ( this.publicRefDNSResolvingWorker.isAlive() ) {
-            log.info("Waiting for the DNS Resolving Queue to terminate");
-            try {
-                this.publicRefDNSResolvingQueue.put(leanrefObjectPOISON);
-                this.publicRefDNSResolvingWorker.join(5000);
-            } catch (final InterruptedException e ) {
-            }
-        }
+    /**
+     * write the latest changes to the log of the graph
+     */
+    public void flush() {
+        this.graph.flush();
+    }
 
-        // save to web structure file
-        if(this.structureFile != null) {
-        	log.info("Saving Web Structure File: new = "
-        			+ this.structure_new.size()
-        			+ " entries, old = "
-        			+ this.structure_old.size()
-        			+ " entries");
-        	final long time = System.currentTimeMillis();
-        	joinOldNew();
-        	log.info("dumping " + structure_old.size() + " entries to " + structureFile.toString());
-        	if ( !this.structure_old.isEmpty() ) {
-        		synchronized ( this.structure_old ) {
-        			if ( !this.structure_old.isEmpty() ) {
-        				FileUtils
-                        	.saveMapB(
-                        			this.structureFile,
-                        			this.structure_old,
-                        			"Web Structure Syntax: <b64hash(6)>','<host> to <date-yyyymmdd(8)>{<target-b64hash(6)><target-count-hex(4)>}*");
-        				final long t = Math.max(1, System.currentTimeMillis() - time);
-        				log.info("Saved Web Structure File: "
-        						+ this.structure_old.size()
-        						+ " entries in "
-        						+ t
-        						+ " milliseconds, "
-        						+ (this.structure_old.size() * 1000 / t)
-        						+ " entries/second");
-        			}
-        			this.structure_old.clear();
-        		}
-        	}
+    public synchronized void close() {
+        // save the graph; this replaces the elder structure file
+        this.graph.close();
+        if (this.structureFile != null && this.structureFile.exists() && graphFile(this.structureFile).exists()) {
+            FileUtils.deletedelete(this.structureFile);
         }
     }
 }
@@ -28,14 +28,19 @@ package net.yacy.search;
 
 import java.text.ParseException;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.util.Metrics;
 import net.yacy.peers.graphics.ProfilingGraph;
+import net.yacy.search.query.QueryTrace;
+import net.yacy.search.query.SearchEventType;
 
 
 public class EventTracker {
@@ -55,6 +60,12 @@ public class EventTracker {
 
     private final static Map<EClass, Queue<Event>> historyMaps = new ConcurrentHashMap<EClass, Queue<Event>>();
     private final static Map<EClass, Long> eventAccess = new ConcurrentHashMap<EClass, Long>(); // value: last time when this was accessed
+    private final static Map<SearchEventType, Metrics.Latency> searchLatency = new EnumMap<SearchEventType, Metrics.Latency>(SearchEventType.class);
+    static {
+        for (final SearchEventType type: SearchEventType.values()) {
+            searchLatency.put(type, Metrics.latency(Metrics.name("yacy_search_stage_seconds", "stage", type.name().toLowerCase(Locale.ROOT)), "Duration of the stages of local and remote searches"));
+        }
+    }
 
     public final static void delete(final EClass eventName) {
         historyMaps.remove(eventName);
@@ -62,6 +73,17 @@ public class EventTracker {
     }
 
     public final static void update(final EClass eventName, final Object eventPayload, final boolean useProtection) {
+        // the metrics see every search event, also those which are skipped by the protection
+        if (eventPayload instanceof ProfilingGraph.EventSearch) {
+            final ProfilingGraph.EventSearch search = (ProfilingGraph.EventSearch) eventPayload;
+            if (search.processName != null) searchLatency.get(search.processName).updateMillis(search.duration);
+            // add the event as span to the trace of the search
+            final QueryTrace trace = QueryTrace.active(search.queryID);
+            if (trace != null && search.processName != null) {
+                trace.record(search.processName.name().toLowerCase(Locale.ROOT), search.comment == null || search.comment.isEmpty() ? null : search.comment, search.duration, search.resultCount);
+            }
+        }
+
         // check protection against too heavy access
         if (useProtection) {
             final Long lastAcc = eventAccess.get(eventName);
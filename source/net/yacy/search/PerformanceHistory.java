@@ -0,0 +1,308 @@
+// PerformanceHistory.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.rrd4j.ConsolFun;
+import org.rrd4j.DsType;
+import org.rrd4j.core.FetchData;
+import org.rrd4j.core.FetchRequest;
+import org.rrd4j.core.RrdBackendFactory;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+import org.rrd4j.core.RrdRandomAccessFileBackendFactory;
+import org.rrd4j.core.Sample;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
+import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.peers.Seed;
+import net.yacy.search.query.AccessTracker;
+
+/**
+ * Persistent performance history of the peer in a round robin database.
+ * One sample of each data source is taken every {@link #STEP} seconds; the samples are
+ * consolidated to averages and maxima for a day by minute, a week by ten minutes, a month
+ * by hour and two years by day. The file has a fixed size and each sample writes only a
+ * few bytes, so the history can be kept for a long time with bounded memory and IO.
+ */
+public class PerformanceHistory {
+
+    private static final ConcurrentLog log = new ConcurrentLog("PerformanceHistory");
+
+    /** the seconds between two samples */
+    public static final int STEP = 60;
+
+    /** pages per minute of the indexer */
+    public static final String PPM = "ppm";
+    /** used memory in bytes */
+    public static final String MEMORY = "memory";
+    /** words in the RWI buffer */
+    public static final String WORDCACHE = "wordcache";
+    /** local and remote searches per minute */
+    public static final String SEARCHES = "searches";
+    /** average search time in milliseconds */
+    public static final String SEARCHTIME = "searchtime";
+    /** word references sent by DHT per minute */
+    public static final String DHTOUT = "dhtout";
+    /** word references received per minute */
+    public static final String DHTIN = "dhtin";
+    /** urls loaded by the crawler per minute */
+    public static final String CRAWL = "crawl";
+
+    /** the data sources in the order of the values of {@link #update(long, double...)} */
+    public static final String[] DATASOURCES = {PPM, MEMORY, WORDCACHE, SEARCHES, SEARCHTIME, DHTOUT, DHTIN, CRAWL};
+
+    /** the archives as pairs of steps per row and rows */
+    private static final int[][] ARCHIVES = {{1, 1440}, {10, 1008}, {60, 744}, {1440, 730}};
+
+    private static final RrdBackendFactory backend = new RrdRandomAccessFileBackendFactory();
+
+    private final File file;
+    private RrdDb db;
+    private Sampler sampler;
+
+    /**
+     * open the history, the file is created if it does not exist
+     * @param file the round robin database file
+     * @throws IOException
+     */
+    public PerformanceHistory(final File file) throws IOException {
+        this(file, System.currentTimeMillis() / 1000 - STEP);
+    }
+
+    /**
+     * open the history
+     * @param file the round robin database file
+     * @param start the time of the first sample in seconds since the epoch if the file is created
+     * @throws IOException
+     */
+    PerformanceHistory(final File file, final long start) throws IOException {
+        this.file = file;
+        this.sampler = null;
+        if (file.exists()) {
+            try {
+                this.db = new RrdDb(file.getAbsolutePath(), backend);
+                return;
+            } catch (final IOException | RuntimeException e) {
+                log.warn("cannot open performance history " + file + ", creating a new one: " + e.getMessage());
+                file.delete();
+            }
+        }
+        file.getParentFile().mkdirs();
+        final RrdDef def = new RrdDef(file.getAbsolutePath(), start, STEP);
+        for (final String ds: DATASOURCES) def.addDatasource(ds, DsType.GAUGE, 3 * STEP, 0, Double.NaN);
+        for (final int[] archive: ARCHIVES) {
+            def.addArchive(ConsolFun.AVERAGE, 0.5, archive[0], archive[1]);
+            def.addArchive(ConsolFun.MAX, 0.5, archive[0], archive[1]);
+        }
+        this.db = new RrdDb(def, backend);
+    }
+
+    /**
+     * store a sample
+     * @param time the time of the sample in seconds since the epoch
+     * @param values the values in the order of {@link #DATASOURCES}, Double.NaN for unknown values
+     * @return false if the sample was not stored because it is not newer than the last sample
+     */
+    public synchronized boolean update(final long time, final double... values) {
+        if (this.db == null) return false;
+        try {
+            if (time <= this.db.getLastUpdateTime()) return false;
+            final Sample sample = this.db.createSample(time);
+            sample.setValues(values);
+            sample.update();
+            return true;
+        } catch (final IOException e) {
+            log.warn("cannot store performance sample: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * get the history of a data source. The resolution is chosen from the time range.
+     * @param datasource one of {@link #DATASOURCES}
+     * @param max if true the maximum values of each row, otherwise the averages
+     * @param seconds the time range up to now
+     * @return the series, null if the history is closed or cannot be read
+     */
+    public synchronized Series series(final String datasource, final boolean max, final long seconds) {
+        if (this.db == null) return null;
+        final long end = System.currentTimeMillis() / 1000;
+        try {
+            final FetchRequest request = this.db.createFetchRequest(max ? ConsolFun.MAX : ConsolFun.AVERAGE, end - seconds, end, Math.max(STEP, seconds / 1000));
+            request.setFilter(datasource);
+            final FetchData data = request.fetchData();
+            return new Series(data.getTimestamps(), data.getValues(datasource), data.getArcStep());
+        } catch (final IOException | IllegalArgumentException e) {
+            log.warn("cannot read performance history: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * start a thread which takes a sample every {@link #STEP} seconds
+     * @param sb the switchboard providing the values
+     */
+    public synchronized void startSampling(final Switchboard sb) {
+        if (this.sampler != null || this.db == null) return;
+        this.sampler = new Sampler(sb);
+        this.sampler.start();
+    }
+
+    public void close() {
+        final Sampler s;
+        synchronized (this) {
+            s = this.sampler;
+            this.sampler = null;
+        }
+        if (s != null) {
+            s.running = false;
+            s.interrupt();
+            try {
+                s.join(10000);
+            } catch (final InterruptedException e) {}
+        }
+        synchronized (this) {
+            if (this.db == null) return;
+            try {
+                this.db.close();
+            } catch (final IOException e) {
+                log.warn("cannot close performance history " + this.file + ": " + e.getMessage());
+            }
+            this.db = null;
+        }
+    }
+
+    /**
+     * a sequence of consolidated values
+     */
+    public static class Series {
+
+        /** the end times of the rows in seconds since the epoch */
+        public final long[] times;
+        /** the values of the rows, Double.NaN for unknown values */
+        public final double[] values;
+        /** the seconds of each row */
+        public final long step;
+
+        private Series(final long[] times, final double[] values, final long step) {
+            this.times = times;
+            this.values = values;
+            this.step = step;
+        }
+
+        /**
+         * @param min the minimum result
+         * @return the largest known value, at least min
+         */
+        public double max(final double min) {
+            double m = min;
+            for (final double v: this.values) if (!Double.isNaN(v) && v > m) m = v;
+            return m;
+        }
+    }
+
+    private class Sampler extends Thread {
+
+        private final Switchboard sb;
+        private volatile boolean running;
+        private long lastTime, searches, searchNanos, dhtOut, dhtIn, crawled;
+
+        private Sampler(final Switchboard sb) {
+            super("PerformanceHistory");
+            setDaemon(true);
+            this.sb = sb;
+            this.running = true;
+            this.lastTime = System.currentTimeMillis();
+            this.searches = searchCount();
+            this.searchNanos = searchNanos();
+            this.dhtOut = this.sb.peers.mySeed().getLong(Seed.INDEX_OUT, 0);
+            this.dhtIn = this.sb.peers.mySeed().getLong(Seed.INDEX_IN, 0);
+            this.crawled = crawlCount();
+        }
+
+        private long searchCount() {
+            return AccessTracker.Location.local.latency.count() + AccessTracker.Location.remote.latency.count();
+        }
+
+        private long searchNanos() {
+            return AccessTracker.Location.local.latency.sum() + AccessTracker.Location.remote.latency.sum();
+        }
+
+        private long crawlCount() {
+            return Metrics.counter("yacy_crawler_balancer_pop_total", null).getCount();
+        }
+
+        @Override
+        public void run() {
+            while (this.running) {
+                try {
+                    // wait for the next step boundary
+                    final long now = System.currentTimeMillis();
+                    Thread.sleep(STEP * 1000L - now % (STEP * 1000L));
+                } catch (final InterruptedException e) {
+                    break;
+                }
+                try {
+                    sample();
+                } catch (final RuntimeException e) {
+                    log.warn("cannot take performance sample", e);
+                }
+            }
+        }
+
+        private void sample() {
+            final long now = System.currentTimeMillis();
+            final double minutes = Math.max(1L, now - this.lastTime) / 60000.0d;
+            this.lastTime = now;
+
+            final long searchCount = searchCount();
+            final long searchNanos = searchNanos();
+            final long searchDelta = searchCount - this.searches;
+            final double searchtime = searchDelta > 0 ? (searchNanos - this.searchNanos) / 1000000.0d / searchDelta : Double.NaN;
+            this.searches = searchCount;
+            this.searchNanos = searchNanos;
+
+            final Seed mySeed = this.sb.peers.mySeed();
+            final long dhtOut = mySeed.getLong(Seed.INDEX_OUT, 0);
+            final long dhtIn = mySeed.getLong(Seed.INDEX_IN, 0);
+            final long crawled = crawlCount();
+
+            update(now / 1000,
+                    Switchboard.currentPPM(),
+                    MemoryControl.used(),
+                    this.sb.index.RWIBufferCount(),
+                    Math.max(0, searchDelta) / minutes,
+                    searchtime,
+                    Math.max(0, dhtOut - this.dhtOut) / minutes,
+                    Math.max(0, dhtIn - this.dhtIn) / minutes,
+                    Math.max(0, crawled - this.crawled) / minutes);
+            this.dhtOut = dhtOut;
+            this.dhtIn = dhtIn;
+            this.crawled = crawled;
+        }
+    }
+}
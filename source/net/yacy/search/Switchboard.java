@@ -39,12 +39,11 @@ package net.yacy.search;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -55,7 +54,6 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
@@ -97,10 +95,6 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.search.SyntaxError;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 
 import com.cybozu.labs.langdetect.DetectorFactory;
 import com.cybozu.labs.langdetect.LangDetectException;
@@ -141,6 +135,7 @@ import net.yacy.cora.protocol.http.ProxySettings;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.Memory;
+import net.yacy.cora.util.Metrics;
 import net.yacy.crawler.CrawlStacker;
 import net.yacy.crawler.CrawlSwitchboard;
 import net.yacy.crawler.HarvestProcess;
@@ -182,6 +177,7 @@ import net.yacy.document.VocabularyScraper;
 import net.yacy.document.content.DCEntry;
 import net.yacy.document.content.SurrogateReader;
 import net.yacy.document.importer.OAIListFriendsLoader;
+import net.yacy.document.importer.SurrogateIngestion;
 import net.yacy.document.importer.WarcImporter;
 import net.yacy.document.parser.audioTagParser;
 import net.yacy.document.parser.pdfParser;
@@ -196,6 +192,7 @@ import net.yacy.kelondro.blob.Tables.SortDirection;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.logging.GuiHandler;
+import net.yacy.kelondro.logging.SamplingProfiler;
 import net.yacy.kelondro.logging.ThreadDump;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.FileUtils;
@@ -226,10 +223,13 @@ import net.yacy.repository.Blacklist.BlacklistType;
 import net.yacy.repository.FilterEngine;
 import net.yacy.repository.LoaderDispatcher;
 import net.yacy.search.index.Fulltext;
+import net.yacy.search.index.ReindexSolrBusyThread;
 import net.yacy.search.index.Segment;
 import net.yacy.search.index.Segment.ReferenceReportCache;
 import net.yacy.search.index.SingleDocumentMatcher;
 import net.yacy.search.query.AccessTracker;
+import net.yacy.search.query.QueryTrace;
+import net.yacy.search.query.SearchAdmission;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SearchEventCache;
 import net.yacy.search.ranking.RankingProfile;
@@ -277,6 +277,7 @@ public final class Switchboard extends serverSwitch {
     public File queuesRoot;
     public File surrogatesInPath;
     public File surrogatesOutPath;
+    public SurrogateIngestion surrogateIngestion;
     public Segment index;
     public LoaderDispatcher loader;
     public CrawlSwitchboard crawler;
@@ -294,6 +295,8 @@ public final class Switchboard extends serverSwitch {
     public UserDB userDB;
     public BookmarksDB bookmarksDB;
     public WebStructureGraph webStructure;
+    public PerformanceHistory performanceHistory;
+    public SamplingProfiler profiler;
     public ConcurrentHashMap<String, TreeSet<Long>> localSearchTracker, remoteSearchTracker; // mappings from requesting host to a TreeSet of Long(access time)
     public int searchQueriesRobinsonFromLocal = 0; // absolute counter of all local queries submitted on this peer from a local or autheticated used
     public int searchQueriesRobinsonFromRemote = 0; // absolute counter of all local queries submitted on this peer from a remote IP without authentication
@@ -593,6 +596,9 @@ public final class Switchboard extends serverSwitch {
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) try {
             this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
         } catch (final IOException e) {ConcurrentLog.logException(e);}
+        if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE, SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE_DEFAULT)) try {
+            this.index.connectSnippetStore();
+        } catch (final IOException e) {ConcurrentLog.logException(e);}
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_FULLTEXT,
                 SwitchboardConstants.CORE_SERVICE_FULLTEXT_DEFAULT)) {
             try {this.index.fulltext().connectLocalSolr();} catch (final IOException e) {ConcurrentLog.logException(e);}
@@ -916,6 +922,7 @@ public final class Switchboard extends serverSwitch {
 
         TextParser.setDenyMime(getConfig(SwitchboardConstants.PARSER_MIME_DENY, ""));
         TextParser.setDenyExtension(getConfig(SwitchboardConstants.PARSER_EXTENSIONS_DENY, ""));
+        TextParser.setParserBudget(getConfigLong(SwitchboardConstants.PARSER_TIMEOUT, 120000L), getConfigLong(SwitchboardConstants.PARSER_MAXALLOCATION, 0L));
         pdfParser.individualPages = getConfigBool(SwitchboardConstants.PARSER_PDF_INDIVIDUALPAGES, false);
         pdfParser.individualPagePropertyname = getConfig(SwitchboardConstants.PARSER_PDF_INDIVIDUALPAGES_KEY, "page");
 
@@ -1164,6 +1171,11 @@ public final class Switchboard extends serverSwitch {
                 },
                 60000); // all 10 minutes, wait 1 minute until first run
 
+        this.surrogateIngestion = new SurrogateIngestion(
+                this,
+                this.getConfigInt(SwitchboardConstants.SURROGATES_CONCURRENT_FILES, 2),
+                this.getConfigInt(SwitchboardConstants.SURROGATES_WORKERS, 0),
+                this.getConfigInt(SwitchboardConstants.SURROGATES_QUEUE_SIZE, 1000));
         deployThread(
             SwitchboardConstants.SURROGATES,
             "Surrogates",
@@ -1295,9 +1307,58 @@ public final class Switchboard extends serverSwitch {
 
         this.trail = new LinkedBlockingQueue<String>();
 
+        initMetrics();
+        QueryTrace.configure(
+                getConfigFloat(SwitchboardConstants.SEARCH_TRACE_SAMPLERATE, 0.05f),
+                getConfigLong(SwitchboardConstants.SEARCH_TRACE_SLOWTHRESHOLD, 5000),
+                getConfigInt(SwitchboardConstants.SEARCH_TRACE_CAPACITY, 100));
+        SearchAdmission.configure(
+                getConfigBool(SwitchboardConstants.SEARCH_ADMISSION_ENABLED, false),
+                getConfigLong(SwitchboardConstants.SEARCH_ADMISSION_TARGETLATENCY, 3000),
+                getConfigFloat(SwitchboardConstants.SEARCH_ADMISSION_MAXLOAD, 4.0f),
+                getConfigInt(SwitchboardConstants.SEARCH_ADMISSION_MAXCONCURRENT, 0));
+
+        // start the persistent performance history
+        try {
+            this.performanceHistory = new PerformanceHistory(new File(this.workPath, "performance.rrd"));
+            this.performanceHistory.startSampling(this);
+        } catch (final IOException e) {
+            this.log.warn("cannot open the performance history: " + e.getMessage());
+            this.performanceHistory = null;
+        }
+
+        // the sampling profiler
+        this.profiler = new SamplingProfiler(
+                getConfigLong(SwitchboardConstants.PROFILER_INTERVAL, 200),
+                getConfigLong(SwitchboardConstants.PROFILER_WINDOW, 600000),
+                new File(dataPath, "DATA/LOG/profile.collapsed"));
+        if (getConfigBool(SwitchboardConstants.PROFILER_ENABLED, false)) this.profiler.start();
+
+        // continue a reindex job which was interrupted by the last shutdown
+        ReindexSolrBusyThread.resume(this);
+
         this.log.config("Finished Switchboard Initialization");
     }
 
+    /**
+     * Register the gauges of the core subsystems for the metrics export
+     */
+    private void initMetrics() {
+        Metrics.gauge("yacy_memory_used_bytes", "Used heap memory", () -> MemoryControl.used());
+        Metrics.gauge("yacy_memory_available_bytes", "Heap memory which is still available", () -> MemoryControl.available());
+        Metrics.gauge("yacy_index_documents", "Documents in the fulltext index", () -> this.index.fulltext().collectionSize());
+        Metrics.gauge("yacy_index_rwi_words", "Words in the reverse word index", () -> this.index.RWICount());
+        Metrics.gauge(Metrics.name("yacy_crawler_queue_size", "queue", "local"), "Urls in the crawl queues", () -> this.crawlQueues.coreCrawlJobSize());
+        Metrics.gauge(Metrics.name("yacy_crawler_queue_size", "queue", "limit"), null, () -> this.crawlQueues.limitCrawlJobSize());
+        Metrics.gauge(Metrics.name("yacy_crawler_queue_size", "queue", "remote"), null, () -> this.crawlQueues.remoteTriggeredCrawlJobSize());
+        Metrics.gauge(Metrics.name("yacy_crawler_queue_size", "queue", "noload"), null, () -> this.crawlQueues.noloadCrawlJobSize());
+        Metrics.gauge("yacy_peers_connected", "Connected peers of the network", () -> this.peers.sizeConnected());
+        Metrics.gauge("yacy_dns_cache_hits", "Host name lookups answered by the DNS cache", () -> Domains.cacheHit_Hit + Domains.cacheMiss_Hit);
+        Metrics.gauge("yacy_dns_cache_misses", "Host name lookups not answered by the DNS cache", () -> Domains.cacheMiss_Miss);
+        Metrics.gauge("yacy_htcache_requests", "Requests to the HTCache", () -> Cache.getTotalRequests());
+        Metrics.gauge("yacy_htcache_hits", "Requests answered by the HTCache", () -> Cache.getHits());
+    }
+
     /**
      * Initialize outgoing connections custom settings
      */
@@ -1547,6 +1608,7 @@ public final class Switchboard extends serverSwitch {
             this.index = new Segment(this.log, segmentsPath, archivePath, collectionConfiguration, webgraphConfiguration);
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
+            if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE, SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE_DEFAULT)) this.index.connectSnippetStore();
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_FULLTEXT,
                     SwitchboardConstants.CORE_SERVICE_FULLTEXT_DEFAULT)) {
                 this.index.fulltext().connectLocalSolr();
@@ -2028,6 +2090,7 @@ public final class Switchboard extends serverSwitch {
         net.yacy.gui.framework.Switchboard.shutdown();
         this.log.config("SWITCHBOARD SHUTDOWN STEP 2: sending termination signal to threaded indexing");
         // closing all still running db importer jobs
+        if (this.surrogateIngestion != null) this.surrogateIngestion.close();
         this.crawlStacker.announceClose();
         this.crawlStacker.close();
         this.crawlQueues.close();
@@ -2049,6 +2112,8 @@ public final class Switchboard extends serverSwitch {
         }
         this.messageDB.close();
         this.webStructure.close();
+        if (this.performanceHistory != null) this.performanceHistory.close();
+        if (this.profiler != null) this.profiler.stop();
         this.crawler.close();
         this.log.config("SWITCHBOARD SHUTDOWN STEP 3: sending termination signal to database manager (stand by...)");
         this.index.close();
@@ -2160,15 +2225,12 @@ public final class Switchboard extends serverSwitch {
                 zis = new ZipInputStream(is);
                 ZipEntry entry;
                 while ( (entry = zis.getNextEntry()) != null ) {
-                    int size;
-                    final byte[] buffer = new byte[2048];
-                    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    while ( (size = zis.read(buffer, 0, buffer.length)) != -1 ) {
-                        baos.write(buffer, 0, size);
-                    }
-                    baos.flush();
-                    processSurrogate(new ByteArrayInputStream(baos.toByteArray()), entry.getName());
-                    baos.close();
+                    // stream the entry to the reader; closing the entry stream must not close the zip stream
+                    processSurrogate(new FilterInputStream(zis) {
+                        @Override
+                        public void close() {
+                        }
+                    }, entry.getName());
                     if (shallTerminate()) break;
                 }
             } catch (final IOException e ) {
@@ -2194,111 +2256,9 @@ public final class Switchboard extends serverSwitch {
                 log.warn("IO Error processing warc file " + infile);
             }
             return moved;
-        } else if (s.endsWith(".jsonlist") || s.endsWith(".flatjson")) {
-            // parse a file that can be generated with yacy_grid_parser
-            // see https://github.com/yacy/yacy_grid_parser/blob/master/README.md
-            FileInputStream fis = null;
-            BufferedReader br = null;
-            try {
-                fis = new FileInputStream(infile);
-                InputStream is = new BufferedInputStream(fis);
-                br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    JSONTokener jt = new JSONTokener(line);
-                    JSONObject json = new JSONObject(jt);
-                    if ((json.opt("index") != null && json.length() == 1) || json.length() == 0) continue;
-                    SolrInputDocument surrogate = new SolrInputDocument();
-                    for (String key: json.keySet()) {
-                        Object o = json.opt(key);
-                        if (o == null) continue;
-                        if (o instanceof JSONArray) {
-                            // transform this into a list
-                            JSONArray a = (JSONArray) o;
-                            // patch altered yacy grid schema (yacy grid does not split url lists into protocol and urlstub)
-                            if (key.equals("inboundlinks_sxt")) {
-                                // compute inboundlinks_urlstub_sxt and inboundlinks_protocol_sxt
-                                List<Object> urlstub = new ArrayList<>();
-                                List<Object> protocol = new ArrayList<>();
-                                for (int i = 0; i < a.length(); i++) {
-                                    AnchorURL b = new AnchorURL((String) a.get(i));
-                                    urlstub.add(b.urlstub(true, true));
-                                    protocol.add(b.getProtocol());
-                                }
-                                CollectionSchema.inboundlinks_urlstub_sxt.add(surrogate, urlstub);
-                                CollectionSchema.inboundlinks_protocol_sxt.add(surrogate, protocol);
-                            } else if (key.equals("outboundlinks_sxt")) {
-                                // compute outboundlinks_urlstub_sxt and outboundlinks_protocol_sxt
-                                List<Object> urlstub = new ArrayList<>();
-                                List<Object> protocol = new ArrayList<>();
-                                for (int i = 0; i < a.length(); i++) {
-                                    AnchorURL b = new AnchorURL((String) a.get(i));
-                                    urlstub.add(b.urlstub(true, true));
-                                    protocol.add(b.getProtocol());
-                                }
-                                CollectionSchema.outboundlinks_urlstub_sxt.add(surrogate, urlstub);
-                                CollectionSchema.outboundlinks_protocol_sxt.add(surrogate, protocol);
-                            } else if (key.equals("images_sxt")) {
-                                // compute images_urlstub_sxt and images_protocol_sxt
-                                List<Object> urlstub = new ArrayList<>();
-                                List<Object> protocol = new ArrayList<>();
-                                for (int i = 0; i < a.length(); i++) {
-                                    AnchorURL b = new AnchorURL((String) a.get(i));
-                                    urlstub.add(b.urlstub(true, true));
-                                    protocol.add(b.getProtocol());
-                                }
-                                CollectionSchema.images_urlstub_sxt.add(surrogate, urlstub);
-                                CollectionSchema.images_protocol_sxt.add(surrogate, protocol);
-                            } else {
-                                List<Object> list = new ArrayList<>();
-                                for (int i = 0; i < a.length(); i++) list.add(a.get(i));
-                                CollectionSchema schema = CollectionSchema.valueOf(key);
-                                schema.add(surrogate, list);
-                            }
-                        } else {
-                            // patch yacy grid altered schema (yacy grid does not have IDs any more, but they can be re-computed here)
-                            if (key.equals("url_s")) {
-                                DigestURL durl = new DigestURL(o.toString());
-                                String id = ASCII.String(durl.hash());
-                                surrogate.setField(CollectionSchema.sku.getSolrFieldName(), durl.toNormalform(true));
-                                surrogate.setField(CollectionSchema.id.getSolrFieldName(), id);
-                                surrogate.setField(CollectionSchema.host_id_s.getSolrFieldName(), id.substring(6));
-                            } else if (key.equals("referrer_url_s")) {
-                                DigestURL durl = new DigestURL(o.toString());
-                                String id = ASCII.String(durl.hash());
-                                surrogate.setField(CollectionSchema.referrer_id_s.getSolrFieldName(), id);
-                            } else {
-                                surrogate.setField(key, o.toString());
-                            }
-                        }
-                    }
-                    Switchboard.this.index.putDocument(surrogate);
-                }
-                br.close();
-                br = null;
-                fis = null;
-                moved = infile.renameTo(outfile);
-            } catch (IOException | JSONException  ex) {
-                log.warn("IO Error processing flatjson file " + infile);
-            } finally {
-                /* Properly release file system resources even in failure cases */
-                if(br != null) {
-                    /* buffered reader was successfully created : close it and its underlying streams */
-                    try {
-                        br.close();
-                    } catch (IOException e) {
-                        log.warn("Could not close reader on file " + infile);
-                    }
-                } else if(fis != null) {
-                    /* no buffered reader : maybe a case of exhausted memory. Anyway file input stream has to be closed. */
-                    try {
-                        fis.close();
-                    } catch (IOException e) {
-                        log.warn("Could not close input stream on file " + infile);
-                    }
-                }
-            }
-            return moved;
+        } else if (SurrogateIngestion.isJson(s)) {
+            // json files are streamed by the ingestion service
+            return this.surrogateIngestion.submit(s);
         }
         InputStream is = null;
         try {
@@ -2467,6 +2427,7 @@ public final class Switchboard extends serverSwitch {
             return false;
         }
 
+        boolean submitted = false;
         try {
             // check surrogates
             final String[] surrogatelist = this.surrogatesInPath.list();
@@ -2484,18 +2445,19 @@ public final class Switchboard extends serverSwitch {
                         || surrogate.endsWith(".warc.gz")
                         || surrogate.endsWith(".jsonlist")
                         || surrogate.endsWith(".flatjson") ) {
-                        // read the surrogate file and store entry in index
-                        if ( processSurrogate(surrogate) ) {
-                            return true;
+                        // hand the surrogate file to the ingestion service, files already in progress are not submitted again
+                        if ( this.surrogateIngestion.isBusy() ) break;
+                        if ( this.surrogateIngestion.submit(surrogate) ) {
+                            submitted = true;
                         }
                     }
                 }
             }
 
         } catch (final InterruptedException e ) {
-            return false;
+            return submitted;
         }
-        return false;
+        return submitted;
     }
 
     public static void clearCaches() {
@@ -2539,8 +2501,13 @@ public final class Switchboard extends serverSwitch {
         final Collection<String> pks = new LinkedHashSet<String>();
         final Date now = new Date();
         try {
-            final Iterator<Tables.Row> plainIterator = this.tables.iterator(WorkTables.TABLE_API_NAME);
-            final Iterator<Tables.Row> mapIterator = Tables.orderByDate(plainIterator, WorkTables.TABLE_API_COL_DATE_LAST_EXEC, null, SortDirection.ASC).iterator();
+            final Iterator<Tables.Row> mapIterator;
+            if (this.tables.hasSortedIndex(WorkTables.TABLE_API_NAME, WorkTables.TABLE_API_COL_DATE_LAST_EXEC)) {
+                mapIterator = this.tables.orderedIterator(WorkTables.TABLE_API_NAME, WorkTables.TABLE_API_COL_DATE_LAST_EXEC, null, SortDirection.ASC);
+            } else {
+                final Iterator<Tables.Row> plainIterator = this.tables.iterator(WorkTables.TABLE_API_NAME);
+                mapIterator = Tables.orderByDate(plainIterator, WorkTables.TABLE_API_COL_DATE_LAST_EXEC, null, SortDirection.ASC).iterator();
+            }
             while (mapIterator.hasNext()) {
                 row = mapIterator.next();
                 if (row == null) continue;
@@ -2629,6 +2596,9 @@ public final class Switchboard extends serverSwitch {
                 log.info("cannot write threaddump", e);
             }
 
+            // write the web structure log
+            this.webStructure.flush();
+
             // clear caches if necessary
             if ( !MemoryControl.request(128000000L, false) ) {
                 this.index.clearCaches();
@@ -4461,6 +4431,7 @@ public final class Switchboard extends serverSwitch {
         mySeed.put(Seed.UTC, GenericFormatter.UTCDiffString());
         mySeed.setFlagAcceptRemoteCrawl(getConfigBool(SwitchboardConstants.CRAWLJOB_REMOTE, false));
         mySeed.setFlagAcceptRemoteIndex(getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, true));
+        mySeed.setFlagAcceptBinaryRWI(true);
         mySeed.setFlagSSLAvailable(this.getHttpServer() != null && this.getHttpServer().withSSL() && getConfigBool("server.https", false));
         if (mySeed.getFlagSSLAvailable()) mySeed.put(Seed.PORTSSL, Integer.toString(getPublicPort(SwitchboardConstants.SERVER_SSLPORT, 8443)));
 
@@ -220,6 +220,8 @@ public final class SwitchboardConstants {
     public static final String PARSER_EXTENSIONS_DENY           = "parser.extensions.deny";
     public static final String PARSER_PDF_INDIVIDUALPAGES       = "parser.pdf.individualpages";
     public static final String PARSER_PDF_INDIVIDUALPAGES_KEY   = "parser.pdf.individualpages.key";
+    public static final String PARSER_TIMEOUT                   = "parser.timeout";
+    public static final String PARSER_MAXALLOCATION             = "parser.maxAllocation";
     /**
      * <p><code>public static final String <strong>PROXY_ONLINE_CAUTION_DELAY</strong> = "onlineCautionDelay"</code></p>
      * <p>Name of the setting how long indexing should pause after the last time the proxy was used in milliseconds</p>
@@ -296,6 +298,12 @@ public final class SwitchboardConstants {
     /** Default setting value controlling whether https should be preferred for remote searches, when available on the target peer */
     public static final boolean REMOTESEARCH_HTTPS_PREFERRED_DEFAULT = false;
     
+    /** Key of the setting controlling whether the results of remote searches are requested as a stream, processed as soon as they arrive */
+    public static final String REMOTESEARCH_STREAM = "remotesearch.stream";
+    
+    /** Default setting value controlling whether the results of remote searches are requested as a stream */
+    public static final boolean REMOTESEARCH_STREAM_DEFAULT = true;
+    
 	/**
 	 * Setting key to configure whether responses from remote Solr instances
 	 * should be binary encoded :
@@ -339,6 +347,12 @@ public final class SwitchboardConstants {
     public static final String CORE_SERVICE_CITATION            = "core.service.citation.tmp";
     public static final String CORE_SERVICE_WEBGRAPH            = "core.service.webgraph.tmp";
 
+    /** Key of the setting controlling whether the document sentences are stored at indexing time for the snippet computation */
+    public static final String CORE_SERVICE_SNIPPETSTORE        = "core.service.snippetstore";
+
+    /** Default setting value controlling whether the document sentences are stored for the snippet computation */
+    public static final boolean CORE_SERVICE_SNIPPETSTORE_DEFAULT = false;
+
     /**
      * <p><code>public static final String <strong>CRAWLER_THREADS_ACTIVE_MAX</strong> = "crawler.MaxActiveThreads"</code></p>
      * <p>Name of the setting how many active crawler-threads may maximal be running on the same time</p>
@@ -385,6 +399,20 @@ public final class SwitchboardConstants {
     
     /** Default value for the setting controlling whether text snippets statistics should be computed */
     public static final boolean DEBUG_SNIPPETS_STATISTICS_ENABLED_DEFAULT = false;
+
+    /** Key of the setting controlling whether the sampling profiler runs */
+    public static final String PROFILER_ENABLED                 = "profiler.enabled";
+    /** Key of the setting of the milliseconds between two profiler samples */
+    public static final String PROFILER_INTERVAL                = "profiler.interval";
+    /** Key of the setting of the milliseconds of a profiler window */
+    public static final String PROFILER_WINDOW                  = "profiler.window";
+
+    /** Key of the setting of the number of threads transforming documents in a reindex job, 0 for half of the processors */
+    public static final String REINDEX_THREADS                  = "reindexSolr.threads";
+    /** Key of the setting of the maximum number of documents reindexed in one cycle */
+    public static final String REINDEX_CHUNKSIZE                = "reindexSolr.chunkSize";
+    /** Key of the setting of the average local search time in milliseconds from which a reindex job pauses, 0 to never pause */
+    public static final String REINDEX_MAX_SEARCH_LATENCY       = "reindexSolr.maxSearchLatency";
     
     /**
      * <p><code>public static final String <strong>WORDCACHE_MAX_COUNT</strong> = "wordCacheMaxCount"</code></p>
@@ -436,6 +464,12 @@ public final class SwitchboardConstants {
     public static final String SURROGATES_IN_PATH_DEFAULT  = "DATA/SURROGATES/in";
     public static final String SURROGATES_OUT_PATH         = "surrogates.out";
     public static final String SURROGATES_OUT_PATH_DEFAULT = "DATA/SURROGATES/out";
+    /** Key of the setting of the maximum number of surrogate files processed at the same time */
+    public static final String SURROGATES_CONCURRENT_FILES = "surrogates.concurrentFiles";
+    /** Key of the setting of the number of threads transforming json surrogates into documents, 0 for the number of processors */
+    public static final String SURROGATES_WORKERS          = "surrogates.workers";
+    /** Key of the setting of the capacity of the queues in front of the surrogate transformation and the index writers */
+    public static final String SURROGATES_QUEUE_SIZE       = "surrogates.queueSize";
 
     public static final String DICTIONARY_SOURCE_PATH         = "dictionaries";
     public static final String DICTIONARY_SOURCE_PATH_DEFAULT = "DATA/DICTIONARIES";
@@ -645,6 +679,27 @@ public final class SwitchboardConstants {
     /** Default setting value controlling whether the search public top navigation bar includes a login link/status */
     public static final boolean SEARCH_PUBLIC_TOP_NAV_BAR_LOGIN_DEFAULT = true;
 
+    /** Key of the setting of the part of the searches (between 0 and 1) whose trace is kept */
+    public static final String SEARCH_TRACE_SAMPLERATE = "search.trace.sampleRate";
+
+    /** Key of the setting of the search time in milliseconds from which a search trace is kept and logged as slow query */
+    public static final String SEARCH_TRACE_SLOWTHRESHOLD = "search.trace.slowThreshold";
+
+    /** Key of the setting of the number of kept search traces */
+    public static final String SEARCH_TRACE_CAPACITY = "search.trace.capacity";
+
+    /** Key of the setting controlling whether the search admission control degrades or rejects searches when the peer is overloaded */
+    public static final String SEARCH_ADMISSION_ENABLED = "search.admission.enabled";
+
+    /** Key of the setting of the search latency in milliseconds which the search admission control considers as full load */
+    public static final String SEARCH_ADMISSION_TARGETLATENCY = "search.admission.targetLatency";
+
+    /** Key of the setting of the system load per core which the search admission control considers as full load */
+    public static final String SEARCH_ADMISSION_MAXLOAD = "search.admission.maxLoad";
+
+    /** Key of the setting of the number of concurrent searches which the search admission control considers as full load, 0 for four per core */
+    public static final String SEARCH_ADMISSION_MAXCONCURRENT = "search.admission.maxConcurrent";
+
     /** Key of the setting controlling the max lines displayed in standard search navigators/facets */
     public static final String SEARCH_NAVIGATION_MAXCOUNT = "search.navigation.maxcount";
     
@@ -0,0 +1,507 @@
+// ExportPipeline.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.solr.common.SolrDocument;
+
+import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.federate.solr.responsewriter.EnhancedXMLResponseWriter;
+import net.yacy.cora.federate.solr.responsewriter.FlatJSONResponseWriter;
+import net.yacy.cora.document.id.MultiProtocolURL;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.document.parser.html.CharacterCoding;
+import net.yacy.search.index.Fulltext.ExportCompression;
+import net.yacy.search.index.Fulltext.ExportFormat;
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * A streaming export of the documents of a query.
+ * The query is split into partitions by the first character of the document id. Several reader threads
+ * stream the partitions in id order from the index, encode the documents in the export format into
+ * chunks of bytes and pass the chunks through a bounded queue to the writer, which writes them to the
+ * (compressed) file channel. Memory use is bounded by the queue size and the chunk size.
+ *
+ * The writer stores a checkpoint at the end of each partition and after every CHECKPOINT_BYTES: the file
+ * length and, for each partition, the id of the last exported document. At a checkpoint a compressed file
+ * is finished and a new compression stream is appended, which is valid for gzip and xz. An interrupted
+ * export is resumed from its checkpoint file: the export file is cut to the stored length and each
+ * partition continues after the stored id.
+ */
+final class ExportPipeline {
+
+    private static final ConcurrentLog log = new ConcurrentLog("ExportPipeline");
+
+    /** the extension of the checkpoint file which is stored next to the export file */
+    public static final String CHECKPOINT_EXT = ".checkpoint";
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final long CHECKPOINT_BYTES = 64L * 1024L * 1024L;
+    private static final String DONE = "-done-";
+
+    /** a chunk of encoded documents of one partition */
+    private static final class Chunk {
+        private final int partition;
+        private final byte[] data;
+        private final int length;
+        private final int count;
+        private final String lastId;
+        private final boolean last;
+        private Chunk(final int partition, final byte[] data, final int length, final int count, final String lastId, final boolean last) {
+            this.partition = partition;
+            this.data = data;
+            this.length = length;
+            this.count = count;
+            this.lastId = lastId;
+            this.last = last;
+        }
+    }
+
+    private static final Chunk END = new Chunk(-1, null, 0, 0, null, true);
+
+    private final SolrConnector connector;
+    private final File f;
+    private final File checkpoint;
+    private final String query;
+    private final String filter;
+    private final Pattern pattern;
+    private final ExportFormat format;
+    private final ExportCompression compression;
+    private final boolean text;
+    private final int readers;
+    private final AtomicInteger count;
+    private final String[] cursors;
+    private long offset;
+    private volatile boolean stopped; // set to stop the readers
+    private volatile boolean closed; // set when the writer does not take chunks any more
+    private volatile String failure;
+
+    /**
+     * create an export pipeline; if a checkpoint file of the export file exists, the export is resumed
+     * @param connector the connector to the index
+     * @param f the export file
+     * @param query the query selecting the exported documents
+     * @param filter a regular expression which the url of an exported document must match, may be null
+     * @param format the export format, not a domain list
+     * @param compression the compression of the export file
+     * @param text true to export only the text of the documents
+     * @param readers the number of reader threads
+     * @param count the counter of exported documents
+     * @throws IOException if the checkpoint cannot be read
+     */
+    public ExportPipeline(final SolrConnector connector, final File f, final String query, final String filter, final ExportFormat format,
+            final ExportCompression compression, final boolean text, final int readers, final AtomicInteger count) throws IOException {
+        this.connector = connector;
+        this.f = f;
+        this.checkpoint = new File(f.getAbsolutePath() + CHECKPOINT_EXT);
+        this.query = query;
+        this.filter = filter;
+        this.pattern = filter == null ? null : Pattern.compile(filter);
+        this.format = format;
+        this.compression = compression;
+        this.text = text;
+        this.readers = Math.max(1, readers);
+        this.count = count;
+        this.cursors = new String[Base64Order.alpha_enhanced.length];
+        this.offset = -1;
+        this.stopped = false;
+        this.closed = false;
+        this.failure = null;
+        if (this.checkpoint.exists()) {
+            final Properties p = readCheckpoint(this.checkpoint);
+            this.offset = Long.parseLong(p.getProperty("offset", "-1"));
+            this.count.set(Integer.parseInt(p.getProperty("count", "0")));
+            for (int i = 0; i < this.cursors.length; i++) this.cursors[i] = p.getProperty("cursor." + i);
+        }
+    }
+
+    /**
+     * read the settings of an export from its checkpoint file
+     * @param checkpoint the checkpoint file
+     * @return the properties file, query, filter, format, compression, text, offset, count and the cursors
+     * @throws IOException
+     */
+    public static Properties readCheckpoint(final File checkpoint) throws IOException {
+        final Properties p = new Properties();
+        try (final InputStream is = new FileInputStream(checkpoint)) {
+            p.load(is);
+        }
+        return p;
+    }
+
+    /**
+     * the query of a partition, continuing after the id of the cursor
+     */
+    private String partitionQuery(final int partition) {
+        final char c = (char) Base64Order.alpha_enhanced[partition];
+        final StringBuilder q = new StringBuilder(this.query.length() + 60);
+        q.append('(').append(this.query).append(") AND ").append(CollectionSchema.id.getSolrFieldName()).append(':');
+        if (c == '-' || c == '_') q.append('\\');
+        q.append(c).append('*');
+        final String cursor = this.cursors[partition];
+        if (cursor != null) q.append(" AND ").append(CollectionSchema.id.getSolrFieldName()).append(":{\"").append(cursor).append("\" TO *]");
+        return q.toString();
+    }
+
+    /**
+     * run the export; returns when the export is finished, failed or interrupted
+     * @throws IOException if the export failed
+     * @throws InterruptedException if the export was interrupted; the checkpoint is kept for a resume
+     */
+    public void run() throws IOException, InterruptedException {
+        final List<Integer> partitions = new ArrayList<Integer>();
+        for (int i = 0; i < this.cursors.length; i++) if (!DONE.equals(this.cursors[i])) partitions.add(i);
+        final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<Chunk>(this.readers * 4);
+        final AtomicInteger next = new AtomicInteger(0);
+        final Thread[] readerThreads = new Thread[this.readers];
+        for (int t = 0; t < this.readers; t++) {
+            readerThreads[t] = new Thread("Fulltext.Export.reader-" + t) {
+                @Override
+                public void run() {
+                    try {
+                        int i;
+                        while (!ExportPipeline.this.stopped && (i = next.getAndIncrement()) < partitions.size()) {
+                            readPartition(partitions.get(i), chunks);
+                        }
+                    } catch (final InterruptedException e) {
+                        // stopped by the writer
+                    } catch (final Throwable e) {
+                        log.warn("export reader failed: " + e.getMessage(), e);
+                        ExportPipeline.this.failure = e.getMessage() == null ? e.toString() : e.getMessage();
+                        ExportPipeline.this.stopped = true;
+                    } finally {
+                        try {
+                            put(chunks, END);
+                        } catch (final InterruptedException e) {}
+                    }
+                }
+            };
+            readerThreads[t].start();
+        }
+
+        try (final RandomAccessFile raf = new RandomAccessFile(this.f, "rw")) {
+            final FileChannel channel = raf.getChannel();
+            final boolean resume = this.offset >= 0;
+            if (resume) {
+                channel.truncate(this.offset);
+                log.info("resuming export " + this.f + " at " + this.offset + " bytes, " + this.count.get() + " documents, " + partitions.size() + " partitions left");
+            }
+            channel.position(channel.size());
+            final BufferedOutputStream file = new BufferedOutputStream(Channels.newOutputStream(channel), 65536);
+            OutputStream out = compress(file);
+            if (!resume) {
+                out.write(header(this.format, this.query).getBytes(StandardCharsets.UTF_8));
+                out = checkpoint(out, file, channel);
+            }
+            long bytes = 0;
+            int running = this.readers;
+            while (running > 0) {
+                final Chunk chunk = chunks.take();
+                if (chunk == END) {
+                    running--;
+                    continue;
+                }
+                if (chunk.length > 0) out.write(chunk.data, 0, chunk.length);
+                bytes += chunk.length;
+                this.count.addAndGet(chunk.count);
+                if (chunk.lastId != null) this.cursors[chunk.partition] = chunk.lastId;
+                if (chunk.last) this.cursors[chunk.partition] = DONE;
+                if (chunk.last || bytes >= CHECKPOINT_BYTES) {
+                    out = checkpoint(out, file, channel);
+                    bytes = 0;
+                }
+            }
+            if (this.failure != null) {
+                finish(out);
+                file.flush();
+                throw new IOException(this.failure);
+            }
+            out.write(footer(this.format).getBytes(StandardCharsets.UTF_8));
+            finish(out);
+            file.flush();
+        } catch (final InterruptedException | IOException e) {
+            this.stopped = true;
+            for (final Thread t: readerThreads) t.interrupt();
+            throw e;
+        } finally {
+            this.closed = true;
+        }
+        this.checkpoint.delete();
+    }
+
+    /**
+     * stream the documents of a partition into chunks
+     */
+    private void readPartition(final int partition, final BlockingQueue<Chunk> chunks) throws IOException, InterruptedException {
+        final boolean full = this.format == ExportFormat.solr || this.format == ExportFormat.elasticsearch || (this.text && this.format == ExportFormat.text);
+        final String[] fields = full ?
+                (this.text && this.format == ExportFormat.text ? new String[]{CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.text_t.getSolrFieldName()} : new String[0]) :
+                new String[]{CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.title.getSolrFieldName(),
+                        CollectionSchema.author.getSolrFieldName(), CollectionSchema.description_txt.getSolrFieldName(), CollectionSchema.size_i.getSolrFieldName(), CollectionSchema.last_modified.getSolrFieldName()};
+        final BlockingQueue<SolrDocument> docs = this.connector.concurrentDocumentsByQuery(partitionQuery(partition), CollectionSchema.id.getSolrFieldName() + " asc",
+                0, 100000000, Long.MAX_VALUE, 100, 1, true, fields);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE + 8192);
+        LineWriter writer = new LineWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+        int c = 0;
+        String lastId = null;
+        SolrDocument doc;
+        while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+            if (this.stopped) return;
+            lastId = getStringFrom(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+            final String url = getStringFrom(doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
+            if (this.pattern != null && !this.pattern.matcher(url).matches()) continue;
+            encode(writer, doc, url, lastId);
+            c++;
+            writer.flush();
+            if (buffer.size() >= CHUNK_SIZE) {
+                put(chunks, new Chunk(partition, buffer.toByteArray(), buffer.size(), c, lastId, false));
+                buffer = new ByteArrayOutputStream(CHUNK_SIZE + 8192);
+                writer = new LineWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+                c = 0;
+            }
+        }
+        writer.flush();
+        put(chunks, new Chunk(partition, buffer.toByteArray(), buffer.size(), c, lastId, true));
+    }
+
+    private void put(final BlockingQueue<Chunk> chunks, final Chunk chunk) throws InterruptedException {
+        while (!chunks.offer(chunk, 1, TimeUnit.SECONDS)) {
+            if (this.closed || (this.stopped && chunk != END)) throw new InterruptedException("export stopped");
+        }
+    }
+
+    /**
+     * encode one document in the export format
+     */
+    private void encode(final LineWriter writer, final SolrDocument doc, final String url, final String hash) throws IOException {
+        if (this.text && this.format == ExportFormat.text) {
+            writer.write(getStringFrom(doc.getFieldValue(CollectionSchema.text_t.getSolrFieldName())));
+            writer.newLine();
+            return;
+        }
+        if (this.format == ExportFormat.solr) {
+            EnhancedXMLResponseWriter.writeDoc(writer, doc);
+            writer.newLine();
+            return;
+        }
+        if (this.format == ExportFormat.elasticsearch) {
+            writer.write("{\"index\":{}}");
+            writer.newLine();
+            FlatJSONResponseWriter.writeDoc(writer, doc);
+            writer.newLine();
+            return;
+        }
+        final String title = getStringFrom(doc.getFieldValue(CollectionSchema.title.getSolrFieldName()));
+        if (this.format == ExportFormat.text) {
+            writer.write(url);
+            writer.newLine();
+        }
+        if (this.format == ExportFormat.html) {
+            if (title.length() > 0) {
+                writer.write("<a href=\"" + MultiProtocolURL.escape(url) + "\">" + CharacterCoding.unicode2xml(title, true) + "</a>");
+                writer.newLine();
+            }
+        }
+        if (this.format == ExportFormat.rss) {
+            final String author = getStringFrom(doc.getFieldValue(CollectionSchema.author.getSolrFieldName()));
+            final String description = getStringFrom(doc.getFieldValue(CollectionSchema.description_txt.getSolrFieldName()));
+            final Integer size = (Integer) doc.getFieldValue(CollectionSchema.size_i.getSolrFieldName());
+            final Date date = (Date) doc.getFieldValue(CollectionSchema.last_modified.getSolrFieldName());
+            writer.write("<item>"); writer.newLine();
+            if (title.length() > 0) {writer.write("<title>" + CharacterCoding.unicode2xml(title, true) + "</title>"); writer.newLine();}
+            writer.write("<link>" + MultiProtocolURL.escape(url) + "</link>"); writer.newLine();
+            if (!author.isEmpty()) {writer.write("<author>" + CharacterCoding.unicode2xml(author, true) + "</author>"); writer.newLine();}
+            if (!description.isEmpty()) {writer.write("<description>" + CharacterCoding.unicode2xml(description, true) + "</description>"); writer.newLine();}
+            if (date != null) {writer.write("<pubDate>" + HeaderFramework.formatRFC1123(date) + "</pubDate>"); writer.newLine();}
+            if (size != null) {writer.write("<yacy:size>" + size.intValue() + "</yacy:size>"); writer.newLine();}
+            writer.write("<guid isPermaLink=\"false\">" + hash + "</guid>"); writer.newLine();
+            writer.write("</item>"); writer.newLine();
+        }
+    }
+
+    /**
+     * finish the compression stream, write the checkpoint and start a new compression stream
+     */
+    private OutputStream checkpoint(final OutputStream out, final BufferedOutputStream file, final FileChannel channel) throws IOException {
+        finish(out);
+        file.flush();
+        channel.force(false);
+        this.offset = channel.position();
+        final Properties p = new Properties();
+        p.setProperty("file", this.f.getAbsolutePath());
+        p.setProperty("query", this.query);
+        if (this.filter != null) p.setProperty("filter", this.filter);
+        p.setProperty("format", this.format.name());
+        p.setProperty("compression", this.compression.name());
+        p.setProperty("text", Boolean.toString(this.text));
+        p.setProperty("offset", Long.toString(this.offset));
+        p.setProperty("count", Integer.toString(this.count.get()));
+        for (int i = 0; i < this.cursors.length; i++) if (this.cursors[i] != null) p.setProperty("cursor." + i, this.cursors[i]);
+        final File tmp = new File(this.checkpoint.getAbsolutePath() + ".tmp");
+        try (final OutputStream os = new FileOutputStream(tmp)) {
+            p.store(os, "YaCy export checkpoint");
+        }
+        if (!tmp.renameTo(this.checkpoint)) {
+            this.checkpoint.delete();
+            if (!tmp.renameTo(this.checkpoint)) throw new IOException("cannot write checkpoint " + this.checkpoint);
+        }
+        return compress(file);
+    }
+
+    /**
+     * open a compression stream on the file; closing the compression stream does not close the file
+     */
+    private OutputStream compress(final OutputStream file) throws IOException {
+        final OutputStream shield = new FilterOutputStream(file) {
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+            @Override
+            public void close() throws IOException {
+                this.out.flush();
+            }
+        };
+        switch (this.compression) {
+            case gzip: return new GZIPOutputStream(shield, 65536){{this.def.setLevel(Deflater.BEST_COMPRESSION);}};
+            case xz: return new XZCompressorOutputStream(shield);
+            default: return shield;
+        }
+    }
+
+    private static void finish(final OutputStream out) throws IOException {
+        if (out instanceof GZIPOutputStream) ((GZIPOutputStream) out).finish();
+        else if (out instanceof XZCompressorOutputStream) ((XZCompressorOutputStream) out).finish();
+        else out.flush();
+    }
+
+    public static String header(final ExportFormat format, final String query) {
+        final StringBuilder sb = new StringBuilder(512);
+        if (format == ExportFormat.html) {
+            sb.append("<html><head></head><body>\n");
+        }
+        if (format == ExportFormat.rss) {
+            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            sb.append("<?xml-stylesheet type='text/xsl' href='/yacysearch.xsl' version='1.0'?>\n");
+            sb.append("<rss version=\"2.0\" xmlns:yacy=\"http://www.yacy.net/\" xmlns:opensearch=\"http://a9.com/-/spec/opensearch/1.1/\" xmlns:atom=\"http://www.w3.org/2005/Atom\">\n");
+            sb.append("<channel>\n");
+            sb.append("<title>YaCy Peer-to-Peer - Web-Search URL Export</title>\n");
+            sb.append("<description></description>\n");
+            sb.append("<link>http://yacy.net</link>\n");
+        }
+        if (format == ExportFormat.solr) {
+            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            sb.append("<response>\n");
+            sb.append("<lst name=\"responseHeader\">\n");
+            sb.append(" <str format=\"yacy.index.export.solr.xml\"/>\n");
+            sb.append(" <lst name=\"params\">\n");
+            sb.append("  <str name=\"q\">").append(CharacterCoding.unicode2xml(query, true)).append("</str>\n");
+            sb.append(" </lst>\n");
+            sb.append("</lst>\n");
+            sb.append("<result>\n");
+        }
+        return sb.toString();
+    }
+
+    public static String footer(final ExportFormat format) {
+        if (format == ExportFormat.html) return "</body></html>\n";
+        if (format == ExportFormat.rss) return "</channel>\n</rss>\n";
+        if (format == ExportFormat.solr) return "</result>\n</response>\n";
+        return "";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String getStringFrom(final Object o) {
+        if (o == null) return "";
+        if (o instanceof List) return ((List<String>) o).isEmpty() ? "" : ((List<String>) o).get(0);
+        return (String) o;
+    }
+
+    /**
+     * a writer which removes control characters like the CRIgnoreWriter, so each document is written in one line
+     */
+    private static final class LineWriter extends FilterWriter {
+        private LineWriter(final Writer out) {
+            super(out);
+        }
+        @Override
+        public void write(final int c) throws IOException {
+            if (c >= 32) this.out.write(c);
+        }
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (cbuf[i] >= 32) continue;
+                if (i > start) this.out.write(cbuf, start, i - start);
+                start = i + 1;
+            }
+            if (off + len > start) this.out.write(cbuf, start, off + len - start);
+        }
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (str.charAt(i) >= 32) continue;
+                if (i > start) this.out.write(str, start, i - start);
+                start = i + 1;
+            }
+            if (off + len > start) this.out.write(str, start, off + len - start);
+        }
+        private void newLine() throws IOException {
+            this.out.write('\n');
+        }
+    }
+
+}
@@ -27,9 +27,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.lang.reflect.Array;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -37,6 +39,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -49,7 +52,6 @@ import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.date.ISO8601Formatter;
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
-import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
 import net.yacy.cora.federate.solr.connector.EmbeddedSolrConnector;
 import net.yacy.cora.federate.solr.connector.RemoteSolrConnector;
@@ -59,16 +61,11 @@ import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
 import net.yacy.cora.federate.solr.instance.InstanceMirror;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.federate.solr.instance.ShardInstance;
-import net.yacy.cora.federate.solr.responsewriter.EnhancedXMLResponseWriter;
-import net.yacy.cora.federate.solr.responsewriter.FlatJSONResponseWriter;
-import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.sorting.ReversibleScoreMap;
 import net.yacy.cora.sorting.WeakPriorityBlockingQueue;
 import net.yacy.cora.storage.ZIPReader;
 import net.yacy.cora.storage.ZIPWriter;
-import net.yacy.cora.util.CRIgnoreWriter;
 import net.yacy.cora.util.ConcurrentLog;
-import net.yacy.document.parser.html.CharacterCoding;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.util.MemoryControl;
@@ -78,7 +75,9 @@ import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
 import net.yacy.search.schema.WebgraphConfiguration;
 import net.yacy.search.schema.WebgraphSchema;
+import net.yacy.search.snippet.SnippetStore;
 
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
@@ -103,6 +102,7 @@ public final class Fulltext {
     private final CollectionConfiguration collectionConfiguration;
     private final WebgraphConfiguration   webgraphConfiguration;
     private       boolean                 writeWebgraph;
+    private       SnippetStore            snippetStore; // the entries of a document are removed when the document is replaced or removed
 
     protected Fulltext(final File segmentPath, final File archivePath,
             final CollectionConfiguration collectionConfiguration, final WebgraphConfiguration webgraphConfiguration) {
@@ -114,6 +114,15 @@ public final class Fulltext {
         this.collectionConfiguration = collectionConfiguration;
         this.webgraphConfiguration = webgraphConfiguration;
         this.writeWebgraph = false;
+        this.snippetStore = null;
+    }
+
+    /**
+     * set the snippet store of the segment
+     * @param snippetStore the store or null if the segment has no snippet store
+     */
+    protected void setSnippetStore(final SnippetStore snippetStore) {
+        this.snippetStore = snippetStore;
     }
     
     public void setUseWebgraph(boolean check) {
@@ -257,6 +266,7 @@ public final class Fulltext {
                 this.commit(false);
             }
             this.solrInstances.clearCaches();
+            if (this.snippetStore != null) this.snippetStore.clear();
         } finally {
         	this.solrInstancesLock.unlock();
         }
@@ -371,6 +381,30 @@ public final class Fulltext {
         } catch (final SolrException e) {
             throw new IOException(e.getMessage(), e);
         }
+        if (this.snippetStore != null && id != null) this.snippetStore.delete(ASCII.getBytes(id));
+        if (MemoryControl.shortStatus()) clearCaches();
+    }
+
+    /**
+     * write a batch of documents to the default connector
+     * @param docs the documents
+     * @throws IOException
+     */
+    public void putDocuments(final Collection<SolrInputDocument> docs) throws IOException {
+        if (docs == null || docs.size() == 0) return;
+        SolrConnector connector = this.getDefaultConnector();
+        if (connector == null) return;
+        try {
+            connector.add(docs);
+        } catch (final SolrException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (this.snippetStore != null) {
+            for (final SolrInputDocument doc: docs) {
+                final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                if (id != null) this.snippetStore.delete(ASCII.getBytes(id));
+            }
+        }
         if (MemoryControl.shortStatus()) clearCaches();
     }
 
@@ -429,10 +463,10 @@ public final class Fulltext {
     public void deleteStaleDomainHashes(final Set<String> hosthashes, Date freshdate) {
         // delete in solr
         Date now = new Date();
-        deleteDomainWithConstraint(this.getDefaultConnector(), CollectionSchema.host_id_s.getSolrFieldName(), hosthashes,
+        deleteDomainWithConstraint(this.getDefaultConnector(), this.snippetStore, CollectionSchema.host_id_s.getSolrFieldName(), hosthashes,
                 (freshdate == null || freshdate.after(now)) ? null :
                 (CollectionSchema.load_date_dt.getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(freshdate) + "]"));
-        if (this.writeWebgraph) deleteDomainWithConstraint(this.getWebgraphConnector(), WebgraphSchema.source_host_id_s.getSolrFieldName(), hosthashes,
+        if (this.writeWebgraph) deleteDomainWithConstraint(this.getWebgraphConnector(), null, WebgraphSchema.source_host_id_s.getSolrFieldName(), hosthashes,
                 (freshdate == null || freshdate.after(now)) ? null :
                 (WebgraphSchema.load_date_dt.getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(freshdate) + "]"));
     }
@@ -440,10 +474,10 @@ public final class Fulltext {
     public void deleteStaleDomainNames(final Set<String> hostnames, Date freshdate) {
 
         Date now = new Date();
-        deleteDomainWithConstraint(this.getDefaultConnector(), CollectionSchema.host_s.getSolrFieldName(), hostnames,
+        deleteDomainWithConstraint(this.getDefaultConnector(), this.snippetStore, CollectionSchema.host_s.getSolrFieldName(), hostnames,
                 (freshdate == null || freshdate.after(now)) ? null :
                 (CollectionSchema.load_date_dt.getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(freshdate) + "]"));
-        if (this.writeWebgraph) deleteDomainWithConstraint(this.getWebgraphConnector(), WebgraphSchema.source_host_s.getSolrFieldName(), hostnames,
+        if (this.writeWebgraph) deleteDomainWithConstraint(this.getWebgraphConnector(), null, WebgraphSchema.source_host_s.getSolrFieldName(), hostnames,
                 (freshdate == null || freshdate.after(now)) ? null :
                 (WebgraphSchema.load_date_dt.getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(freshdate) + "]"));
     }
@@ -453,10 +487,10 @@ public final class Fulltext {
      * @param hosthashes
      */
     public void deleteDomainErrors(final Set<String> hosthashes) {
-        deleteDomainWithConstraint(this.getDefaultConnector(), CollectionSchema.host_id_s.getSolrFieldName(), hosthashes, CollectionSchema.failreason_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM);
+        deleteDomainWithConstraint(this.getDefaultConnector(), this.snippetStore, CollectionSchema.host_id_s.getSolrFieldName(), hosthashes, CollectionSchema.failreason_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM);
     }
     
-    private static void deleteDomainWithConstraint(SolrConnector connector, String fieldname, final Set<String> hosthashes, String constraintQuery) {
+    private static void deleteDomainWithConstraint(SolrConnector connector, SnippetStore snippetStore, String fieldname, final Set<String> hosthashes, String constraintQuery) {
         if (hosthashes == null || hosthashes.size() == 0) return;
         int subsetscount = 1 + (hosthashes.size() / 255); // if the list is too large, we get a "too many boolean clauses" exception
         int c = 0;
@@ -472,18 +506,46 @@ public final class Fulltext {
                     //query.append(CollectionSchema.host_id_s.getSolrFieldName()).append(":\"").append(hosthash).append(":\"");
                     query.append("({!cache=false raw f=").append(fieldname).append('}').append(hosthash).append(")");
                 }
-                if (constraintQuery == null) connector.deleteByQuery(query.toString()); else connector.deleteByQuery("(" + query.toString() + ") AND " + constraintQuery);
+                deleteByQuery(connector, snippetStore, constraintQuery == null ? query.toString() : "(" + query.toString() + ") AND " + constraintQuery);
             } catch (final IOException e) {
             }
         }
     }
 
+    /**
+     * delete all documents matching a query from the default connector
+     * @param query a solr query
+     * @throws IOException
+     */
+    public void deleteByQuery(final String query) throws IOException {
+        deleteByQuery(this.getDefaultConnector(), this.snippetStore, query);
+    }
+
+    /**
+     * delete all documents matching a query, together with their snippet store entries
+     * @param connector the connector of the documents
+     * @param snippetStore the snippet store with entries of the documents or null
+     * @param query a solr query
+     * @throws IOException
+     */
+    private static void deleteByQuery(final SolrConnector connector, final SnippetStore snippetStore, final String query) throws IOException {
+        if (snippetStore != null) {
+            // the ids must be collected before the documents are deleted
+            final BlockingQueue<String> ids = connector.concurrentIDsByQuery(query, null, 0, Integer.MAX_VALUE, Long.MAX_VALUE, 100, 1);
+            try {
+                String id;
+                while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) snippetStore.delete(ASCII.getBytes(id));
+            } catch (final InterruptedException e) {}
+        }
+        connector.deleteByQuery(query);
+    }
+
     public void deleteOldDocuments(final long deltaToNow, final boolean loaddate) {
         Date deleteageDate = new Date(System.currentTimeMillis() - deltaToNow);
         final String collection1Query = (loaddate ? CollectionSchema.load_date_dt : CollectionSchema.last_modified).getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(deleteageDate) + "]";
         final String webgraphQuery = (loaddate ? WebgraphSchema.load_date_dt : WebgraphSchema.last_modified).getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(deleteageDate) + "]";
         try {
-            this.getDefaultConnector().deleteByQuery(collection1Query);
+            deleteByQuery(collection1Query);
             if (this.getWebgraphConnector() != null) this.getWebgraphConnector().deleteByQuery(webgraphQuery);
         } catch (final IOException e) {
         }
@@ -527,6 +589,9 @@ public final class Fulltext {
         if (deleteIDs == null || deleteIDs.size() == 0) return;
         try {
             this.getDefaultConnector().deleteByIds(deleteIDs);
+            if (this.snippetStore != null) {
+                for (String id : deleteIDs) this.snippetStore.delete(ASCII.getBytes(id));
+            }
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
                 for (String id : deleteIDs) {
                 	/* Add quotes around the url hash to prevent Solr logging a ParseException stack trace when the hash start with a '-' character */
@@ -549,6 +614,7 @@ public final class Fulltext {
         try {
             String id = ASCII.String(urlHash);
             this.getDefaultConnector().deleteById(id);
+            if (this.snippetStore != null) this.snippetStore.delete(urlHash);
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
             	/* Add quotes around the url hash to prevent Solr logging a ParseException stack trace when the hash start with a '-' character */
                 this.getWebgraphConnector().deleteByQuery(WebgraphSchema.source_id_s + ":\"" + id + "\"");
@@ -701,9 +767,17 @@ public final class Fulltext {
         private ExportFormat(String ext) {this.ext = ext;}
         public String getExt() {return this.ext;}
     }
+
+    public static enum ExportCompression {
+        none(""), gzip(".gz"), xz(".xz");
+        private final String ext;
+        private ExportCompression(String ext) {this.ext = ext;}
+        public String getExt() {return this.ext;}
+    }
     
     public final static String yacy_dump_prefix = "yacy_dump_";
-    public Export export(Fulltext.ExportFormat format, String filter, String query, final int maxseconds, File path, boolean dom, boolean text) throws IOException {
+    public final static String export_checkpoint_ext = ExportPipeline.CHECKPOINT_EXT;
+    public Export export(Fulltext.ExportFormat format, String filter, String query, final int maxseconds, File path, boolean dom, boolean text, final ExportCompression compression) throws IOException {
         
         // modify query according to maxseconds
         long now = System.currentTimeMillis();
@@ -776,23 +850,62 @@ public final class Fulltext {
                 "c" + String.format("%1$012d", doccount)).getAbsolutePath() + "_tc"; // the name ends with the transaction token ('c' = 'created')
         
         // create export file name
-        if (s.indexOf('.',0) < 0) s += "." + format.getExt();
+        if (s.indexOf('.',0) < 0) s += "." + format.getExt() + compression.getExt();
         final File f = new File(s);
         f.getParentFile().mkdirs();
         
-        return export(f, filter, query, format, dom, text);
+        return export(f, filter, query, format, compression, dom, text);
     }
     
     // export methods
-    public Export export(final File f, final String filter, final String query, final ExportFormat format, final boolean dom, final boolean text) {
+    public Export export(final File f, final String filter, final String query, final ExportFormat format, final ExportCompression compression, final boolean dom, final boolean text) {
         if ((this.exportthread != null) && (this.exportthread.isAlive())) {
             ConcurrentLog.warn("LURL-EXPORT", "cannot start another export thread, already one running");
             return this.exportthread;
         }
-        this.exportthread = new Export(f, filter, query, format, dom, text);
+        this.exportthread = new Export(f, filter, query, format, compression, dom, text);
         this.exportthread.start();
         return this.exportthread;
     }
+
+    /**
+     * resume an interrupted export
+     * @param checkpoint the checkpoint file of the export
+     * @return the export thread
+     * @throws IOException if the checkpoint cannot be read
+     */
+    public Export resumeExport(final File checkpoint) throws IOException {
+        final Properties p = ExportPipeline.readCheckpoint(checkpoint);
+        final String file = p.getProperty("file");
+        if (file == null || !checkpoint.getAbsolutePath().equals(file + ExportPipeline.CHECKPOINT_EXT)) throw new IOException("not a checkpoint of an export: " + checkpoint);
+        final ExportFormat format;
+        final ExportCompression compression;
+        try {
+            format = ExportFormat.valueOf(p.getProperty("format"));
+            compression = ExportCompression.valueOf(p.getProperty("compression"));
+        } catch (final IllegalArgumentException | NullPointerException e) {
+            throw new IOException("bad checkpoint " + checkpoint + ": " + e.getMessage());
+        }
+        // the stored query already contains the http status selection
+        String query = p.getProperty("query", AbstractSolrConnector.CATCHALL_QUERY);
+        final String statusq = " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200";
+        if (query.endsWith(statusq)) query = query.substring(0, query.length() - statusq.length());
+        return export(new File(file), p.getProperty("filter"), query, format, compression, false, Boolean.parseBoolean(p.getProperty("text")));
+    }
+
+    /**
+     * @param path the export path
+     * @return the checkpoint files of the interrupted exports in the export path
+     */
+    public static List<File> unfinishedExports(final File path) {
+        final List<File> checkpoints = new ArrayList<File>();
+        final String[] list = path.list();
+        if (list == null) return checkpoints;
+        for (final String name: list) {
+            if (name.endsWith(export_checkpoint_ext)) checkpoints.add(new File(path, name));
+        }
+        return checkpoints;
+    }
     
     public static void main(String args[]) {
     	Date firstdate = null;
@@ -805,21 +918,25 @@ public final class Fulltext {
 
     public class Export extends Thread {
         private final File f;
+        private final String filter;
         private final Pattern pattern;
-        private int count;
+        private final AtomicInteger count;
         private String failure, query;
         private final ExportFormat format;
+        private final ExportCompression compression;
         private final boolean dom, text;
 
-        private Export(final File f, final String filter, final String query, final ExportFormat format, final boolean dom, final boolean text) {
+        private Export(final File f, final String filter, final String query, final ExportFormat format, final ExportCompression compression, final boolean dom, final boolean text) {
         	super("Fulltext.Export");
             // format: 0=text, 1=html, 2=rss/xml
             this.f = f;
+            this.filter = filter;
             this.pattern = filter == null ? null : Pattern.compile(filter);
             this.query = query == null? AbstractSolrConnector.CATCHALL_QUERY : query;
-            this.count = 0;
+            this.count = new AtomicInteger(0);
             this.failure = null;
             this.format = format;
+            this.compression = compression;
             this.dom = dom;
             this.text = text;
             //if ((dom) && (format == 2)) dom = false;
@@ -837,110 +954,40 @@ public final class Fulltext {
                 this.failure = e.getMessage();
                 return;
         	}
-        	
+
+            if (!this.dom) {
+                // the documents are exported by parallel readers, the export can be resumed from its checkpoint
+                try {
+                    final int readers = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() / 2));
+                    new ExportPipeline(Fulltext.this.getDefaultConnector(), this.f,
+                            this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200",
+                            this.filter, this.format, this.compression, this.text, readers, this.count).run();
+                } catch (final InterruptedException e) {
+                    ConcurrentLog.info("Fulltext", "export to " + this.f + " interrupted, it can be resumed");
+                    this.failure = "interrupted";
+                } catch (final Exception e) {
+                    ConcurrentLog.logException(e);
+                    this.failure = e.getMessage();
+                }
+                return;
+            }
+
             try (/* Resources automatically closed by this try-with-resources statement */
-                final OutputStream os = new FileOutputStream(this.format == ExportFormat.solr ? new File(this.f.getAbsolutePath() + ".gz") : this.f);
-            	final OutputStream wrappedStream = ((this.format == ExportFormat.solr)) ? new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}} : os;
-                final PrintWriter pw =  new PrintWriter(new BufferedOutputStream(wrappedStream));
+                final OutputStream os = new FileOutputStream(this.f);
+            	final OutputStream wrappedStream = this.compression == ExportCompression.gzip ? new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}} :
+            	    this.compression == ExportCompression.xz ? new XZCompressorOutputStream(os) : os;
+                final PrintWriter pw =  new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(wrappedStream), StandardCharsets.UTF_8));
             ) {
-                if (this.format == ExportFormat.html) {
-                    pw.println("<html><head></head><body>");
-                }
-                if (this.format == ExportFormat.rss) {
-                    pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-                    pw.println("<?xml-stylesheet type='text/xsl' href='/yacysearch.xsl' version='1.0'?>");
-                    pw.println("<rss version=\"2.0\" xmlns:yacy=\"http://www.yacy.net/\" xmlns:opensearch=\"http://a9.com/-/spec/opensearch/1.1/\" xmlns:atom=\"http://www.w3.org/2005/Atom\">");
-                    pw.println("<channel>");
-                    pw.println("<title>YaCy Peer-to-Peer - Web-Search URL Export</title>");
-                    pw.println("<description></description>");
-                    pw.println("<link>http://yacy.net</link>");
-                }
-                if (this.format == ExportFormat.solr) {
-                    pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-                    pw.println("<response>");
-                    pw.println("<lst name=\"responseHeader\">");
-                    pw.println(" <str format=\"yacy.index.export.solr.xml\"/>");
-                    pw.println(" <lst name=\"params\">");
-                    pw.println("  <str name=\"q\">" + this.query + "</str>");
-                    pw.println(" </lst>");
-                    pw.println("</lst>");
-                    pw.println("<result>");
-                }
-                if (this.dom) {
-                    Map<String, ReversibleScoreMap<String>> scores = Fulltext.this.getDefaultConnector().getFacets(this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200", 100000000, CollectionSchema.host_s.getSolrFieldName());
-                    ReversibleScoreMap<String> stats = scores.get(CollectionSchema.host_s.getSolrFieldName());
-                    for (final String host: stats) {
-                        if (this.pattern != null && !this.pattern.matcher(host).matches()) continue;
-                        if (this.format == ExportFormat.text) pw.println(host);
-                        if (this.format == ExportFormat.html) pw.println("<a href=\"http://" + host + "\">" + host + "</a><br>");
-                        this.count++;
-                    }
-                } else {
-                    if (this.format == ExportFormat.solr || this.format == ExportFormat.elasticsearch || (this.text && this.format == ExportFormat.text)) {
-                        BlockingQueue<SolrDocument> docs = Fulltext.this.getDefaultConnector().concurrentDocumentsByQuery(this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200", null, 0, 100000000, Long.MAX_VALUE, 100, 1, true);
-                        SolrDocument doc;
-                        while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                            String url = getStringFrom(doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                            if (this.pattern != null && !this.pattern.matcher(url).matches()) continue;
-                            CRIgnoreWriter sw = new CRIgnoreWriter();
-                            if (this.text) sw.write((String) doc.getFieldValue(CollectionSchema.text_t.getSolrFieldName()));
-                            if (this.format == ExportFormat.solr) EnhancedXMLResponseWriter.writeDoc(sw, doc);
-                            if (this.format == ExportFormat.elasticsearch) FlatJSONResponseWriter.writeDoc(sw, doc);
-                            sw.close();
-                            if (this.format == ExportFormat.elasticsearch) pw.println("{\"index\":{}}");
-                            String d = sw.toString();
-                            pw.println(d);
-                            this.count++;
-                        }
-                    } else {
-                        BlockingQueue<SolrDocument> docs = Fulltext.this.getDefaultConnector().concurrentDocumentsByQuery(this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200", null, 0, 100000000, Long.MAX_VALUE, 100, 1, true, 
-                                CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.title.getSolrFieldName(),
-                                CollectionSchema.author.getSolrFieldName(), CollectionSchema.description_txt.getSolrFieldName(), CollectionSchema.size_i.getSolrFieldName(), CollectionSchema.last_modified.getSolrFieldName());
-                        SolrDocument doc;
-                        String url, hash, title, author, description;
-                        Integer size;
-                        Date date;
-                        while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                            hash = getStringFrom(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
-                            url = getStringFrom(doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                            title = getStringFrom(doc.getFieldValue(CollectionSchema.title.getSolrFieldName()));
-                            author = getStringFrom(doc.getFieldValue(CollectionSchema.author.getSolrFieldName()));
-                            description = getStringFrom(doc.getFieldValue(CollectionSchema.description_txt.getSolrFieldName()));
-                            size = (Integer) doc.getFieldValue(CollectionSchema.size_i.getSolrFieldName());
-                            date = (Date) doc.getFieldValue(CollectionSchema.last_modified.getSolrFieldName());
-                            if (this.pattern != null && !this.pattern.matcher(url).matches()) continue;
-                            if (this.format == ExportFormat.text) {
-                                pw.println(url);
-                            }
-                            if (this.format == ExportFormat.html) {
-                                if (title != null) pw.println("<a href=\"" + MultiProtocolURL.escape(url) + "\">" + CharacterCoding.unicode2xml(title, true) + "</a>");
-                            }
-                            if (this.format == ExportFormat.rss) {
-                                pw.println("<item>");
-                                if (title != null) pw.println("<title>" + CharacterCoding.unicode2xml(title, true) + "</title>");
-                                pw.println("<link>" + MultiProtocolURL.escape(url) + "</link>");
-                                if (author != null && !author.isEmpty()) pw.println("<author>" + CharacterCoding.unicode2xml(author, true) + "</author>");
-                                if (description != null && !description.isEmpty()) pw.println("<description>" + CharacterCoding.unicode2xml(description, true) + "</description>");
-                                if (date != null) pw.println("<pubDate>" + HeaderFramework.formatRFC1123(date) + "</pubDate>");
-                                if (size != null) pw.println("<yacy:size>" + size.intValue() + "</yacy:size>");
-                                pw.println("<guid isPermaLink=\"false\">" + hash + "</guid>");
-                                pw.println("</item>");
-                            }
-                            this.count++;
-                        }
-                    }
-                }
-                if (this.format == ExportFormat.html) {
-                    pw.println("</body></html>");
-                }
-                if (this.format == ExportFormat.rss) {
-                    pw.println("</channel>");
-                    pw.println("</rss>");
-                }
-                if (this.format == ExportFormat.solr) {
-                    pw.println("</result>");
-                    pw.println("</response>");
+                pw.print(ExportPipeline.header(this.format, this.query));
+                Map<String, ReversibleScoreMap<String>> scores = Fulltext.this.getDefaultConnector().getFacets(this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200", 100000000, CollectionSchema.host_s.getSolrFieldName());
+                ReversibleScoreMap<String> stats = scores.get(CollectionSchema.host_s.getSolrFieldName());
+                for (final String host: stats) {
+                    if (this.pattern != null && !this.pattern.matcher(host).matches()) continue;
+                    if (this.format == ExportFormat.text) pw.println(host);
+                    if (this.format == ExportFormat.html) pw.println("<a href=\"http://" + host + "\">" + host + "</a><br>");
+                    this.count.incrementAndGet();
                 }
+                pw.print(ExportPipeline.footer(this.format));
             } catch (final Exception e) {
             	/* Catch but log any IO exception that can occur on copy, automatic closing or streams creation */
                 ConcurrentLog.logException(e);
@@ -958,14 +1005,7 @@ public final class Fulltext {
         }
 
         public int count() {
-            return this.count;
-        }
-        
-        @SuppressWarnings("unchecked")
-		private String getStringFrom(final Object o) {
-        	if (o == null) return "";
-        	if (o instanceof ArrayList) return ((ArrayList<String>) o).get(0);
-        	return (String) o;
+            return this.count.get();
         }
 
     }
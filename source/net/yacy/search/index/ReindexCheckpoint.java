@@ -0,0 +1,111 @@
+/**
+ *  ReindexCheckpoint
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The state of a reindex job as stored in its checkpoint file: the number of reindexed documents,
+ * the remaining select queries with their number of documents and the last reindexed id of each
+ * started query. A checkpoint is a snapshot, it is not changed by the running job.
+ */
+final class ReindexCheckpoint {
+
+    /** the total number of reindexed documents */
+    final int processed;
+    /** the remaining select queries with their number of documents, in the order of the job */
+    final Map<String, Integer> queries;
+    /** the last reindexed id of each started query */
+    final Map<String, String> cursors;
+
+    ReindexCheckpoint(final int processed, final Map<String, Integer> queries, final Map<String, String> cursors) {
+        this.processed = processed;
+        this.queries = queries;
+        this.cursors = cursors;
+    }
+
+    /**
+     * write the checkpoint to a temporary file which then replaces the file
+     * @param file the checkpoint file
+     * @throws IOException
+     */
+    void write(final File file) throws IOException {
+        final Properties p = new Properties();
+        p.setProperty("processed", Integer.toString(this.processed));
+        int i = 0;
+        for (final Map.Entry<String, Integer> query: this.queries.entrySet()) {
+            p.setProperty("query." + i, query.getKey());
+            p.setProperty("score." + i, query.getValue().toString());
+            final String cursor = this.cursors.get(query.getKey());
+            if (cursor != null) p.setProperty("cursor." + i, cursor);
+            i++;
+        }
+        final File tmp = new File(file.getAbsolutePath() + ".tmp");
+        try (final OutputStream os = new FileOutputStream(tmp)) {
+            p.store(os, "reindex checkpoint");
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * @param file a checkpoint file
+     * @return the checkpoint stored in the file
+     * @throws IOException
+     */
+    static ReindexCheckpoint read(final File file) throws IOException {
+        final Properties p = new Properties();
+        try (final InputStream is = new FileInputStream(file)) {
+            p.load(is);
+        }
+        int processed;
+        try {
+            processed = Integer.parseInt(p.getProperty("processed", "0"));
+        } catch (final NumberFormatException e) {
+            processed = 0;
+        }
+        final Map<String, Integer> queries = new LinkedHashMap<String, Integer>();
+        final Map<String, String> cursors = new HashMap<String, String>();
+        for (int i = 0; p.containsKey("query." + i); i++) {
+            final String query = p.getProperty("query." + i);
+            int score = 0;
+            try {
+                score = Integer.parseInt(p.getProperty("score." + i, "0"));
+            } catch (final NumberFormatException e) {}
+            queries.put(query, score);
+            final String cursor = p.getProperty("cursor." + i);
+            if (cursor != null) cursors.put(query, cursor);
+        }
+        return new ReindexCheckpoint(processed, queries, cursors);
+    }
+
+}
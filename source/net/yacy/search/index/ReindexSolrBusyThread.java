@@ -19,9 +19,25 @@ package net.yacy.search.index;
  *  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.io.File;
 import java.io.IOException;
-
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
 import net.yacy.cora.federate.solr.connector.SolrConnector;
@@ -30,8 +46,12 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.workflow.AbstractBusyThread;
 import net.yacy.search.Switchboard;
+import net.yacy.search.SwitchboardConstants;
+import net.yacy.search.query.AccessTracker;
 import net.yacy.search.schema.CollectionConfiguration;
+import net.yacy.search.schema.CollectionSchema;
 
+import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
@@ -43,18 +63,31 @@ import org.apache.solr.common.SolrInputDocument;
      * this can be used to remove obsolete fields physically from index
      * 
      * can be deployed as BusyThread which is periodically called by system allowing easy interruption 
-     * after each reindex chunk of 100 documents.
+     * after each reindex chunk of documents.
      * If queue is empty this removes itself from list of servers workerthreads list
      * Process:  - initialize with one or more select queries
      *           - deploy as BusyThread (or call job repeatedly until it returns false)
-     *              - job reindexes on each call chunk of 100 documents
+     *              - job reindexes on each call a chunk of documents
      *
      * The thread uses internally a score map for the reindex queries this promotes fields with a low
      * number of documents to get reindexed first.
+     *
+     * The documents of a query are read in the order of their id with a cursor (the last reindexed id),
+     * so no commit is needed to page through the documents and the next chunk is read while the
+     * current chunk is transformed by a pool of worker threads and written as one batch.
+     * While the local searches are slow, the job pauses and reduces the chunk size.
+     * The remaining queries and their cursors are stored in a checkpoint file after each chunk,
+     * an interrupted reindex job is continued with {@link #resume(Switchboard)} after a restart.
+     * The queries and cursors are changed and copied for the checkpoint under the monitor of the job.
      */
      public class ReindexSolrBusyThread extends AbstractBusyThread {
 
         public final static String THREAD_NAME = "reindexSolr";
+        
+        /** name of the checkpoint file in the work path */
+        public final static String CHECKPOINT_FILE = THREAD_NAME + ".checkpoint";
+        
+        private final static int MIN_CHUNKSIZE = 10;
          
         SolrConnector esc;
         final CollectionConfiguration colcfg; // collection config
@@ -62,19 +95,62 @@ import org.apache.solr.common.SolrInputDocument;
         int docstoreindex = 0; // documents found to reindex for current query
         Semaphore sem = new Semaphore(1);
         OrderedScoreMap<String> querylist = new OrderedScoreMap<String>(null); // list of select statements to reindex with number of documents as score
+        final Map<String, String> cursors = new ConcurrentHashMap<String, String>(); // the last reindexed id for each query
         String currentquery = null;
-        int start = 0; // startindex
-        int chunksize = 100; // number of documents to reindex per cycle
+        int chunksize; // number of documents to reindex per cycle
+        final int maxchunksize;
+        final int threads; // number of threads transforming the documents
+        final long maxSearchLatency; // average search time in milliseconds from which the job pauses
+        final ThreadPoolExecutor workers;
+        final ExecutorService reader;
+        Future<SolrDocumentList> prefetch = null; // the next chunk of the current query
+        String prefetchQuery = null, prefetchCursor = null;
+        long searchCount = 0, searchSum = 0; // the search latency totals at the latest check
+        volatile boolean throttled = false;
+        final File checkpoint;
+        volatile boolean cancelled = false;
+        boolean stopped = false; // set by terminate, the checkpoint is not changed any more
+        long checkpointSequence = 0; // the number of the latest checkpoint snapshot
+        long writtenSequence = 0; // the number of the latest written checkpoint, guarded by the checkpoint file
         
         /**        
          * @param query = a solr query to select documents to reindex (like h5_txt:[* TO *])
          */
         public ReindexSolrBusyThread(String query) {
             super(100,0);
-            this.esc = Switchboard.getSwitchboard().index.fulltext().getDefaultConnector();
-            this.colcfg = Switchboard.getSwitchboard().index.fulltext().getDefaultConfiguration();
+            final Switchboard sb = Switchboard.getSwitchboard();
+            this.esc = sb.index.fulltext().getDefaultConnector();
+            this.colcfg = sb.index.fulltext().getDefaultConfiguration();
+            int t = sb.getConfigInt(SwitchboardConstants.REINDEX_THREADS, 0);
+            this.threads = t > 0 ? t : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            this.maxchunksize = Math.max(MIN_CHUNKSIZE, sb.getConfigInt(SwitchboardConstants.REINDEX_CHUNKSIZE, 500));
+            this.chunksize = this.maxchunksize;
+            this.maxSearchLatency = sb.getConfigLong(SwitchboardConstants.REINDEX_MAX_SEARCH_LATENCY, 1000);
+            this.checkpoint = new File(sb.workPath, CHECKPOINT_FILE);
+            final AtomicInteger count = new AtomicInteger(0);
+            this.workers = new ThreadPoolExecutor(this.threads, this.threads, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread w = new Thread(r, THREAD_NAME + ".transform-" + count.incrementAndGet());
+                    w.setDaemon(true);
+                    w.setPriority(Thread.MIN_PRIORITY);
+                    return w;
+                }
+            });
+            this.workers.allowCoreThreadTimeOut(true);
+            this.reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread w = new Thread(r, THREAD_NAME + ".reader");
+                    w.setDaemon(true);
+                    return w;
+                }
+            });
+            final AccessTracker.Location local = AccessTracker.Location.local;
+            this.searchCount = local.latency.count();
+            this.searchSum = local.latency.sum();
 
-            if (Switchboard.getSwitchboard().getThread(ReindexSolrBusyThread.THREAD_NAME) != null) {
+            if (sb.getThread(ReindexSolrBusyThread.THREAD_NAME) != null) {
                 this.interrupt(); // only one active reindex job should exist
             } else {
                 if (query != null) {
@@ -89,7 +165,7 @@ import org.apache.solr.common.SolrInputDocument;
         /**
          * add a query selecting documents to reindex
          */
-        public void addSelectQuery(String query) {
+        public synchronized void addSelectQuery(String query) {
             if (query != null && !query.isEmpty()) {
                 querylist.set(query, 0);
             }
@@ -101,56 +177,66 @@ import org.apache.solr.common.SolrInputDocument;
          *
          * @param field a solr fieldname
          */
-        public void addSelectFieldname(String field) {
+        public synchronized void addSelectFieldname(String field) {
             if (field != null && !field.isEmpty()) {
                 querylist.set(field + AbstractSolrConnector.CATCHALL_DTERM, 0);
             }
         }
        
         /**
-         * each call reindexes a chunk of 100 documents until all selected documents are reindexed
-         * @return false if no documents selected
+         * each call reindexes a chunk of documents until all selected documents are reindexed
+         * @return false if no documents selected or if the job pauses because of slow searches
          */
         @Override
         public boolean job() {
             boolean ret = true;
             if (esc != null && colcfg != null && !querylist.isEmpty()) {
 
+                if (throttle()) return false;
                 if (sem.tryAcquire()) { // allow only one working cycle
+                    String query = null;
                     try {
-                        currentquery = querylist.keys(true).next(); // get next query with lowest number of documents found
-                        SolrDocumentList xdocs = esc.getDocumentListByQuery(currentquery, null, start, chunksize);
+                        final String cursor;
+                        synchronized (this) {
+                            if (querylist.isEmpty()) return false; // terminated meanwhile
+                            // stay with a started query, otherwise get next query with lowest number of documents found
+                            if (currentquery == null || !querylist.containsKey(currentquery)) currentquery = querylist.keys(true).next();
+                            query = currentquery;
+                            cursor = cursors.get(query);
+                        }
+                        SolrDocumentList xdocs = read(query, cursor);
                         
-                        if (xdocs.size() == 0) { // no documents returned = all of current query reindexed (or eventual start to large)                                                       
-
-                            if (start > 0) { // if previous cycle reindexed, commit to prevent reindex of same documents
-                                esc.commit(true);
-                                start = 0;
-                            } else { // if start == 0 and nothing found, query can be deleted for sure
-                               querylist.delete(currentquery); // remove current query
-                            }
-                            
-                            if (chunksize < 100) { // try to increase chunksize (if reduced by freemem)
-                                chunksize = chunksize + 10;
-                            }
+                        if (xdocs.size() == 0) { // no documents returned = all of current query reindexed
+                            if (cursor != null) esc.commit(true);
+                            remove(query);
                         } else {
                             docstoreindex = (int) xdocs.getNumFound();
-                            ConcurrentLog.info("MIGRATION-REINDEX", "reindex docs with query=" + currentquery + " found=" + docstoreindex + " start=" + start);
-                            start = start + chunksize;
-                            querylist.set(currentquery, docstoreindex);
-                            for (SolrDocument doc : xdocs) {
-                                URIMetadataNode pdoc = new URIMetadataNode(doc); // use Metadata as it verifies correct/current Doc.ID
-                                SolrInputDocument idoc = colcfg.toSolrInputDocument(pdoc);
-                                Switchboard.getSwitchboard().index.putDocument(idoc);
-                                processed++;
+                            ConcurrentLog.info("MIGRATION-REINDEX", "reindex docs with query=" + query + " found=" + docstoreindex + " cursor=" + cursor);
+                            synchronized (this) {
+                                if (querylist.containsKey(query)) querylist.set(query, docstoreindex);
                             }
-                            if (xdocs.size() >= docstoreindex) { // number processed docs >= found docs -> end condition for this query as no more docs avail-
-                                querylist.delete(currentquery);  // 2017-02-27 added on occurence of 21 docs found 21 processed but somehow on next call 21 docs again found (some commit issue ??)
+                            final String last = (String) xdocs.get(xdocs.size() - 1).getFieldValue(CollectionSchema.id.getSolrFieldName());
+                            final boolean complete = xdocs.size() >= docstoreindex; // number processed docs >= found docs -> end condition for this query as no more docs avail-
+                            if (!complete) prefetch(query, last); // read the next chunk while this chunk is transformed
+                            final List<SolrInputDocument> idocs = transform(xdocs);
+                            Switchboard.getSwitchboard().index.fulltext().putDocuments(idocs);
+                            if (complete) {
+                                esc.commit(true);
+                            }
+                            synchronized (this) {
+                                processed += idocs.size();
+                                if (complete) {
+                                    querylist.delete(query);
+                                    cursors.remove(query);
+                                } else if (querylist.containsKey(query)) {
+                                    cursors.put(query, last);
+                                }
                             }
-                        }                        
+                        }
+                        writeCheckpoint(false);
                     } catch (final IOException ex) {
-                        ConcurrentLog.warn("MIGRATION-REINDEX", "remove following query from list due to error, q=" + currentquery);
-                        querylist.delete(currentquery);
+                        ConcurrentLog.warn("MIGRATION-REINDEX", "remove following query from list due to error, q=" + query);
+                        if (query != null) remove(query);
                         ConcurrentLog.logException(ex);
                     } finally {
                         sem.release();
@@ -160,17 +246,227 @@ import org.apache.solr.common.SolrInputDocument;
                 ret = false;
             }
 
-            if (querylist.isEmpty()) { // if all processed remove from scheduled list (and terminate thread)
+            if (isEmpty()) { // if all processed remove from scheduled list (and terminate thread)
                 Switchboard.getSwitchboard().terminateThread(ReindexSolrBusyThread.THREAD_NAME, false);
                 ret = false;
             }
             return ret;
         }
-              
+
+        private synchronized boolean isEmpty() {
+            return querylist.isEmpty();
+        }
+
+        private synchronized void remove(final String query) {
+            querylist.delete(query);
+            cursors.remove(query);
+        }
+
+        /**
+         * check the average time of the local searches since the latest check; while it is above the
+         * limit the chunk size is reduced and the job pauses, otherwise the chunk size grows again
+         * @return true if the job shall pause
+         */
+        private boolean throttle() {
+            final AccessTracker.Location local = AccessTracker.Location.local;
+            final long count = local.latency.count();
+            final long sum = local.latency.sum();
+            final long searches = count - this.searchCount;
+            final long latency = searches > 0 ? (sum - this.searchSum) / searches / 1000000L : 0;
+            this.searchCount = count;
+            this.searchSum = sum;
+            this.throttled = this.maxSearchLatency > 0 && latency > this.maxSearchLatency;
+            if (this.throttled) {
+                this.chunksize = Math.max(MIN_CHUNKSIZE, this.chunksize / 2);
+                ConcurrentLog.info("MIGRATION-REINDEX", "pause reindex, average search time " + latency + " ms, chunk size " + this.chunksize);
+            } else if (this.chunksize < this.maxchunksize) { // try to increase chunksize (if reduced by freemem or slow searches)
+                this.chunksize = Math.min(this.maxchunksize, this.chunksize + this.chunksize / 4 + 1);
+            }
+            return this.throttled;
+        }
+
+        /**
+         * read a chunk of documents of a query following the cursor; a prefetched chunk is used if it matches
+         * @param query the select query
+         * @param cursor the last reindexed id of the query or null to start at the first document
+         * @return the next documents of the query in the order of their id
+         */
+        private SolrDocumentList read(final String query, final String cursor) throws IOException {
+            final Future<SolrDocumentList> f = this.prefetch;
+            this.prefetch = null;
+            if (f != null) {
+                if (query.equals(this.prefetchQuery) && cursor != null && cursor.equals(this.prefetchCursor)) {
+                    try {
+                        return f.get();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e.getMessage(), e);
+                    } catch (final ExecutionException e) {
+                        final Throwable cause = e.getCause();
+                        if (cause instanceof IOException) throw (IOException) cause;
+                        throw new IOException(cause == null ? e.getMessage() : cause.getMessage(), cause);
+                    }
+                }
+                f.cancel(false);
+            }
+            return esc.getDocumentListByParams(cursorQuery(query, cursor, this.chunksize));
+        }
+
+        private void prefetch(final String query, final String cursor) {
+            final int rows = this.chunksize;
+            this.prefetchQuery = query;
+            this.prefetchCursor = cursor;
+            this.prefetch = this.reader.submit(new Callable<SolrDocumentList>() {
+                @Override
+                public SolrDocumentList call() throws IOException {
+                    return esc.getDocumentListByParams(cursorQuery(query, cursor, rows));
+                }
+            });
+        }
+
+        /**
+         * @param query the select query
+         * @param cursor the last reindexed id or null
+         * @param rows the number of documents
+         * @return a query for the documents of the select query with an id greater than the cursor, sorted by id
+         */
+        static SolrQuery cursorQuery(final String query, final String cursor, final int rows) {
+            final SolrQuery params = AbstractSolrConnector.getSolrQuery(query, CollectionSchema.id.getSolrFieldName() + " asc", 0, rows);
+            if (cursor != null) params.addFilterQuery(CollectionSchema.id.getSolrFieldName() + ":{\"" + cursor + "\" TO *]");
+            return params;
+        }
+
+        /**
+         * transform the documents with the current schema, distributed to the worker threads
+         * @param xdocs the documents of the index
+         * @return the transformed documents in the same order
+         */
+        private List<SolrInputDocument> transform(final SolrDocumentList xdocs) throws IOException {
+            final int parts = Math.max(1, Math.min(this.threads, xdocs.size() / MIN_CHUNKSIZE));
+            final int partsize = (xdocs.size() + parts - 1) / parts;
+            final List<Future<List<SolrInputDocument>>> futures = new ArrayList<Future<List<SolrInputDocument>>>(parts);
+            for (int i = 0; i < xdocs.size(); i += partsize) {
+                final List<SolrDocument> part = xdocs.subList(i, Math.min(xdocs.size(), i + partsize));
+                futures.add(this.workers.submit(new Callable<List<SolrInputDocument>>() {
+                    @Override
+                    public List<SolrInputDocument> call() {
+                        final List<SolrInputDocument> idocs = new ArrayList<SolrInputDocument>(part.size());
+                        for (SolrDocument doc : part) {
+                            try {
+                                URIMetadataNode pdoc = new URIMetadataNode(doc); // use Metadata as it verifies correct/current Doc.ID
+                                idocs.add(colcfg.toSolrInputDocument(pdoc));
+                            } catch (final IOException | RuntimeException e) {
+                                ConcurrentLog.warn("MIGRATION-REINDEX", "cannot reindex " + doc.getFieldValue(CollectionSchema.id.getSolrFieldName()) + ": " + e.getMessage());
+                            }
+                        }
+                        return idocs;
+                    }
+                }));
+            }
+            final List<SolrInputDocument> idocs = new ArrayList<SolrInputDocument>(xdocs.size());
+            try {
+                for (final Future<List<SolrInputDocument>> f: futures) idocs.addAll(f.get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e.getMessage(), e);
+            } catch (final ExecutionException e) {
+                throw new IOException(e.getMessage(), e.getCause());
+            }
+            return idocs;
+        }
+
+        /**
+         * store the remaining queries with their cursors, the checkpoint is removed if all queries are done.
+         * The queries are copied under the monitor of the job, the file is written outside of it; an
+         * older copy is not written after a newer one.
+         * @param stop if true, the queries are removed after the copy and the checkpoint is not changed any more
+         */
+        private void writeCheckpoint(final boolean stop) {
+            final ReindexCheckpoint snapshot;
+            final long sequence;
+            synchronized (this) {
+                if (this.stopped) return;
+                sequence = ++this.checkpointSequence;
+                if (this.querylist.isEmpty() || this.cancelled) {
+                    snapshot = null;
+                } else {
+                    final Map<String, Integer> queries = new LinkedHashMap<String, Integer>();
+                    for (final String query: this.querylist) queries.put(query, this.querylist.get(query));
+                    snapshot = new ReindexCheckpoint(this.processed, queries, new HashMap<String, String>(this.cursors));
+                }
+                if (stop) {
+                    this.stopped = true;
+                    this.querylist.clear();
+                }
+            }
+            synchronized (this.checkpoint) {
+                if (sequence < this.writtenSequence) return;
+                this.writtenSequence = sequence;
+                if (snapshot == null) {
+                    if (this.checkpoint.exists()) this.checkpoint.delete();
+                    return;
+                }
+                try {
+                    snapshot.write(this.checkpoint);
+                } catch (final IOException e) {
+                    ConcurrentLog.warn("MIGRATION-REINDEX", "cannot write checkpoint " + this.checkpoint + ": " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * load the queries and cursors of a checkpoint
+         * @return true if the checkpoint contained any query
+         */
+        private synchronized boolean readCheckpoint() throws IOException {
+            final ReindexCheckpoint c = ReindexCheckpoint.read(this.checkpoint);
+            this.processed = c.processed;
+            for (final Map.Entry<String, Integer> query: c.queries.entrySet()) {
+                this.querylist.set(query.getKey(), query.getValue().intValue());
+            }
+            this.cursors.putAll(c.cursors);
+            return !this.querylist.isEmpty();
+        }
+
+        /**
+         * continue a reindex job which was interrupted by a shutdown
+         * @param sb the switchboard
+         * @return true if a reindex job was deployed from its checkpoint
+         */
+        public static boolean resume(final Switchboard sb) {
+            final File f = new File(sb.workPath, CHECKPOINT_FILE);
+            if (!f.exists() || sb.getThread(THREAD_NAME) != null || !sb.index.fulltext().connectedLocalSolr()) return false;
+            final ReindexSolrBusyThread reidx = new ReindexSolrBusyThread(null);
+            try {
+                if (!reidx.readCheckpoint()) {
+                    f.delete();
+                    return false;
+                }
+            } catch (final IOException e) {
+                ConcurrentLog.warn("MIGRATION-REINDEX", "cannot read checkpoint " + f + ": " + e.getMessage());
+                return false;
+            }
+            ConcurrentLog.info("MIGRATION-REINDEX", "resume reindex of " + reidx.querylist.size() + " queries");
+            sb.deployThread(THREAD_NAME, "Reindex Solr", "reindex documents with obsolete fields in embedded Solr index", "/IndexReIndexMonitor_p.html", reidx, 0);
+            return true;
+        }
+
+        /**
+         * stop the reindex job for good: the checkpoint is removed and the job is not resumed after a restart
+         */
+        public void cancel() {
+            this.cancelled = true;
+            writeCheckpoint(false);
+        }
       
          @Override
          public void terminate(final boolean waitFor) {
-             querylist.clear();
+             // keep the checkpoint of an unfinished job to resume it after a restart
+             writeCheckpoint(true);
+             final Future<SolrDocumentList> f = prefetch;
+             if (f != null) f.cancel(false);
+             reader.shutdown();
+             workers.shutdown();
              // if interrupted without finished commit to reflect latest changes
              if (docstoreindex > 0 && processed > 0) {
                  esc.commit(true);
@@ -188,15 +484,25 @@ import org.apache.solr.common.SolrInputDocument;
         /**
          * @return the currently processed Solr select query 
          */
-        public String getCurrentQuery() {            
+        public synchronized String getCurrentQuery() {            
             return querylist.isEmpty() ? "" : currentquery;
         }
 
         /**          
-         * @return copy of all Solr select queries in the queue or null if empty
+         * @return copy of all Solr select queries in the queue
          */
-        public OrderedScoreMap<String> getQueryList() {
-            return querylist;
+        public synchronized OrderedScoreMap<String> getQueryList() {
+            final OrderedScoreMap<String> copy = new OrderedScoreMap<String>(null);
+            for (final String query: querylist) copy.set(query, querylist.get(query));
+            return copy;
+        }
+        
+        /**
+         * @param query a select query of the queue
+         * @return the last reindexed id of the query or null if the query was not started
+         */
+        public String getCursor(final String query) {
+            return cursors.get(query);
         }
         
         /**
@@ -206,16 +512,35 @@ import org.apache.solr.common.SolrInputDocument;
         public int getJobCount() {
             return docstoreindex;
         }
+        
+        /**
+         * @return the number of documents reindexed in one cycle
+         */
+        public int getChunkSize() {
+            return chunksize;
+        }
+        
+        /**
+         * @return the number of threads transforming the documents
+         */
+        public int getThreads() {
+            return threads;
+        }
+        
+        /**
+         * @return true if the job pauses because the local searches are slow
+         */
+        public boolean isThrottled() {
+            return throttled;
+        }
 
         @Override
         public void freemem() {
             // reduce number of docs processed in one job cycle
             if (chunksize > 2) {
-                this.chunksize = this.chunksize / 2;
+                this.chunksize = Math.max(2, this.chunksize / 2);
             }
             esc.commit(true);
-            start = 0;            
         }
 
     }
-
@@ -90,6 +90,7 @@ import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
 import net.yacy.search.schema.WebgraphConfiguration;
 import net.yacy.search.schema.WebgraphSchema;
+import net.yacy.search.snippet.SnippetStore;
 
 public class Segment {
 
@@ -124,6 +125,7 @@ public class Segment {
     protected       IndexCell<WordReference>       termIndex;
     protected       IndexCell<CitationReference>   urlCitationIndex;
     protected       IndexTable                     firstSeenIndex;
+    protected       SnippetStore                   snippetStore;
     protected       IODispatcher                   merger = null; // shared iodispatcher for kelondro indexes
 
     /**
@@ -142,6 +144,7 @@ public class Segment {
         this.fulltext = new Fulltext(segmentPath, archivePath, collectionConfiguration, webgraphConfiguration);
         this.termIndex = null;
         this.urlCitationIndex = null;
+        this.snippetStore = null;
         this.firstSeenIndex = new IndexTable(new File(segmentPath, firstseenIndexName), 12, 8, false, false);
     }
     
@@ -205,6 +208,23 @@ public class Segment {
         this.urlCitationIndex = null;
     }
 
+    public boolean connectedSnippetStore() {
+        return this.snippetStore != null;
+    }
+
+    public void connectSnippetStore() throws IOException {
+        if (this.snippetStore != null) return;
+        this.snippetStore = new SnippetStore(new File(new File(this.segmentPath, "default"), SnippetStore.DIRECTORY_NAME));
+        this.fulltext.setSnippetStore(this.snippetStore);
+    }
+
+    public void disconnectSnippetStore() {
+        if (this.snippetStore == null) return;
+        this.fulltext.setSnippetStore(null);
+        this.snippetStore.close();
+        this.snippetStore = null;
+    }
+
     public int citationCount() {
         return this.urlCitationIndex == null ? 0 : this.urlCitationIndex.sizesMax();
     }
@@ -225,6 +245,10 @@ public class Segment {
         return this.urlCitationIndex;
     }
     
+    public SnippetStore snippetStore() {
+        return this.snippetStore;
+    }
+
     public IndexTable firstSeen() {
         return this.firstSeenIndex;
     }
@@ -483,6 +507,7 @@ public class Segment {
         if (this.fulltext != null) this.fulltext.close();
         if (this.urlCitationIndex != null) this.urlCitationIndex.close();
         if (this.firstSeenIndex != null) this.firstSeenIndex.close();
+        if (this.snippetStore != null) this.snippetStore.close();
         if (this.merger != null) {
             this.merger.terminate();
             this.merger = null;
@@ -660,6 +685,12 @@ public class Segment {
         
         }
         
+        // STORE SENTENCES FOR SNIPPET COMPUTATION
+        // the sentences are only needed if the text is not in the index; an entry of a previous version was removed with the replaced document
+        if (this.snippetStore != null && condenser != null && !collectionConfig.contains(CollectionSchema.text_t)) {
+            this.snippetStore.put(url.hash(), condenser.snippetSentences());
+        }
+
         // REMEMBER FIRST SEEN
         setFirstSeenTime(url.hash(), Math.min(document.getLastModified().getTime(), System.currentTimeMillis())); // should exist already in the index at this time, but just to make sure
 
@@ -44,6 +44,7 @@ import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.document.WordCache;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.search.EventTracker;
 
@@ -85,7 +86,12 @@ public class AccessTracker {
         }
     }
     
-    public enum Location {local, remote}
+    public enum Location {
+        local, remote;
+
+        /** the duration of the searches of this location */
+        public final Metrics.Latency latency = Metrics.latency(Metrics.name("yacy_search_seconds", "location", name()), "Duration of searches until the results are available");
+    }
 
     private static final LinkedList<QueryParams> localSearches = new LinkedList<QueryParams>();
     private static final LinkedList<QueryParams> remoteSearches = new LinkedList<QueryParams>();
@@ -104,6 +110,7 @@ public class AccessTracker {
     }
 
     public static void add(final Location location, final QueryParams query, int resultCount) {
+        location.latency.updateMillis(query.searchtime);
         if (location == Location.local) synchronized (localSearches) {add(localSearches, query, resultCount);}
         if (location == Location.remote) synchronized (remoteSearches) {add(remoteSearches, query, resultCount);}
     }
@@ -181,6 +181,12 @@ public final class QueryParams {
 	 */
     private int maxSuggestions = 0;
     
+	/**
+	 * When true, fewer remote peers are asked because the admission control has
+	 * degraded the search
+	 */
+    private boolean reducedRemoteSearch = false;
+    
     public final String targetlang;
     protected final Collection<Tagging.Metatag> metatags;
     public final Searchdom domType;
@@ -462,6 +468,21 @@ public final class QueryParams {
 		this.maxSuggestions = maxSuggestions;
 	}
 
+	/**
+	 * @return true when fewer remote peers shall be asked for this search
+	 */
+	public boolean isReducedRemoteSearch() {
+		return this.reducedRemoteSearch;
+	}
+
+	/**
+	 * @param reducedRemoteSearch
+	 *            when true, fewer remote peers are asked for this search
+	 */
+	public void setReducedRemoteSearch(final boolean reducedRemoteSearch) {
+		this.reducedRemoteSearch = reducedRemoteSearch;
+	}
+
     public static HandleSet hashes2Set(final String query) {
         final HandleSet keyhashes = new RowHandleSet(WordReferenceRow.urlEntryRow.primaryKeyLength, WordReferenceRow.urlEntryRow.objectOrder, 0);
         if (query != null) {
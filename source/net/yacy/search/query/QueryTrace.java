@@ -0,0 +1,391 @@
+// QueryTrace.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * The latency breakdown of one search: a list of spans, each covering a stage of the search
+ * like the RWI join, the local Solr search, the request to a remote peer, a snippet fetch or
+ * the rendering of a result. The trace id is sent with the remote search requests, so the
+ * remote peer records its part of the search as a trace with this id as parent.
+ *
+ * Spans are recorded for every search. When a trace is finished it is kept in a ring buffer if
+ * it was sampled or if it took longer than the slow query threshold; slow traces are also kept
+ * in a separate ring buffer and logged.
+ */
+public final class QueryTrace {
+
+    private static final ConcurrentLog log = new ConcurrentLog("QueryTrace");
+
+    /** the stage of the local Solr search and of Solr requests to remote peers */
+    public static final String SOLR = "solr";
+    /** the stage of an RWI search request to a remote peer */
+    public static final String REMOTE = "remote";
+    /** the stage of a snippet fetch */
+    public static final String SNIPPET = "snippet";
+    /** the stage of the rendering of the search page */
+    public static final String RENDER = "render";
+
+    private static volatile double sampleRate = 0.05d;
+    private static volatile long slowThreshold = 5000;
+    private static volatile int capacity = 100;
+
+    /** the running traces by trace id; identical queries may run concurrently, each with its own trace */
+    private static final Map<String, QueryTrace> active = new ConcurrentHashMap<String, QueryTrace>();
+    private static final ArrayDeque<QueryTrace> recent = new ArrayDeque<QueryTrace>();
+    private static final ArrayDeque<QueryTrace> slow = new ArrayDeque<QueryTrace>();
+
+    /**
+     * set the trace selection
+     * @param rate the part of the searches which is sampled, between 0 and 1
+     * @param slowMillis searches taking at least this time are always kept; 0 or less switches slow query capture off
+     * @param size the number of traces kept in each ring buffer
+     */
+    public static void configure(final double rate, final long slowMillis, final int size) {
+        sampleRate = Math.max(0.0d, Math.min(1.0d, rate));
+        slowThreshold = slowMillis;
+        capacity = Math.max(1, size);
+    }
+
+    /**
+     * start a trace; it becomes the latest active trace of the query id. The trace must be finished,
+     * also if the search fails, otherwise it stays in the running traces.
+     * @param queryId the id of the query
+     * @param parentId the trace id of the remote peer which requested the search, null for a local search
+     * @param origin the requesting peer or client, may be null
+     * @param parentSampled true if the requesting peer keeps its trace; the trace is then kept as well
+     * @return the new trace
+     */
+    public static QueryTrace start(final String queryId, final String parentId, final String origin, final boolean parentSampled) {
+        final boolean sampled = parentSampled || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        final QueryTrace trace = new QueryTrace(queryId, parentId == null || parentId.isEmpty() ? null : parentId, origin, sampled);
+        active.put(trace.id, trace);
+        return trace;
+    }
+
+    /**
+     * @param queryId the id of the query
+     * @return the latest started running trace of the query or null
+     */
+    public static QueryTrace active(final String queryId) {
+        if (queryId == null) return null;
+        QueryTrace latest = null;
+        for (final QueryTrace t: active.values()) {
+            if (t.queryId.equals(queryId) && (latest == null || t.startNanos - latest.startNanos > 0)) latest = t;
+        }
+        return latest;
+    }
+
+    /**
+     * find a trace by its id
+     * @param traceId the trace id
+     * @return the trace or null if it is not running and was not kept
+     */
+    public static QueryTrace get(final String traceId) {
+        final QueryTrace a = active.get(traceId);
+        if (a != null) return a;
+        synchronized (recent) {
+            for (final QueryTrace t: slow) if (t.id.equals(traceId)) return t;
+            for (final QueryTrace t: recent) if (t.id.equals(traceId)) return t;
+        }
+        return null;
+    }
+
+    /**
+     * find the traces of a query
+     * @param queryId the id of the query
+     * @return the running and the kept traces of the query, the latest first
+     */
+    public static List<QueryTrace> byQuery(final String queryId) {
+        final List<QueryTrace> list = new ArrayList<QueryTrace>();
+        for (final QueryTrace t: active.values()) if (t.queryId.equals(queryId)) list.add(t);
+        Collections.sort(list, new Comparator<QueryTrace>() {
+            @Override
+            public int compare(final QueryTrace o1, final QueryTrace o2) {
+                return Long.compare(o2.startNanos - o1.startNanos, 0);
+            }
+        });
+        synchronized (recent) {
+            for (final Iterator<QueryTrace> i = recent.descendingIterator(); i.hasNext();) {
+                final QueryTrace t = i.next();
+                if (t.queryId.equals(queryId) && !list.contains(t)) list.add(t);
+            }
+            for (final Iterator<QueryTrace> i = slow.descendingIterator(); i.hasNext();) {
+                final QueryTrace t = i.next();
+                if (t.queryId.equals(queryId) && !list.contains(t)) list.add(t);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the kept traces, the latest first
+     */
+    public static List<QueryTrace> recent() {
+        synchronized (recent) {
+            final List<QueryTrace> list = new ArrayList<QueryTrace>(recent);
+            Collections.reverse(list);
+            return list;
+        }
+    }
+
+    /**
+     * @return the kept slow traces, the latest first
+     */
+    public static List<QueryTrace> slow() {
+        synchronized (recent) {
+            final List<QueryTrace> list = new ArrayList<QueryTrace>(slow);
+            Collections.reverse(list);
+            return list;
+        }
+    }
+
+    public static void clear() {
+        active.clear();
+        synchronized (recent) {
+            recent.clear();
+            slow.clear();
+        }
+    }
+
+    private static void keep(final QueryTrace trace) {
+        final boolean isSlow = slowThreshold > 0 && trace.duration() >= slowThreshold;
+        if (!trace.sampled && !isSlow) return;
+        synchronized (recent) {
+            recent.addLast(trace);
+            while (recent.size() > capacity) recent.removeFirst();
+            if (isSlow) {
+                slow.addLast(trace);
+                while (slow.size() > capacity) slow.removeFirst();
+            }
+        }
+        if (isSlow) log.info("slow query " + trace.queryId + ": " + trace.toString());
+    }
+
+    public final String id;
+    public final String queryId;
+    /** the trace id of the requesting peer, or null */
+    public final String parentId;
+    /** the requesting peer or client, or null */
+    public final String origin;
+    public final boolean sampled;
+    /** the start time in milliseconds since the epoch */
+    public final long startTime;
+    private final long startNanos;
+    private final List<Span> spans;
+    private volatile long durationNanos;
+
+    private QueryTrace(final String queryId, final String parentId, final String origin, final boolean sampled) {
+        this.id = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+        this.queryId = queryId;
+        this.parentId = parentId;
+        this.origin = origin;
+        this.sampled = sampled;
+        this.startTime = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.spans = new ArrayList<Span>();
+        this.durationNanos = -1;
+    }
+
+    /**
+     * start a span; it must be ended with {@link Span#end(int, String)}
+     * @param stage the stage of the search
+     * @param resource the resource used in the stage, like a peer name, may be null
+     * @return the running span
+     */
+    public Span span(final String stage, final String resource) {
+        final Span span = new Span(stage, resource, System.nanoTime() - this.startNanos);
+        synchronized (this.spans) {
+            this.spans.add(span);
+        }
+        return span;
+    }
+
+    /**
+     * record a span which ends now
+     * @param stage the stage of the search
+     * @param resource the resource used in the stage, may be null
+     * @param millis the duration of the span in milliseconds
+     * @param count the number of results of the stage
+     */
+    public void record(final String stage, final String resource, final long millis, final int count) {
+        final long end = System.nanoTime() - this.startNanos;
+        final Span span = new Span(stage, resource, Math.max(0, end - Math.max(0, millis) * 1000000L));
+        span.durationNanos = end - span.startNanos;
+        span.count = count;
+        synchronized (this.spans) {
+            this.spans.add(span);
+        }
+    }
+
+    /**
+     * @return a copy of the spans, ordered by start time
+     */
+    public List<Span> spans() {
+        final List<Span> list;
+        synchronized (this.spans) {
+            list = new ArrayList<Span>(this.spans);
+        }
+        Collections.sort(list, new Comparator<Span>() {
+            @Override
+            public int compare(final Span o1, final Span o2) {
+                return Long.compare(o1.startNanos, o2.startNanos);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * finish the trace now; a finished trace is not the active trace of its query any more.
+     * Spans which end later are still added to the trace.
+     */
+    public void finish() {
+        finish(System.nanoTime() - this.startNanos);
+    }
+
+    /**
+     * finish the trace at the end of its last span; this is used when a search is discarded
+     * without an explicit end, i.e. when a search event is removed from the cache
+     */
+    public void close() {
+        long end = 0;
+        synchronized (this.spans) {
+            for (final Span s: this.spans) end = Math.max(end, s.startNanos + Math.max(0, s.durationNanos));
+        }
+        finish(end);
+    }
+
+    private void finish(final long duration) {
+        synchronized (this) {
+            if (this.durationNanos >= 0) return;
+            this.durationNanos = duration;
+        }
+        active.remove(this.id);
+        keep(this);
+    }
+
+    public boolean isFinished() {
+        return this.durationNanos >= 0;
+    }
+
+    /**
+     * @return the duration of the trace in milliseconds; the time until now if it is not finished
+     */
+    public long duration() {
+        final long d = this.durationNanos;
+        return (d >= 0 ? d : System.nanoTime() - this.startNanos) / 1000000L;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("trace ").append(this.id).append(", ").append(duration()).append(" ms");
+        if (this.parentId != null) sb.append(", parent ").append(this.parentId);
+        if (this.origin != null) sb.append(", from ").append(this.origin);
+        for (final Span s: spans()) sb.append("; ").append(s.toString());
+        return sb.toString();
+    }
+
+    /**
+     * a timed stage of a search
+     */
+    public static final class Span {
+        public final String stage;
+        public final String resource;
+        private final long startNanos; // relative to the start of the trace
+        private final long started; // System.nanoTime() at the start of the span
+        private volatile long durationNanos;
+        private volatile int count;
+        private volatile String detail;
+
+        private Span(final String stage, final String resource, final long startNanos) {
+            this.stage = stage;
+            this.resource = resource;
+            this.startNanos = startNanos;
+            this.started = System.nanoTime();
+            this.durationNanos = -1;
+            this.count = -1;
+            this.detail = null;
+        }
+
+        /**
+         * end the span
+         * @param resultCount the number of results of the stage, -1 if unknown
+         * @param detail a description of the result, may be null
+         */
+        public void end(final int resultCount, final String detail) {
+            this.count = resultCount;
+            this.detail = detail;
+            this.durationNanos = Math.max(0, System.nanoTime() - this.started);
+        }
+
+        /**
+         * @return the start of the span in milliseconds after the start of the trace
+         */
+        public double start() {
+            return this.startNanos / 1000000.0d;
+        }
+
+        /**
+         * @return the duration of the span in milliseconds, -1 if the span is running
+         */
+        public double duration() {
+            final long d = this.durationNanos;
+            return d < 0 ? -1 : d / 1000000.0d;
+        }
+
+        public int count() {
+            return this.count;
+        }
+
+        public String detail() {
+            return this.detail;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(64);
+            sb.append(this.stage);
+            if (this.resource != null) sb.append('(').append(this.resource).append(')');
+            sb.append(String.format(Locale.ROOT, " +%.1f ms", start()));
+            final double d = duration();
+            sb.append(d < 0 ? " running" : String.format(Locale.ROOT, " %.1f ms", d));
+            if (this.count >= 0) sb.append(", ").append(this.count).append(" results");
+            if (this.detail != null) sb.append(", ").append(this.detail);
+            return sb.toString();
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+// SearchAdmission.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.query;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.servlet.ServletRequest;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Memory;
+
+/**
+ * Adaptive admission control for the search interfaces. The load of the peer is measured as a
+ * pressure value from the recent search latency, the system load and the number of searches
+ * which are running at the same time; a pressure of 1 means that one of them has reached its
+ * configured limit. Each search request gets a degradation level from the pressure, weighted by
+ * the priority of the requester: the more the peer is overloaded, the less work is done for a
+ * search, from fewer remote peers over local only searches and no snippets to cached results
+ * only, until requests are rejected.
+ *
+ * The decision is taken for a request before it is dispatched to the servlet and is attached
+ * to the request as attribute {@link #ATTRIBUTE}.
+ */
+public final class SearchAdmission {
+
+    private static final ConcurrentLog log = new ConcurrentLog("SearchAdmission");
+
+    /** name of the request attribute which holds the {@link Degradation} of a search request */
+    public static final String ATTRIBUTE = SearchAdmission.class.getName();
+
+    /** the time in milliseconds after which the latency average has decayed to 1/e without new searches */
+    private static final long LATENCY_DECAY = 30000;
+    /** the weight of a new latency measurement in the latency average */
+    private static final double LATENCY_ALPHA = 0.2d;
+    /** the time in milliseconds a system load measurement is reused */
+    private static final long LOAD_TTL = 1000;
+
+    /** the classes of requesters; higher classes are degraded later */
+    public enum Priority {
+        /** requests authenticated as administrator */
+        API(0.0d),
+        /** requests from localhost and the intranet */
+        LOCAL(0.5d),
+        /** search requests from other peers */
+        P2P(1.0d),
+        /** all other requests */
+        ANONYMOUS(1.25d);
+
+        private final double weight;
+
+        private Priority(final double weight) {
+            this.weight = weight;
+        }
+    }
+
+    /** the degradation levels of a search, ordered from no degradation to rejection */
+    public enum Degradation {
+        /** the search is done completely */
+        NONE(0.0d),
+        /** fewer remote peers are asked */
+        FEWER_PEERS(1.0d),
+        /** no remote peers are asked */
+        LOCAL_ONLY(1.25d),
+        /** no remote peers are asked and no snippets are loaded */
+        NO_SNIPPETS(1.5d),
+        /** only results of searches in the search event cache are returned */
+        CACHE_ONLY(2.0d),
+        /** the request is rejected */
+        REJECT(3.0d);
+
+        /** the weighted pressure from which this level applies */
+        private final double threshold;
+
+        private Degradation(final double threshold) {
+            this.threshold = threshold;
+        }
+
+        public boolean atLeast(final Degradation other) {
+            return this.compareTo(other) >= 0;
+        }
+    }
+
+    private static volatile boolean enabled = false;
+    private static volatile long targetLatency = 3000;
+    private static volatile double maxLoad = 4.0d;
+    private static volatile int maxConcurrent = 4 * (int) Memory.cores();
+
+    private static final AtomicInteger inFlight = new AtomicInteger(0);
+    private static final AtomicLongArray decisions = new AtomicLongArray(Degradation.values().length);
+    private static double latency = 0.0d;
+    private static long latencyTime = System.currentTimeMillis();
+    private static volatile double load = 0.0d;
+    private static volatile long loadTime = 0;
+
+    private SearchAdmission() {
+    }
+
+    /**
+     * set the limits of the admission control
+     * @param on false to admit all requests without degradation
+     * @param latencyMillis the search latency in milliseconds which is considered as full load
+     * @param loadPerCore the system load per core which is considered as full load
+     * @param concurrent the number of concurrent searches which is considered as full load, 0 for four per core
+     */
+    public static void configure(final boolean on, final long latencyMillis, final double loadPerCore, final int concurrent) {
+        enabled = on;
+        targetLatency = Math.max(1, latencyMillis);
+        maxLoad = loadPerCore <= 0.0d ? Double.MAX_VALUE : loadPerCore;
+        maxConcurrent = concurrent <= 0 ? 4 * (int) Memory.cores() : concurrent;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the recent search latency in milliseconds; it decays while no searches are finished
+     */
+    public static synchronized double latency() {
+        return latency * Math.exp(-(double) (System.currentTimeMillis() - latencyTime) / LATENCY_DECAY);
+    }
+
+    private static synchronized void record(final long millis) {
+        latency = latency() * (1.0d - LATENCY_ALPHA) + millis * LATENCY_ALPHA;
+        latencyTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the system load per core or 0 if it is not available
+     */
+    public static double load() {
+        final long now = System.currentTimeMillis();
+        if (now - loadTime > LOAD_TTL) {
+            final double l = Memory.load();
+            load = l < 0.0d ? 0.0d : l / Math.max(1, Memory.cores());
+            loadTime = now;
+        }
+        return load;
+    }
+
+    /**
+     * @return the number of searches which are admitted and not finished
+     */
+    public static int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @param degradation
+     * @return the number of requests which got the given degradation level since start
+     */
+    public static long decisions(final Degradation degradation) {
+        return decisions.get(degradation.ordinal());
+    }
+
+    /**
+     * @return the load of the peer; 1 means that the latency, the system load or the number of running searches has reached its limit
+     */
+    public static double pressure() {
+        final double latencyRatio = latency() / targetLatency;
+        final double loadRatio = load() / maxLoad;
+        final double queueRatio = (double) inFlight.get() / maxConcurrent;
+        return Math.max(latencyRatio, Math.max(loadRatio, queueRatio));
+    }
+
+    /**
+     * @param priority the class of the requester
+     * @return the degradation for a search of the given priority at the current pressure
+     */
+    public static Degradation degradation(final Priority priority) {
+        if (!enabled) return Degradation.NONE;
+        final double weighted = pressure() * priority.weight;
+        final Degradation[] levels = Degradation.values();
+        for (int i = levels.length - 1; i > 0; i--) {
+            if (weighted >= levels[i].threshold) return levels[i];
+        }
+        return Degradation.NONE;
+    }
+
+    /**
+     * @param request a search request
+     * @return the degradation which was decided for the request or {@link Degradation#NONE} if no decision was taken
+     */
+    public static Degradation degradation(final ServletRequest request) {
+        try {
+            final Object degradation = request.getAttribute(ATTRIBUTE);
+            return degradation instanceof Degradation ? (Degradation) degradation : Degradation.NONE;
+        } catch (final UnsupportedOperationException e) {
+            // a request header without servlet request
+            return Degradation.NONE;
+        }
+    }
+
+    /**
+     * decide about a search request. Unless the request is rejected, the search is counted as running
+     * until {@link Ticket#finish()} is called.
+     * @param priority the class of the requester
+     * @return the admission ticket of the request
+     */
+    public static Ticket admit(final Priority priority) {
+        final Degradation degradation = degradation(priority);
+        decisions.incrementAndGet(degradation.ordinal());
+        if (degradation == Degradation.REJECT) {
+            log.info("rejected " + priority.name() + " search request at pressure " + pressure());
+            return new Ticket(degradation, false);
+        }
+        if (degradation != Degradation.NONE) {
+            log.fine("degraded " + priority.name() + " search request to " + degradation.name() + " at pressure " + pressure());
+        }
+        inFlight.incrementAndGet();
+        return new Ticket(degradation, true);
+    }
+
+    /**
+     * the admission of a search request
+     */
+    public static final class Ticket {
+
+        private final Degradation degradation;
+        private final long start;
+        private boolean running;
+
+        private Ticket(final Degradation degradation, final boolean running) {
+            this.degradation = degradation;
+            this.start = System.currentTimeMillis();
+            this.running = running;
+        }
+
+        public Degradation getDegradation() {
+            return this.degradation;
+        }
+
+        /**
+         * finish the search and record its latency
+         */
+        public synchronized void finish() {
+            if (!this.running) return;
+            this.running = false;
+            inFlight.decrementAndGet();
+            record(System.currentTimeMillis() - this.start);
+        }
+    }
+
+}
@@ -137,6 +137,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 
     private long eventTime;
     public QueryParams query;
+    /** the latency breakdown of this search */
+    public final QueryTrace trace;
     public final SeedDB peers;
     final WorkTables workTables;
     public final SecondarySearchSuperviser secondarySearchSuperviser;
@@ -340,6 +342,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         }
         
         this.eventTime = System.currentTimeMillis(); // for lifetime check
+        // a remote search request may have started the trace already
+        final QueryTrace activeTrace = QueryTrace.active(query.id(true));
+        this.trace = activeTrace == null ? QueryTrace.start(query.id(true), null, null, false) : activeTrace;
         this.peers = peers;
         this.workTables = workTables;
         this.query = query;
@@ -845,6 +850,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 
     protected void cleanup() {
 
+        // a trace which was not finished by the search interface ends with its last span
+        this.trace.close();
+
         // stop all threads
         if (this.localsolrsearch != null) {
             if (localsolrsearch.isAlive()) synchronized (this.localsolrsearch) {this.localsolrsearch.interrupt();}
@@ -2041,6 +2049,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         if (contentDomain == Classification.ContentDomain.TEXT || contentDomain == Classification.ContentDomain.ALL) {
             // attach text snippet
             long startTime = System.currentTimeMillis();
+            final QueryTrace.Span span = this.trace.span(QueryTrace.SNIPPET, page.url().getHost());
             final TextSnippet snippet = new TextSnippet(
                     this.loader,
                     page,
@@ -2050,6 +2059,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                     ((this.query.constraint != null) && (this.query.constraint.get(Tokenizer.flag_cat_indexof))),
                     180,
                     !this.query.isLocal());
+            span.end(snippet.getErrorCode().fail() ? 0 : 1, snippet.getErrorCode().fail() ? snippet.getErrorCode().toString() : null);
             SearchEvent.log.info("text snippet load time for " + page.url().toNormalform(true) + ": " + (System.currentTimeMillis() - startTime) + " ms, " + (!snippet.getErrorCode().fail() ? "snippet found" : ("no snippet found (" + snippet.getError() + ")")));
 
             if (!snippet.getErrorCode().fail()) {
@@ -0,0 +1,224 @@
+/**
+ *  CitationRankCache
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 19.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.schema;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * The converged citation rank values of the latest postprocessing run for each host.
+ * Together with the values, a fingerprint of the documents of the host is stored: if the
+ * fingerprint did not change, the link structure of the host is the same and the values are used
+ * without a new computation. Otherwise a new run starts the convergence of the host with these
+ * values, so if only a few documents changed, the ranking converges in a few steps.
+ * The values are stored compact as concatenated url hashes and a double array; the cache holds
+ * at most a given number of documents and drops the least recently used hosts first.
+ * The cache is saved to a file at the end of a run, so it survives a restart.
+ */
+final class CitationRankCache {
+
+    /** the name of the file of the cache in the segment directory */
+    public static final String FILE_NAME = "citationrank.cache";
+
+    private static final int ID_LENGTH = 12;
+    private static final byte[] MAGIC = new byte[]{'Y', 'C', 'R', 'C'};
+    private static final byte VERSION = 1;
+
+    private static final class Entry {
+        private final byte[] ids;
+        private final double[] cr;
+        private final long fingerprint;
+        private Entry(final byte[] ids, final double[] cr, final long fingerprint) {
+            this.ids = ids;
+            this.cr = cr;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> hosts;
+    private final long maxDocuments;
+    private long documents;
+
+    /**
+     * @param maxDocuments the maximum number of document ranks in the cache
+     */
+    public CitationRankCache(final long maxDocuments) {
+        this.hosts = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        this.maxDocuments = maxDocuments;
+        this.documents = 0;
+    }
+
+    /**
+     * set the start values of the citation rank computation for a host
+     * @param host the host name
+     * @param crt the rank table of the host, a mapping from the url hash to the {old value, new value} pair;
+     *        the old value of all known documents is replaced by the value of the latest run
+     * @return the number of documents which got a value from the latest run
+     */
+    public int warmStart(final String host, final Map<String, double[]> crt) {
+        final Entry entry;
+        synchronized (this) {
+            entry = this.hosts.get(host);
+        }
+        if (entry == null) return 0;
+        int known = 0;
+        for (int i = 0; i < entry.cr.length; i++) {
+            final double[] v = crt.get(ASCII.String(entry.ids, i * ID_LENGTH, ID_LENGTH));
+            if (v == null) continue;
+            v[0] = entry.cr[i];
+            known++;
+        }
+        return known;
+    }
+
+    /**
+     * @param host the host name
+     * @param fingerprint the fingerprint of the documents of the host in this run
+     * @return true if the values of the host were computed with the same documents
+     */
+    public synchronized boolean unchanged(final String host, final long fingerprint) {
+        final Entry entry = this.hosts.get(host);
+        return entry != null && entry.fingerprint == fingerprint;
+    }
+
+    /**
+     * store the converged rank values of a host
+     * @param host the host name
+     * @param crt the rank table of the host, a mapping from the url hash to the {old value, new value} pair
+     * @param fingerprint the fingerprint of the documents of the host which were used for the computation
+     */
+    public void put(final String host, final Map<String, double[]> crt, final long fingerprint) {
+        final byte[] ids = new byte[crt.size() * ID_LENGTH];
+        final double[] cr = new double[crt.size()];
+        int i = 0;
+        for (final Map.Entry<String, double[]> e: crt.entrySet()) {
+            final String id = e.getKey();
+            if (id.length() != ID_LENGTH) continue;
+            for (int j = 0; j < ID_LENGTH; j++) ids[i * ID_LENGTH + j] = (byte) id.charAt(j);
+            cr[i++] = e.getValue()[0];
+        }
+        if (i > this.maxDocuments) return;
+        put(host, i == cr.length ? new Entry(ids, cr, fingerprint) : new Entry(Arrays.copyOf(ids, i * ID_LENGTH), Arrays.copyOf(cr, i), fingerprint));
+    }
+
+    private void put(final String host, final Entry entry) {
+        synchronized (this) {
+            final Entry old = this.hosts.put(host, entry);
+            if (old != null) this.documents -= old.cr.length;
+            this.documents += entry.cr.length;
+            final Iterator<Map.Entry<String, Entry>> it = this.hosts.entrySet().iterator();
+            while (this.documents > this.maxDocuments && it.hasNext()) {
+                final Entry eldest = it.next().getValue();
+                if (eldest == entry) continue;
+                this.documents -= eldest.cr.length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of document ranks in the cache
+     */
+    public synchronized long size() {
+        return this.documents;
+    }
+
+    public synchronized void clear() {
+        this.hosts.clear();
+        this.documents = 0;
+    }
+
+    /**
+     * write the cache to a file; the least recently used host is written first
+     * @param file the target file
+     * @throws IOException
+     */
+    public void save(final File file) throws IOException {
+        final Map<String, Entry> hosts;
+        synchronized (this) {
+            hosts = new LinkedHashMap<String, Entry>(this.hosts);
+        }
+        final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536));
+        try {
+            os.write(MAGIC);
+            os.writeByte(VERSION);
+            os.writeInt(hosts.size());
+            for (final Map.Entry<String, Entry> e: hosts.entrySet()) {
+                final Entry entry = e.getValue();
+                os.writeUTF(e.getKey());
+                os.writeLong(entry.fingerprint);
+                os.writeInt(entry.cr.length);
+                os.write(entry.ids);
+                for (final double d: entry.cr) os.writeDouble(d);
+            }
+        } finally {
+            os.close();
+        }
+        FileUtils.deletedelete(file);
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+    }
+
+    /**
+     * replace the content of the cache with the content of a file
+     * @param file a file written with {@link #save(File)}
+     * @throws IOException
+     */
+    public void load(final File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("not a citation rank cache");
+            final byte version = in.readByte();
+            if (version != VERSION) throw new IOException("unsupported citation rank cache version " + version);
+            final int size = in.readInt();
+            clear();
+            for (int h = 0; h < size; h++) {
+                final String host = in.readUTF();
+                final long fingerprint = in.readLong();
+                final int n = in.readInt();
+                if (n < 0 || n > this.maxDocuments) throw new IOException("bad document count " + n);
+                final byte[] ids = new byte[n * ID_LENGTH];
+                in.readFully(ids);
+                final double[] cr = new double[n];
+                for (int i = 0; i < n; i++) cr[i] = in.readDouble();
+                put(host, new Entry(ids, cr, fingerprint));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+}
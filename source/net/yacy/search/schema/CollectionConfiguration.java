@@ -46,6 +46,10 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -102,6 +106,7 @@ import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.search.index.Segment;
 import net.yacy.search.index.Segment.ReferenceReport;
 import net.yacy.search.index.Segment.ReferenceReportCache;
@@ -1212,6 +1217,14 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         }
     }
 
+    /** the converged citation rank values of the latest postprocessing run, at most one million documents */
+    private static final CitationRankCache citationRankCache = new CitationRankCache(1000000);
+    /** the file of the segment which was loaded into the citation rank cache */
+    private static File citationRankCacheFile = null;
+
+    /** the number of postprocessed documents which are written to the index in one request */
+    private static final int POSTPROCESSING_BATCH_SIZE = 100;
+
     public static boolean postprocessingRunning   = false;
     public static String  postprocessingActivity  = "";
     // if started, the following values are assigned
@@ -1398,6 +1411,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                         @Override
                         public void run() {
                             SolrDocument doc;
+                            final List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(POSTPROCESSING_BATCH_SIZE);
                             try {
                                 while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
                                     // for each to-be-processed entry work on the process tag
@@ -1464,13 +1478,10 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                                         // id, http_unique_b, www_unique_b, references_i, references_internal_i, references_external_i, references_exthosts_i, host_extent_i
                                         // and the value for host_extent_i is by default 2147483647
                                         
-                                        // send back to index
+                                        // send back to index in batches
                                         //collectionConnector.deleteById(i);
-                                        if (byPartialUpdate) {
-                                            collectionConnector.update(sid);
-                                        } else {
-                                            collectionConnector.add(sid);
-                                        }
+                                        batch.add(sid);
+                                        if (batch.size() >= POSTPROCESSING_BATCH_SIZE) writeBatch(collectionConnector, batch, byPartialUpdate, failids);
                                         long thiscount = proccount.incrementAndGet(); allcount.incrementAndGet();
                                         if (thiscount % 100 == 0) {
                                             postprocessingActivity = "postprocessed " + thiscount + " from " + count + " collection documents; " +
@@ -1486,6 +1497,8 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                                 }
                             } catch (InterruptedException e) {
                                 ConcurrentLog.logException(e);
+                            } finally {
+                                writeBatch(collectionConnector, batch, byPartialUpdate, failids);
                             }
                         }
                     };
@@ -1496,7 +1509,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 
                 if (failids.size() > 0) {
                     ConcurrentLog.info("CollectionConfiguration", "cleanup_processing: deleting " + failids.size() + " documents which have permanent execution fails");
-                    collectionConnector.deleteByIds(failids);
+                    segment.fulltext().remove(failids);
                 }
                 if (count != countcheck.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous collection document count for harvestkey " + harvestkey + ": expected=" + count + ", counted=" + countcheck + "; countquery=" + collection1query); // big gap for harvestkey = null
                 ConcurrentLog.info("CollectionConfiguration", "cleanup_processing: re-calculated " + proccount + " new documents, " +
@@ -1512,6 +1525,32 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         collectionConnector.commit(true); // make changes available directly to prevent that the process repeats again
 	}
 
+	/**
+	 * Write a batch of postprocessed documents to the index and empty the batch. If the batch fails,
+	 * the documents are written one by one and the ids of the failing documents are collected.
+	 * @param connector the connector to write to
+	 * @param batch the documents
+	 * @param byPartialUpdate when true, perform partial updates on documents
+	 * @param failids the ids of documents which could not be written
+	 */
+	private static void writeBatch(final SolrConnector connector, final List<SolrInputDocument> batch, final boolean byPartialUpdate, final Collection<String> failids) {
+		if (batch.isEmpty()) return;
+		try {
+			if (byPartialUpdate) connector.update(batch); else connector.add(batch);
+		} catch (final Throwable e) {
+			ConcurrentLog.warn("CollectionConfiguration", "batch of " + batch.size() + " documents failed, writing single documents: " + e.getMessage());
+			for (final SolrInputDocument sid: batch) {
+				try {
+					if (byPartialUpdate) connector.update(sid); else connector.add(sid);
+				} catch (final Throwable e1) {
+					ConcurrentLog.logException(e1);
+					failids.add((String) sid.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+				}
+			}
+		}
+		batch.clear();
+	}
+
 	/**
 	 * Perform postprocessing steps on the webgraph core.
 	 * @param segment Solr segment.
@@ -1556,12 +1595,14 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 		                // TODO: add field list and do partial updates
 		                );
 		        final AtomicInteger proccount = new AtomicInteger(0);
+		        final Collection<String> failids = ConcurrentHashMap.newKeySet();
 		        Thread[] t = new Thread[concurrency];
 		        for (int i = 0; i < t.length; i++) {
 		            t[i] = new Thread("CollectionConfiguration.postprocessing.webgraph-" + i) {
 		                @Override
 		                public void run() {
 		                    SolrDocument doc; String id;
+		                    final List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(POSTPROCESSING_BATCH_SIZE);
 		                    try {
 		                        processloop: while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
 		                            try {
@@ -1594,17 +1635,12 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 		                                    ConcurrentLog.logException(e);
 		                                }
 		                                
-		                                // write document back to index
-		                                try {
-		                                    sid.removeField(WebgraphSchema.process_sxt.getSolrFieldName());
-		                                    sid.removeField(WebgraphSchema.harvestkey_s.getSolrFieldName());
-		                                    //segment.fulltext().getWebgraphConnector().deleteById((String) sid.getFieldValue(WebgraphSchema.id.getSolrFieldName()));
-		                                    segment.fulltext().getWebgraphConnector().add(sid);
-		                                } catch (SolrException e) {
-		                                    ConcurrentLog.logException(e);
-		                                } catch (IOException e) {
-		                                    ConcurrentLog.logException(e);
-		                                }
+		                                // write document back to index in batches
+		                                sid.removeField(WebgraphSchema.process_sxt.getSolrFieldName());
+		                                sid.removeField(WebgraphSchema.harvestkey_s.getSolrFieldName());
+		                                //segment.fulltext().getWebgraphConnector().deleteById((String) sid.getFieldValue(WebgraphSchema.id.getSolrFieldName()));
+		                                batch.add(sid);
+		                                if (batch.size() >= POSTPROCESSING_BATCH_SIZE) writeBatch(segment.fulltext().getWebgraphConnector(), batch, false, failids);
 		                                proccount.incrementAndGet();
 		                                allcount.incrementAndGet();
 		                                if (proccount.get() % 1000 == 0) {
@@ -1620,6 +1656,8 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 		                        }
 		                    } catch (InterruptedException e) {
 		                        ConcurrentLog.warn("CollectionConfiguration", e.getMessage(), e);
+		                    } finally {
+		                        writeBatch(segment.fulltext().getWebgraphConnector(), batch, false, failids);
 		                    }
 		                }
 		            };
@@ -1630,6 +1668,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 		            if (t[i].isAlive()) t[i].interrupt();
 		        } catch (InterruptedException e) {}
 		        
+		        if (failids.size() > 0) ConcurrentLog.warn("CollectionConfiguration", failids.size() + " webgraph documents of host " + host + " could not be written");
 		        if (count != proccount.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous webgraph document count for host " + host + ": expected=" + count + ", counted=" + proccount);
 		    }
 		} catch (final IOException e2) {
@@ -1638,7 +1677,11 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 	}
 
 	/**
-	 * Patches the citation index for links with canonical tags and perform the citation rank computation
+	 * Patches the citation index for links with canonical tags and perform the citation rank computation.
+	 * The canonical links are patched for all hosts first, one host after another, because the patch
+	 * changes the citations of documents on other hosts. Then the hosts are ranked by a fixed number of
+	 * threads. A host with the same documents as in the latest run gets the values of that run; each
+	 * other host starts the convergence with the values of the latest run.
 	 * @param segment Solr segment
 	 * @param rrCache reference report cache for the segment
 	 * @param collectionConnector default connector to the Solr segment
@@ -1646,88 +1689,178 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 	 * @return the ranking map 
 	 */
 	private Map<String, CRV> createRankingMap(final Segment segment, final ReferenceReportCache rrCache,
-			final SolrConnector collectionConnector, ReversibleScoreMap<String> collection1hosts) {
+			final SolrConnector collectionConnector, final ReversibleScoreMap<String> collection1hosts) {
 		final Map<String, CRV> rankings = new ConcurrentHashMap<String, CRV>();
-        try {
-            int concurrency = Math.min(collection1hosts.size(), Runtime.getRuntime().availableProcessors());
-            postprocessingActivity = "collecting cr for " + collection1hosts.size() + " hosts, concurrency = " + concurrency;
-            ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-            int countcheck = 0;
-            for (String host: collection1hosts.keyList(true)) {
-                // Patch the citation index for links with canonical tags.
-                // This shall fulfill the following requirement:
-                // If a document A links to B and B contains a 'canonical C', then the citation rank computation shall consider that A links to C and B does not link to C.
-                // To do so, we first must collect all canonical links, find all references to them, get the anchor list of the documents and patch the citation reference of these links
-                String patchquery = CollectionSchema.host_s.getSolrFieldName() + ":" + host + " AND " + CollectionSchema.canonical_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
-                long patchquerycount = collectionConnector.getCountByQuery("{!cache=false}" + patchquery);
-                BlockingQueue<SolrDocument> documents_with_canonical_tag = collectionConnector.concurrentDocumentsByQuery(patchquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, Long.MAX_VALUE, 20, 1, true,
-                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.canonical_s.getSolrFieldName());
-                SolrDocument doc_B;
-                int patchquerycountcheck = 0;
-                try {
-                    while ((doc_B = documents_with_canonical_tag.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                        // find all documents which link to the canonical doc
-                        DigestURL doc_C_url = new DigestURL((String) doc_B.getFieldValue(CollectionSchema.canonical_s.getSolrFieldName()));
-                        byte[] doc_B_id = ASCII.getBytes(((String) doc_B.getFieldValue(CollectionSchema.id.getSolrFieldName())));
-                        // we remove all references to B, because these become references to C
-                        if (segment.connectedCitation()) {
-                            ReferenceContainer<CitationReference> doc_A_ids = segment.urlCitation().remove(doc_B_id);
-                            if (doc_A_ids == null) {
-                                //System.out.println("*** document with canonical but no referrer: " + doc_B.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                                continue; // the document has a canonical tag but no referrer?
-                            }
-                            Iterator<CitationReference> doc_A_ids_iterator = doc_A_ids.entries();
-                            // for each of the referrer A of B, set A as a referrer of C
-                            while (doc_A_ids_iterator.hasNext()) {
-                                CitationReference doc_A_citation = doc_A_ids_iterator.next();
-                                segment.urlCitation().add(doc_C_url.hash(), doc_A_citation);
-                            }
-                        }
-                        patchquerycountcheck++;
-                        if (MemoryControl.shortStatus()) {
-                            ConcurrentLog.warn("CollectionConfiguration", "terminated canonical collection during postprocessing because of short memory");
-                            break;
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    ConcurrentLog.logException(e);
-                } catch (SpaceExceededException e) {
-                    ConcurrentLog.logException(e);
-                }
-                if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
-                
-                // do the citation rank computation
-                if (collection1hosts.get(host) <= 0) continue;
-                // select all documents for each host
-                CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
-                int convergence_attempts = 0;
-                while (convergence_attempts++ < 30) {
-                    ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
-                    if (crh.convergenceStep()) break;
-                    if (MemoryControl.shortStatus()) {
-                        ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
-                        break;
-                    }
-                }
-                ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
-                // we have now the cr for all documents of a specific host; we store them for later use
-                Map<String, CRV> crn = crh.normalize();
-                //crh.log(crn);
-                rankings.putAll(crn); // accumulate this here for usage in document update later
-                if (MemoryControl.shortStatus()) {
-                    ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
-                    break;
-                }
-                countcheck++;
-            }
-            if (collection1hosts.size() != countcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
-        } catch (final IOException e2) {
-            ConcurrentLog.logException(e2);
-            collection1hosts = new ClusteredScoreMap<String>(true);
-        }
+		final List<String> hosts = new ArrayList<String>(collection1hosts.size());
+		for (String host: collection1hosts.keyList(true)) hosts.add(host);
+		if (hosts.isEmpty()) return rankings;
+		final File cacheFile = loadCitationRankCache(segment);
+		postprocessingActivity = "patching canonical citations for " + hosts.size() + " hosts";
+		ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+		for (final String host: hosts) {
+			try {
+				patchCanonicalCitations(segment, collectionConnector, host);
+			} catch (final IOException e) {
+				ConcurrentLog.logException(e);
+			}
+		}
+		final int concurrency = Math.max(1, Math.min(hosts.size(), Runtime.getRuntime().availableProcessors()));
+		postprocessingActivity = "collecting cr for " + hosts.size() + " hosts, concurrency = " + concurrency;
+		ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+		final AtomicInteger next = new AtomicInteger(0);
+		final AtomicInteger countcheck = new AtomicInteger(0);
+		final AtomicInteger unchanged = new AtomicInteger(0);
+		final AtomicBoolean terminated = new AtomicBoolean(false);
+		final ExecutorService executor = Executors.newFixedThreadPool(concurrency, new NamePrefixThreadFactory("CollectionConfiguration.postprocessing.citation"));
+		for (int i = 0; i < concurrency; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					int h;
+					while (!terminated.get() && (h = next.getAndIncrement()) < hosts.size()) {
+						final String host = hosts.get(h);
+						if (collection1hosts.get(host) <= 0) continue;
+						final Map<String, CRV> crn = rankHost(segment, rrCache, host, unchanged, terminated);
+						if (crn == null) continue;
+						rankings.putAll(crn); // accumulate this here for usage in document update later
+						if (MemoryControl.shortStatus()) {
+							ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
+							terminated.set(true);
+							return;
+						}
+						countcheck.incrementAndGet();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				postprocessingActivity = "collecting cr for " + hosts.size() + " hosts, " + countcheck + " computed";
+			}
+		} catch (final InterruptedException e) {
+			terminated.set(true);
+			executor.shutdownNow();
+		}
+		ConcurrentLog.info("CollectionConfiguration", "cr computed for " + countcheck + " hosts, " + unchanged + " hosts with unchanged documents, " + citationRankCache.size() + " cached document ranks");
+		if (hosts.size() != countcheck.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + hosts.size() + ", counted=" + countcheck);
+		if (cacheFile != null) try {
+			citationRankCache.save(cacheFile);
+		} catch (final IOException e) {
+			ConcurrentLog.warn("CollectionConfiguration", "cannot save citation rank cache " + cacheFile + ": " + e.getMessage());
+		}
 		return rankings;
 	}
 
+	/**
+	 * Load the citation rank cache of the segment if the cache holds the values of another segment or none.
+	 * @param segment Solr segment
+	 * @return the file of the cache or null if the segment has no location
+	 */
+	private static File loadCitationRankCache(final Segment segment) {
+		final File location = segment.getLocation();
+		if (location == null) return null;
+		final File cacheFile = new File(location, CitationRankCache.FILE_NAME);
+		synchronized (citationRankCache) {
+			if (cacheFile.equals(citationRankCacheFile)) return cacheFile;
+			citationRankCache.clear();
+			citationRankCacheFile = cacheFile;
+			if (cacheFile.exists()) try {
+				citationRankCache.load(cacheFile);
+				ConcurrentLog.info("CollectionConfiguration", "loaded " + citationRankCache.size() + " document ranks from " + cacheFile);
+			} catch (final IOException e) {
+				ConcurrentLog.warn("CollectionConfiguration", "cannot load citation rank cache " + cacheFile + ": " + e.getMessage());
+				citationRankCache.clear();
+			}
+		}
+		return cacheFile;
+	}
+
+	/**
+	 * Patch the citation index for links with canonical tags.
+	 * This shall fulfill the following requirement:
+	 * If a document A links to B and B contains a 'canonical C', then the citation rank computation shall consider that A links to C and B does not link to C.
+	 * To do so, we first must collect all canonical links, find all references to them, get the anchor list of the documents and patch the citation reference of these links
+	 * @param segment Solr segment
+	 * @param collectionConnector default connector to the Solr segment
+	 * @param host the host which documents are patched
+	 * @throws IOException
+	 */
+	private static void patchCanonicalCitations(final Segment segment, final SolrConnector collectionConnector, final String host) throws IOException {
+		String patchquery = CollectionSchema.host_s.getSolrFieldName() + ":" + host + " AND " + CollectionSchema.canonical_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
+		long patchquerycount = collectionConnector.getCountByQuery("{!cache=false}" + patchquery);
+		BlockingQueue<SolrDocument> documents_with_canonical_tag = collectionConnector.concurrentDocumentsByQuery(patchquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, Long.MAX_VALUE, 20, 1, true,
+				CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.canonical_s.getSolrFieldName());
+		SolrDocument doc_B;
+		int patchquerycountcheck = 0;
+		try {
+			while ((doc_B = documents_with_canonical_tag.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+				// find all documents which link to the canonical doc
+				DigestURL doc_C_url = new DigestURL((String) doc_B.getFieldValue(CollectionSchema.canonical_s.getSolrFieldName()));
+				byte[] doc_B_id = ASCII.getBytes(((String) doc_B.getFieldValue(CollectionSchema.id.getSolrFieldName())));
+				// we remove all references to B, because these become references to C
+				if (segment.connectedCitation()) {
+					ReferenceContainer<CitationReference> doc_A_ids = segment.urlCitation().remove(doc_B_id);
+					if (doc_A_ids == null) {
+						//System.out.println("*** document with canonical but no referrer: " + doc_B.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
+						continue; // the document has a canonical tag but no referrer?
+					}
+					Iterator<CitationReference> doc_A_ids_iterator = doc_A_ids.entries();
+					// for each of the referrer A of B, set A as a referrer of C
+					while (doc_A_ids_iterator.hasNext()) {
+						CitationReference doc_A_citation = doc_A_ids_iterator.next();
+						segment.urlCitation().add(doc_C_url.hash(), doc_A_citation);
+					}
+				}
+				patchquerycountcheck++;
+				if (MemoryControl.shortStatus()) {
+					ConcurrentLog.warn("CollectionConfiguration", "terminated canonical collection during postprocessing because of short memory");
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			ConcurrentLog.logException(e);
+		} catch (SpaceExceededException e) {
+			ConcurrentLog.logException(e);
+		}
+		if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
+	}
+
+	/**
+	 * Do the citation rank computation for all documents of a host
+	 * @param segment Solr segment
+	 * @param rrCache reference report cache for the segment
+	 * @param host the host name
+	 * @param unchanged counter of the hosts with the same documents as in the latest run
+	 * @param terminated set if the computation was terminated because of short memory
+	 * @return the normalized ranking of the documents of the host, or null if the computation was terminated
+	 */
+	private static Map<String, CRV> rankHost(final Segment segment, final ReferenceReportCache rrCache, final String host,
+			final AtomicInteger unchanged, final AtomicBoolean terminated) {
+		// select all documents for each host
+		CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
+		final int known = citationRankCache.warmStart(host, crh.crt);
+		if (known == crh.cr_host_count && citationRankCache.unchanged(host, crh.fingerprint)) {
+			// the link structure of the host is the same as in the latest run, its values are still valid
+			unchanged.incrementAndGet();
+			return crh.normalize();
+		}
+		int convergence_attempts = 0;
+		while (convergence_attempts++ < 30) {
+			ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
+			if (crh.convergenceStep()) break;
+			if (MemoryControl.shortStatus()) {
+				ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
+				terminated.set(true);
+				return null;
+			}
+		}
+		ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps, " + known + " of " + crh.cr_host_count + " documents from latest run");
+		citationRankCache.put(host, crh.crt, crh.fingerprint);
+		// we have now the cr for all documents of a specific host; we store them for later use
+		return crh.normalize();
+	}
+
 	/**
 	 * Search in the segment any document having the same url as doc but with the opposite secure/unsecure (https or http) version of the protocol.
 	 * Then updates accordingly the document http_unique_b field.
@@ -1958,6 +2091,8 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         private final Segment segment;
         private final Map<String, double[]> crt;
         private final int cr_host_count;
+        /** a fingerprint of the ids and load dates of the documents; it changes when a document is added, removed or loaded again */
+        private final long fingerprint;
         private final RowHandleMap internal_links_counter;
         private double damping;
         private int converge_eq_factor;
@@ -1969,12 +2104,18 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             this.converge_eq_factor = (int) Math.pow(10.0d, converge_digits);
             SolrConnector connector = segment.fulltext().getDefaultConnector();
             this.crt = new ConcurrentHashMap<String, double[]>();
+            long fp = 0;
             try {
                 // select all documents for each host
-                BlockingQueue<String> ids = connector.concurrentIDsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1);
-                String id;
-                while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) {
+                BlockingQueue<SolrDocument> docs = connector.concurrentDocumentsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1, false,
+                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.load_date_dt.getSolrFieldName());
+                SolrDocument doc;
+                while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                    final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                    if (id == null) continue;
                     this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
+                    final Object loaddate = doc.getFieldValue(CollectionSchema.load_date_dt.getSolrFieldName());
+                    fp += mix(id.hashCode() * 31L + (loaddate instanceof Date ? ((Date) loaddate).getTime() : 0L)); // the sum does not depend on the order
                     if (MemoryControl.shortStatus()) {
                         ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
                         break;
@@ -1982,11 +2123,18 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 }
             } catch (final InterruptedException e2) {
             }
+            this.fingerprint = fp;
             this.cr_host_count = this.crt.size();
             double initval = 1.0d / cr_host_count;
             for (Map.Entry<String, double[]> entry: this.crt.entrySet()) entry.getValue()[0] = initval;
             this.internal_links_counter = new RowHandleMap(12, Base64Order.enhancedCoder, 8, 100, "internal_links_counter");
         }
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h;
+        }
         /**
          * produce a map from IDs to CRV records, normalization entries containing the values that are stored to solr.
          * @return
@@ -0,0 +1,153 @@
+// SnippetStore.java
+// (C) 2026 by the YaCy contributors
+// first published 19.10.2026 on http://yacy.net
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.snippet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.document.SnippetSentences;
+import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.blob.Compressor;
+
+/**
+ * Index-time storage of the document sentences for snippet computation, keyed by the url hash.
+ * The sentences are written by the indexer from the {@link net.yacy.document.Condenser} of each
+ * document and are read by {@link TextSnippet} instead of loading and parsing the document again.
+ * The entries are compressed by the blob store.
+ */
+public class SnippetStore {
+
+    /** the name of the directory of the blob files inside the segment */
+    public static final String DIRECTORY_NAME = "snippet.store";
+
+    private static final ConcurrentLog log = new ConcurrentLog("SnippetStore");
+
+    private static final int BACKEND_BUFFER_SIZE = 1024 * 1024 * 2;
+    private static final int COMPRESSOR_BUFFER_SIZE = 1024 * 1024 * 2;
+    private static final long LOCK_TIMEOUT = 2000;
+
+    private final Compressor blob;
+    private final AtomicLong hits, misses, writes;
+
+    /**
+     * open the store
+     * @param location the directory of the blob files
+     * @throws IOException
+     */
+    public SnippetStore(final File location) throws IOException {
+        if (!location.exists()) location.mkdirs();
+        final ArrayStack backend = new ArrayStack(location, "snippet", Base64Order.enhancedCoder, 12, BACKEND_BUFFER_SIZE, false, true);
+        this.blob = new Compressor(backend, COMPRESSOR_BUFFER_SIZE, LOCK_TIMEOUT, Deflater.BEST_SPEED);
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.writes = new AtomicLong(0);
+    }
+
+    /**
+     * store the sentences of a document, replacing a previous entry
+     * @param urlhash the url hash of the document
+     * @param sentences the sentences of the document; if there are none, a previous entry is removed
+     */
+    public void put(final byte[] urlhash, final SnippetSentences sentences) {
+        if (sentences == null || sentences.size() == 0) {
+            // the new version of the document has no sentences, the sentences of an older version must not be used
+            delete(urlhash);
+            return;
+        }
+        try {
+            this.blob.delete(urlhash);
+            this.blob.insert(urlhash, sentences.encode());
+            this.writes.incrementAndGet();
+        } catch (final IOException e) {
+            log.warn("cannot store sentences: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param urlhash the url hash of the document
+     * @return the sentences of the document or null if the document is not in the store
+     */
+    public SnippetSentences get(final byte[] urlhash) {
+        byte[] b = null;
+        try {
+            b = this.blob.get(urlhash);
+        } catch (final IOException e) {
+            log.warn("cannot read sentences: " + e.getMessage());
+        } catch (final SpaceExceededException e) {
+            log.warn("cannot read sentences: " + e.getMessage());
+        }
+        if (b == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        try {
+            final SnippetSentences sentences = SnippetSentences.decode(b);
+            this.hits.incrementAndGet();
+            return sentences;
+        } catch (final IOException e) {
+            log.warn("removing broken sentences entry: " + e.getMessage());
+            delete(urlhash);
+            this.misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * @param urlhash the url hash of the document
+     */
+    public void delete(final byte[] urlhash) {
+        try {
+            this.blob.delete(urlhash);
+        } catch (final IOException e) {
+            log.warn("cannot delete sentences: " + e.getMessage());
+        }
+    }
+
+    public int size() {
+        return this.blob.size();
+    }
+
+    public long hits() {
+        return this.hits.get();
+    }
+
+    public long misses() {
+        return this.misses.get();
+    }
+
+    public long writes() {
+        return this.writes.get();
+    }
+
+    public void clear() throws IOException {
+        this.blob.clear();
+    }
+
+    public void close() {
+        this.blob.close(true);
+    }
+
+}
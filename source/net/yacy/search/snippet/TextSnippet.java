@@ -49,6 +49,7 @@ import net.yacy.document.Document;
 import net.yacy.document.Parser;
 import net.yacy.document.SentenceReader;
 import net.yacy.document.SnippetExtractor;
+import net.yacy.document.SnippetSentences;
 import net.yacy.document.WordTokenizer;
 import net.yacy.document.parser.html.CharacterCoding;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
@@ -64,6 +65,9 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
 	/** The maximum number of sinppet entries in the cache */
     private static final int MAX_CACHE = 1000;
 
+    /** The maximum number of sentences taken from the snippet store for the snippet computation */
+    private static final int MAX_STORED_CANDIDATES = 32;
+
 
     /**
      * <code>\\A[^\\p{L}\\p{N}].+</code>
@@ -205,6 +209,7 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         Set<String> remainingTerms = new HashSet<>(queryTerms);
         SentenceReader sentences = null;
         List<StringBuilder> firstSentencesList = null;
+        SnippetSentences storedSentences = null;
         
         // try to get the snippet from metadata
         removeMatchingTerms(row.url().toTokens(), remainingTerms);
@@ -227,6 +232,11 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
             if (solrText != null && solrText.length() > 0) { // TODO: instead of join with desc, we could check if snippet already complete and skip further computation
                 // compute sentences from solr query
                	sentences = new SentenceReader(firstSentencesList, solrText, pre);
+            } else if ((storedSentences = storedSentences(url)) != null) {
+                // get the sentences which may contain the query words from the snippet store
+                final List<StringBuilder> candidates = firstSentencesList == null ? new ArrayList<StringBuilder>() : firstSentencesList;
+                candidates.addAll(storedSentences.candidates(queryhashes, MAX_STORED_CANDIDATES));
+                sentences = new SentenceReader(candidates, "", pre);
             } else if (net.yacy.crawler.data.Cache.has(url.hash())) {
                 // get the sentences from the cache
                 final Request request = loader == null ? null : loader.request(url, true, reindexing);
@@ -316,6 +326,12 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         }
         sentences = null; // we don't need this here any more
 
+        if (storedSentences != null && !storedSentences.isTruncated()) {
+            // the stored sentences are the complete text of the document, parsing it again would not find more
+            init(url, null, false, ResultClass.ERROR_NO_MATCH, "no matching snippet found", beginTime);
+            return;
+        }
+
         // try to load the resource from the cache
         Response response = null;
         try {
@@ -387,6 +403,17 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         init(url, textline, false, source, null, beginTime);
     }
 
+    /**
+     * @param url the url of the document
+     * @return the sentences of the document from the snippet store of the index, or null if not available
+     */
+    private static SnippetSentences storedSentences(final DigestURL url) {
+        final Switchboard sb = Switchboard.getSwitchboard();
+        if (sb == null || sb.index == null) return null;
+        final SnippetStore store = sb.index.snippetStore();
+        return store == null ? null : store.get(url.hash());
+    }
+
     /**
      * Init a snippet line for urlhash
      *
@@ -93,6 +93,7 @@ public class serverObjects implements Serializable, Cloneable {
 
     private final static char BOM = '\uFEFF'; // ByteOrderMark character that may appear at beginnings of Strings (Browser may append that)
     private final MultiMapSolrParams map;
+    private transient Map<String, byte[]> files; // binary file parts which are not transformed into strings
     
     public serverObjects() {
         super();
@@ -238,6 +239,24 @@ public class serverObjects implements Serializable, Cloneable {
         put(key, UTF8.String(value));
     }
 
+    /**
+     * store the content of a binary file part without transforming it into a string
+     * @param key the name of the form field
+     * @param value the content of the file
+     */
+    public synchronized void putFile(final String key, final byte[] value) {
+        if (this.files == null) this.files = new HashMap<String, byte[]>();
+        this.files.put(key, value);
+    }
+
+    /**
+     * @param key the name of the form field
+     * @return the content of a binary file part which was stored with {@link #putFile(String, byte[])}, or null
+     */
+    public synchronized byte[] getFile(final String key) {
+        return this.files == null ? null : this.files.get(key);
+    }
+
     public void put(final String key, final String[] values) {
         if (key == null) {
             // this does nothing
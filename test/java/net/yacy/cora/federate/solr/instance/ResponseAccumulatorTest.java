@@ -0,0 +1,210 @@
+/**
+ *  ResponseAccumulatorTest
+ *  Copyright 2026 by the YaCy contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.federate.solr.instance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+public class ResponseAccumulatorTest {
+
+    private static SolrDocument doc(final String id, final float score) {
+        final SolrDocument doc = new SolrDocument();
+        doc.setField("id", id);
+        doc.setField("score", score);
+        return doc;
+    }
+
+    private static QueryResponse response(final long numFound, final SolrDocument... docs) {
+        final SolrDocumentList list = new SolrDocumentList();
+        for (final SolrDocument doc: docs) list.add(doc);
+        list.setNumFound(numFound);
+        final NamedList<Object> header = new SimpleOrderedMap<Object>();
+        header.add("status", 0);
+        header.add("QTime", (int) numFound);
+        final NamedList<Object> response = new NamedList<Object>();
+        response.add("responseHeader", header);
+        response.add("response", list);
+        final QueryResponse rsp = new QueryResponse();
+        rsp.setResponse(response);
+        return rsp;
+    }
+
+    private static List<String> ids(final SolrDocumentList docs) {
+        final List<String> ids = new ArrayList<String>();
+        for (final SolrDocument doc: docs) ids.add((String) doc.getFieldValue("id"));
+        return ids;
+    }
+
+    /**
+     * Test that the shard query asks for the whole window, the score and more facet terms.
+     */
+    @Test
+    public void testShardParams() {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, "*:*");
+        params.set(CommonParams.START, 20);
+        params.set(CommonParams.ROWS, 10);
+        params.set(CommonParams.FL, "id,sku");
+        params.set(FacetParams.FACET, true);
+        params.set(FacetParams.FACET_LIMIT, 10);
+        params.set(FacetParams.FACET_OFFSET, 5);
+        params.set(FacetParams.FACET_MINCOUNT, 3);
+        final ModifiableSolrParams shard = ResponseAccumulator.shardParams(params);
+        assertEquals(0, shard.getInt(CommonParams.START).intValue());
+        assertEquals(30, shard.getInt(CommonParams.ROWS).intValue());
+        assertEquals("id,sku,score", shard.get(CommonParams.FL));
+        assertEquals(30, shard.getInt(FacetParams.FACET_LIMIT).intValue());
+        assertEquals(0, shard.getInt(FacetParams.FACET_OFFSET).intValue());
+        assertEquals(1, shard.getInt(FacetParams.FACET_MINCOUNT).intValue());
+        assertEquals(20, params.getInt(CommonParams.START).intValue()); // the original parameters are not changed
+    }
+
+    /**
+     * Test that the documents are merged by score, duplicates are removed and the window is cut out.
+     */
+    @Test
+    public void testMergeByScore() {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.START, 1);
+        params.set(CommonParams.ROWS, 3);
+        params.set(CommonParams.FL, "id");
+        final List<QueryResponse> shards = new ArrayList<QueryResponse>();
+        shards.add(response(10, doc("a", 9f), doc("c", 5f), doc("e", 1f), doc("f", 0.5f)));
+        shards.add(response(20, doc("b", 7f), doc("c", 5f), doc("d", 3f)));
+        final QueryResponse merged = ResponseAccumulator.combineResponses(shards, params);
+        final SolrDocumentList docs = merged.getResults();
+        assertEquals("[b, c, d]", ids(docs).toString());
+        assertEquals(29, docs.getNumFound());
+        assertEquals(1, docs.getStart());
+        assertNull(docs.get(0).getFieldValue("score")); // the score was not requested
+        assertEquals(20, ((Number) merged.getHeader().get("QTime")).intValue());
+    }
+
+    /**
+     * Test that a field sort is applied with missing values at the end.
+     */
+    @Test
+    public void testMergeBySortField() {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.SORT, "size_i desc, id asc");
+        final SolrDocument a = doc("a", 1f), b = doc("b", 1f), c = doc("c", 1f), d = doc("d", 1f);
+        a.setField("size_i", 5);
+        b.setField("size_i", 10);
+        d.setField("size_i", 5);
+        final List<QueryResponse> shards = new ArrayList<QueryResponse>();
+        shards.add(response(2, b, a));
+        shards.add(response(2, d, c));
+        final SolrDocumentList docs = ResponseAccumulator.combineResponses(shards, params).getResults();
+        assertEquals("[b, a, d, c]", ids(docs).toString());
+        assertFalse(docs.get(0).getFieldValue("score") == null); // the score is not removed if not sorted by score
+    }
+
+    /**
+     * Test that the shards return the sort fields and the id and that they are removed from the merged
+     * documents if they were not requested.
+     */
+    @Test
+    public void testSortFieldsNotRequested() {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.SORT, "size_i desc, score desc");
+        params.set(CommonParams.FL, "sku");
+        assertEquals("sku,size_i,score,id", ResponseAccumulator.shardParams(params).get(CommonParams.FL));
+        params.set(CommonParams.FL, "sku,size_*");
+        assertEquals("sku,size_*,score,id", ResponseAccumulator.shardParams(params).get(CommonParams.FL));
+        params.remove(CommonParams.FL);
+        assertEquals("*,score", ResponseAccumulator.shardParams(params).get(CommonParams.FL));
+        params.set(CommonParams.FL, "id,size_i,score");
+        assertEquals("id,size_i,score", ResponseAccumulator.shardParams(params).get(CommonParams.FL)); // nothing is missing
+
+        params.set(CommonParams.FL, "sku");
+        final SolrDocument a = doc("a", 3f), b = doc("b", 2f), c = doc("c", 1f);
+        a.setField("size_i", 5);
+        b.setField("size_i", 10);
+        c.setField("size_i", 5);
+        a.setField("sku", "A");
+        b.setField("sku", "B");
+        c.setField("sku", "C");
+        final List<QueryResponse> shards = new ArrayList<QueryResponse>();
+        shards.add(response(2, b, c));
+        shards.add(response(1, a));
+        final SolrDocumentList docs = ResponseAccumulator.combineResponses(shards, params).getResults();
+        assertEquals(3, docs.size());
+        final List<Object> skus = new ArrayList<Object>();
+        for (final SolrDocument doc: docs) {
+            skus.add(doc.getFieldValue("sku"));
+            assertEquals(1, doc.getFieldNames().size()); // only the requested field is returned
+        }
+        assertEquals("[B, A, C]", skus.toString());
+    }
+
+    private static QueryResponse facets(final Object... termCounts) {
+        final QueryResponse rsp = response(0);
+        final NamedList<Object> terms = new NamedList<Object>();
+        for (int i = 0; i < termCounts.length; i += 2) terms.add((String) termCounts[i], termCounts[i + 1]);
+        final NamedList<Object> fields = new SimpleOrderedMap<Object>();
+        fields.add("host_s", terms);
+        final NamedList<Object> queries = new SimpleOrderedMap<Object>();
+        queries.add("fresh", 2);
+        final NamedList<Object> facet_counts = new SimpleOrderedMap<Object>();
+        facet_counts.add("facet_queries", queries);
+        facet_counts.add("facet_fields", fields);
+        rsp.getResponse().add("facet_counts", facet_counts);
+        return rsp;
+    }
+
+    /**
+     * Test that facet counts are summed, sorted by count and limited.
+     */
+    @Test
+    public void testMergeFacets() {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(FacetParams.FACET, true);
+        params.set(FacetParams.FACET_LIMIT, 2);
+        params.set(FacetParams.FACET_MINCOUNT, 2);
+        final List<QueryResponse> shards = new ArrayList<QueryResponse>();
+        shards.add(facets("x.org", 5, "y.org", 4, "z.org", 1));
+        shards.add(facets("z.org", 6, "w.org", 1));
+        final QueryResponse merged = ResponseAccumulator.combineResponses(shards, params);
+        @SuppressWarnings("unchecked")
+        final NamedList<Object> facet_counts = (NamedList<Object>) merged.getResponse().get("facet_counts");
+        @SuppressWarnings("unchecked")
+        final NamedList<Object> terms = (NamedList<Object>) ((NamedList<Object>) facet_counts.get("facet_fields")).get("host_s");
+        assertEquals(2, terms.size());
+        assertEquals("z.org", terms.getName(0));
+        assertEquals(7, terms.getVal(0));
+        assertEquals("x.org", terms.getName(1));
+        assertEquals(4, ((NamedList<?>) facet_counts.get("facet_queries")).get("fresh"));
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ *  DNSPrefetcherTest.java
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.cora.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the DNSPrefetcher class, using a resolver stand-in instead of the network.
+ */
+public class DNSPrefetcherTest {
+
+    /** resolves hosts named "hostN.example" to 10.0.0.N, all other hosts are unknown */
+    private static class TestResolver implements DNSPrefetcher.Resolver {
+        private final AtomicInteger calls = new AtomicInteger(0);
+        private final long delay;
+        private TestResolver(final long delay) {
+            this.delay = delay;
+        }
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            this.calls.incrementAndGet();
+            if (this.delay > 0) try {Thread.sleep(this.delay);} catch (final InterruptedException e) {}
+            if (host.startsWith("broken")) throw new IllegalStateException("resolver not available");
+            if (!host.startsWith("host")) throw new UnknownHostException(host);
+            final int n = Integer.parseInt(host.substring(4, host.indexOf('.')));
+            return InetAddress.getByAddress(host, new byte[]{10, 0, 0, (byte) n});
+        }
+    }
+
+    /** records the lookup results */
+    private static class TestCache implements DNSPrefetcher.Cache {
+        private final Map<String, String> map = new ConcurrentHashMap<String, String>();
+        @Override
+        public void put(final String host, final InetAddress ip) {
+            this.map.put(host, ip == null ? "" : ip.getHostAddress());
+        }
+        @Override
+        public void remove(final String host) {
+            this.map.remove(host);
+        }
+    }
+
+    private static void waitFor(final DNSPrefetcher prefetcher, final String... hosts) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 5000;
+        for (final String host: hosts) {
+            while (!prefetcher.isResolved(host) && System.currentTimeMillis() < timeout) Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Test that hosts are resolved in batches, duplicates are resolved only once
+     * and the results reach the cache.
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        final TestResolver resolver = new TestResolver(0);
+        final TestCache cache = new TestCache();
+        final DNSPrefetcher prefetcher = new DNSPrefetcher(resolver, cache, 4, 8, 100, 60000, 60000, 3000);
+        try {
+            for (int i = 1; i <= 20; i++) prefetcher.prefetch("host" + i + ".example");
+            for (int i = 1; i <= 20; i++) prefetcher.prefetch("HOST" + i + ".example");
+            assertFalse(prefetcher.prefetch("127.0.0.1"));
+            assertFalse(prefetcher.prefetch(null));
+            for (int i = 1; i <= 20; i++) waitFor(prefetcher, "host" + i + ".example");
+            assertEquals(20, prefetcher.resolved());
+            assertTrue(resolver.calls.get() <= 40); // a host is requeued only if its first lookup finished already
+            assertEquals("10.0.0.7", cache.map.get("host7.example"));
+            assertEquals("10.0.0.7", prefetcher.get("Host7.example").getHostAddress());
+            assertTrue(prefetcher.batches() <= 20);
+
+            // known hosts are not queued again
+            final int calls = resolver.calls.get();
+            assertFalse(prefetcher.prefetch("host3.example"));
+            assertEquals(calls, resolver.calls.get());
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    /**
+     * Test negative caching and the expiry of lookup results.
+     */
+    @Test
+    public void testNegativeCacheAndExpiry() throws Exception {
+        final TestResolver resolver = new TestResolver(0);
+        final TestCache cache = new TestCache();
+        final DNSPrefetcher prefetcher = new DNSPrefetcher(resolver, cache, 2, 8, 100, 200, 200, 3000);
+        try {
+            assertTrue(prefetcher.prefetch("unknown.example"));
+            assertTrue(prefetcher.prefetch("host1.example"));
+            waitFor(prefetcher, "unknown.example", "host1.example");
+            assertTrue(prefetcher.isResolved("unknown.example"));
+            assertNull(prefetcher.get("unknown.example"));
+            assertEquals("", cache.map.get("unknown.example"));
+            assertEquals(1, prefetcher.unknown());
+            assertFalse(prefetcher.prefetch("unknown.example"));
+
+            Thread.sleep(300);
+            prefetcher.expire();
+            assertEquals(0, prefetcher.size());
+            assertEquals(2, prefetcher.expired());
+            assertTrue(cache.map.isEmpty());
+            assertTrue(prefetcher.prefetch("unknown.example"));
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    /**
+     * Test that slow lookups time out and are not cached.
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        final TestResolver resolver = new TestResolver(2000);
+        final TestCache cache = new TestCache();
+        final DNSPrefetcher prefetcher = new DNSPrefetcher(resolver, cache, 2, 8, 100, 60000, 60000, 100);
+        try {
+            prefetcher.prefetch("host1.example");
+            final long timeout = System.currentTimeMillis() + 5000;
+            while (prefetcher.timeouts() == 0 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(1, prefetcher.timeouts());
+            assertFalse(prefetcher.isResolved("host1.example"));
+            assertTrue(cache.map.isEmpty());
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    /**
+     * Test that errors other than an unknown host are not cached.
+     */
+    @Test
+    public void testTransientError() throws Exception {
+        final TestResolver resolver = new TestResolver(0);
+        final TestCache cache = new TestCache();
+        final DNSPrefetcher prefetcher = new DNSPrefetcher(resolver, cache, 2, 8, 100, 60000, 60000, 3000);
+        try {
+            assertTrue(prefetcher.prefetch("broken.example"));
+            final long timeout = System.currentTimeMillis() + 5000;
+            while (prefetcher.errors() == 0 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(1, prefetcher.errors());
+            assertEquals(0, prefetcher.unknown());
+            assertFalse(prefetcher.isResolved("broken.example"));
+            assertTrue(cache.map.isEmpty());
+            // the host can be queued again as soon as the failed lookup is finished
+            boolean queued = false;
+            while (!queued && System.currentTimeMillis() < timeout) {
+                queued = prefetcher.prefetch("broken.example");
+                if (!queued) Thread.sleep(10);
+            }
+            assertTrue(queued);
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    /**
+     * Test that a batch keeps the time-out when all lookup threads are busy.
+     */
+    @Test
+    public void testBusyThreads() throws Exception {
+        final TestResolver resolver = new TestResolver(2000);
+        final TestCache cache = new TestCache();
+        final DNSPrefetcher prefetcher = new DNSPrefetcher(resolver, cache, 1, 4, 100, 60000, 60000, 100);
+        try {
+            for (int i = 1; i <= 4; i++) prefetcher.prefetch("host" + i + ".example");
+            final long timeout = System.currentTimeMillis() + 5000;
+            while (prefetcher.timeouts() + prefetcher.dropped() < 4 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(4, prefetcher.timeouts() + prefetcher.dropped());
+            // the lookups are not executed by the dispatcher, which would wait for the slow resolver
+            assertTrue(prefetcher.averageBatchTime() < 1000);
+            assertTrue(cache.map.isEmpty());
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+}
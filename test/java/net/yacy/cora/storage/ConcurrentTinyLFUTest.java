@@ -0,0 +1,127 @@
+/**
+ *  ConcurrentTinyLFUTest.java
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.cora.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+
+/**
+ * Unit tests for the ConcurrentTinyLFU class.
+ */
+public class ConcurrentTinyLFUTest {
+
+    /**
+     * Test basic map operations, also with byte[] keys.
+     */
+    @Test
+    public void testMapOperations() {
+        final ARC<String, String> a = new ConcurrentTinyLFU<String, String>(100);
+        assertNull(a.put("a", "1"));
+        assertEquals("1", a.put("a", "2"));
+        assertEquals("2", a.putIfAbsent("a", "3"));
+        a.insertIfAbsent("b", "4");
+        assertTrue(a.containsKey("b"));
+        assertEquals(2, a.size());
+        assertEquals("4", a.remove("b"));
+        assertNull(a.get("b"));
+        a.clear();
+        assertEquals(0, a.size());
+
+        final ARC<byte[], byte[]> b = new ConcurrentTinyLFU<byte[], byte[]>(100);
+        b.insert(UTF8.getBytes("key"), UTF8.getBytes("value"));
+        assertArrayEquals(UTF8.getBytes("value"), b.get(UTF8.getBytes("key")));
+    }
+
+    /**
+     * A one-off scan over many keys must not flush frequently used entries.
+     */
+    @Test
+    public void testScanResistance() {
+        final int size = 1000;
+        final ConcurrentTinyLFU<String, String> cache = new ConcurrentTinyLFU<String, String>(size);
+        for (int i = 0; i < size / 2; i++) cache.insert("hot" + i, "v");
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < size / 2; i++) cache.get("hot" + i);
+        }
+        for (int i = 0; i < size * 20; i++) cache.insert("scan" + i, "v");
+        int hotRemaining = 0;
+        for (int i = 0; i < size / 2; i++) if (cache.containsKey("hot" + i)) hotRemaining++;
+        assertTrue("hot entries remaining: " + hotRemaining, hotRemaining > size * 4 / 10);
+        assertTrue(cache.size() <= size);
+        assertTrue(cache.evictions() > 0);
+    }
+
+    /**
+     * The sum of the weights must not exceed the maximum weight.
+     */
+    @Test
+    public void testWeight() {
+        final ConcurrentTinyLFU<String, byte[]> cache = new ConcurrentTinyLFU<String, byte[]>(10000, 100, new ConcurrentTinyLFU.Weigher<String, byte[]>() {
+            @Override
+            public int weigh(final String key, final byte[] value) {
+                return value.length;
+            }
+        });
+        for (int i = 0; i < 1000; i++) cache.insert("k" + i, new byte[100]);
+        assertTrue(cache.weightedSize() <= 10000);
+        cache.insert("large", new byte[20000]);
+        assertNull(cache.get("large"));
+        assertTrue(cache.misses() > 0);
+    }
+
+    /**
+     * Concurrent reads and writes must keep the cache within its bounds.
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final int size = 500;
+        final ConcurrentTinyLFU<Integer, Integer> cache = new ConcurrentTinyLFU<Integer, Integer>(size);
+        final AtomicInteger errors = new AtomicInteger(0);
+        final Thread[] t = new Thread[8];
+        for (int n = 0; n < t.length; n++) {
+            final int tn = n;
+            t[n] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        final int key = (i * (tn + 1)) % 2000;
+                        cache.put(key, key);
+                        final Integer v = cache.get(key);
+                        if (v != null && v.intValue() != key) errors.incrementAndGet();
+                        if (i % 100 == 0) cache.remove(key);
+                    }
+                }
+            };
+            t[n].start();
+        }
+        for (final Thread thread: t) thread.join();
+        assertEquals(0, errors.get());
+        assertTrue(cache.size() <= size);
+        assertEquals(cache.size(), cache.weightedSize());
+    }
+
+}
@@ -0,0 +1,70 @@
+package net.yacy.cora.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+
+public class MetricsTest {
+
+    /**
+     * Test that the latency histogram sorts the durations into the buckets
+     */
+    @Test
+    public void testLatency() {
+        final Metrics.Latency latency = Metrics.latency("test_latency_seconds", "test");
+        assertSame(latency, Metrics.latency("test_latency_seconds", "test"));
+        latency.update(500); // 0.5 microseconds
+        latency.update(3000); // 3 microseconds
+        latency.updateMillis(10);
+        latency.update(Long.MAX_VALUE / 2);
+        assertEquals(4, latency.count());
+        assertEquals(1000L, latency.quantile(0.25));
+        assertEquals(4000L, latency.quantile(0.5));
+        assertEquals(16384000L, latency.quantile(0.75));
+        assertEquals(Long.MAX_VALUE, latency.quantile(1.0));
+    }
+
+    /**
+     * Test the text exposition format
+     */
+    @Test
+    public void testWrite() throws Exception {
+        Metrics.counter(Metrics.name("test_requests_total", "kind", "a\"b"), "requests").inc(3);
+        Metrics.counter(Metrics.name("test_requests_total", "kind", "c"), null).inc();
+        Metrics.latency(Metrics.name("test_stage_seconds", "stage", "x"), "stages").updateMillis(1);
+        Metrics.gauge("test_gauge", "a gauge", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return 1;
+            }
+        });
+        Metrics.gauge("test_gauge", "a gauge", new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return 2.5;
+            }
+        });
+        final StringBuilder sb = new StringBuilder();
+        Metrics.write(sb);
+        final String text = sb.toString();
+
+        assertTrue(text.contains("# HELP test_requests_total requests\n# TYPE test_requests_total counter\n"));
+        assertTrue(text.contains("test_requests_total{kind=\"a\\\"b\"} 3\n"));
+        assertTrue(text.contains("test_requests_total{kind=\"c\"} 1\n"));
+        assertTrue(text.contains("# TYPE test_stage_seconds histogram\n"));
+        assertTrue(text.contains("test_stage_seconds_bucket{stage=\"x\",le=\"5.12E-4\"} 0\n"));
+        assertTrue(text.contains("test_stage_seconds_bucket{stage=\"x\",le=\"0.001024\"} 1\n"));
+        assertTrue(text.contains("test_stage_seconds_bucket{stage=\"x\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("test_stage_seconds_sum{stage=\"x\"} 0.001\n"));
+        assertTrue(text.contains("test_stage_seconds_count{stage=\"x\"} 1\n"));
+        assertTrue(text.contains("test_gauge 2.5\n"));
+        assertFalse(text.contains("test_gauge 1\n"));
+        // the samples of a family are written together
+        assertEquals(text.indexOf("# TYPE test_requests_total"), text.lastIndexOf("# TYPE test_requests_total"));
+    }
+}
@@ -0,0 +1,88 @@
+// RobotsTxtRulesTest.java
+// -------------------------------------
+// part of YACY
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.crawler.robots;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the RobotsTxtRules class.
+ */
+public class RobotsTxtRulesTest {
+
+    /**
+     * Prefix rules without wildcards must behave like the former startsWith() check of the deny path list.
+     */
+    @Test
+    public void testPrefixRules() {
+        final RobotsTxtRules rules = new RobotsTxtRules(null, Arrays.asList("/private", "/tmp/", "/cgi-bin/"));
+        assertTrue(rules.isDisallowed("/private"));
+        assertTrue(rules.isDisallowed("/private/file.html"));
+        assertTrue(rules.isDisallowed("/privateer"));
+        assertTrue(rules.isDisallowed("/tmp/x"));
+        assertFalse(rules.isDisallowed("/tmp"));
+        assertFalse(rules.isDisallowed("/"));
+        assertFalse(rules.isDisallowed("/public/index.html"));
+        assertEquals("/cgi-bin/", rules.disallowingRule("/cgi-bin/test.cgi"));
+
+        final RobotsTxtRules all = new RobotsTxtRules(null, Collections.singletonList(""));
+        assertTrue(all.isDisallowed("/"));
+        assertTrue(all.isDisallowed("/any"));
+
+        assertFalse(RobotsTxtRules.EMPTY.isDisallowed("/any"));
+    }
+
+    /**
+     * The most specific rule decides, allow wins over disallow with the same length.
+     */
+    @Test
+    public void testAllowPrecedence() {
+        final RobotsTxtRules rules = new RobotsTxtRules(Arrays.asList("/folder/public", "/page"), Arrays.asList("/folder/", "/page", "/"));
+        assertTrue(rules.isDisallowed("/folder/secret.html"));
+        assertFalse(rules.isDisallowed("/folder/public/index.html"));
+        assertFalse(rules.isDisallowed("/page.html"));
+        assertTrue(rules.isDisallowed("/other"));
+    }
+
+    /**
+     * Test the '*' wildcard and the '$' end anchor.
+     */
+    @Test
+    public void testWildcards() {
+        final RobotsTxtRules rules = new RobotsTxtRules(Arrays.asList("/*/allowed$"), Arrays.asList("/*.php$", "/search*q=", "/a**b"));
+        assertTrue(rules.isDisallowed("/index.php"));
+        assertTrue(rules.isDisallowed("/dir/index.php"));
+        assertFalse(rules.isDisallowed("/index.php?x=1"));
+        assertFalse(rules.isDisallowed("/index.phps"));
+        assertTrue(rules.isDisallowed("/search?q=test"));
+        assertTrue(rules.isDisallowed("/search/results?lang=en&q=test"));
+        assertFalse(rules.isDisallowed("/search?p=test"));
+        assertTrue(rules.isDisallowed("/a/x/b"));
+        assertFalse(rules.isDisallowed("/x/allowed"));
+        assertNull(rules.disallowingRule("/dir/allowed"));
+    }
+
+}
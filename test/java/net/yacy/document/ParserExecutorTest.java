@@ -0,0 +1,178 @@
+/**
+ *  ParserExecutorTest.java
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+
+/**
+ * Unit tests for the ParserExecutor class.
+ */
+public class ParserExecutorTest {
+
+    /** stands for a slow binary format parser */
+    private static class SlowParser extends AbstractParser {
+        public SlowParser() {
+            super("Slow Parser");
+            this.SUPPORTED_MIME_TYPES.add("application/octet-stream");
+        }
+    }
+
+    /** stands for a fast text format parser */
+    private static class TextFormatParser extends AbstractParser {
+        public TextFormatParser() {
+            super("Text Format Parser");
+            this.SUPPORTED_MIME_TYPES.add("text/plain");
+        }
+    }
+
+    /** reads the source slowly, one byte every 10 milliseconds, like a pathological parser */
+    private static final ParserExecutor.Job SLOW_JOB = new ParserExecutor.Job() {
+        @Override
+        public Document[] parse(final InputStream source) throws Exception {
+            while (true) {
+                try {
+                    Thread.sleep(10);
+                } catch (final InterruptedException e) {
+                    // a pathological parser which ignores interrupts; only the stream stops it
+                }
+                if (source.read() < 0) return new Document[0];
+            }
+        }
+    };
+
+    private static InputStream endless() {
+        return new InputStream() {
+            @Override
+            public int read() {
+                return 'a';
+            }
+        };
+    }
+
+    /**
+     * Test that a parse which overruns the time budget is cancelled.
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        final ParserExecutor executor = new ParserExecutor(200, 0, 2, 1);
+        final DigestURL url = new DigestURL("http://localhost/slow.bin");
+        final SlowParser parser = new SlowParser();
+        final long start = System.currentTimeMillis();
+        try {
+            executor.execute(parser, "application/octet-stream", url, endless(), SLOW_JOB);
+            fail("the budget must be exceeded");
+        } catch (final ParserExecutor.BudgetExceededFailure e) {
+            assertTrue(System.currentTimeMillis() - start < 2000);
+        }
+        final ParserExecutor.Stats stats = executor.stats().get("SlowParser");
+        assertNotNull(stats);
+        assertEquals(1, stats.calls.get());
+        assertEquals(1, stats.timeouts.get());
+        executor.shutdown();
+    }
+
+    /**
+     * Test that text parsing does not queue behind slow binary parsers.
+     */
+    @Test
+    public void testTextPoolIsolation() throws Exception {
+        final ParserExecutor executor = new ParserExecutor(1000, 0, 2, 1);
+        final DigestURL slowUrl = new DigestURL("http://localhost/slow.bin");
+        final SlowParser slowParser = new SlowParser();
+        final CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        executor.execute(slowParser, "application/octet-stream", slowUrl, endless(), SLOW_JOB);
+                    } catch (final Parser.Failure e) {
+                        // expected
+                    }
+                }
+            }.start();
+        }
+        started.await();
+        Thread.sleep(50);
+
+        final DigestURL url = new DigestURL("http://localhost/index.txt");
+        final long start = System.currentTimeMillis();
+        final Document[] docs = executor.execute(new TextFormatParser(), "text/plain", url, new ByteArrayInputStream(new byte[]{'x'}), new ParserExecutor.Job() {
+            @Override
+            public Document[] parse(final InputStream source) throws Exception {
+                assertEquals('x', source.read());
+                return new Document[0];
+            }
+        });
+        assertNotNull(docs);
+        assertTrue(System.currentTimeMillis() - start < 500);
+        executor.shutdown();
+    }
+
+    /**
+     * Test that failures are reported as Parser.Failure and that nested parses run inline.
+     */
+    @Test
+    public void testFailureAndNestedParse() throws Exception {
+        final ParserExecutor executor = new ParserExecutor(5000, 0, 1, 1);
+        final DigestURL url = new DigestURL("http://localhost/archive.bin");
+        final SlowParser parser = new SlowParser();
+        try {
+            executor.execute(parser, "application/octet-stream", url, new ByteArrayInputStream(new byte[0]), new ParserExecutor.Job() {
+                @Override
+                public Document[] parse(final InputStream source) throws Exception {
+                    throw new IllegalStateException("broken");
+                }
+            });
+            fail("the failure must be reported");
+        } catch (final Parser.Failure e) {
+            assertTrue(e.getMessage().contains("Slow Parser"));
+        }
+
+        // the single worker of the pool parses a container which parses its entries with the same parser
+        final Document[] docs = executor.execute(parser, "application/octet-stream", url, new ByteArrayInputStream(new byte[0]), new ParserExecutor.Job() {
+            @Override
+            public Document[] parse(final InputStream source) throws Exception {
+                return executor.execute(parser, "application/octet-stream", url, source, new ParserExecutor.Job() {
+                    @Override
+                    public Document[] parse(final InputStream entry) throws Exception {
+                        return new Document[0];
+                    }
+                });
+            }
+        });
+        assertEquals(0, docs.length);
+        assertEquals(3, executor.stats().get("SlowParser").calls.get());
+        assertEquals(1, executor.stats().get("SlowParser").failures.get());
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ *  SnippetSentencesTest.java
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleSet;
+
+/**
+ * Unit tests for the SnippetSentences class.
+ */
+public class SnippetSentencesTest {
+
+    private static final String TEXT = "YaCy is a peer to peer search engine. The index is distributed over many peers. "
+            + "Every peer crawls the web on its own. Search results are merged from remote peers. Snippets are computed locally.";
+
+    private static HandleSet hashes(final String... words) throws Exception {
+        final HandleSet set = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, words.length);
+        for (final String word: words) set.put(Word.word2hash(word));
+        return set;
+    }
+
+    /**
+     * Test that the sentences survive the encoding unchanged.
+     */
+    @Test
+    public void testEncodeDecode() throws Exception {
+        final SnippetSentences sentences = SnippetSentences.split(TEXT);
+        assertEquals(5, sentences.size());
+        assertFalse(sentences.isTruncated());
+        final SnippetSentences decoded = SnippetSentences.decode(sentences.encode());
+        assertEquals(sentences.size(), decoded.size());
+        for (int i = 0; i < sentences.size(); i++) {
+            assertEquals(sentences.sentence(i).toString(), decoded.sentence(i).toString());
+        }
+        assertEquals("Every peer crawls the web on its own.", decoded.sentence(2).toString());
+    }
+
+    /**
+     * Test that the candidate sentences are selected with the query word hashes.
+     */
+    @Test
+    public void testCandidates() throws Exception {
+        final SnippetSentences sentences = SnippetSentences.split(TEXT);
+
+        List<StringBuilder> candidates = sentences.candidates(hashes("crawls", "web"), 1);
+        assertEquals(1, candidates.size());
+        assertEquals("Every peer crawls the web on its own.", candidates.get(0).toString());
+
+        candidates = sentences.candidates(hashes("snippets"), 10);
+        assertTrue(candidates.size() >= 1);
+        boolean found = false;
+        for (final StringBuilder s: candidates) found |= s.toString().startsWith("Snippets");
+        assertTrue(found);
+
+        // without query words the beginning of the text is used
+        candidates = sentences.candidates(null, 2);
+        assertEquals(2, candidates.size());
+        assertTrue(candidates.get(0).toString().startsWith("YaCy"));
+    }
+
+    /**
+     * Test that very long texts are truncated.
+     */
+    @Test
+    public void testTruncation() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        while (text.length() <= 2 * SnippetSentences.MAX_TEXT_LENGTH) text.append("This is another sentence of a long text. ");
+        final SnippetSentences sentences = SnippetSentences.split(text.toString());
+        assertTrue(sentences.isTruncated());
+        assertTrue(sentences.size() > 0);
+    }
+
+}
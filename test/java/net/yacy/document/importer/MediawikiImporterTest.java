@@ -0,0 +1,85 @@
+/**
+ *  MediawikiImporterTest
+ *  Copyright 2026 by the YaCy contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.document.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.MultiProtocolURL;
+import net.yacy.cora.federate.yacy.CacheStrategy;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.crawler.CrawlSwitchboard;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.retrieval.Response;
+
+public class MediawikiImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final CrawlProfile PROFILE = new CrawlProfile(
+            CrawlSwitchboard.CRAWL_PROFILE_SURROGATE, CrawlProfile.MATCH_ALL_STRING, // crawlerUrlMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerUrlMustNotMatch
+            CrawlProfile.MATCH_ALL_STRING, // crawlerIpMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerIpMustNotMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerCountryMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerNoDepthLimitMatch
+            CrawlProfile.MATCH_ALL_STRING, // indexUrlMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // indexUrlMustNotMatch
+            CrawlProfile.MATCH_ALL_STRING, // indexContentMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // indexContentMustNotMatch
+            0, false, null,
+            -1, true, true, false, false, // crawlingQ, followFrames, obeyHtmlRobotsNoindex, obeyHtmlRobotsNofollow,
+            true, true, false, false, -1, false, true, CrawlProfile.MATCH_NEVER_STRING, CacheStrategy.NOCACHE,
+            "robot_" + CrawlSwitchboard.CRAWL_PROFILE_SURROGATE,
+            ClientIdentification.yacyIntranetCrawlerAgentName, null, null, 0);
+
+    /**
+     * Test that a wiki article is parsed into a document and that the response which is condensed
+     * by genIndexEntry carries the date of the document, not the time of the import.
+     */
+    @Test
+    public void testParseToResponse() throws Exception {
+        final File dump = this.folder.newFile("wiki.xml");
+        final MediawikiImporter importer = new MediawikiImporter(new MultiProtocolURL(dump), this.folder.getRoot());
+        final MediawikiImporter.wikiparserrecord record = importer.newRecord("en.wikipedia.org", "https://en.wikipedia.org/wiki/",
+                "Alan_Smithee", new StringBuilder("'''Alan Smithee''' is a pseudonym used by [[film director]]s."));
+        record.genHTML();
+        record.genDocument();
+        assertNotNull(record.document);
+        assertEquals("Alan_Smithee", record.document.dc_title());
+        assertTrue(record.document.getTextString().contains("pseudonym"));
+
+        Thread.sleep(10); // the import time differs from the parse time
+        final Response response = record.genResponse(ASCII.getBytes("AAAAAAAAAAAA"), PROFILE);
+        assertEquals("https://en.wikipedia.org/wiki/Alan_Smithee", response.url().toNormalform(true));
+        assertEquals(record.document.getLastModified(), response.lastModified());
+        assertEquals(record.document.getLastModified(), response.getRequest().appdate());
+        assertEquals(PROFILE.handle(), response.getRequest().profileHandle());
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ *  SurrogateIngestionTest
+ *  Copyright 2026 by the YaCy contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.document.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.search.schema.CollectionSchema;
+
+public class SurrogateIngestionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Map<String, Object>> decode(final String json) throws IOException {
+        final List<Map<String, Object>> objects = new ArrayList<Map<String, Object>>();
+        SurrogateIngestion.decode(new StringReader(json), new SurrogateIngestion.JsonConsumer() {
+            @Override
+            public boolean consume(final Map<String, Object> o) {
+                objects.add(o);
+                return true;
+            }
+        });
+        return objects;
+    }
+
+    /**
+     * Test that a stream of json objects separated by line breaks is decoded object by object.
+     */
+    @Test
+    public void testDecode() throws IOException {
+        final List<Map<String, Object>> objects = decode("{\"index\":{}}\n{\"a\":1,\"b\":[\"x\",\"y\"]}\n\n{\"c\":{\"d\":true}}\n");
+        assertEquals(3, objects.size());
+        assertTrue(objects.get(0).containsKey("index"));
+        assertEquals(Long.valueOf(1), objects.get(1).get("a"));
+        assertEquals(2, ((List<?>) objects.get(1).get("b")).size());
+        assertEquals(0, decode("").size());
+    }
+
+    /**
+     * Test that the grid schema is patched: ids are computed from the url and link lists are split.
+     */
+    @Test
+    public void testToSurrogate() throws IOException {
+        final Map<String, Object> json = decode("{\"url_s\":\"http://example.org/a.html\",\"title\":[\"A\"],"
+                + "\"outboundlinks_sxt\":[\"https://example.com/b\"],\"imagescount_i\":3,\"images_width_val\":[10,20]}").get(0);
+        final SolrInputDocument doc = SurrogateIngestion.toSurrogate(json);
+        final String id = ASCII.String(new DigestURL("http://example.org/a.html").hash());
+        assertEquals(id, doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+        assertEquals(id.substring(6), doc.getFieldValue(CollectionSchema.host_id_s.getSolrFieldName()));
+        assertEquals("http://example.org/a.html", doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
+        final Collection<Object> protocols = doc.getFieldValues(CollectionSchema.outboundlinks_protocol_sxt.getSolrFieldName());
+        assertEquals(1, protocols.size());
+        assertEquals("https", protocols.iterator().next());
+        assertEquals("3", doc.getFieldValue("imagescount_i"));
+        final Collection<Object> widths = doc.getFieldValues(CollectionSchema.images_width_val.getSolrFieldName());
+        assertEquals(2, widths.size());
+        assertEquals(Integer.valueOf(10), widths.iterator().next());
+    }
+
+    /**
+     * process a jsonlist file with three documents and wait until it is finished
+     * @return the finished file
+     */
+    private SurrogateIngestion.FileIngestion ingest(final File in, final File out, final SurrogateIngestion.DocumentWriter writer) throws Exception {
+        final String json = "{\"index\":{}}\n{\"url_s\":\"http://example.org/a.html\"}\n"
+                + "{\"url_s\":\"http://example.org/b.html\"}\n{\"url_s\":\"http://example.org/c.html\"}\n";
+        Files.write(new File(in, "test.jsonlist").toPath(), json.getBytes(StandardCharsets.UTF_8));
+        final SurrogateIngestion ingestion = new SurrogateIngestion(null, in, out, writer, 1, 2, 10);
+        try {
+            assertTrue(ingestion.submit("test.jsonlist"));
+            final long timeout = System.currentTimeMillis() + 10000;
+            while (ingestion.activeFiles() > 0 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(0, ingestion.activeFiles());
+            return ingestion.files().get(0);
+        } finally {
+            ingestion.close();
+        }
+    }
+
+    /**
+     * Test that a file is moved to the output path after all documents are written.
+     */
+    @Test
+    public void testIngest() throws Exception {
+        final File in = this.folder.newFolder("in"), out = this.folder.newFolder("out");
+        final List<SolrInputDocument> written = Collections.synchronizedList(new ArrayList<SolrInputDocument>());
+        final SurrogateIngestion.FileIngestion file = ingest(in, out, new SurrogateIngestion.DocumentWriter() {
+            @Override
+            public void putDocuments(final Collection<SolrInputDocument> documents) throws IOException {
+                written.addAll(documents);
+            }
+        });
+        assertEquals("finished", file.status());
+        assertEquals(3, file.count());
+        assertEquals(0, file.failed());
+        assertEquals(3, written.size());
+        assertFalse(new File(in, "test.jsonlist").exists());
+        assertTrue(new File(out, "test.jsonlist").exists());
+    }
+
+    /**
+     * Test that a file with documents which could not be written is not moved to the output path
+     * but to the failed directory.
+     */
+    @Test
+    public void testIngestWriteFailure() throws Exception {
+        final File in = this.folder.newFolder("in"), out = this.folder.newFolder("out");
+        final SurrogateIngestion.FileIngestion file = ingest(in, out, new SurrogateIngestion.DocumentWriter() {
+            @Override
+            public void putDocuments(final Collection<SolrInputDocument> documents) throws IOException {
+                throw new IOException("index not available");
+            }
+        });
+        assertTrue(file.status().startsWith("failed"));
+        assertEquals(0, file.count());
+        assertEquals(3, file.unwritten());
+        assertEquals(3, file.failed());
+        assertFalse(new File(in, "test.jsonlist").exists());
+        assertFalse(new File(out, "test.jsonlist").exists());
+        assertTrue(new File(new File(in, SurrogateIngestion.FAILED_DIR), "test.jsonlist").exists());
+    }
+
+}
@@ -0,0 +1,139 @@
+// TablesSortedIndexTest.java
+// (C) 2026 by the YaCy contributors
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.blob.Tables.SortDirection;
+
+public class TablesSortedIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String TABLE = "test";
+    private static final int COUNT = 200;
+
+    private static List<String> pks(final Iterator<Tables.Row> i) {
+        final List<String> pks = new ArrayList<String>();
+        while (i.hasNext()) pks.add(UTF8.String(i.next().getPK()));
+        return pks;
+    }
+
+    private static Tables open(final File location) throws Exception {
+        final Tables tables = new Tables(location, 4);
+        tables.ensureSortedIndex(TABLE, "name", TablesSortedIndex.KeyType.BYTES);
+        tables.ensureSortedIndex(TABLE, "count", TablesSortedIndex.KeyType.NUMBER);
+        return tables;
+    }
+
+    private static void fill(final Tables tables) throws Exception {
+        for (int i = 0; i < COUNT; i++) {
+            final Tables.Data data = new Tables.Data();
+            data.put("name", "n" + (i % 10));
+            if (i % 7 != 0) data.put("count", (i * 37) % 101 - 50);
+            tables.insert(TABLE, ASCII.getBytes(String.format("%04d", i)), data);
+        }
+        // change and delete some rows so that the index must follow
+        final Tables.Data data = new Tables.Data();
+        data.put("name", "x0");
+        tables.update(TABLE, ASCII.getBytes("0003"), data);
+        tables.delete(TABLE, ASCII.getBytes("0013"));
+    }
+
+    private static void assertConsistent(final Tables tables) throws Exception {
+        assertEquals(pks(Tables.orderByString(tables.iterator(TABLE), "name", "", SortDirection.ASC).iterator()),
+                pks(tables.orderedIterator(TABLE, "name", new byte[0], SortDirection.ASC)));
+        assertEquals(pks(Tables.orderByInt(tables.iterator(TABLE), "count", 0, SortDirection.DESC).iterator()),
+                pks(tables.orderedIterator(TABLE, "count", ASCII.getBytes("0"), SortDirection.DESC)));
+        final List<String> equal = pks(tables.iterator(TABLE, "name", UTF8.getBytes("n3"), true));
+        assertEquals(18, equal.size());
+        assertTrue(!equal.contains("0003") && !equal.contains("0013"));
+        assertEquals(equal, pks(tables.iterator(TABLE, "name", Pattern.compile("n3"), true)));
+        assertEquals(1, pks(tables.iterator(TABLE, "name", Pattern.compile("\\Qx\\E.*"))).size());
+        final List<String> range = pks(tables.rangeIterator(TABLE, "count", ASCII.getBytes("-5"), ASCII.getBytes("5"), true));
+        for (final String pk: range) {
+            final int count = tables.select(TABLE, ASCII.getBytes(pk)).get("count", 1000);
+            assertTrue(count >= -5 && count <= 5);
+        }
+        assertEquals(pks(Tables.orderByInt(tables.iterator(TABLE), "count", 1000, SortDirection.ASC).iterator()).subList(0, 1),
+                pks(tables.rangeIterator(TABLE, "count", null, ASCII.getBytes("-50"), true)));
+    }
+
+    /**
+     * Test that the index follows inserts, updates and deletions and that it gives the same order as a sort of the table.
+     */
+    @Test
+    public void testIndex() throws Exception {
+        final Tables tables = open(this.folder.getRoot());
+        fill(tables);
+        assertConsistent(tables);
+        tables.close();
+    }
+
+    /**
+     * Test that an index is reused after a clean close and rebuilt when it was not closed.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        Tables tables = open(this.folder.getRoot());
+        fill(tables);
+        tables.close();
+        tables = open(this.folder.getRoot());
+        assertConsistent(tables);
+        tables.close();
+
+        // simulate a crash: the marker of a clean close is missing
+        for (final File f: this.folder.getRoot().listFiles()) {
+            if (f.getName().endsWith(".ok")) f.delete();
+        }
+        tables = new Tables(this.folder.getRoot(), 4); // indexes are discovered from their files
+        assertTrue(tables.hasSortedIndex(TABLE, "name"));
+        assertConsistent(tables);
+        tables.clear(TABLE);
+        assertEquals(0, pks(tables.orderedIterator(TABLE, "name", null, SortDirection.ASC)).size());
+        tables.close();
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("abc", Tables.literalPrefix(Pattern.compile("abc.*")));
+        assertEquals("ab", Tables.literalPrefix(Pattern.compile("abc?")));
+        assertEquals("http://", Tables.literalPrefix(Pattern.compile("\\Qhttp://\\E.*")));
+        assertNull(Tables.literalPrefix(Pattern.compile(".*abc")));
+        assertNull(Tables.literalPrefix(Pattern.compile("abc|def")));
+        assertNull(Tables.literalPrefix(Pattern.compile("abc", Pattern.CASE_INSENSITIVE)));
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ *  ChunkSortTest.java
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.NaturalOrder;
+
+/**
+ * Unit tests for the in-place sort of chunkcache arrays.
+ */
+public class ChunkSortTest {
+
+    private static final int OBJECTSIZE = 16;
+    private static final int KEYLENGTH = 12;
+
+    private static byte[] rows(final int count, final Random r, final byte[] alphabet) {
+        final byte[] c = new byte[count * OBJECTSIZE];
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < KEYLENGTH; k++) {
+                // few different values in the first bytes to get equal prefixes and equal keys
+                c[i * OBJECTSIZE + k] = alphabet[r.nextInt(k < 4 ? 3 : alphabet.length)];
+            }
+            c[i * OBJECTSIZE + KEYLENGTH] = (byte) i;
+            c[i * OBJECTSIZE + KEYLENGTH + 1] = (byte) (i >> 8);
+            c[i * OBJECTSIZE + KEYLENGTH + 2] = (byte) (i >> 16);
+        }
+        return c;
+    }
+
+    /**
+     * sort the same rows with the generic sort and with ChunkSort and compare the keys
+     */
+    private static void assertSorted(final byte[] c, final int count, final int sortBound, final ByteOrder order) throws Exception {
+        final Row row = new Row("byte[] key-" + KEYLENGTH + ", Cardinal l-4 {b256}", order);
+        final RowCollection expected = new RowCollection(row, count, c.clone(), sortBound);
+        net.yacy.cora.sorting.Array.sort(expected);
+        final byte[] actual = c.clone();
+        assertTrue(ChunkSort.sort(actual, count, sortBound, OBJECTSIZE, KEYLENGTH, order));
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals("row " + i, expected.getKey(i), Arrays.copyOfRange(actual, i * OBJECTSIZE, i * OBJECTSIZE + KEYLENGTH));
+        }
+        // no row is lost or duplicated
+        final int[] position = new int[count];
+        for (int i = 0; i < count; i++) position[payload(c, i)] = i;
+        final boolean[] seen = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            final int p = payload(actual, i);
+            assertTrue("row " + p + " duplicated", !seen[p]);
+            seen[p] = true;
+            assertArrayEquals(Arrays.copyOfRange(c, position[p] * OBJECTSIZE, (position[p] + 1) * OBJECTSIZE), Arrays.copyOfRange(actual, i * OBJECTSIZE, (i + 1) * OBJECTSIZE));
+        }
+    }
+
+    private static int payload(final byte[] c, final int i) {
+        final int p = i * OBJECTSIZE + KEYLENGTH;
+        return (c[p] & 0xff) | ((c[p + 1] & 0xff) << 8) | ((c[p + 2] & 0xff) << 16);
+    }
+
+    private static byte[] base64Alphabet() {
+        final byte[] a = new byte[64];
+        for (int i = 0; i < 64; i++) a[i] = (byte) Base64Order.enhancedCoder.encodeByte((byte) i);
+        return a;
+    }
+
+    private static byte[] byteAlphabet() {
+        final byte[] a = new byte[256];
+        for (int i = 0; i < 256; i++) a[i] = (byte) i;
+        return a;
+    }
+
+    /**
+     * Test the radix sort of keys in base64 and natural orders, ascending and descending.
+     */
+    @Test
+    public void testRadix() throws Exception {
+        final Random r = new Random(0);
+        assertSorted(rows(20000, r, base64Alphabet()), 20000, 0, Base64Order.enhancedCoder);
+        assertSorted(rows(3000, r, base64Alphabet()), 3000, 0, new Base64Order(false, false));
+        assertSorted(rows(20000, r, byteAlphabet()), 20000, 0, NaturalOrder.naturalOrder);
+        assertSorted(rows(3000, r, byteAlphabet()), 3000, 0, new NaturalOrder(false));
+        assertSorted(rows(10, r, base64Alphabet()), 10, 0, Base64Order.enhancedCoder);
+    }
+
+    /**
+     * Test the merge sort for rotated orders and keys which are not well-formed and the merge of a sorted and an unsorted part.
+     */
+    @Test
+    public void testMerge() throws Exception {
+        final Random r = new Random(1);
+        // a rotated order has no radix
+        final NaturalOrder rotated = new NaturalOrder(true);
+        rotated.rotate(Arrays.copyOf(rows(1, r, byteAlphabet()), KEYLENGTH));
+        assertSorted(rows(20000, r, byteAlphabet()), 20000, 0, rotated);
+        final byte[] c = rows(20000, r, byteAlphabet());
+        final byte[] head = c.clone();
+        assertTrue(ChunkSort.sort(head, 15000, 0, OBJECTSIZE, KEYLENGTH, NaturalOrder.naturalOrder));
+        System.arraycopy(head, 0, c, 0, 15000 * OBJECTSIZE);
+        assertSorted(c, 20000, 15000, NaturalOrder.naturalOrder);
+
+        // the rows of a base64 row set with a malformed key
+        final byte[] b = rows(20000, r, base64Alphabet());
+        final byte[] bhead = b.clone();
+        assertTrue(ChunkSort.sort(bhead, 15000, 0, OBJECTSIZE, KEYLENGTH, Base64Order.enhancedCoder));
+        System.arraycopy(bhead, 0, b, 0, 15000 * OBJECTSIZE);
+        b[19999 * OBJECTSIZE + 11] = '!';
+        final byte[] actual = b.clone();
+        assertTrue(ChunkSort.sort(actual, 20000, 15000, OBJECTSIZE, KEYLENGTH, Base64Order.enhancedCoder));
+        final Row row = new Row("byte[] key-" + KEYLENGTH + ", Cardinal l-4 {b256}", Base64Order.enhancedCoder);
+        final RowCollection sorted = new RowCollection(row, 20000, actual, 20000);
+        for (int i = 0; i < 19999; i++) {
+            assertTrue("row " + i, Base64Order.enhancedCoder.compare(sorted.getKey(i), sorted.getKey(i + 1)) <= 0);
+        }
+    }
+
+    /**
+     * Test a malformed key in the sorted part of a row set which is sorted completely because the unsorted part is large.
+     */
+    @Test
+    public void testMalformedHead() throws Exception {
+        final Random r = new Random(2);
+        final byte[] b = rows(100, r, base64Alphabet());
+        assertTrue(ChunkSort.sort(b, 10, 0, OBJECTSIZE, KEYLENGTH, Base64Order.enhancedCoder));
+        b[0] = '!';
+        assertTrue(ChunkSort.sort(b, 100, 10, OBJECTSIZE, KEYLENGTH, Base64Order.enhancedCoder));
+        final Row row = new Row("byte[] key-" + KEYLENGTH + ", Cardinal l-4 {b256}", Base64Order.enhancedCoder);
+        final RowCollection sorted = new RowCollection(row, 100, b, 100);
+        for (int i = 0; i < 99; i++) {
+            assertTrue("row " + i, Base64Order.enhancedCoder.compare(sorted.getKey(i), sorted.getKey(i + 1)) <= 0);
+        }
+    }
+
+}
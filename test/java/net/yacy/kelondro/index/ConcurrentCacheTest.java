@@ -0,0 +1,198 @@
+/**
+ *  ConcurrentCacheTest.java
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.index.Cache.StatKeys;
+
+/**
+ * Unit tests for the ConcurrentCache class.
+ */
+public class ConcurrentCacheTest {
+
+    private static final Row ROW = new Row("byte[] key-12, Cardinal count-4 {b256}", Base64Order.enhancedCoder);
+
+    private static Row.Entry entry(final byte[] key, final int count) {
+        final Row.Entry e = ROW.newEntry();
+        e.setCol(0, key);
+        e.setCol(1, count);
+        return e;
+    }
+
+    /**
+     * Test hit and miss caching and the reported statistics.
+     */
+    @Test
+    public void testHitMiss() throws Exception {
+        final ConcurrentCache cache = new ConcurrentCache(new RAMIndex("ConcurrentCacheTest.hitmiss", ROW), 0, 0, 4);
+        final byte[] a = RowSet.randomHash(1L, 1L);
+        final byte[] b = RowSet.randomHash(2L, 2L);
+
+        cache.put(entry(a, 1));
+        assertTrue(cache.has(a));
+        assertFalse(cache.has(b));
+        assertNull(cache.get(b, true)); // learned as miss
+        assertNull(cache.get(b, true)); // served from miss cache
+        assertEquals(1, cache.get(a, true).getColLong(1));
+
+        cache.put(entry(b, 2)); // must remove the miss entry
+        assertEquals(2, cache.get(b, true).getColLong(1));
+
+        assertNotNull(cache.remove(a));
+        assertNull(cache.get(a, true));
+        assertFalse(cache.has(a));
+
+        final Map<StatKeys, String> stats = cache.memoryStats();
+        assertNotNull(stats);
+        assertTrue(Long.parseLong(stats.get(StatKeys.objectMissCacheReadHit)) > 0);
+        assertTrue(Long.parseLong(stats.get(StatKeys.objectHitCacheReadHit)) > 0);
+        cache.close();
+    }
+
+    /**
+     * Test the batched get across several stripes.
+     */
+    @Test
+    public void testBatchedGet() throws Exception {
+        final ConcurrentCache cache = new ConcurrentCache(new RAMIndex("ConcurrentCacheTest.batch", ROW), 0, 0, 8);
+        final List<byte[]> keys = new ArrayList<byte[]>();
+        for (int i = 0; i < 100; i++) {
+            final byte[] key = RowSet.randomHash(i, i * 31L);
+            keys.add(key);
+            if (i % 2 == 0) cache.put(entry(key, i));
+        }
+        cache.clearCache();
+        Map<byte[], Row.Entry> result = cache.get(keys, true);
+        assertEquals(50, result.size());
+        // the second request is answered from the hit and miss caches
+        result = cache.get(keys, true);
+        assertEquals(50, result.size());
+        cache.close();
+    }
+
+    /**
+     * Test concurrent access to the cache with a hit limit, which forces stripe flushes.
+     */
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentCache cache = new ConcurrentCache(new RAMIndex("ConcurrentCacheTest.concurrent", ROW), 64, 64, 8);
+        final int threads = 8, keysPerThread = 500;
+        final AtomicInteger errors = new AtomicInteger(0);
+        final Thread[] t = new Thread[threads];
+        for (int n = 0; n < threads; n++) {
+            final int tn = n;
+            t[n] = new Thread() {
+                @Override
+                public void run() {
+                    final Random r = new Random(tn);
+                    try {
+                        for (int i = 0; i < keysPerThread; i++) {
+                            final byte[] key = RowSet.randomHash(tn, i);
+                            cache.put(entry(key, i));
+                            final Row.Entry e = cache.get(key, true);
+                            if (e == null || e.getColLong(1) != i) errors.incrementAndGet();
+                            cache.get(RowSet.randomHash(r), true);
+                        }
+                    } catch (final Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+            t[n].start();
+        }
+        for (final Thread thread: t) thread.join();
+        assertEquals(0, errors.get());
+        assertEquals(threads * keysPerThread, cache.size());
+        cache.close();
+    }
+
+    /**
+     * Test that a slow back-end read does not block writes to the same stripe
+     * and that the result of the read is not learned if the key was written in the meantime.
+     */
+    @Test
+    public void testSlowBackend() throws Exception {
+        final RAMIndex ram = new RAMIndex("ConcurrentCacheTest.slow", ROW);
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Index slow = (Index) Proxy.newProxyInstance(Index.class.getClassLoader(), new Class<?>[]{Index.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                final Object result;
+                try {
+                    result = method.invoke(ram, args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (method.getName().equals("get") && release.getCount() > 0) {
+                    // the value is read, now wait like a slow disk before returning it
+                    reading.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                return result;
+            }
+        });
+        final ConcurrentCache cache = new ConcurrentCache(slow, 0, 0, 1);
+        final byte[] key = RowSet.randomHash(3L, 3L);
+        ram.put(entry(key, 1));
+
+        final AtomicReference<Row.Entry> read = new AtomicReference<Row.Entry>();
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    read.set(cache.get(key, true));
+                } catch (final Exception e) {
+                    read.set(null);
+                }
+            }
+        };
+        reader.start();
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        cache.put(entry(key, 2)); // must not wait for the reader of the same stripe
+        release.countDown();
+        reader.join();
+        assertEquals(1, read.get().getColLong(1));
+        // the old value which was read concurrently to the write must not be in the cache
+        assertEquals(2, cache.get(key, true).getColLong(1));
+        cache.close();
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ *  OffHeapRowSetTest.java
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.yacy.cora.order.Base64Order;
+
+/**
+ * Unit tests for RowSet instances which store their rows outside of the heap.
+ */
+public class OffHeapRowSetTest {
+
+    private static final Row ROW = new Row("byte[] key-12, Cardinal count-4 {b256}", Base64Order.enhancedCoder);
+
+    /** more rows than fit into one segment */
+    private static final int COUNT = OffHeapRowStore.SEGMENT_BYTES / ROW.objectsize + 1000;
+
+    private static Row.Entry entry(final byte[] key, final int count) {
+        final Row.Entry e = ROW.newEntry();
+        e.setCol(0, key);
+        e.setCol(1, count);
+        return e;
+    }
+
+    private static void assertSameContent(final RowSet expected, final RowSet actual) {
+        assertEquals(expected.size(), actual.size());
+        final Iterator<Row.Entry> e = expected.iterator();
+        final Iterator<Row.Entry> a = actual.iterator();
+        while (e.hasNext()) assertArrayEquals(e.next().bytes(), a.next().bytes());
+        assertFalse(a.hasNext());
+    }
+
+    /**
+     * Test that an off-heap row set behaves like a row set in the heap.
+     */
+    @Test
+    public void testSameAsHeap() throws Exception {
+        final RowSet heap = new RowSet(ROW);
+        final RowSet offheap = new RowSet(ROW, true);
+        assertTrue(offheap.isOffHeap());
+        final Random r = new Random(0);
+        for (int i = 0; i < COUNT; i++) {
+            final Row.Entry e = entry(RowSet.randomHash(r.nextLong(), r.nextLong()), i);
+            heap.put(e);
+            offheap.put(e);
+        }
+        assertTrue(offheap.mem() > OffHeapRowStore.SEGMENT_BYTES);
+        assertSameContent(heap, offheap);
+
+        // find, update and delete entries
+        final Random q = new Random(0);
+        for (int i = 0; i < COUNT; i++) {
+            final byte[] key = RowSet.randomHash(q.nextLong(), q.nextLong());
+            final Row.Entry found = offheap.get(key, false);
+            assertNotNull(found);
+            assertEquals(i, found.getColLong(1));
+            if (i % 3 == 0) {
+                assertNotNull(offheap.remove(key));
+                heap.remove(key);
+            } else if (i % 3 == 1) {
+                assertEquals(i + 5, offheap.inc(key, 1, 5, null));
+                heap.inc(key, 1, 5, null);
+            }
+        }
+        assertNull(offheap.get(RowSet.randomHash(-1L, -1L), false));
+        assertSameContent(heap, offheap);
+
+        // unsorted appends and removal without keeping the order
+        for (int i = 0; i < 1000; i++) {
+            final Row.Entry e = entry(RowSet.randomHash(r.nextLong(), r.nextLong()), i);
+            heap.addUnique(e);
+            offheap.addUnique(e);
+        }
+        heap.removeRow(17, false);
+        offheap.removeRow(17, false);
+        assertSameContent(heap, offheap);
+
+        // the clone and the merge are independent of the original
+        final RowSet clone = offheap.clone();
+        assertTrue(clone.isOffHeap());
+        final RowSet merged = offheap.merge(new RowSet(ROW));
+        assertTrue(merged.isOffHeap());
+        offheap.clear();
+        assertEquals(0, offheap.size());
+        assertSameContent(heap, clone);
+        assertSameContent(heap, merged);
+        assertArrayEquals(heap.exportCollection(), clone.exportCollection());
+    }
+
+    /**
+     * Test moving rows over the segment borders.
+     */
+    @Test
+    public void testStoreMove() throws Exception {
+        final OffHeapRowStore store = new OffHeapRowStore(ROW.objectsize);
+        final int rows = 2 * OffHeapRowStore.SEGMENT_BYTES / ROW.objectsize + 10;
+        store.ensure(rows + 1);
+        final byte[] b = new byte[ROW.objectsize];
+        for (int i = 0; i < rows; i++) {
+            b[0] = (byte) i;
+            b[1] = (byte) (i >> 8);
+            b[2] = (byte) (i >> 16);
+            store.write(i, b, 0, b.length);
+        }
+        store.move(0, 1, rows); // shift up over all segments
+        store.move(1, 0, rows); // and back
+        for (int i = 0; i < rows; i++) {
+            store.read(i, 0, b, 0, b.length);
+            assertEquals(i, (b[0] & 0xff) | ((b[1] & 0xff) << 8) | ((b[2] & 0xff) << 16));
+        }
+        store.trim(10);
+        assertEquals(OffHeapRowStore.SEGMENT_BYTES, store.mem());
+    }
+
+}
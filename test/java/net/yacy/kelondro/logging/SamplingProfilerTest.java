@@ -0,0 +1,151 @@
+// SamplingProfilerTest.java
+// (C) 2026 by the YaCy contributors
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SamplingProfilerTest {
+
+    /**
+     * Test that the subsystem is derived from the thread name prefix.
+     */
+    @Test
+    public void testSubsystem() {
+        assertEquals("ParserExecutor-text", SamplingProfiler.subsystem("ParserExecutor-text_pool-3-thread-12"));
+        assertEquals("pool", SamplingProfiler.subsystem("pool-2-thread-1"));
+        assertEquals("Thread", SamplingProfiler.subsystem("Thread-42"));
+        assertEquals("qtp", SamplingProfiler.subsystem("qtp1234567-89"));
+        assertEquals("Crawler Thread", SamplingProfiler.subsystem("Crawler Thread #7"));
+        assertEquals("main", SamplingProfiler.subsystem("main"));
+        assertEquals("unnamed", SamplingProfiler.subsystem("12"));
+    }
+
+    /**
+     * Test the collapsed stack format and the flame graph built from it.
+     */
+    @Test
+    public void testCollapseAndFlameGraph() {
+        final StackTraceElement[] trace = new StackTraceElement[] {
+                new StackTraceElement("a.C", "leaf", null, 0),
+                new StackTraceElement("a.B", "call", null, 0),
+                new StackTraceElement("a.A", "run", null, 0)};
+        final String stack = SamplingProfiler.collapse("worker", trace);
+        assertEquals("worker;a.A.run;a.B.call;a.C.leaf", stack);
+
+        final Map<String, long[]> stacks = new HashMap<String, long[]>();
+        stacks.put(stack, new long[]{3});
+        stacks.put("worker;a.A.run", new long[]{1});
+        stacks.put("other;x.Y.z", new long[]{2});
+        final SamplingProfiler.Node root = SamplingProfiler.flameGraph(stacks, null);
+        assertEquals(6, root.total);
+        final List<SamplingProfiler.Node> subsystems = root.children();
+        assertEquals(2, subsystems.size());
+        assertEquals("other", subsystems.get(0).name);
+        final SamplingProfiler.Node run = subsystems.get(1).children().get(0);
+        assertEquals("a.A.run", run.name);
+        assertEquals(4, run.total);
+        assertEquals(1, run.self);
+
+        final SamplingProfiler.Node worker = SamplingProfiler.flameGraph(stacks, "worker");
+        assertEquals(4, worker.total);
+    }
+
+    /**
+     * Test that a busy thread shows up in the samples.
+     */
+    @Test
+    public void testSample() throws Exception {
+        final Thread busy = new Thread("BusyTest_pool-1-thread-1") {
+            @Override
+            public void run() {
+                long x = 0;
+                while (!isInterrupted()) x += System.nanoTime() % 7;
+                if (x == 42) System.out.print("");
+            }
+        };
+        busy.start();
+        try {
+            final SamplingProfiler profiler = new SamplingProfiler(10, 60000, null);
+            for (int i = 0; i < 20; i++) {
+                profiler.sample();
+                Thread.sleep(5);
+            }
+            assertEquals(20, profiler.sampleCount());
+            boolean found = false;
+            for (final SamplingProfiler.Subsystem s: profiler.subsystems()) {
+                if (s.name.equals("BusyTest") && s.running > 0) found = true;
+            }
+            assertTrue(found);
+            final StringBuilder collapsed = new StringBuilder();
+            profiler.writeCollapsed("BusyTest", collapsed);
+            assertTrue(collapsed.toString().startsWith("BusyTest;"));
+        } finally {
+            busy.interrupt();
+            busy.join();
+        }
+    }
+
+    /**
+     * Test that a finished window is written as collapsed stacks.
+     */
+    @Test
+    public void testDump() throws Exception {
+        final File dir = Files.createTempDirectory("SamplingProfilerTest").toFile();
+        final File dump = new File(dir, "profile.collapsed");
+        final Thread busy = new Thread("DumpTest_pool-1-thread-1") {
+            @Override
+            public void run() {
+                long x = 0;
+                while (!isInterrupted()) x += System.nanoTime() % 7;
+                if (x == 42) System.out.print("");
+            }
+        };
+        busy.start();
+        try {
+            final SamplingProfiler profiler = new SamplingProfiler(10, 100, dump);
+            for (int i = 0; i < 10; i++) {
+                profiler.sample();
+                Thread.sleep(5);
+            }
+            Thread.sleep(100);
+            profiler.sample();
+            assertTrue(dump.exists());
+            final String collapsed = new String(Files.readAllBytes(dump.toPath()), StandardCharsets.UTF_8);
+            assertTrue(collapsed.contains("DumpTest;"));
+            assertTrue(collapsed.matches("(?s).*DumpTest;[^\\n]*\\.run(;[^\\n]*)? \\d+\\n.*"));
+        } finally {
+            busy.interrupt();
+            busy.join();
+            dump.delete();
+            dir.delete();
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+// TableTest.java
+// (C) 2026 by the YaCy contributors
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.index.Row;
+
+public class TableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Row ROW = new Row("byte[] key-12, Cardinal value-8 {b256}", NaturalOrder.naturalOrder);
+    private static final int COUNT = 3000;
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static void fill(final File f) throws Exception {
+        final Table table = new Table(f, ROW, 100, 0, false, false, false);
+        for (int i = COUNT - 1; i >= 0; i--) {
+            final Row.Entry e = ROW.newEntry();
+            e.setCol(0, key(i));
+            e.setCol(1, i * 7L);
+            table.put(e);
+        }
+        table.remove(key(5));
+        assertEquals(COUNT - 1, table.size());
+        table.close();
+    }
+
+    private static void check(final File f, final boolean useTailCache, final boolean snapshot) throws Exception {
+        final Table table = new Table(f, ROW, 100, 0, useTailCache, false, false);
+        try {
+            assertEquals(snapshot, table.usesSnapshotIndex());
+            assertEquals(COUNT - 1, table.size());
+            for (int i = 0; i < COUNT; i++) {
+                final Row.Entry e = table.get(key(i), false);
+                if (i == 5) {
+                    assertFalse(table.has(key(i)));
+                    continue;
+                }
+                assertNotNull("key " + i, e);
+                assertEquals(i * 7L, e.getColLong(1));
+            }
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Test that a snapshot is written on close and that the index is loaded from it.
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        final File f = new File(this.folder.getRoot(), "test.table");
+        fill(f);
+        final File snapshot = Table.snapshotFile(f);
+        assertTrue(snapshot.exists());
+        check(f, false, true);
+        assertTrue(snapshot.exists()); // written again on close
+        check(f, true, true);
+        assertTrue(snapshot.exists());
+        assertTrue(snapshot.delete());
+        check(f, false, false); // without snapshot the index is read from the table file
+    }
+
+    /**
+     * Test that a damaged or outdated snapshot is ignored and the index is rebuilt from the table file.
+     */
+    @Test
+    public void testInvalidSnapshot() throws Exception {
+        final File f = new File(this.folder.getRoot(), "test.table");
+        fill(f);
+        final File snapshot = Table.snapshotFile(f);
+        try (final RandomAccessFile raf = new RandomAccessFile(snapshot, "rw")) {
+            raf.seek(100);
+            final int b = raf.read();
+            raf.seek(100);
+            raf.write(b ^ 0xff);
+        }
+        check(f, false, false);
+
+        // a snapshot of a table file which was changed afterwards
+        final File copy = new File(this.folder.getRoot(), "copy.snapshot");
+        assertTrue(snapshot.renameTo(copy));
+        final long modified = f.lastModified();
+        try (final RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(0); // the first record has the key of the first put
+            raf.write('x');
+        }
+        // the rewrite may happen within the timestamp resolution of the file system
+        assertTrue(f.setLastModified(modified + 10000));
+        assertTrue(copy.renameTo(snapshot));
+        final Table table = new Table(f, ROW, 100, 0, false, false, false);
+        try {
+            assertFalse(table.usesSnapshotIndex());
+            assertFalse(table.has(key(COUNT - 1)));
+            assertTrue(table.has(ASCII.getBytes(String.format("x%011d", COUNT - 1))));
+            assertFalse(snapshot.exists());
+        } finally {
+            table.close();
+        }
+    }
+
+}
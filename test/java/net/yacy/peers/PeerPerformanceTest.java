@@ -0,0 +1,53 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PeerPerformanceTest {
+
+    @After
+    public void tearDown() {
+        PeerPerformance.clear();
+    }
+
+    /**
+     * Test that slow and failing peers get a higher cost than fast peers and unknown peers.
+     */
+    @Test
+    public void testCost() {
+        final double neutral = PeerPerformance.cost("unknownpeer0");
+        for (int i = 0; i < 10; i++) {
+            PeerPerformance.success("fastpeer0000", 100);
+            PeerPerformance.success("slowpeer0000", 8000);
+        }
+        PeerPerformance.success("failingpeer0", 100);
+        PeerPerformance.failure("failingpeer0");
+        assertTrue(PeerPerformance.cost("fastpeer0000") < neutral);
+        assertTrue(PeerPerformance.cost("slowpeer0000") > neutral);
+        assertTrue(PeerPerformance.cost("failingpeer0") > PeerPerformance.cost("fastpeer0000"));
+        // a success without comparable time does not change the latency
+        final double cost = PeerPerformance.cost("slowpeer0000");
+        PeerPerformance.success("slowpeer0000");
+        assertEquals(cost, PeerPerformance.cost("slowpeer0000"), 1.0d);
+    }
+
+    /**
+     * Test that a peer is unreliable after some failures and recovers with successful requests.
+     */
+    @Test
+    public void testUnreliable() {
+        assertFalse(PeerPerformance.unreliable("unknownpeer0"));
+        PeerPerformance.failure("failingpeer0");
+        assertFalse(PeerPerformance.unreliable("failingpeer0"));
+        PeerPerformance.failure("failingpeer0");
+        PeerPerformance.failure("failingpeer0");
+        assertTrue(PeerPerformance.unreliable("failingpeer0"));
+        for (int i = 0; i < 3; i++) PeerPerformance.success("failingpeer0", 200);
+        assertFalse(PeerPerformance.unreliable("failingpeer0"));
+    }
+
+}
@@ -0,0 +1,122 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+
+public class RWIWireFormatTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private static ReferenceContainer<WordReference> container(final int term, final int size) throws Exception {
+        final byte[] termHash = RowSet.randomHash(term, term);
+        final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(factory, termHash, size);
+        for (int i = 0; i < size; i++) {
+            final WordReferenceRow r = new WordReferenceRow(RowSet.randomHash(term * 100000L + i, i), 40 + i, 3, 5, 200, 20,
+                    System.currentTimeMillis(), System.currentTimeMillis(), ASCII.getBytes("en"), 't', i % 7, i % 11);
+            c.add(r);
+        }
+        return c;
+    }
+
+    /**
+     * Test that the encoded references are decoded unchanged, also if a term spans several chunks.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>();
+        containers.add(container(1, 3));
+        containers.add(container(2, 1));
+        containers.add(container(3, 2000)); // larger than one chunk
+        containers.add(container(4, 0));
+
+        final byte[] encoded = RWIWireFormat.encode(containers);
+        assertTrue(RWIWireFormat.isBinary(encoded));
+        assertFalse(RWIWireFormat.isBinary(ASCII.getBytes("abcdefghijkl{x=1}")));
+
+        final Map<String, ReferenceContainer<WordReference>> expected = new HashMap<String, ReferenceContainer<WordReference>>();
+        for (final ReferenceContainer<WordReference> c: containers) expected.put(ASCII.String(c.getTermHash()), c);
+
+        final RWIWireFormat.Decoder decoder = new RWIWireFormat.Decoder(new ByteArrayInputStream(encoded));
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        while (decoder.hasNext()) {
+            final ReferenceContainer<WordReference> c = decoder.next();
+            final String term = ASCII.String(c.getTermHash());
+            final ReferenceContainer<WordReference> original = expected.get(term);
+            assertNotNull(original);
+            for (int i = 0; i < c.size(); i++) {
+                final byte[] urlHash = c.get(i, false).getPrimaryKeyBytes();
+                final WordReference ref = original.getReference(urlHash);
+                assertNotNull(ref);
+                assertArrayEquals(ref.toKelondroEntry().bytes(), c.get(i, true).bytes());
+            }
+            final Integer n = counts.get(term);
+            counts.put(term, (n == null ? 0 : n) + c.size());
+        }
+        assertNull(decoder.error());
+        assertEquals(2004, decoder.references());
+        assertTrue(decoder.containers() > 3);
+        assertEquals(Integer.valueOf(3), counts.get(ASCII.String(containers.get(0).getTermHash())));
+        assertEquals(Integer.valueOf(2000), counts.get(ASCII.String(containers.get(2).getTermHash())));
+        assertNull(counts.get(ASCII.String(containers.get(3).getTermHash())));
+        assertTrue(encoded.length < 2004 * WordReferenceRow.urlEntryRow.objectsize);
+    }
+
+    /**
+     * Test that a truncated transmission ends the decoding with an error.
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>();
+        containers.add(container(5, 10));
+        final byte[] encoded = RWIWireFormat.encode(containers);
+        final byte[] truncated = new byte[encoded.length - 10];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        try {
+            final RWIWireFormat.Decoder decoder = new RWIWireFormat.Decoder(new ByteArrayInputStream(truncated));
+            while (decoder.hasNext()) decoder.next();
+            assertNotNull(decoder.error());
+        } catch (final java.io.IOException e) {
+            // the first chunk is already broken
+        }
+    }
+
+    /**
+     * Test that the request part writes the same bytes as the encoder, every time it is written.
+     */
+    @Test
+    public void testBody() throws Exception {
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>();
+        containers.add(container(6, 500));
+        containers.add(container(7, 20));
+        final byte[] encoded = RWIWireFormat.encode(containers);
+        final RWIWireFormat.Body body = new RWIWireFormat.Body(containers);
+        assertEquals(RWIWireFormat.FILENAME, body.getFilename());
+        assertEquals(-1, body.getContentLength());
+        for (int n = 0; n < 2; n++) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            body.writeTo(out);
+            assertArrayEquals(encoded, out.toByteArray());
+            assertEquals(encoded.length, body.written());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.util.FileUtils;
+
+public class SearchStreamTest {
+
+    /**
+     * a source which produces a field, the given resources and a trailing field
+     */
+    private static class TestSource extends SearchStream.Source {
+        private final String[] resources;
+        private int next = -1;
+        private int finished = 0;
+
+        private TestSource(final String... resources) {
+            this.resources = resources;
+        }
+
+        @Override
+        protected boolean next() {
+            if (this.next == -1) {
+                field("joincount", "42");
+            } else if (this.next < this.resources.length) {
+                resource(this.resources[this.next]);
+            } else if (this.next == this.resources.length) {
+                field("references", "a,b");
+            } else {
+                return false;
+            }
+            this.next++;
+            return true;
+        }
+
+        @Override
+        protected void finish() {
+            this.finished++;
+        }
+    }
+
+    /**
+     * Test that the frames of a source are read in the same order and that the format is recognized.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        final char[] large = new char[10000];
+        Arrays.fill(large, 'x');
+        final TestSource source = new TestSource("{hash=AAAAAAAAAAAA,url=a}", new String(large), "{hash=BBBBBBBBBBBB,ü=€}");
+        assertEquals(0, source.available()); // nothing is produced before the first read
+        final byte[] stream = FileUtils.read(source);
+        assertEquals(1, source.finished);
+
+        final InputStream in = new ByteArrayInputStream(stream);
+        assertEquals(SearchStream.VERSION, SearchStream.version(FileUtils.read(in, SearchStream.HEADER_LENGTH)));
+        final SearchStream.Reader reader = new SearchStream.Reader(in, 100000);
+        final List<String> frames = new ArrayList<String>();
+        byte type;
+        while ((type = reader.next()) != SearchStream.END) frames.add(type + ":" + reader.payload());
+        assertEquals(Arrays.asList("1:joincount=42", "2:" + source.resources[0], "2:" + source.resources[1], "2:" + source.resources[2], "1:references=a,b"), frames);
+        assertEquals(-1, in.read());
+
+        // the text table of older peers is not a stream
+        assertEquals(0, SearchStream.version(UTF8.getBytes("version=1.9\r\nuptime=1")));
+        assertEquals(0, SearchStream.version(new byte[0]));
+    }
+
+    /**
+     * Test that truncated and oversized streams are rejected.
+     */
+    @Test
+    public void testBrokenStream() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileUtils.copy(new TestSource("{hash=AAAAAAAAAAAA}", "{hash=BBBBBBBBBBBB}"), out);
+        final byte[] stream = out.toByteArray();
+
+        // truncated in the middle of the second resource
+        final SearchStream.Reader truncated = new SearchStream.Reader(new ByteArrayInputStream(stream, SearchStream.HEADER_LENGTH, 50), 100000);
+        assertEquals(SearchStream.FIELD, truncated.next());
+        assertEquals(SearchStream.RESOURCE, truncated.next());
+        try {
+            truncated.next();
+            fail("truncated stream not detected");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage().contains("truncated"));
+        }
+
+        // more bytes than accepted
+        final SearchStream.Reader limited = new SearchStream.Reader(new ByteArrayInputStream(stream, SearchStream.HEADER_LENGTH, stream.length), 30);
+        assertEquals(SearchStream.FIELD, limited.next());
+        try {
+            limited.next();
+            fail("size limit not applied");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage().contains("exceeds"));
+        }
+
+        // a stream which is closed before the end is finished once
+        final TestSource closed = new TestSource("{hash=AAAAAAAAAAAA}");
+        assertTrue(closed.read() >= 0);
+        closed.close();
+        closed.close();
+        assertEquals(1, closed.finished);
+        assertEquals(-1, closed.read());
+    }
+
+}
@@ -0,0 +1,168 @@
+// HostGraphTest.java
+// (C) 2026 by the YaCy contributors
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HostGraph}
+ */
+public class HostGraphTest {
+
+    private static void add(final HostGraph graph, final String source, final int date, final String... targets) {
+        final String[] names = new String[targets.length];
+        final int[] counts = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            names[i] = targets[i] + ".example";
+            counts[i] = 1;
+        }
+        graph.add(source, source + ".example", date, targets, names, counts, targets.length);
+    }
+
+    /**
+     * Test that the references are the same before and after the compaction
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        final File dir = Files.createTempDirectory("hostgraph").toFile();
+        final HostGraph graph = new HostGraph(new File(dir, "test.graph"), 100);
+        try {
+            add(graph, "AAAAAA", 20260101, "BBBBBB", "CCCCCC");
+            add(graph, "BBBBBB", 20260101, "CCCCCC");
+            assertEquals(3, graph.edges());
+            graph.compact();
+            add(graph, "AAAAAA", 20260102, "CCCCCC", "DDDDDD");
+
+            final Map<String, Integer> out = graph.references(graph.id("AAAAAA"), false);
+            assertEquals(3, out.size());
+            assertEquals(Integer.valueOf(2), out.get("CCCCCC"));
+            assertEquals(3, graph.outDegree(graph.id("AAAAAA")));
+
+            final Map<String, Integer> in = graph.references(graph.id("CCCCCC"), true);
+            assertEquals(2, in.size());
+            assertEquals(Integer.valueOf(2), in.get("AAAAAA"));
+            assertEquals(Integer.valueOf(1), in.get("BBBBBB"));
+
+            graph.compact();
+            assertEquals(out, graph.references(graph.id("AAAAAA"), false));
+            assertEquals(in, graph.references(graph.id("CCCCCC"), true));
+            assertEquals(0, graph.sources(true).length);
+            assertEquals(2, graph.sources(false).length);
+            assertTrue(graph.hashes("dddddd.example").contains("DDDDDD"));
+        } finally {
+            graph.close();
+        }
+    }
+
+    /**
+     * Test that the graph is restored from the snapshot and from the log
+     */
+    @Test
+    public void testPersistence() throws Exception {
+        final File dir = Files.createTempDirectory("hostgraph").toFile();
+        final File file = new File(dir, "test.graph");
+        HostGraph graph = new HostGraph(file, 100);
+        add(graph, "AAAAAA", 20260101, "BBBBBB", "CCCCCC");
+        graph.close();
+
+        // the snapshot
+        graph = new HostGraph(file, 100);
+        assertEquals(2, graph.references(graph.id("AAAAAA"), false).size());
+        assertEquals(20260101, graph.date(graph.id("AAAAAA")));
+        add(graph, "BBBBBB", 20260102, "CCCCCC");
+        graph.add("EEEEEE", "eeeeee.example");
+        graph.flush();
+
+        // the snapshot together with the log of the unclosed graph
+        final HostGraph restored = new HostGraph(file, 100);
+        try {
+            assertEquals(4, restored.size());
+            assertEquals(Integer.valueOf(1), restored.references(restored.id("BBBBBB"), false).get("CCCCCC"));
+            assertEquals(2, restored.references(restored.id("CCCCCC"), true).size());
+            assertEquals("eeeeee.example", restored.name(restored.id("EEEEEE")));
+        } finally {
+            restored.close();
+        }
+    }
+
+    /**
+     * Test that hosts with too many references keep only the most referenced hosts
+     */
+    @Test
+    public void testMaxReferences() throws Exception {
+        final File dir = Files.createTempDirectory("hostgraph").toFile();
+        final HostGraph graph = new HostGraph(new File(dir, "test.graph"), 10);
+        try {
+            final String[] targets = new String[20];
+            for (int i = 0; i < targets.length; i++) targets[i] = "T" + (10000 + i);
+            add(graph, "AAAAAA", 20260101, targets);
+            add(graph, "AAAAAA", 20260101, "T10000");
+            graph.compact();
+            final Map<String, Integer> out = graph.references(graph.id("AAAAAA"), false);
+            assertEquals(9, out.size());
+            assertEquals(Integer.valueOf(2), out.get("T10000"));
+        } finally {
+            graph.close();
+        }
+    }
+
+    /**
+     * Test that a large delta is compacted in the background and that the log is truncated after the snapshot
+     */
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        final File dir = Files.createTempDirectory("hostgraph").toFile();
+        final File file = new File(dir, "test.graph");
+        final File rotated = new File(dir, "test.graph.log.old");
+        final HostGraph graph = new HostGraph(file, HostGraph.COMPACTION_THRESHOLD * 2);
+        try {
+            final String[] targets = new String[HostGraph.COMPACTION_THRESHOLD + 1];
+            for (int i = 0; i < targets.length; i++) {
+                final String t = Integer.toString(i, 36);
+                targets[i] = "000000".substring(t.length()) + t;
+            }
+            add(graph, "AAAAAA", 20260101, targets);
+
+            // the snapshot is written at the end of the compaction
+            final long timeout = System.currentTimeMillis() + 60000;
+            while (!(file.exists() && !rotated.exists()) && System.currentTimeMillis() < timeout) Thread.sleep(50);
+            assertTrue(file.exists());
+            assertFalse(rotated.exists());
+            assertEquals(0, graph.sources(true).length);
+            assertEquals(1, graph.sources(false).length);
+            assertEquals(targets.length, graph.edges());
+
+            graph.flush();
+            assertEquals(0, new File(dir, "test.graph.log").length());
+        } finally {
+            graph.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// PerformanceHistoryTest.java
+// (C) 2026 by the YaCy contributors
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class PerformanceHistoryTest {
+
+    /**
+     * Test that stored samples can be read back and survive reopening the file.
+     */
+    @Test
+    public void testUpdateAndSeries() throws Exception {
+        final File file = File.createTempFile("PerformanceHistoryTest", ".rrd");
+        file.delete();
+        try {
+            final long now = System.currentTimeMillis() / 1000;
+            final long start = now - now % PerformanceHistory.STEP - 30 * PerformanceHistory.STEP;
+            PerformanceHistory history = new PerformanceHistory(file, start - PerformanceHistory.STEP);
+            for (int i = 0; i <= 30; i++) {
+                final long time = start + i * PerformanceHistory.STEP;
+                assertTrue(history.update(time, 100, 1024, 10, 5, 42, 0, 0, i));
+            }
+            // older samples are rejected
+            assertFalse(history.update(start, 1, 1, 1, 1, 1, 1, 1, 1));
+            history.close();
+
+            history = new PerformanceHistory(file);
+            final PerformanceHistory.Series ppm = history.series(PerformanceHistory.PPM, false, 3600);
+            assertNotNull(ppm);
+            assertEquals(ppm.times.length, ppm.values.length);
+            assertEquals(100.0d, ppm.max(0), 0.001d);
+            final PerformanceHistory.Series crawl = history.series(PerformanceHistory.CRAWL, true, 3600);
+            assertNotNull(crawl);
+            assertTrue(crawl.max(0) >= 29.0d);
+            history.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+}
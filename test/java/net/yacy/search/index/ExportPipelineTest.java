@@ -0,0 +1,165 @@
+// ExportPipelineTest.java
+// (C) 2026 by the YaCy contributors
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.search.index.Fulltext.ExportCompression;
+import net.yacy.search.index.Fulltext.ExportFormat;
+import net.yacy.search.schema.CollectionSchema;
+
+public class ExportPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Pattern PARTITION = Pattern.compile("id:\\\\?(.)\\*");
+    private static final Pattern CURSOR = Pattern.compile("id:\\{\"([^\"]*)\" TO \\*\\]");
+
+    /**
+     * a connector which answers concurrentDocumentsByQuery from a list of documents and
+     * fails when a partition is read after a given number of partitions
+     */
+    private static SolrConnector connector(final List<SolrDocument> docs, final int failAfter) {
+        final AtomicInteger partitions = new AtomicInteger(0);
+        return (SolrConnector) Proxy.newProxyInstance(SolrConnector.class.getClassLoader(), new Class<?>[]{SolrConnector.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if (!method.getName().equals("concurrentDocumentsByQuery")) throw new UnsupportedOperationException(method.getName());
+                if (failAfter >= 0 && partitions.incrementAndGet() > failAfter) throw new IllegalStateException("connection lost");
+                final String query = (String) args[0];
+                final Matcher p = PARTITION.matcher(query);
+                assertTrue(query, p.find());
+                final Matcher c = CURSOR.matcher(query);
+                final String cursor = c.find() ? c.group(1) : null;
+                final BlockingQueue<SolrDocument> queue = new LinkedBlockingQueue<SolrDocument>();
+                for (final SolrDocument doc: docs) {
+                    final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                    if (!id.startsWith(p.group(1))) continue;
+                    if (cursor != null && id.compareTo(cursor) <= 0) continue;
+                    queue.add(doc);
+                }
+                queue.add(AbstractSolrConnector.POISON_DOCUMENT);
+                return queue;
+            }
+        });
+    }
+
+    private static List<SolrDocument> documents(final int n) {
+        final List<SolrDocument> docs = new ArrayList<SolrDocument>();
+        for (int i = 0; i < n; i++) {
+            final SolrDocument doc = new SolrDocument();
+            final char first = (char) Base64Order.alpha_enhanced[i % Base64Order.alpha_enhanced.length];
+            doc.setField(CollectionSchema.id.getSolrFieldName(), first + String.format("%011d", i));
+            doc.setField(CollectionSchema.sku.getSolrFieldName(), "http://example.org/" + i + (i % 10 == 0 ? ".pdf" : ".html"));
+            doc.setField(CollectionSchema.title.getSolrFieldName(), "title " + i);
+            docs.add(doc);
+        }
+        Collections.sort(docs, (a, b) -> ((String) a.getFieldValue("id")).compareTo((String) b.getFieldValue("id")));
+        return docs;
+    }
+
+    private static List<String> readGzipLines(final File f) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        try (final BufferedReader r = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(f)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Test that all matching documents are exported once into a gzip file of concatenated members.
+     */
+    @Test
+    public void testExport() throws Exception {
+        final List<SolrDocument> docs = documents(1000);
+        final File f = new File(this.folder.getRoot(), "export.txt.gz");
+        final AtomicInteger count = new AtomicInteger(0);
+        new ExportPipeline(connector(docs, -1), f, "*:*", ".*\\.html", ExportFormat.text, ExportCompression.gzip, false, 3, count).run();
+        final List<String> lines = readGzipLines(f);
+        assertEquals(900, count.get());
+        assertEquals(900, lines.size());
+        assertEquals(900, new HashSet<String>(lines).size());
+        for (final String line: lines) assertTrue(line, line.endsWith(".html"));
+        assertFalse(new File(f.getAbsolutePath() + ExportPipeline.CHECKPOINT_EXT).exists());
+    }
+
+    /**
+     * Test that an interrupted export is resumed from its checkpoint without duplicates.
+     */
+    @Test
+    public void testResume() throws Exception {
+        final List<SolrDocument> docs = documents(2000);
+        final File f = new File(this.folder.getRoot(), "export.rss.gz");
+        final File checkpoint = new File(f.getAbsolutePath() + ExportPipeline.CHECKPOINT_EXT);
+        try {
+            new ExportPipeline(connector(docs, 10), f, "*:*", null, ExportFormat.rss, ExportCompression.gzip, false, 2, new AtomicInteger(0)).run();
+            fail("the export must fail");
+        } catch (final IOException e) {
+            assertEquals("connection lost", e.getMessage());
+        }
+        assertTrue(checkpoint.exists());
+
+        final AtomicInteger count = new AtomicInteger(0);
+        new ExportPipeline(connector(docs, -1), f, "*:*", null, ExportFormat.rss, ExportCompression.gzip, false, 2, count).run();
+        assertFalse(checkpoint.exists());
+        assertEquals(2000, count.get());
+        final List<String> links = new ArrayList<String>();
+        final List<String> lines = readGzipLines(f);
+        for (final String line: lines) if (line.startsWith("<link>http://example.org/")) links.add(line);
+        assertEquals(2000, links.size());
+        assertEquals(2000, new HashSet<String>(links).size());
+        assertTrue(lines.get(0).startsWith("<?xml"));
+        assertEquals("</rss>", lines.get(lines.size() - 1));
+    }
+
+}
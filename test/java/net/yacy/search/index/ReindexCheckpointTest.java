@@ -0,0 +1,67 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReindexCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * the queries, their scores and order, the cursors of the started queries and the number of
+     * processed documents must survive a write and read of the checkpoint
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        final Map<String, Integer> queries = new LinkedHashMap<String, Integer>();
+        queries.put("text_t:[* TO *]", 1200);
+        queries.put("host_s:[* TO *]", 0);
+        queries.put("title:\"a = b\"", 7);
+        final Map<String, String> cursors = new HashMap<String, String>();
+        cursors.put("text_t:[* TO *]", "AAAAAAAAAAAA");
+        final File file = new File(this.folder.getRoot(), "reindex.checkpoint");
+        new ReindexCheckpoint(4711, queries, cursors).write(file);
+        assertTrue(file.exists());
+        assertFalse(new File(file.getAbsolutePath() + ".tmp").exists());
+
+        final ReindexCheckpoint c = ReindexCheckpoint.read(file);
+        assertEquals(4711, c.processed);
+        assertEquals(queries, c.queries);
+        assertEquals(new ArrayList<String>(queries.keySet()), new ArrayList<String>(c.queries.keySet()));
+        assertEquals(cursors, c.cursors);
+    }
+
+    /**
+     * a new checkpoint replaces an existing one
+     */
+    @Test
+    public void testOverwrite() throws IOException {
+        final File file = new File(this.folder.getRoot(), "reindex.checkpoint");
+        final Map<String, Integer> queries = new LinkedHashMap<String, Integer>();
+        queries.put("a:[* TO *]", 1);
+        queries.put("b:[* TO *]", 2);
+        new ReindexCheckpoint(1, queries, new HashMap<String, String>()).write(file);
+        queries.remove("a:[* TO *]");
+        final Map<String, String> cursors = new HashMap<String, String>();
+        cursors.put("b:[* TO *]", "BBBBBBBBBBBB");
+        new ReindexCheckpoint(2, queries, cursors).write(file);
+
+        final ReindexCheckpoint c = ReindexCheckpoint.read(file);
+        assertEquals(2, c.processed);
+        assertEquals(queries, c.queries);
+        assertEquals(cursors, c.cursors);
+    }
+}
@@ -0,0 +1,39 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.junit.Test;
+
+public class ReindexSolrBusyThreadTest {
+
+    /**
+     * a query without cursor starts at the first document, sorted by id
+     */
+    @Test
+    public void testCursorQueryStart() {
+        final SolrQuery q = ReindexSolrBusyThread.cursorQuery("text_t:[* TO *]", null, 100);
+        assertEquals("text_t:[* TO *]", q.getQuery());
+        assertEquals(CollectionSchema.id.getSolrFieldName() + " asc", q.get("sort"));
+        assertEquals(Integer.valueOf(100), q.getRows());
+        assertEquals(Integer.valueOf(0), q.getStart());
+        assertNull(q.getFilterQueries());
+    }
+
+    /**
+     * a query with cursor selects the documents with an id greater than the cursor and always starts at 0
+     */
+    @Test
+    public void testCursorQueryContinue() {
+        final SolrQuery q = ReindexSolrBusyThread.cursorQuery("text_t:[* TO *]", "AAAAAAAAAAAA", 50);
+        assertEquals("text_t:[* TO *]", q.getQuery());
+        assertEquals(CollectionSchema.id.getSolrFieldName() + " asc", q.get("sort"));
+        assertEquals(Integer.valueOf(50), q.getRows());
+        assertEquals(Integer.valueOf(0), q.getStart());
+        assertArrayEquals(new String[]{CollectionSchema.id.getSolrFieldName() + ":{\"AAAAAAAAAAAA\" TO *]"}, q.getFilterQueries());
+    }
+}
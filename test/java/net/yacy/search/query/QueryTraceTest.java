@@ -0,0 +1,132 @@
+// QueryTraceTest.java
+// (C) 2026 by the YaCy contributors
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class QueryTraceTest {
+
+    @After
+    public void tearDown() {
+        QueryTrace.clear();
+        QueryTrace.configure(0.05d, 5000, 100);
+    }
+
+    /**
+     * Test that spans are recorded in start order and that a finished trace is kept when sampled.
+     */
+    @Test
+    public void testSpansAndSampling() throws Exception {
+        QueryTrace.configure(1.0d, 0, 10);
+        final QueryTrace trace = QueryTrace.start("q1", null, null, false);
+        assertSame(trace, QueryTrace.active("q1"));
+        final QueryTrace.Span remote = trace.span(QueryTrace.REMOTE, "peer1");
+        Thread.sleep(5);
+        trace.record(QueryTrace.SOLR, "local", 2, 7);
+        remote.end(3, "ok");
+        final List<QueryTrace.Span> spans = trace.spans();
+        assertEquals(2, spans.size());
+        assertEquals(QueryTrace.REMOTE, spans.get(0).stage);
+        assertEquals(7, spans.get(1).count());
+        assertTrue(spans.get(0).duration() >= 5.0d);
+        assertEquals("ok", spans.get(0).detail());
+
+        trace.finish();
+        assertTrue(trace.isFinished());
+        assertNull(QueryTrace.active("q1"));
+        assertSame(trace, QueryTrace.get(trace.id));
+        assertEquals(1, QueryTrace.byQuery("q1").size());
+        assertTrue(QueryTrace.slow().isEmpty());
+    }
+
+    /**
+     * Test that unsampled traces are only kept when they are slow.
+     */
+    @Test
+    public void testSlowCapture() throws Exception {
+        QueryTrace.configure(0.0d, 10, 10);
+        final QueryTrace fast = QueryTrace.start("fast", null, null, false);
+        fast.finish();
+        assertNull(QueryTrace.get(fast.id));
+
+        final QueryTrace slow = QueryTrace.start("slow", "abc", "peer2", false);
+        Thread.sleep(15);
+        slow.finish();
+        assertEquals("abc", slow.parentId);
+        assertSame(slow, QueryTrace.get(slow.id));
+        assertEquals(1, QueryTrace.slow().size());
+
+        // a trace of a sampled parent is always kept
+        final QueryTrace child = QueryTrace.start("child", "def", "peer3", true);
+        child.finish();
+        assertSame(child, QueryTrace.get(child.id));
+        assertEquals(2, QueryTrace.recent().size());
+    }
+
+    /**
+     * Test that a closed trace ends with its last span and that the ring buffer is bounded.
+     */
+    @Test
+    public void testCloseAndCapacity() {
+        QueryTrace.configure(1.0d, 0, 2);
+        final QueryTrace trace = QueryTrace.start("q2", null, null, false);
+        trace.record(QueryTrace.RENDER, null, 0, 10);
+        trace.close();
+        assertTrue(trace.isFinished());
+        assertFalse(trace.duration() > 1000);
+        QueryTrace.start("q3", null, null, false).finish();
+        QueryTrace.start("q4", null, null, false).finish();
+        final List<QueryTrace> recent = QueryTrace.recent();
+        assertEquals(2, recent.size());
+        assertEquals("q4", recent.get(0).queryId);
+        assertNull(QueryTrace.get(trace.id));
+    }
+
+    /**
+     * Test that concurrent traces of the same query are kept apart.
+     */
+    @Test
+    public void testConcurrentIdenticalQueries() throws Exception {
+        QueryTrace.configure(1.0d, 0, 10);
+        final QueryTrace first = QueryTrace.start("q5", null, "peer1", false);
+        Thread.sleep(1);
+        final QueryTrace second = QueryTrace.start("q5", null, "peer2", false);
+        assertSame(first, QueryTrace.get(first.id));
+        assertSame(second, QueryTrace.get(second.id));
+        assertSame(second, QueryTrace.active("q5"));
+        assertEquals(2, QueryTrace.byQuery("q5").size());
+
+        second.finish();
+        assertSame(first, QueryTrace.active("q5"));
+        first.finish();
+        assertNull(QueryTrace.active("q5"));
+        assertEquals(2, QueryTrace.byQuery("q5").size());
+    }
+
+}
@@ -0,0 +1,73 @@
+// SearchAdmissionTest.java
+// (C) 2026 by the YaCy contributors
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.yacy.search.query.SearchAdmission.Degradation;
+import net.yacy.search.query.SearchAdmission.Priority;
+
+public class SearchAdmissionTest {
+
+    /**
+     * Test that the degradation follows the number of running searches and the latency, weighted by the priority.
+     */
+    @Test
+    public void testDegradation() throws InterruptedException {
+        // the system load is not considered
+        SearchAdmission.configure(true, 60000, 0, 4);
+        final List<SearchAdmission.Ticket> tickets = new ArrayList<SearchAdmission.Ticket>();
+        for (int i = 0; i < 4; i++) tickets.add(SearchAdmission.admit(Priority.API));
+        assertEquals(4, SearchAdmission.inFlight());
+        assertEquals(Degradation.NONE, SearchAdmission.degradation(Priority.API));
+        assertEquals(Degradation.NONE, SearchAdmission.degradation(Priority.LOCAL));
+        assertEquals(Degradation.FEWER_PEERS, SearchAdmission.degradation(Priority.P2P));
+        assertEquals(Degradation.LOCAL_ONLY, SearchAdmission.degradation(Priority.ANONYMOUS));
+        for (final SearchAdmission.Ticket ticket: tickets) {
+            ticket.finish();
+            ticket.finish(); // finishing twice must not count twice
+        }
+        assertEquals(0, SearchAdmission.inFlight());
+        assertEquals(Degradation.NONE, SearchAdmission.degradation(Priority.ANONYMOUS));
+
+        // a slow search raises the pressure until anonymous requests are rejected
+        SearchAdmission.configure(true, 1, 0, 4);
+        final SearchAdmission.Ticket slow = SearchAdmission.admit(Priority.API);
+        Thread.sleep(50);
+        slow.finish();
+        assertTrue(SearchAdmission.latency() > 1);
+        assertEquals(Degradation.NONE, SearchAdmission.degradation(Priority.API));
+        final SearchAdmission.Ticket rejected = SearchAdmission.admit(Priority.ANONYMOUS);
+        assertEquals(Degradation.REJECT, rejected.getDegradation());
+        assertEquals(0, SearchAdmission.inFlight());
+        assertTrue(SearchAdmission.decisions(Degradation.REJECT) > 0);
+
+        // switched off, nothing is degraded
+        SearchAdmission.configure(false, 1, 0, 4);
+        assertEquals(Degradation.NONE, SearchAdmission.degradation(Priority.ANONYMOUS));
+    }
+
+}
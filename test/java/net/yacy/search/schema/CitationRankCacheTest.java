@@ -0,0 +1,113 @@
+/**
+ *  CitationRankCacheTest
+ *  Copyright 2026 by the YaCy contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CitationRankCacheTest {
+
+    private static Map<String, double[]> crt(final String... ids) {
+        final Map<String, double[]> crt = new HashMap<String, double[]>();
+        for (final String id: ids) crt.put(id, new double[]{0.0d, 0.0d});
+        return crt;
+    }
+
+    /**
+     * Test that the stored values are the start values of the next run for known documents only.
+     */
+    @Test
+    public void testWarmStart() {
+        final CitationRankCache cache = new CitationRankCache(100);
+        final Map<String, double[]> first = crt("AAAAAAAAAAAA", "BBBBBBBBBBBB");
+        first.get("AAAAAAAAAAAA")[0] = 0.25d;
+        first.get("BBBBBBBBBBBB")[0] = 0.75d;
+        cache.put("example.org", first, 1L);
+        assertEquals(2, cache.size());
+
+        final Map<String, double[]> second = crt("BBBBBBBBBBBB", "CCCCCCCCCCCC");
+        second.get("CCCCCCCCCCCC")[0] = 0.5d;
+        assertEquals(1, cache.warmStart("example.org", second));
+        assertEquals(0.75d, second.get("BBBBBBBBBBBB")[0], 0.0d);
+        assertEquals(0.5d, second.get("CCCCCCCCCCCC")[0], 0.0d);
+        assertEquals(0, cache.warmStart("example.com", second));
+    }
+
+    /**
+     * Test that the least recently used hosts are dropped when the cache is full.
+     */
+    @Test
+    public void testEviction() {
+        final CitationRankCache cache = new CitationRankCache(3);
+        cache.put("a.org", crt("AAAAAAAAAAAA", "AAAAAAAAAAAB"), 1L);
+        cache.put("b.org", crt("BBBBBBBBBBBB"), 1L);
+        assertEquals(3, cache.size());
+        cache.warmStart("a.org", crt("AAAAAAAAAAAA")); // a.org is now the most recently used host
+        cache.put("c.org", crt("CCCCCCCCCCCC"), 1L);
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.warmStart("b.org", crt("BBBBBBBBBBBB")));
+        assertEquals(1, cache.warmStart("a.org", crt("AAAAAAAAAAAA")));
+
+        // a host larger than the cache is not stored
+        cache.put("d.org", crt("DDDDDDDDDDDA", "DDDDDDDDDDDB", "DDDDDDDDDDDC", "DDDDDDDDDDDD"), 1L);
+        assertEquals(0, cache.warmStart("d.org", crt("DDDDDDDDDDDA")));
+        assertEquals(3, cache.size());
+    }
+
+    /**
+     * Test that the cache is restored from its file together with the fingerprints.
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        final File dir = Files.createTempDirectory("CitationRankCacheTest").toFile();
+        final File file = new File(dir, CitationRankCache.FILE_NAME);
+        try {
+            final CitationRankCache cache = new CitationRankCache(100);
+            final Map<String, double[]> crt = crt("AAAAAAAAAAAA", "BBBBBBBBBBBB");
+            crt.get("AAAAAAAAAAAA")[0] = 0.25d;
+            cache.put("example.org", crt, 42L);
+            cache.put("example.com", crt("CCCCCCCCCCCC"), 7L);
+            cache.save(file);
+
+            final CitationRankCache loaded = new CitationRankCache(100);
+            loaded.load(file);
+            assertEquals(3, loaded.size());
+            assertTrue(loaded.unchanged("example.org", 42L));
+            assertFalse(loaded.unchanged("example.org", 43L));
+            assertFalse(loaded.unchanged("example.net", 42L));
+            final Map<String, double[]> next = crt("AAAAAAAAAAAA");
+            assertEquals(1, loaded.warmStart("example.org", next));
+            assertEquals(0.25d, next.get("AAAAAAAAAAAA")[0], 0.0d);
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package net.yacy.search.snippet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.document.SnippetSentences;
+import net.yacy.kelondro.util.FileUtils;
+
+public class SnippetStoreTest {
+
+    /**
+     * Test that a document without sentences removes the sentences of its previous version.
+     */
+    @Test
+    public void testPutEmptyRemovesEntry() throws Exception {
+        final File location = Files.createTempDirectory("SnippetStoreTest").toFile();
+        final SnippetStore store = new SnippetStore(location);
+        try {
+            final byte[] urlhash = ASCII.getBytes("AAAAAAAAAAAA");
+            store.put(urlhash, SnippetSentences.split("The first version of the document. It has two sentences."));
+            assertNotNull(store.get(urlhash));
+            assertEquals(2, store.get(urlhash).size());
+
+            store.put(urlhash, SnippetSentences.split(""));
+            assertNull(store.get(urlhash));
+        } finally {
+            store.close();
+            FileUtils.deletedelete(location);
+        }
+    }
+
+}